@@ -58,6 +58,15 @@ public final class Board implements Serializable {
 	/** The transition move. */
 	private final Move transitionMove;
 
+	/** The zobrist key. */
+	private final long zobristKey;
+
+	/** The halfmove clock. Plies since the last capture or pawn move. */
+	private final int halfmoveClock;
+
+	/** The fullmove number. */
+	private final int fullmoveNumber;
+
 	/** The Constant STANDARD_BOARD. */
 	private static final Board STANDARD_BOARD = createStandardBoardImpl();
 
@@ -78,6 +87,11 @@ public final class Board implements Serializable {
 		this.blackPlayer = new BlackPlayer(this, whiteStandardMoves, blackStandardMoves);
 		this.currentPlayer = builder.nextMoveMaker.choosePlayerByAlliance(this.whitePlayer, this.blackPlayer);
 		this.transitionMove = builder.transitionMove != null ? builder.transitionMove : MoveFactory.getNullMove();
+		this.zobristKey = Zobrist.hash(this);
+		this.halfmoveClock = builder.halfmoveClock >= 0 ? builder.halfmoveClock
+				: calculateHalfmoveClock(this.transitionMove);
+		this.fullmoveNumber = builder.fullmoveNumber > 0 ? builder.fullmoveNumber
+				: calculateFullmoveNumber(this.transitionMove);
 	}
 
 	/*
@@ -214,6 +228,34 @@ public final class Board implements Serializable {
 		return this.transitionMove;
 	}
 
+	/**
+	 * Gets the zobrist key.
+	 *
+	 * @return the zobrist key of the position
+	 */
+	public long getZobristKey() {
+		return this.zobristKey;
+	}
+
+	/**
+	 * Gets the halfmove clock.
+	 *
+	 * @return the plies played since the last capture or pawn move
+	 */
+	public int getHalfmoveClock() {
+		return this.halfmoveClock;
+	}
+
+	/**
+	 * Gets the fullmove number.
+	 *
+	 * @return the fullmove number, starting at one and incremented after
+	 *         every black move
+	 */
+	public int getFullmoveNumber() {
+		return this.fullmoveNumber;
+	}
+
 	/**
 	 * Creates the standard board.
 	 *
@@ -319,6 +361,36 @@ public final class Board implements Serializable {
 		return ImmutableList.copyOf(activePieces);
 	}
 
+	/**
+	 * Calculate halfmove clock.
+	 *
+	 * @param transitionMove
+	 *            the transition move
+	 * @return the halfmove clock of the board the move leads to
+	 */
+	private static int calculateHalfmoveClock(final Move transitionMove) {
+		if (transitionMove == MoveFactory.getNullMove() || transitionMove.isAttack()
+				|| transitionMove.getMovedPiece().getPieceType().isPawn()) {
+			return 0;
+		}
+		return transitionMove.getBoard().getHalfmoveClock() + 1;
+	}
+
+	/**
+	 * Calculate fullmove number.
+	 *
+	 * @param transitionMove
+	 *            the transition move
+	 * @return the fullmove number of the board the move leads to
+	 */
+	private static int calculateFullmoveNumber(final Move transitionMove) {
+		if (transitionMove == MoveFactory.getNullMove()) {
+			return 1;
+		}
+		final Board previousBoard = transitionMove.getBoard();
+		return previousBoard.getFullmoveNumber() + (previousBoard.currentPlayer().getAlliance().isBlack() ? 1 : 0);
+	}
+
 	/**
 	 * The Class Builder.
 	 */
@@ -336,11 +408,19 @@ public final class Board implements Serializable {
 		/** The transition move. */
 		Move transitionMove;
 
+		/** The halfmove clock, negative to count it from the transition move. */
+		int halfmoveClock;
+
+		/** The fullmove number, zero to count it from the transition move. */
+		int fullmoveNumber;
+
 		/**
 		 * Instantiates a new builder.
 		 */
 		public Builder() {
 			this.boardConfig = new HashMap<>(33, 1.0f);
+			this.halfmoveClock = -1;
+			this.fullmoveNumber = 0;
 		}
 
 		/**
@@ -391,6 +471,32 @@ public final class Board implements Serializable {
 			return this;
 		}
 
+		/**
+		 * Sets the halfmove clock. Only needed for boards without a transition
+		 * move, such as those read from FEN.
+		 *
+		 * @param halfmoveClock
+		 *            the halfmove clock
+		 * @return the builder
+		 */
+		public Builder setHalfmoveClock(final int halfmoveClock) {
+			this.halfmoveClock = halfmoveClock;
+			return this;
+		}
+
+		/**
+		 * Sets the fullmove number. Only needed for boards without a
+		 * transition move.
+		 *
+		 * @param fullmoveNumber
+		 *            the fullmove number
+		 * @return the builder
+		 */
+		public Builder setFullmoveNumber(final int fullmoveNumber) {
+			this.fullmoveNumber = fullmoveNumber;
+			return this;
+		}
+
 		/**
 		 * Builds the.
 		 *
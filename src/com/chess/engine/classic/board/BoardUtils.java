@@ -279,4 +279,83 @@ public enum BoardUtils {
 	public static boolean isEndGame(final Board board) {
 		return board.currentPlayer().isInCheckMate() || board.currentPlayer().isInStaleMate();
 	}
+
+	/**
+	 * Repetitions. The boards of a game or a search are linked through their
+	 * transition moves, so the positions since the last capture or pawn move
+	 * form a stack of zobrist keys; only every other one has the same side to
+	 * move, and the walk stops at the halfmove clock.
+	 *
+	 * @param board
+	 *            the board
+	 * @param limit
+	 *            the number of earlier occurrences to stop counting at
+	 * @return how many times the position occurred before, at most the limit
+	 */
+	public static int repetitions(final Board board, final int limit) {
+		final long key = board.getZobristKey();
+		int count = 0;
+		Board previous = board;
+		for (int plies = 2; plies <= board.getHalfmoveClock() && count < limit; plies += 2) {
+			previous = twoPliesBack(previous);
+			if (previous == null) {
+				break;
+			}
+			if (previous.getZobristKey() == key) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Checks if is threefold repetition.
+	 *
+	 * @param board
+	 *            the board
+	 * @return true, if the position occurred at least twice before
+	 */
+	public static boolean isThreefoldRepetition(final Board board) {
+		return repetitions(board, 2) >= 2;
+	}
+
+	/**
+	 * Checks if is fifty move draw.
+	 *
+	 * @param board
+	 *            the board
+	 * @return true, if fifty moves were played by each side without a capture
+	 *         or pawn move and the side to move is not mated
+	 */
+	public static boolean isFiftyMoveDraw(final Board board) {
+		return board.getHalfmoveClock() >= 100 && !board.currentPlayer().isInCheckMate();
+	}
+
+	/**
+	 * Checks if is draw by rule.
+	 *
+	 * @param board
+	 *            the board
+	 * @return true, if the game is drawn by threefold repetition or the fifty
+	 *         move rule
+	 */
+	public static boolean isDrawByRule(final Board board) {
+		return isFiftyMoveDraw(board) || isThreefoldRepetition(board);
+	}
+
+	/**
+	 * Two plies back.
+	 *
+	 * @param board
+	 *            the board
+	 * @return the board two moves before, null if the history is shorter
+	 */
+	private static Board twoPliesBack(final Board board) {
+		final Move lastMove = board.getTransitionMove();
+		if (lastMove == MoveFactory.getNullMove()) {
+			return null;
+		}
+		final Move moveBefore = lastMove.getBoard().getTransitionMove();
+		return moveBefore != MoveFactory.getNullMove() ? moveBefore.getBoard() : null;
+	}
 }
\ No newline at end of file
@@ -194,9 +194,23 @@ public abstract class Move implements Serializable {
 			builder.setPiece(piece);
 		}
 		builder.setMoveMaker(this.board.currentPlayer().getAlliance());
+		restoreHistory(builder);
 		return builder.build();
 	}
 
+	/**
+	 * Restore history. The board of an undone move keeps the move that led to
+	 * it and its move counters, so repetitions are still found after an undo.
+	 *
+	 * @param builder
+	 *            the builder of the undone board
+	 */
+	void restoreHistory(final Board.Builder builder) {
+		builder.setMoveTransition(this.board.getTransitionMove());
+		builder.setHalfmoveClock(this.board.getHalfmoveClock());
+		builder.setFullmoveNumber(this.board.getFullmoveNumber());
+	}
+
 	/**
 	 * Disambiguation file.
 	 *
@@ -282,6 +296,15 @@ public abstract class Move implements Serializable {
 			this.promotionPiece = promotionPiece;
 		}
 
+		/**
+		 * Gets the promotion piece.
+		 *
+		 * @return the promotion piece
+		 */
+		public Piece getPromotionPiece() {
+			return this.promotionPiece;
+		}
+
 		/*
 		 * (non-Javadoc)
 		 * 
@@ -617,6 +640,7 @@ public abstract class Move implements Serializable {
 			}
 			builder.setEnPassantPawn((Pawn) this.getAttackedPiece());
 			builder.setMoveMaker(this.board.currentPlayer().getAlliance());
+			restoreHistory(builder);
 			return builder.build();
 		}
 	}
@@ -0,0 +1,141 @@
+package com.chess.engine.classic.board;
+
+import java.util.Random;
+
+import com.chess.engine.classic.pieces.King;
+import com.chess.engine.classic.pieces.Piece;
+
+/**
+ * Zobrist hashing. A position key is the exclusive or of one random number
+ * per piece on its square, one for black to move, one per castling right and
+ * one for the file of the en passant pawn, if a pawn is there to take it. The
+ * numbers come from a fixed seed, so keys are the same from run to run.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public final class Zobrist {
+
+	/** The Constant SEED. */
+	private static final long SEED = 0x5DEECE66DL;
+
+	/** The Constant PIECE_KEYS. By piece type and colour, then square. */
+	private static final long[][] PIECE_KEYS = new long[Piece.PieceType.values().length * 2][BoardUtils.NUM_TILES];
+
+	/** The Constant CASTLING_KEYS. King side before queen side, white first. */
+	private static final long[] CASTLING_KEYS = new long[4];
+
+	/** The Constant EN_PASSANT_KEYS. By file. */
+	private static final long[] EN_PASSANT_KEYS = new long[8];
+
+	/** The Constant BLACK_TO_MOVE. */
+	private static final long BLACK_TO_MOVE;
+
+	static {
+		final Random random = new Random(SEED);
+		for (final long[] squareKeys : PIECE_KEYS) {
+			for (int square = 0; square < squareKeys.length; square++) {
+				squareKeys[square] = random.nextLong();
+			}
+		}
+		for (int i = 0; i < CASTLING_KEYS.length; i++) {
+			CASTLING_KEYS[i] = random.nextLong();
+		}
+		for (int i = 0; i < EN_PASSANT_KEYS.length; i++) {
+			EN_PASSANT_KEYS[i] = random.nextLong();
+		}
+		BLACK_TO_MOVE = random.nextLong();
+	}
+
+	/**
+	 * Instantiates a new zobrist.
+	 */
+	private Zobrist() {
+		throw new RuntimeException("Not instantiable!");
+	}
+
+	/**
+	 * Hash.
+	 *
+	 * @param board
+	 *            the board
+	 * @return the key of the position
+	 */
+	public static long hash(final Board board) {
+		long key = 0;
+		for (final Piece piece : board.getAllPieces()) {
+			key ^= pieceKey(piece);
+			if (piece.getPieceType().isKing()) {
+				key ^= castlingKey((King) piece);
+			}
+		}
+		if (board.getEnPassantPawn() != null && canCaptureEnPassant(board)) {
+			key ^= EN_PASSANT_KEYS[board.getEnPassantPawn().getPiecePosition() % 8];
+		}
+		if (board.currentPlayer().getAlliance().isBlack()) {
+			key ^= BLACK_TO_MOVE;
+		}
+		return key;
+	}
+
+	/**
+	 * Piece key.
+	 *
+	 * @param piece
+	 *            the piece
+	 * @return the key of the piece on its square
+	 */
+	private static long pieceKey(final Piece piece) {
+		final int kind = piece.getPieceType().ordinal() * 2 + (piece.getPieceAllegiance().isWhite() ? 0 : 1);
+		return PIECE_KEYS[kind][piece.getPiecePosition()];
+	}
+
+	/**
+	 * Can capture en passant. Positions that differ only in an en passant
+	 * pawn nobody can take are the same position.
+	 *
+	 * @param board
+	 *            the board
+	 * @return true, if a pawn of the side to move stands next to the en
+	 *         passant pawn
+	 */
+	private static boolean canCaptureEnPassant(final Board board) {
+		final int position = board.getEnPassantPawn().getPiecePosition();
+		return (position % 8 > 0 && isCapturingPawn(board, position - 1))
+				|| (position % 8 < 7 && isCapturingPawn(board, position + 1));
+	}
+
+	/**
+	 * Checks if is capturing pawn.
+	 *
+	 * @param board
+	 *            the board
+	 * @param position
+	 *            the position
+	 * @return true, if a pawn of the side to move is on the position
+	 */
+	private static boolean isCapturingPawn(final Board board, final int position) {
+		final Tile tile = board.getTile(position);
+		return tile.isTileOccupied() && tile.getPiece().getPieceType().isPawn()
+				&& tile.getPiece().getPieceAllegiance() == board.currentPlayer().getAlliance();
+	}
+
+	/**
+	 * Castling key.
+	 *
+	 * @param king
+	 *            the king
+	 * @return the keys of the castling rights of the king's side
+	 */
+	private static long castlingKey(final King king) {
+		final int offset = king.getPieceAllegiance().isWhite() ? 0 : 2;
+		long key = 0;
+		if (king.isKingSideCastleCapable()) {
+			key ^= CASTLING_KEYS[offset];
+		}
+		if (king.isQueenSideCastleCapable()) {
+			key ^= CASTLING_KEYS[offset + 1];
+		}
+		return key;
+	}
+}
@@ -49,6 +49,12 @@ public class AlphaBetaWithMoveOrdering extends Observable implements MoveStrateg
 	/** The cut offs produced. */
 	private int cutOffsProduced;
 
+	/** The cancellation token. */
+	private final CancellationToken cancellationToken;
+
+	/** The best move so far, read by {@link #stop()}. */
+	private volatile Move bestMoveSoFar;
+
 	/**
 	 * The Enum MoveSorter.
 	 */
@@ -101,6 +107,8 @@ public class AlphaBetaWithMoveOrdering extends Observable implements MoveStrateg
 		this.boardsEvaluated = 0;
 		this.quiescenceCount = 0;
 		this.cutOffsProduced = 0;
+		this.cancellationToken = new CancellationToken();
+		this.bestMoveSoFar = MoveFactory.getNullMove();
 	}
 
 	/*
@@ -124,6 +132,17 @@ public class AlphaBetaWithMoveOrdering extends Observable implements MoveStrateg
 		return this.boardsEvaluated;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.chess.engine.classic.player.ai.MoveStrategy#stop()
+	 */
+	@Override
+	public Move stop() {
+		this.cancellationToken.cancel();
+		return this.bestMoveSoFar;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -141,6 +160,7 @@ public class AlphaBetaWithMoveOrdering extends Observable implements MoveStrateg
 		int lowestSeenValue = Integer.MAX_VALUE;
 		int currentValue;
 		int moveCounter = 1;
+		this.bestMoveSoFar = bestMove;
 		final int numMoves = this.moveSorter.sort(board.currentPlayer().getLegalMoves()).size();
 		System.out.println(board.currentPlayer() + " THINKING with depth = " + this.searchDepth);
 		System.out.println("\tOrdered moves! : " + this.moveSorter.sort(board.currentPlayer().getLegalMoves()));
@@ -150,17 +170,26 @@ public class AlphaBetaWithMoveOrdering extends Observable implements MoveStrateg
 			final String s;
 			if (moveTransition.getMoveStatus().isDone()) {
 				final long candidateMoveStartTime = System.nanoTime();
-				currentValue = alliance.isWhite()
-						? min(moveTransition.getToBoard(), this.searchDepth - 1, highestSeenValue, lowestSeenValue)
-						: max(moveTransition.getToBoard(), this.searchDepth - 1, highestSeenValue, lowestSeenValue);
+				try {
+					currentValue = alliance.isWhite()
+							? min(moveTransition.getToBoard(), this.searchDepth - 1, highestSeenValue,
+									lowestSeenValue)
+							: max(moveTransition.getToBoard(), this.searchDepth - 1, highestSeenValue,
+									lowestSeenValue);
+				} catch (final SearchCancelledException e) {
+					System.out.println("\t" + toString() + " stopped, best: " + bestMove);
+					break;
+				}
 				if (alliance.isWhite() && currentValue > highestSeenValue) {
 					highestSeenValue = currentValue;
 					bestMove = move;
+					this.bestMoveSoFar = move;
 					// setChanged();
 					// notifyObservers(bestMove);
 				} else if (alliance.isBlack() && currentValue < lowestSeenValue) {
 					lowestSeenValue = currentValue;
 					bestMove = move;
+					this.bestMoveSoFar = move;
 					// setChanged();
 					// notifyObservers(bestMove);
 				}
@@ -201,9 +230,10 @@ public class AlphaBetaWithMoveOrdering extends Observable implements MoveStrateg
 	 * @return the int
 	 */
 	public int max(final Board board, final int depth, final int highest, final int lowest) {
+		this.cancellationToken.checkpoint();
 		if (depth == 0 || BoardUtils.isEndGame(board)) {
 			this.boardsEvaluated++;
-			return this.evaluator.evaluate(board, depth);
+			return this.evaluator.evaluate(board, depth, highest, lowest);
 		}
 		int currentHighest = highest;
 		for (final Move move : this.moveSorter.sort((board.currentPlayer().getLegalMoves()))) {
@@ -234,9 +264,10 @@ public class AlphaBetaWithMoveOrdering extends Observable implements MoveStrateg
 	 * @return the int
 	 */
 	public int min(final Board board, final int depth, final int highest, final int lowest) {
+		this.cancellationToken.checkpoint();
 		if (depth == 0 || BoardUtils.isEndGame(board)) {
 			this.boardsEvaluated++;
-			return this.evaluator.evaluate(board, depth);
+			return this.evaluator.evaluate(board, depth, highest, lowest);
 		}
 		int currentLowest = lowest;
 		for (final Move move : this.moveSorter.sort((board.currentPlayer().getLegalMoves()))) {
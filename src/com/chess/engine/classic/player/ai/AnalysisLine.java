@@ -0,0 +1,79 @@
+package com.chess.engine.classic.player.ai;
+
+import java.util.List;
+
+import com.chess.engine.classic.board.Move;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * One line of a multi-PV analysis: a root move, its exact score from the
+ * point of view of white and the principal variation starting with it.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public final class AnalysisLine {
+
+	/** The move. */
+	private final Move move;
+
+	/** The score. */
+	private final int score;
+
+	/** The variation. */
+	private final List<Move> variation;
+
+	/**
+	 * Instantiates a new analysis line.
+	 *
+	 * @param move
+	 *            the move
+	 * @param score
+	 *            the score
+	 * @param variation
+	 *            the variation
+	 */
+	AnalysisLine(final Move move, final int score, final List<Move> variation) {
+		this.move = move;
+		this.score = score;
+		this.variation = ImmutableList.copyOf(variation);
+	}
+
+	/**
+	 * Gets the move.
+	 *
+	 * @return the move
+	 */
+	public Move getMove() {
+		return this.move;
+	}
+
+	/**
+	 * Gets the score.
+	 *
+	 * @return the score, positive when white is better
+	 */
+	public int getScore() {
+		return this.score;
+	}
+
+	/**
+	 * Gets the variation.
+	 *
+	 * @return the principal variation, starting with the move
+	 */
+	public List<Move> getVariation() {
+		return this.variation;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return this.move + " [score: " + this.score + "] pv = " + this.variation;
+	}
+}
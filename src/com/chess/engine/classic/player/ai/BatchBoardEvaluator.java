@@ -0,0 +1,391 @@
+package com.chess.engine.classic.player.ai;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.chess.engine.classic.Alliance;
+import com.chess.engine.classic.pieces.Piece.PieceType;
+
+/**
+ * Evaluates a {@link PositionBatch} in one go. The batch is split into ranges
+ * that are scored in parallel on a fork/join pool, each range by a tight loop
+ * over the bitboard arrays; no boards or moves are created. Scores are from
+ * white's point of view, like {@link BoardEvaluator} scores. Nothing that needs
+ * move generation (mobility, attacks, checks and mates) is computed.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public abstract class BatchBoardEvaluator {
+
+	/** The Constant POOL. */
+	private static final ForkJoinPool POOL = new ForkJoinPool();
+
+	/** The Constant SEQUENTIAL_THRESHOLD. Ranges this small are not split. */
+	private static final int SEQUENTIAL_THRESHOLD = 512;
+
+	/**
+	 * Standard. The terms of the {@link StandardBoardEvaluator} that only
+	 * depend on where the pieces stand: material, piece squares, the bishop
+	 * pair, pawn structure and castling.
+	 *
+	 * @return the batch board evaluator
+	 */
+	public static BatchBoardEvaluator standard() {
+		return StandardTerms.INSTANCE;
+	}
+
+	/**
+	 * Nnue. Full refreshes of the network for every position.
+	 *
+	 * @param network
+	 *            the network
+	 * @return the batch board evaluator
+	 */
+	public static BatchBoardEvaluator nnue(final NnueNetwork network) {
+		return new NnueTerms(network);
+	}
+
+	/**
+	 * Evaluate.
+	 *
+	 * @param batch
+	 *            the batch
+	 * @return the scores, in batch order
+	 */
+	public int[] evaluate(final PositionBatch batch) {
+		final int[] scores = new int[batch.size()];
+		POOL.invoke(new EvaluationTask(this, batch, scores, 0, batch.size()));
+		return scores;
+	}
+
+	/**
+	 * Evaluate. Scores one range of the batch on the calling thread.
+	 *
+	 * @param batch
+	 *            the batch
+	 * @param from
+	 *            the first position, inclusive
+	 * @param to
+	 *            the last position, exclusive
+	 * @param scores
+	 *            the scores to fill
+	 */
+	protected abstract void evaluate(PositionBatch batch, int from, int to, int[] scores);
+
+	/**
+	 * The Class EvaluationTask.
+	 */
+	private static final class EvaluationTask extends RecursiveAction {
+
+		/** The Constant serialVersionUID. */
+		private static final long serialVersionUID = 2911325839485542371L;
+
+		/** The evaluator. */
+		private final BatchBoardEvaluator evaluator;
+
+		/** The batch. */
+		private final PositionBatch batch;
+
+		/** The scores. */
+		private final int[] scores;
+
+		/** The from. */
+		private final int from;
+
+		/** The to. */
+		private final int to;
+
+		/**
+		 * Instantiates a new evaluation task.
+		 *
+		 * @param evaluator
+		 *            the evaluator
+		 * @param batch
+		 *            the batch
+		 * @param scores
+		 *            the scores
+		 * @param from
+		 *            the from
+		 * @param to
+		 *            the to
+		 */
+		EvaluationTask(final BatchBoardEvaluator evaluator, final PositionBatch batch, final int[] scores,
+				final int from, final int to) {
+			this.evaluator = evaluator;
+			this.batch = batch;
+			this.scores = scores;
+			this.from = from;
+			this.to = to;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		@Override
+		protected void compute() {
+			if (this.to - this.from <= SEQUENTIAL_THRESHOLD) {
+				this.evaluator.evaluate(this.batch, this.from, this.to, this.scores);
+				return;
+			}
+			final int middle = (this.from + this.to) >>> 1;
+			invokeAll(new EvaluationTask(this.evaluator, this.batch, this.scores, this.from, middle),
+					new EvaluationTask(this.evaluator, this.batch, this.scores, middle, this.to));
+		}
+	}
+
+	/**
+	 * The Class StandardTerms.
+	 */
+	private static final class StandardTerms extends BatchBoardEvaluator {
+
+		/** The Constant INSTANCE. */
+		static final StandardTerms INSTANCE = new StandardTerms();
+
+		/** The Constant FIRST_FILE. The a file, a8 to a1. */
+		private static final long FIRST_FILE = 0x0101010101010101L;
+
+		/**
+		 * The Constant PIECE_SQUARE. Piece value plus location bonus, for every
+		 * piece kind and square.
+		 */
+		private static final int[][] PIECE_SQUARE = initPieceSquare();
+
+		/** The Constant WHITE_BISHOP. */
+		private static final int WHITE_BISHOP = PositionBatch.pieceIndex(PieceType.BISHOP, true);
+
+		/** The Constant BLACK_BISHOP. */
+		private static final int BLACK_BISHOP = PositionBatch.pieceIndex(PieceType.BISHOP, false);
+
+		/** The Constant WHITE_PAWN. */
+		private static final int WHITE_PAWN = PositionBatch.pieceIndex(PieceType.PAWN, true);
+
+		/** The Constant BLACK_PAWN. */
+		private static final int BLACK_PAWN = PositionBatch.pieceIndex(PieceType.PAWN, false);
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see
+		 * com.chess.engine.classic.player.ai.BatchBoardEvaluator#evaluate(com.
+		 * chess.engine.classic.player.ai.PositionBatch, int, int, int[])
+		 */
+		@Override
+		protected void evaluate(final PositionBatch batch, final int from, final int to, final int[] scores) {
+			final long[][] pieces = batch.pieces;
+			final int half = PositionBatch.PIECE_KINDS / 2;
+			for (int i = from; i < to; i++) {
+				int score = 0;
+				for (int kind = 0; kind < half; kind++) {
+					score += pieceSquareSum(PIECE_SQUARE[kind], pieces[kind][i]);
+					score -= pieceSquareSum(PIECE_SQUARE[kind + half], pieces[kind + half][i]);
+				}
+				score += bishopPair(pieces[WHITE_BISHOP][i]) - bishopPair(pieces[BLACK_BISHOP][i]);
+				score += pawnStructure(pieces[WHITE_PAWN][i]) - pawnStructure(pieces[BLACK_PAWN][i]);
+				final int castling = batch.castling[i];
+				score += castle(castling, PositionBatch.WHITE_CASTLED,
+						PositionBatch.WHITE_KING_SIDE | PositionBatch.WHITE_QUEEN_SIDE);
+				score -= castle(castling, PositionBatch.BLACK_CASTLED,
+						PositionBatch.BLACK_KING_SIDE | PositionBatch.BLACK_QUEEN_SIDE);
+				scores[i] = score;
+			}
+		}
+
+		/**
+		 * Piece square sum.
+		 *
+		 * @param table
+		 *            the table
+		 * @param bitboard
+		 *            the bitboard
+		 * @return the int
+		 */
+		private static int pieceSquareSum(final int[] table, final long bitboard) {
+			int sum = 0;
+			for (long bits = bitboard; bits != 0; bits &= bits - 1) {
+				sum += table[Long.numberOfTrailingZeros(bits)];
+			}
+			return sum;
+		}
+
+		/**
+		 * Bishop pair.
+		 *
+		 * @param bishops
+		 *            the bishops
+		 * @return the int
+		 */
+		private static int bishopPair(final long bishops) {
+			return Long.bitCount(bishops) == 2 ? StandardBoardEvaluator.TWO_BISHOPS_BONUS : 0;
+		}
+
+		/**
+		 * Pawn structure. Same counting as the {@link PawnStructureAnalyzer}.
+		 *
+		 * @param pawns
+		 *            the pawns
+		 * @return the int
+		 */
+		private static int pawnStructure(final long pawns) {
+			int stacked = 0;
+			int isolated = 0;
+			for (int file = 0; file < 8; file++) {
+				final int count = Long.bitCount(pawns & (FIRST_FILE << file));
+				if (count == 0) {
+					continue;
+				}
+				if (count > 1) {
+					stacked += count;
+				}
+				final long leftFile = file > 0 ? FIRST_FILE << (file - 1) : 0;
+				final long rightFile = file < 7 ? FIRST_FILE << (file + 1) : 0;
+				if ((pawns & (leftFile | rightFile)) == 0) {
+					isolated += count;
+				}
+			}
+			return stacked * PawnStructureAnalyzer.DOUBLED_PAWN_PENALTY
+					+ isolated * PawnStructureAnalyzer.ISOLATED_PAWN_PENALTY;
+		}
+
+		/**
+		 * Castle.
+		 *
+		 * @param castling
+		 *            the castling flags
+		 * @param castled
+		 *            the castled flag of the side
+		 * @param rights
+		 *            the castling right flags of the side
+		 * @return the int
+		 */
+		private static int castle(final int castling, final int castled, final int rights) {
+			if ((castling & castled) != 0) {
+				return StandardBoardEvaluator.CASTLE_BONUS;
+			}
+			return (castling & rights) != 0 ? StandardBoardEvaluator.CASTLE_CAPABLE_BONUS : 0;
+		}
+
+		/**
+		 * Inits the piece square.
+		 *
+		 * @return the int[][]
+		 */
+		private static int[][] initPieceSquare() {
+			final int[][] table = new int[PositionBatch.PIECE_KINDS][64];
+			for (final PieceType type : PieceType.values()) {
+				for (final Alliance alliance : Alliance.values()) {
+					final int[] row = table[PositionBatch.pieceIndex(type, alliance.isWhite())];
+					for (int square = 0; square < 64; square++) {
+						row[square] = type.getPieceValue() + locationBonus(type, alliance, square);
+					}
+				}
+			}
+			return table;
+		}
+
+		/**
+		 * Location bonus.
+		 *
+		 * @param type
+		 *            the type
+		 * @param alliance
+		 *            the alliance
+		 * @param square
+		 *            the square
+		 * @return the int
+		 */
+		private static int locationBonus(final PieceType type, final Alliance alliance, final int square) {
+			switch (type) {
+			case PAWN:
+				return alliance.pawnBonus(square);
+			case KNIGHT:
+				return alliance.knightBonus(square);
+			case BISHOP:
+				return alliance.bishopBonus(square);
+			case ROOK:
+				return alliance.rookBonus(square);
+			case QUEEN:
+				return alliance.queenBonus(square);
+			case KING:
+				return alliance.kingBonus(square);
+			default:
+				throw new RuntimeException("Should not reach here!");
+			}
+		}
+	}
+
+	/**
+	 * The Class NnueTerms.
+	 */
+	private static final class NnueTerms extends BatchBoardEvaluator {
+
+		/** The Constant WHITE_KING. */
+		private static final int WHITE_KING = PositionBatch.pieceIndex(PieceType.KING, true);
+
+		/** The Constant BLACK_KING. */
+		private static final int BLACK_KING = PositionBatch.pieceIndex(PieceType.KING, false);
+
+		/** The network. */
+		private final NnueNetwork network;
+
+		/**
+		 * Instantiates a new nnue terms.
+		 *
+		 * @param network
+		 *            the network
+		 */
+		NnueTerms(final NnueNetwork network) {
+			this.network = network;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see
+		 * com.chess.engine.classic.player.ai.BatchBoardEvaluator#evaluate(com.
+		 * chess.engine.classic.player.ai.PositionBatch, int, int, int[])
+		 */
+		@Override
+		protected void evaluate(final PositionBatch batch, final int from, final int to, final int[] scores) {
+			final short[] white = new short[this.network.getHiddenSize()];
+			final short[] black = new short[this.network.getHiddenSize()];
+			final long[][] pieces = batch.pieces;
+			final int half = PositionBatch.PIECE_KINDS / 2;
+			for (int i = from; i < to; i++) {
+				final int whiteKing = kingSquare(pieces[WHITE_KING][i]);
+				final int blackKing = kingSquare(pieces[BLACK_KING][i]);
+				this.network.refresh(white);
+				this.network.refresh(black);
+				for (int kind = 0; kind < PositionBatch.PIECE_KINDS; kind++) {
+					if (kind == WHITE_KING || kind == BLACK_KING) {
+						continue;
+					}
+					final int type = kind % half;
+					final boolean pieceIsWhite = kind < half;
+					for (long bits = pieces[kind][i]; bits != 0; bits &= bits - 1) {
+						final int square = Long.numberOfTrailingZeros(bits);
+						this.network.addFeature(white,
+								NnueNetwork.featureIndex(true, whiteKing, type, pieceIsWhite, square));
+						this.network.addFeature(black,
+								NnueNetwork.featureIndex(false, blackKing, type, pieceIsWhite, square));
+					}
+				}
+				scores[i] = batch.whiteToMove[i] ? this.network.propagate(white, black)
+						: -this.network.propagate(black, white);
+			}
+		}
+
+		/**
+		 * King square.
+		 *
+		 * @param king
+		 *            the king bitboard
+		 * @return the square of the king, a8 for a position without one
+		 */
+		private static int kingSquare(final long king) {
+			return king == 0 ? 0 : Long.numberOfTrailingZeros(king);
+		}
+	}
+}
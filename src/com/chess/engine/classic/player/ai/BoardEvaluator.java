@@ -21,4 +21,22 @@ public interface BoardEvaluator {
 	 * @return the int
 	 */
 	int evaluate(Board board, int depth);
-}
\ No newline at end of file
+
+	/**
+	 * Evaluate against a search window. Cheap terms are computed first and the
+	 * evaluation stops as soon as the remaining terms can no longer bring the
+	 * score back inside (alpha, beta). When that happens the returned value is
+	 * only a bound: at most alpha on a fail low, at least beta on a fail high.
+	 *
+	 * @param board
+	 *            the board
+	 * @param depth
+	 *            the depth
+	 * @param alpha
+	 *            the lower bound of the search window
+	 * @param beta
+	 *            the upper bound of the search window
+	 * @return the int
+	 */
+	int evaluate(Board board, int depth, int alpha, int beta);
+}
@@ -0,0 +1,50 @@
+package com.chess.engine.classic.player.ai;
+
+/**
+ * Cooperative cancellation of a search. Another thread cancels the token; the
+ * searching thread calls {@link #checkpoint()} at every node, which reads the
+ * flag once every {@value #POLL_INTERVAL} calls and unwinds the search with a
+ * {@link SearchCancelledException} once it is set. A token stays cancelled.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public final class CancellationToken {
+
+	/** The Constant POLL_INTERVAL. Nodes between two reads of the flag. */
+	private static final int POLL_INTERVAL = 256;
+
+	/** The cancelled. */
+	private volatile boolean cancelled;
+
+	/** The nodes. Only approximate if several threads search. */
+	private int nodes;
+
+	/**
+	 * Cancel.
+	 */
+	public void cancel() {
+		this.cancelled = true;
+	}
+
+	/**
+	 * Checks if is cancelled.
+	 *
+	 * @return true, if is cancelled
+	 */
+	public boolean isCancelled() {
+		return this.cancelled;
+	}
+
+	/**
+	 * Checkpoint. Called by the search at every node.
+	 *
+	 * @throws SearchCancelledException
+	 *             if the token has been cancelled
+	 */
+	void checkpoint() {
+		if ((++this.nodes & (POLL_INTERVAL - 1)) == 0 && this.cancelled) {
+			throw new SearchCancelledException();
+		}
+	}
+}
@@ -0,0 +1,242 @@
+package com.chess.engine.classic.player.ai;
+
+import java.io.File;
+import java.util.Set;
+import java.util.List;
+import java.util.EnumSet;
+import java.util.Collections;
+import java.util.Observer;
+import java.util.concurrent.Future;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+
+/**
+ * The engine, kept alive for the whole game. Searches run on its own pool of
+ * daemon threads and share one set of {@link SearchHeuristics}, which is aged
+ * at every new search request and cleared for a new game, so the
+ * transposition table, history, killers and evaluation cache of one move help
+ * the next. With more than one thread, the root moves of each search are also
+ * split across a fork join pool. Endgames with few pieces are answered from
+ * the tablebase files in the {@value #TABLEBASE_DIRECTORY} directory, if
+ * there are any. Both the board and the network server ask it for moves.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public final class EngineService {
+
+	/** The Constant TABLE_BITS. 1M transposition table entries, 16 MB. */
+	private static final int TABLE_BITS = 20;
+
+	/** The Constant TABLEBASE_DIRECTORY. */
+	private static final String TABLEBASE_DIRECTORY = "tablebases";
+
+	/** The Constant INSTANCE. */
+	private static final EngineService INSTANCE = new EngineService(Runtime.getRuntime().availableProcessors(),
+			TABLE_BITS);
+
+	/** The executor. */
+	private final ExecutorService executor;
+
+	/** The root pool, null with a single thread. */
+	private final ForkJoinPool rootPool;
+
+	/** The heuristics. */
+	private final SearchHeuristics heuristics;
+
+	/** The running strategies. */
+	private final Set<MoveStrategy> runningStrategies;
+
+	/** The tablebase. */
+	private final Tablebase tablebase;
+
+	/**
+	 * Instantiates a new engine service.
+	 *
+	 * @param threads
+	 *            the number of search threads
+	 * @param tableBits
+	 *            the base two logarithm of the number of transposition table
+	 *            entries
+	 */
+	public EngineService(final int threads, final int tableBits) {
+		final AtomicInteger threadCount = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "Engine-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.rootPool = threads > 1 ? new ForkJoinPool(threads) : null;
+		this.heuristics = new SearchHeuristics(tableBits);
+		this.runningStrategies = Collections.newSetFromMap(new ConcurrentHashMap<MoveStrategy, Boolean>());
+		this.tablebase = new Tablebase(new File(TABLEBASE_DIRECTORY));
+	}
+
+	/**
+	 * Gets the.
+	 *
+	 * @return the engine service
+	 */
+	public static EngineService get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Gets the heuristics.
+	 *
+	 * @return the heuristics
+	 */
+	public SearchHeuristics getHeuristics() {
+		return this.heuristics;
+	}
+
+	/**
+	 * New strategy. A search with every pruning technique that learns into
+	 * the heuristics of the service, for callers that run it themselves.
+	 *
+	 * @param searchDepth
+	 *            the search depth
+	 * @return the strategy
+	 */
+	public StockAlphaBeta newStrategy(final int searchDepth) {
+		final StockAlphaBeta strategy = new StockAlphaBeta(searchDepth, StandardBoardEvaluator.get(),
+				EnumSet.allOf(StockAlphaBeta.Pruning.class), this.heuristics);
+		strategy.setRootPool(this.rootPool);
+		strategy.setTablebase(this.tablebase);
+		return strategy;
+	}
+
+	/**
+	 * Search. Ages the heuristics and queues a search of the board.
+	 * Cancelling the future stops the search.
+	 *
+	 * @param board
+	 *            the board
+	 * @param searchDepth
+	 *            the search depth
+	 * @param observers
+	 *            the observers of the search progress
+	 * @return the best move, once the search is over
+	 */
+	public Future<Move> search(final Board board, final int searchDepth, final Observer... observers) {
+		this.heuristics.age();
+		final StockAlphaBeta strategy = newStrategy(searchDepth);
+		for (final Observer observer : observers) {
+			strategy.addObserver(observer);
+		}
+		return submit(strategy, new Callable<Move>() {
+			@Override
+			public Move call() {
+				return strategy.execute(board);
+			}
+		});
+	}
+
+	/**
+	 * Analyze. Ages the heuristics and queues a multi-PV search of the board.
+	 * Cancelling the future stops the search.
+	 *
+	 * @param board
+	 *            the board
+	 * @param searchDepth
+	 *            the search depth
+	 * @param lineCount
+	 *            the number of lines wanted
+	 * @return the best lines, once the search is over
+	 */
+	public Future<List<AnalysisLine>> analyze(final Board board, final int searchDepth, final int lineCount) {
+		this.heuristics.age();
+		final StockAlphaBeta strategy = newStrategy(searchDepth);
+		return submit(strategy, new Callable<List<AnalysisLine>>() {
+			@Override
+			public List<AnalysisLine> call() {
+				return strategy.analyze(board, lineCount);
+			}
+		});
+	}
+
+	/**
+	 * Find mate. Queues a mate search of the board, which needs none of the
+	 * shared heuristics. Cancelling the future stops the search.
+	 *
+	 * @param board
+	 *            the board
+	 * @param maxMoves
+	 *            the most moves the side to move may take to mate
+	 * @return the first move of the shortest mate, the null move if there is
+	 *         none, once the search is over
+	 */
+	public Future<Move> findMate(final Board board, final int maxMoves) {
+		final MateSearch strategy = new MateSearch(maxMoves);
+		return submit(strategy, new Callable<Move>() {
+			@Override
+			public Move call() {
+				return strategy.execute(board);
+			}
+		});
+	}
+
+	/**
+	 * Submit. Runs the search on the pool while the strategy is registered as
+	 * running.
+	 *
+	 * @param <T>
+	 *            the result type
+	 * @param strategy
+	 *            the strategy
+	 * @param search
+	 *            the search
+	 * @return the future of the search, stopping the strategy when cancelled
+	 */
+	private <T> Future<T> submit(final MoveStrategy strategy, final Callable<T> search) {
+		final FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				EngineService.this.runningStrategies.add(strategy);
+				try {
+					return search.call();
+				} finally {
+					EngineService.this.runningStrategies.remove(strategy);
+				}
+			}
+		}) {
+			@Override
+			public boolean cancel(final boolean mayInterruptIfRunning) {
+				strategy.stop();
+				return super.cancel(mayInterruptIfRunning);
+			}
+		};
+		this.executor.execute(task);
+		return task;
+	}
+
+	/**
+	 * Stop. Stops every running search; their futures complete with the best
+	 * moves found so far.
+	 */
+	public void stop() {
+		for (final MoveStrategy strategy : this.runningStrategies) {
+			strategy.stop();
+		}
+	}
+
+	/**
+	 * New game. Stops the running searches and forgets what was learned.
+	 */
+	public void newGame() {
+		stop();
+		this.heuristics.clear();
+	}
+}
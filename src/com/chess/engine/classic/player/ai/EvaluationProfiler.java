@@ -0,0 +1,217 @@
+package com.chess.engine.classic.player.ai;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Sampling profiler for the terms of an evaluation pipeline. One out of every
+ * sampleRate calls of a term is timed, the rest run untouched, so the profiler
+ * can stay enabled during real searches.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public final class EvaluationProfiler {
+
+	/** The sample rate. */
+	private final int sampleRate;
+
+	/** The term statistics. */
+	private final List<TermStatistics> termStatistics;
+
+	/**
+	 * Instantiates a new evaluation profiler.
+	 *
+	 * @param terms
+	 *            the profiled terms, in pipeline order
+	 * @param sampleRate
+	 *            the sample rate
+	 */
+	EvaluationProfiler(final List<EvaluationTerm> terms, final int sampleRate) {
+		if (sampleRate < 1) {
+			throw new IllegalArgumentException("sample rate must be positive: " + sampleRate);
+		}
+		this.sampleRate = sampleRate;
+		final List<TermStatistics> statistics = new ArrayList<>(terms.size());
+		for (final EvaluationTerm term : terms) {
+			statistics.add(new TermStatistics(term));
+		}
+		this.termStatistics = ImmutableList.copyOf(statistics);
+	}
+
+	/**
+	 * Should sample.
+	 *
+	 * @param termIndex
+	 *            the term index
+	 * @return true, if this call of the term should be timed
+	 */
+	boolean shouldSample(final int termIndex) {
+		return this.termStatistics.get(termIndex).calls.incrementAndGet() % this.sampleRate == 0;
+	}
+
+	/**
+	 * Record.
+	 *
+	 * @param termIndex
+	 *            the term index
+	 * @param nanos
+	 *            the nanos the call took
+	 * @param contribution
+	 *            the contribution of the term to the score
+	 */
+	void record(final int termIndex, final long nanos, final int contribution) {
+		final TermStatistics statistics = this.termStatistics.get(termIndex);
+		statistics.samples.incrementAndGet();
+		statistics.nanos.addAndGet(nanos);
+		statistics.contribution.addAndGet(contribution);
+		statistics.absoluteContribution.addAndGet(Math.abs(contribution));
+	}
+
+	/**
+	 * Gets the term statistics.
+	 *
+	 * @return the term statistics
+	 */
+	public List<TermStatistics> getTermStatistics() {
+		return this.termStatistics;
+	}
+
+	/**
+	 * Reset.
+	 */
+	public void reset() {
+		for (final TermStatistics statistics : this.termStatistics) {
+			statistics.calls.set(0);
+			statistics.samples.set(0);
+			statistics.nanos.set(0);
+			statistics.contribution.set(0);
+			statistics.absoluteContribution.set(0);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		for (final TermStatistics statistics : this.termStatistics) {
+			builder.append(statistics).append("\n");
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * The Class TermStatistics.
+	 */
+	public static final class TermStatistics {
+
+		/** The term. */
+		private final EvaluationTerm term;
+
+		/** The calls. */
+		private final AtomicLong calls;
+
+		/** The samples. */
+		private final AtomicLong samples;
+
+		/** The nanos. */
+		private final AtomicLong nanos;
+
+		/** The contribution. */
+		private final AtomicLong contribution;
+
+		/** The absolute contribution. */
+		private final AtomicLong absoluteContribution;
+
+		/**
+		 * Instantiates a new term statistics.
+		 *
+		 * @param term
+		 *            the term
+		 */
+		TermStatistics(final EvaluationTerm term) {
+			this.term = term;
+			this.calls = new AtomicLong();
+			this.samples = new AtomicLong();
+			this.nanos = new AtomicLong();
+			this.contribution = new AtomicLong();
+			this.absoluteContribution = new AtomicLong();
+		}
+
+		/**
+		 * Gets the term.
+		 *
+		 * @return the term
+		 */
+		public EvaluationTerm getTerm() {
+			return this.term;
+		}
+
+		/**
+		 * Gets the calls.
+		 *
+		 * @return the calls
+		 */
+		public long getCalls() {
+			return this.calls.get();
+		}
+
+		/**
+		 * Gets the samples.
+		 *
+		 * @return the samples
+		 */
+		public long getSamples() {
+			return this.samples.get();
+		}
+
+		/**
+		 * Gets the nanos per call.
+		 *
+		 * @return the nanos per call
+		 */
+		public double getNanosPerCall() {
+			final long sampleCount = this.samples.get();
+			return sampleCount == 0 ? 0 : (double) this.nanos.get() / sampleCount;
+		}
+
+		/**
+		 * Gets the mean contribution.
+		 *
+		 * @return the mean contribution
+		 */
+		public double getMeanContribution() {
+			final long sampleCount = this.samples.get();
+			return sampleCount == 0 ? 0 : (double) this.contribution.get() / sampleCount;
+		}
+
+		/**
+		 * Gets the mean absolute contribution.
+		 *
+		 * @return the mean absolute contribution
+		 */
+		public double getMeanAbsoluteContribution() {
+			final long sampleCount = this.samples.get();
+			return sampleCount == 0 ? 0 : (double) this.absoluteContribution.get() / sampleCount;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return String.format("%-16s calls = %d, samples = %d, %.1f ns/call, mean = %.1f, mean |score| = %.1f",
+					this.term, getCalls(), getSamples(), getNanosPerCall(), getMeanContribution(),
+					getMeanAbsoluteContribution());
+		}
+	}
+}
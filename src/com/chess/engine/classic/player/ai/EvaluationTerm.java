@@ -0,0 +1,56 @@
+package com.chess.engine.classic.player.ai;
+
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.player.Player;
+
+/**
+ * A single term of the evaluation pipeline. Besides its score every term
+ * reports the range its score can fall into, so the evaluator can stop early
+ * once the terms left to compute can no longer change the outcome of a search
+ * window. Terms that can not be bounded return Integer.MIN_VALUE and
+ * Integer.MAX_VALUE.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public interface EvaluationTerm {
+
+	/**
+	 * Score.
+	 *
+	 * @param board
+	 *            the board
+	 * @param player
+	 *            the player
+	 * @param depth
+	 *            the depth
+	 * @return the int
+	 */
+	int score(Board board, Player player, int depth);
+
+	/**
+	 * Lower bound.
+	 *
+	 * @param board
+	 *            the board
+	 * @param player
+	 *            the player
+	 * @param depth
+	 *            the depth
+	 * @return the lowest score this term can give the player
+	 */
+	int lowerBound(Board board, Player player, int depth);
+
+	/**
+	 * Upper bound.
+	 *
+	 * @param board
+	 *            the board
+	 * @param player
+	 *            the player
+	 * @param depth
+	 *            the depth
+	 * @return the highest score this term can give the player
+	 */
+	int upperBound(Board board, Player player, int depth);
+}
@@ -45,6 +45,21 @@ public class IterativeDeepening extends Observable implements MoveStrategy {
 	/** The cut offs produced. */
 	private int cutOffsProduced;
 
+	/** The principal variation. */
+	private final PrincipalVariationTable principalVariation;
+
+	/** The Constant ASPIRATION_WINDOW. Half the first window around a score. */
+	private static final int ASPIRATION_WINDOW = 50;
+
+	/** The Constant DRAW_SCORE. */
+	private static final int DRAW_SCORE = 0;
+
+	/** The cancellation token. */
+	private final CancellationToken cancellationToken;
+
+	/** The best move so far, read by {@link #stop()}. */
+	private volatile Move bestMoveSoFar;
+
 	/**
 	 * The Enum MoveSorter.
 	 */
@@ -93,6 +108,9 @@ public class IterativeDeepening extends Observable implements MoveStrategy {
 		this.moveSorter = MoveSorter.SORT;
 		this.boardsEvaluated = 0;
 		this.cutOffsProduced = 0;
+		this.principalVariation = new PrincipalVariationTable(searchDepth);
+		this.cancellationToken = new CancellationToken();
+		this.bestMoveSoFar = MoveFactory.getNullMove();
 	}
 
 	/*
@@ -116,6 +134,27 @@ public class IterativeDeepening extends Observable implements MoveStrategy {
 		return this.boardsEvaluated;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.chess.engine.classic.player.ai.MoveStrategy#stop()
+	 */
+	@Override
+	public Move stop() {
+		this.cancellationToken.cancel();
+		return this.bestMoveSoFar;
+	}
+
+	/**
+	 * Gets the principal variation.
+	 *
+	 * @return the best line found by the last search, starting with the
+	 *         selected move
+	 */
+	public List<Move> getPrincipalVariation() {
+		return this.principalVariation.getVariation(0);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -133,37 +172,51 @@ public class IterativeDeepening extends Observable implements MoveStrategy {
 			builder.addMoveOrderingRecord(move, 0);
 		}
 		Move bestMove = MoveFactory.getNullMove();
+		this.bestMoveSoFar = bestMove;
 		int currentDepth = 1;
-		int highestSeenValue = Integer.MIN_VALUE;
-		int lowestSeenValue = Integer.MAX_VALUE;
+		int score = 0;
+		boolean stopped = false;
 		while (currentDepth <= this.searchDepth) {
 			final long subTimeStart = System.currentTimeMillis();
-			// int highestSeenValue = Integer.MIN_VALUE;
-			// int lowestSeenValue = Integer.MAX_VALUE;
-			int currentValue;
 			final List<MoveScoreRecord> records = builder.build();
-			builder = new MoveOrderingBuilder();
-			builder.setOrder(board.currentPlayer().getAlliance().isWhite() ? Ordering.DESC : Ordering.ASC);
-			for (final MoveScoreRecord record : records) {
-				final Move move = record.getMove();
-				final MoveTransition moveTransition = board.currentPlayer().makeMove(move);
-				if (moveTransition.getMoveStatus().isDone()) {
-					currentValue = board.currentPlayer().getAlliance().isWhite()
-							? min(moveTransition.getToBoard(), currentDepth - 1, highestSeenValue, lowestSeenValue)
-							: max(moveTransition.getToBoard(), currentDepth - 1, highestSeenValue, lowestSeenValue);
-					builder.addMoveOrderingRecord(move, currentValue);
-					if (board.currentPlayer().getAlliance().isWhite() && currentValue > highestSeenValue) {
-						highestSeenValue = currentValue;
-						bestMove = move;
-					} else if (board.currentPlayer().getAlliance().isBlack() && currentValue < lowestSeenValue) {
-						lowestSeenValue = currentValue;
-						bestMove = move;
-					}
+			// the first iteration has no score to aim the window at
+			int window = currentDepth == 1 ? Integer.MAX_VALUE : ASPIRATION_WINDOW;
+			int highest = lowerEdge(score, window);
+			int lowest = upperEdge(score, window);
+			while (true) {
+				builder = new MoveOrderingBuilder();
+				builder.setOrder(board.currentPlayer().getAlliance().isWhite() ? Ordering.DESC : Ordering.ASC);
+				try {
+					score = searchRoot(board, records, currentDepth, highest, lowest, builder);
+				} catch (final SearchCancelledException e) {
+					stopped = true;
+					break;
+				}
+				if (score <= highest && highest != Integer.MIN_VALUE) {
+					window *= 2;
+					highest = lowerEdge(score, window);
+				} else if (score >= lowest && lowest != Integer.MAX_VALUE) {
+					window *= 2;
+					lowest = upperEdge(score, window);
+				} else {
+					break;
 				}
+				System.out.println("\t" + toString() + " Depth = " + currentDepth + " score " + score
+						+ " outside the window, widening to [" + highest + ", " + lowest + "]");
+			}
+			if (stopped) {
+				// the unfinished iteration is thrown away
+				System.out.println("\t" + toString() + " stopped at depth " + currentDepth + ", best: " + bestMove);
+				break;
+			}
+			final List<Move> principalVariation = getPrincipalVariation();
+			if (!principalVariation.isEmpty()) {
+				bestMove = principalVariation.get(0);
+				this.bestMoveSoFar = bestMove;
 			}
 			final long subTime = System.currentTimeMillis() - subTimeStart;
 			System.out.println("\t" + toString() + " bestMove = " + bestMove + " Depth = " + currentDepth + " took "
-					+ (subTime) + " ms, ordered moves : " + records);
+					+ (subTime) + " ms, pv = " + principalVariation + ", ordered moves : " + records);
 			setChanged();
 			notifyObservers(bestMove);
 			currentDepth++;
@@ -177,6 +230,59 @@ public class IterativeDeepening extends Observable implements MoveStrategy {
 		return bestMove;
 	}
 
+	/**
+	 * Search root. Searches the root moves in the order of the records within
+	 * the window, the first one with the full window and the others with a
+	 * zero window first.
+	 *
+	 * @param board
+	 *            the board
+	 * @param records
+	 *            the root moves, best first
+	 * @param depth
+	 *            the depth
+	 * @param highest
+	 *            the lower edge of the window
+	 * @param lowest
+	 *            the upper edge of the window
+	 * @param builder
+	 *            the builder to record the move scores in
+	 * @return the score, the edge of the window if it is not within
+	 */
+	private int searchRoot(final Board board, final List<MoveScoreRecord> records, final int depth,
+			final int highest, final int lowest, final MoveOrderingBuilder builder) {
+		final boolean white = board.currentPlayer().getAlliance().isWhite();
+		this.principalVariation.clear(0);
+		int currentHighest = highest;
+		int currentLowest = lowest;
+		boolean first = true;
+		for (final MoveScoreRecord record : records) {
+			final Move move = record.getMove();
+			final MoveTransition moveTransition = board.currentPlayer().makeMove(move);
+			if (moveTransition.getMoveStatus().isDone()) {
+				final int currentValue = white
+						? searchMin(moveTransition.getToBoard(), depth - 1, 1, currentHighest, currentLowest, first)
+						: searchMax(moveTransition.getToBoard(), depth - 1, 1, currentHighest, currentLowest, first);
+				builder.addMoveOrderingRecord(move, currentValue);
+				first = false;
+				if (white && currentValue > currentHighest) {
+					currentHighest = currentValue;
+					if (currentHighest >= currentLowest) {
+						return currentLowest;
+					}
+					this.principalVariation.update(0, move);
+				} else if (!white && currentValue < currentLowest) {
+					currentLowest = currentValue;
+					if (currentLowest <= currentHighest) {
+						return currentHighest;
+					}
+					this.principalVariation.update(0, move);
+				}
+			}
+		}
+		return white ? currentHighest : currentLowest;
+	}
+
 	/**
 	 * Max.
 	 *
@@ -184,26 +290,39 @@ public class IterativeDeepening extends Observable implements MoveStrategy {
 	 *            the board
 	 * @param depth
 	 *            the depth
+	 * @param ply
+	 *            the distance from the root
 	 * @param highest
 	 *            the highest
 	 * @param lowest
 	 *            the lowest
 	 * @return the int
 	 */
-	public int max(final Board board, final int depth, final int highest, final int lowest) {
+	public int max(final Board board, final int depth, final int ply, final int highest, final int lowest) {
+		this.cancellationToken.checkpoint();
+		this.principalVariation.clear(ply);
+		if (isDrawnInSearch(board, ply)) {
+			return DRAW_SCORE;
+		}
 		if (depth == 0 || BoardUtils.isEndGame(board)) {
 			this.boardsEvaluated++;
-			return this.evaluator.evaluate(board, depth);
+			return this.evaluator.evaluate(board, depth, highest, lowest);
 		}
 		int currentHighest = highest;
+		boolean first = true;
 		for (final Move move : this.moveSorter.sort((board.currentPlayer().getLegalMoves()))) {
 			final MoveTransition moveTransition = board.currentPlayer().makeMove(move);
 			if (moveTransition.getMoveStatus().isDone()) {
-				currentHighest = Math.max(currentHighest,
-						min(moveTransition.getToBoard(), depth - 1, currentHighest, lowest));
-				if (lowest <= currentHighest) {
-					this.cutOffsProduced++;
-					break;
+				final int value = searchMin(moveTransition.getToBoard(), depth - 1, ply + 1, currentHighest, lowest,
+						first);
+				first = false;
+				if (value > currentHighest) {
+					currentHighest = value;
+					if (lowest <= currentHighest) {
+						this.cutOffsProduced++;
+						break;
+					}
+					this.principalVariation.update(ply, move);
 				}
 			}
 		}
@@ -217,32 +336,140 @@ public class IterativeDeepening extends Observable implements MoveStrategy {
 	 *            the board
 	 * @param depth
 	 *            the depth
+	 * @param ply
+	 *            the distance from the root
 	 * @param highest
 	 *            the highest
 	 * @param lowest
 	 *            the lowest
 	 * @return the int
 	 */
-	public int min(final Board board, final int depth, final int highest, final int lowest) {
+	public int min(final Board board, final int depth, final int ply, final int highest, final int lowest) {
+		this.cancellationToken.checkpoint();
+		this.principalVariation.clear(ply);
+		if (isDrawnInSearch(board, ply)) {
+			return DRAW_SCORE;
+		}
 		if (depth == 0 || BoardUtils.isEndGame(board)) {
 			this.boardsEvaluated++;
-			return this.evaluator.evaluate(board, depth);
+			return this.evaluator.evaluate(board, depth, highest, lowest);
 		}
 		int currentLowest = lowest;
+		boolean first = true;
 		for (final Move move : this.moveSorter.sort((board.currentPlayer().getLegalMoves()))) {
 			final MoveTransition moveTransition = board.currentPlayer().makeMove(move);
 			if (moveTransition.getMoveStatus().isDone()) {
-				currentLowest = Math.min(currentLowest,
-						max(moveTransition.getToBoard(), depth - 1, highest, currentLowest));
-				if (currentLowest <= highest) {
-					this.cutOffsProduced++;
-					break;
+				final int value = searchMax(moveTransition.getToBoard(), depth - 1, ply + 1, highest, currentLowest,
+						first);
+				first = false;
+				if (value < currentLowest) {
+					currentLowest = value;
+					if (currentLowest <= highest) {
+						this.cutOffsProduced++;
+						break;
+					}
+					this.principalVariation.update(ply, move);
 				}
 			}
 		}
 		return currentLowest;
 	}
 
+	/**
+	 * Checks if is drawn in search.
+	 *
+	 * @param board
+	 *            the board
+	 * @param ply
+	 *            the distance from the root
+	 * @return true, if a node below the root repeats an earlier position or
+	 *         falls under the fifty move rule
+	 */
+	private static boolean isDrawnInSearch(final Board board, final int ply) {
+		return ply > 0 && (BoardUtils.repetitions(board, 1) > 0 || BoardUtils.isFiftyMoveDraw(board));
+	}
+
+	/**
+	 * Search min. Principal variation search of a child where black is to
+	 * move: all but the first child are searched with a zero window on the
+	 * lower edge and only searched again if they beat it.
+	 *
+	 * @param board
+	 *            the board
+	 * @param depth
+	 *            the depth
+	 * @param ply
+	 *            the distance from the root
+	 * @param highest
+	 *            the highest
+	 * @param lowest
+	 *            the lowest
+	 * @param first
+	 *            whether this is the first child searched
+	 * @return the int
+	 */
+	private int searchMin(final Board board, final int depth, final int ply, final int highest, final int lowest,
+			final boolean first) {
+		if (first || highest == Integer.MIN_VALUE) {
+			return min(board, depth, ply, highest, lowest);
+		}
+		final int value = min(board, depth, ply, highest, highest + 1);
+		return value > highest && value < lowest ? min(board, depth, ply, highest, lowest) : value;
+	}
+
+	/**
+	 * Search max. Principal variation search of a child where white is to
+	 * move, see {@link #searchMin(Board, int, int, int, int, boolean)}.
+	 *
+	 * @param board
+	 *            the board
+	 * @param depth
+	 *            the depth
+	 * @param ply
+	 *            the distance from the root
+	 * @param highest
+	 *            the highest
+	 * @param lowest
+	 *            the lowest
+	 * @param first
+	 *            whether this is the first child searched
+	 * @return the int
+	 */
+	private int searchMax(final Board board, final int depth, final int ply, final int highest, final int lowest,
+			final boolean first) {
+		if (first || lowest == Integer.MAX_VALUE) {
+			return max(board, depth, ply, highest, lowest);
+		}
+		final int value = max(board, depth, ply, lowest - 1, lowest);
+		return value < lowest && value > highest ? max(board, depth, ply, highest, lowest) : value;
+	}
+
+	/**
+	 * Lower edge.
+	 *
+	 * @param score
+	 *            the score
+	 * @param window
+	 *            the half width of the window
+	 * @return the lower edge of the window around the score
+	 */
+	private static int lowerEdge(final int score, final int window) {
+		return (int) Math.max(Integer.MIN_VALUE, (long) score - window);
+	}
+
+	/**
+	 * Upper edge.
+	 *
+	 * @param score
+	 *            the score
+	 * @param window
+	 *            the half width of the window
+	 * @return the upper edge of the window around the score
+	 */
+	private static int upperEdge(final int score, final int window) {
+		return (int) Math.min(Integer.MAX_VALUE, (long) score + window);
+	}
+
 	/**
 	 * The Class MoveScoreRecord.
 	 */
@@ -0,0 +1,286 @@
+package com.chess.engine.classic.player.ai;
+
+import static com.chess.engine.classic.board.Move.MoveFactory;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.board.MoveTransition;
+
+/**
+ * Mate solver. Proves forced mates by checks: the attacker only plays moves
+ * that give check, the defender plays every legal move, which are all check
+ * evasions, and no position is ever evaluated. The number of moves allowed
+ * grows one at a time, so the first mate found is the shortest; if none is
+ * found within the limit, the search has proven there is no mate by checks
+ * within it. Checks leaving the defender the fewest replies are tried first,
+ * and proofs and refutations are kept in a transposition table of its own,
+ * keyed by position alone.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public final class MateSearch implements MoveStrategy {
+
+	/** The Constant MATE. The score of a proven mate in the table. */
+	private static final int MATE = 1;
+
+	/** The Constant NO_MATE. The score of a refuted position in the table. */
+	private static final int NO_MATE = 0;
+
+	/** The most moves of the attacker. */
+	private final int maxMoves;
+
+	/** The transposition table. */
+	private final TranspositionTable table;
+
+	/** The cancellation token. */
+	private final CancellationToken cancellationToken;
+
+	/** The boards expanded. */
+	private long boardsEvaluated;
+
+	/** The mate length of the last search, 0 if there was no mate. */
+	private int mateLength;
+
+	/** The mating move found so far, read by {@link #stop()}. */
+	private volatile Move bestMoveSoFar;
+
+	/**
+	 * Instantiates a new mate search.
+	 *
+	 * @param maxMoves
+	 *            the most moves the attacker may take to mate
+	 */
+	public MateSearch(final int maxMoves) {
+		this(maxMoves, SearchHeuristics.DEFAULT_TABLE_BITS);
+	}
+
+	/**
+	 * Instantiates a new mate search.
+	 *
+	 * @param maxMoves
+	 *            the most moves the attacker may take to mate
+	 * @param tableBits
+	 *            the base two logarithm of the number of transposition table
+	 *            entries
+	 */
+	public MateSearch(final int maxMoves, final int tableBits) {
+		this.maxMoves = maxMoves;
+		this.table = new TranspositionTable(tableBits);
+		this.cancellationToken = new CancellationToken();
+		this.bestMoveSoFar = MoveFactory.getNullMove();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "MateSearch";
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.chess.engine.classic.player.ai.MoveStrategy#getNumBoardsEvaluated()
+	 */
+	@Override
+	public long getNumBoardsEvaluated() {
+		return this.boardsEvaluated;
+	}
+
+	/**
+	 * Gets the mate length.
+	 *
+	 * @return the number of moves of the mate found by the last search, 0 if
+	 *         it proved there is none within the limit or was stopped
+	 */
+	public int getMateLength() {
+		return this.mateLength;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.chess.engine.classic.player.ai.MoveStrategy#stop()
+	 */
+	@Override
+	public Move stop() {
+		this.cancellationToken.cancel();
+		return this.bestMoveSoFar;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.chess.engine.classic.player.ai.MoveStrategy#execute(com.chess.engine.
+	 * classic.board.Board)
+	 */
+	@Override
+	public Move execute(final Board board) {
+		final long startTime = System.currentTimeMillis();
+		this.boardsEvaluated = 0;
+		this.mateLength = 0;
+		this.bestMoveSoFar = MoveFactory.getNullMove();
+		this.table.clear();
+		System.out.println(board.currentPlayer() + " LOOKING for a mate in " + this.maxMoves);
+		Move mate = MoveFactory.getNullMove();
+		try {
+			for (int moves = 1; moves <= this.maxMoves; moves++) {
+				mate = findMate(board, moves);
+				if (mate != MoveFactory.getNullMove()) {
+					this.mateLength = moves;
+					this.bestMoveSoFar = mate;
+					break;
+				}
+				System.out.println("\t" + toString() + " no mate in " + moves + ", " + this.boardsEvaluated
+						+ " boards");
+			}
+		} catch (final SearchCancelledException e) {
+			System.out.println("\t" + toString() + " stopped");
+		}
+		System.out.printf("%s %s [#boards = %d, time taken = %d ms]\n", board.currentPlayer(),
+				this.mateLength > 0 ? "MATES IN " + this.mateLength + " WITH " + mate : "FINDS NO MATE",
+				this.boardsEvaluated, System.currentTimeMillis() - startTime);
+		return mate;
+	}
+
+	/**
+	 * Find mate. An attacker node.
+	 *
+	 * @param board
+	 *            the board, the attacker to move
+	 * @param moves
+	 *            the most moves the attacker may take
+	 * @return the first move of a mate, the null move if there is none
+	 */
+	private Move findMate(final Board board, final int moves) {
+		this.cancellationToken.checkpoint();
+		this.boardsEvaluated++;
+		final long key = board.getZobristKey();
+		final long entry = this.table.probe(key);
+		if (entry != TranspositionTable.MISS) {
+			final int depth = TranspositionTable.depth(entry);
+			if (TranspositionTable.score(entry) == MATE && depth <= moves) {
+				final Move move = TranspositionTable.bestMove(entry, board);
+				if (move != MoveFactory.getNullMove()) {
+					return move;
+				}
+			} else if (TranspositionTable.score(entry) == NO_MATE && depth >= moves) {
+				return MoveFactory.getNullMove();
+			}
+		}
+		final List<Check> checks = checks(board);
+		for (final Check check : checks) {
+			if (check.replies.isEmpty()) {
+				this.table.store(key, 1, MATE, TranspositionTable.Bound.EXACT, check.move);
+				return check.move;
+			}
+		}
+		if (moves > 1) {
+			for (final Check check : checks) {
+				if (allRepliesLose(check.replies, moves - 1)) {
+					this.table.store(key, moves, MATE, TranspositionTable.Bound.EXACT, check.move);
+					return check.move;
+				}
+			}
+		}
+		this.table.store(key, moves, NO_MATE, TranspositionTable.Bound.UPPER, MoveFactory.getNullMove());
+		return MoveFactory.getNullMove();
+	}
+
+	/**
+	 * All replies lose. A defender node.
+	 *
+	 * @param replies
+	 *            the boards after the replies of the defender
+	 * @param moves
+	 *            the most moves the attacker may take after the reply
+	 * @return true, if the attacker mates after every reply
+	 */
+	private boolean allRepliesLose(final List<Board> replies, final int moves) {
+		for (final Board reply : replies) {
+			if (findMate(reply, moves) == MoveFactory.getNullMove()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks. The legal checking moves of the attacker, those leaving the
+	 * fewest replies first.
+	 *
+	 * @param board
+	 *            the board
+	 * @return the checks
+	 */
+	private static List<Check> checks(final Board board) {
+		final List<Check> checks = new ArrayList<>();
+		for (final Move move : board.currentPlayer().getLegalMoves()) {
+			final MoveTransition transition = board.currentPlayer().makeMove(move);
+			if (transition.getMoveStatus().isDone() && transition.getToBoard().currentPlayer().isInCheck()) {
+				checks.add(new Check(move, replies(transition.getToBoard())));
+			}
+		}
+		Collections.sort(checks, new Comparator<Check>() {
+			@Override
+			public int compare(final Check check1, final Check check2) {
+				return Integer.compare(check1.replies.size(), check2.replies.size());
+			}
+		});
+		return checks;
+	}
+
+	/**
+	 * Replies.
+	 *
+	 * @param board
+	 *            the board, the defender to move
+	 * @return the boards after the legal replies
+	 */
+	private static List<Board> replies(final Board board) {
+		final List<Board> replies = new ArrayList<>();
+		for (final Move move : board.currentPlayer().getLegalMoves()) {
+			final MoveTransition transition = board.currentPlayer().makeMove(move);
+			if (transition.getMoveStatus().isDone()) {
+				replies.add(transition.getToBoard());
+			}
+		}
+		return replies;
+	}
+
+	/**
+	 * The Class Check. A checking move and the replies it leaves.
+	 */
+	private static final class Check {
+
+		/** The move. */
+		private final Move move;
+
+		/** The replies. */
+		private final List<Board> replies;
+
+		/**
+		 * Instantiates a new check.
+		 *
+		 * @param move
+		 *            the move
+		 * @param replies
+		 *            the boards after the replies
+		 */
+		Check(final Move move, final List<Board> replies) {
+			this.move = move;
+			this.replies = replies;
+		}
+	}
+}
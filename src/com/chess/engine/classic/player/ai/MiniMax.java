@@ -2,6 +2,10 @@ package com.chess.engine.classic.player.ai;
 
 import static com.chess.engine.classic.board.Move.MoveFactory;
 
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.chess.engine.classic.board.Move;
@@ -36,6 +40,15 @@ public final class MiniMax implements MoveStrategy {
 	/** The freq table ndex. */
 	private int freqTableIndex;
 
+	/** The cancellation token. */
+	private final CancellationToken cancellationToken;
+
+	/** The best move so far, read by {@link #stop()}. */
+	private volatile Move bestMoveSoFar;
+
+	/** The pool the root moves are split across, null to search serially. */
+	private ForkJoinPool rootPool;
+
 	/**
 	 * Instantiates a new mini max.
 	 *
@@ -46,6 +59,27 @@ public final class MiniMax implements MoveStrategy {
 		this.evaluator = StandardBoardEvaluator.get();
 		this.boardsEvaluated = 0;
 		this.searchDepth = searchDepth;
+		this.cancellationToken = new CancellationToken();
+		this.bestMoveSoFar = MoveFactory.getNullMove();
+	}
+
+	/**
+	 * Instantiates a new mini max that searches one root move of a parallel
+	 * search and counts its boards in the row of the move.
+	 *
+	 * @param parent
+	 *            the parent
+	 * @param row
+	 *            the freq table row of the move
+	 */
+	private MiniMax(final MiniMax parent, final FreqTableRow row) {
+		this.evaluator = parent.evaluator;
+		this.boardsEvaluated = 0;
+		this.searchDepth = parent.searchDepth;
+		this.cancellationToken = parent.cancellationToken;
+		this.bestMoveSoFar = MoveFactory.getNullMove();
+		this.freqTable = new FreqTableRow[] { row };
+		this.freqTableIndex = 0;
 	}
 
 	/*
@@ -69,6 +103,28 @@ public final class MiniMax implements MoveStrategy {
 		return this.boardsEvaluated;
 	}
 
+	/**
+	 * Sets the root pool. With a pool every root move is searched on a thread
+	 * of its own and the same move is selected as by the serial search.
+	 *
+	 * @param rootPool
+	 *            the root pool, null to search the root moves one by one
+	 */
+	public void setRootPool(final ForkJoinPool rootPool) {
+		this.rootPool = rootPool;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.chess.engine.classic.player.ai.MoveStrategy#stop()
+	 */
+	@Override
+	public Move stop() {
+		this.cancellationToken.cancel();
+		return this.bestMoveSoFar;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -82,9 +138,13 @@ public final class MiniMax implements MoveStrategy {
 		int highestSeenValue = Integer.MIN_VALUE;
 		int lowestSeenValue = Integer.MAX_VALUE;
 		int currentValue;
+		this.bestMoveSoFar = bestMove;
 		System.out.println(board.currentPlayer() + " THINKING with depth = " + this.searchDepth);
 		this.freqTable = new FreqTableRow[board.currentPlayer().getLegalMoves().size()];
 		this.freqTableIndex = 0;
+		if (this.rootPool != null) {
+			return finish(board, searchInParallel(board), startTime);
+		}
 		int moveCounter = 1;
 		final int numMoves = board.currentPlayer().getLegalMoves().size();
 		for (final Move move : board.currentPlayer().getLegalMoves()) {
@@ -92,18 +152,25 @@ public final class MiniMax implements MoveStrategy {
 			if (moveTransition.getMoveStatus().isDone()) {
 				final FreqTableRow row = new FreqTableRow(move);
 				this.freqTable[this.freqTableIndex] = row;
-				currentValue = board.currentPlayer().getAlliance().isWhite()
-						? min(moveTransition.getToBoard(), this.searchDepth - 1)
-						: max(moveTransition.getToBoard(), this.searchDepth - 1);
+				try {
+					currentValue = board.currentPlayer().getAlliance().isWhite()
+							? min(moveTransition.getToBoard(), this.searchDepth - 1)
+							: max(moveTransition.getToBoard(), this.searchDepth - 1);
+				} catch (final SearchCancelledException e) {
+					System.out.println("\t" + toString() + " stopped, best: " + bestMove);
+					break;
+				}
 				System.out.println("\t" + toString() + " analyzing move (" + moveCounter + "/" + numMoves + ") " + move
 						+ " scores " + currentValue + " " + this.freqTable[this.freqTableIndex]);
 				this.freqTableIndex++;
 				if (board.currentPlayer().getAlliance().isWhite() && currentValue >= highestSeenValue) {
 					highestSeenValue = currentValue;
 					bestMove = move;
+					this.bestMoveSoFar = move;
 				} else if (board.currentPlayer().getAlliance().isBlack() && currentValue <= lowestSeenValue) {
 					lowestSeenValue = currentValue;
 					bestMove = move;
+					this.bestMoveSoFar = move;
 				}
 			} else {
 				System.out.println(
@@ -111,7 +178,65 @@ public final class MiniMax implements MoveStrategy {
 			}
 			moveCounter++;
 		}
+		return finish(board, bestMove, startTime);
+	}
+
+	/**
+	 * Search in parallel. The scores are compared in the order of the legal
+	 * moves once every search is over, just as the serial search does.
+	 *
+	 * @param board
+	 *            the board
+	 * @return the best move
+	 */
+	private Move searchInParallel(final Board board) {
+		final boolean white = board.currentPlayer().getAlliance().isWhite();
+		final List<RootMoveSearch> searches = new ArrayList<>();
+		for (final Move move : board.currentPlayer().getLegalMoves()) {
+			final MoveTransition moveTransition = board.currentPlayer().makeMove(move);
+			if (moveTransition.getMoveStatus().isDone()) {
+				searches.add(new RootMoveSearch(move, moveTransition.getToBoard()));
+			}
+		}
+		final List<Integer> values = RootMoveTasks.invokeAll(this.rootPool, searches);
+		Move bestMove = MoveFactory.getNullMove();
+		int highestSeenValue = Integer.MIN_VALUE;
+		int lowestSeenValue = Integer.MAX_VALUE;
+		for (int i = 0; i < searches.size(); i++) {
+			final RootMoveSearch search = searches.get(i);
+			this.freqTable[this.freqTableIndex++] = search.worker.freqTable[0];
+			this.boardsEvaluated += search.worker.boardsEvaluated;
+			final Integer value = values.get(i);
+			if (value == null) {
+				continue;
+			}
+			if (white && value >= highestSeenValue) {
+				highestSeenValue = value;
+				bestMove = search.move;
+			} else if (!white && value <= lowestSeenValue) {
+				lowestSeenValue = value;
+				bestMove = search.move;
+			}
+		}
+		this.bestMoveSoFar = bestMove;
+		if (this.cancellationToken.isCancelled()) {
+			System.out.println("\t" + toString() + " stopped, best: " + bestMove);
+		}
+		return bestMove;
+	}
 
+	/**
+	 * Finish. Prints the statistics of the search.
+	 *
+	 * @param board
+	 *            the board
+	 * @param bestMove
+	 *            the best move
+	 * @param startTime
+	 *            the start time
+	 * @return the best move
+	 */
+	private Move finish(final Board board, final Move bestMove, final long startTime) {
 		this.executionTime = System.currentTimeMillis() - startTime;
 		System.out.printf("%s SELECTS %s [#boards = %d time taken = %d ms, rate = %.1f\n", board.currentPlayer(),
 				bestMove, this.boardsEvaluated, this.executionTime,
@@ -138,6 +263,7 @@ public final class MiniMax implements MoveStrategy {
 	 * @return the int
 	 */
 	public int min(final Board board, final int depth) {
+		this.cancellationToken.checkpoint();
 		if (depth == 0) {
 			this.boardsEvaluated++;
 			this.freqTable[this.freqTableIndex].increment();
@@ -169,6 +295,7 @@ public final class MiniMax implements MoveStrategy {
 	 * @return the int
 	 */
 	public int max(final Board board, final int depth) {
+		this.cancellationToken.checkpoint();
 		if (depth == 0) {
 			this.boardsEvaluated++;
 			this.freqTable[this.freqTableIndex].increment();
@@ -201,6 +328,51 @@ public final class MiniMax implements MoveStrategy {
 		return board.currentPlayer().isInCheckMate() || board.currentPlayer().isInStaleMate();
 	}
 
+	/**
+	 * The Class RootMoveSearch. Searches one root move of a parallel search
+	 * with its own worker.
+	 */
+	private final class RootMoveSearch implements Callable<Integer> {
+
+		/** The move. */
+		private final Move move;
+
+		/** The board after the move. */
+		private final Board toBoard;
+
+		/** The worker. */
+		private final MiniMax worker;
+
+		/**
+		 * Instantiates a new root move search.
+		 *
+		 * @param move
+		 *            the move
+		 * @param toBoard
+		 *            the board after the move
+		 */
+		RootMoveSearch(final Move move, final Board toBoard) {
+			this.move = move;
+			this.toBoard = toBoard;
+			this.worker = new MiniMax(MiniMax.this, new FreqTableRow(move));
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		@Override
+		public Integer call() {
+			final int value = this.toBoard.currentPlayer().getAlliance().isBlack()
+					? this.worker.min(this.toBoard, MiniMax.this.searchDepth - 1)
+					: this.worker.max(this.toBoard, MiniMax.this.searchDepth - 1);
+			System.out.println("\t" + MiniMax.this.toString() + " analyzing move " + this.move + " scores " + value
+					+ " " + this.worker.freqTable[0]);
+			return value;
+		}
+	}
+
 	/**
 	 * The Class FreqTableRow.
 	 */
@@ -0,0 +1,347 @@
+package com.chess.engine.classic.player.ai;
+
+import static com.chess.engine.classic.board.BoardUtils.mvvlva;
+
+import java.util.List;
+import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Move.MoveFactory;
+import com.chess.engine.classic.board.Move.PawnPromotion;
+
+/**
+ * Hands out the moves of a node in stages and orders each stage only when
+ * the search gets to it: the move of the transposition table, then castles,
+ * winning or even captures and promotions by MVV/LVA, then the killers of the
+ * ply, then the quiet moves by history score, and last the captures that lose
+ * material in the static exchange. This is staged ordering, not staged
+ * generation: the board has already generated every move of both sides when
+ * it was built, so the picker only saves the scoring and sorting. The static
+ * exchange of a capture is evaluated when it is picked, so a node cut by its
+ * first good capture never evaluates the others.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public final class MovePicker implements Iterator<Move>, Iterable<Move> {
+
+	/** The moves. */
+	private final Collection<Move> moves;
+
+	/** The table move. */
+	private final Move tableMove;
+
+	/** The heuristics. */
+	private final SearchHeuristics heuristics;
+
+	/** The ply. */
+	private final int ply;
+
+	/** Whether to hand out the losing captures. */
+	private final boolean losingCaptures;
+
+	/** The stage. */
+	private Stage stage;
+
+	/** The next stage. */
+	private Stage nextStage;
+
+	/** The table move that was handed out, null if there was none. */
+	private Move pickedTableMove;
+
+	/** The moves of the current stage that have not been handed out. */
+	private final List<Move> stageMoves;
+
+	/** The scores of the stage moves. */
+	private final List<Integer> stageScores;
+
+	/** The quiet moves, kept aside while the earlier stages run. */
+	private final List<Move> quietMoves;
+
+	/** The captures that lose material, kept aside until the end. */
+	private final List<Move> losingMoves;
+
+	/** The next move, null if it has not been picked yet. */
+	private Move next;
+
+	/**
+	 * The Enum Stage.
+	 */
+	public enum Stage {
+
+		/** The move of the transposition table. */
+		TABLE_MOVE,
+
+		/** The castles, captures and promotions that do not lose material. */
+		TACTICAL,
+
+		/** The killer moves. */
+		KILLERS,
+
+		/** The quiet moves. */
+		QUIET,
+
+		/** The captures that lose material. */
+		LOSING_CAPTURES,
+
+		/** The done. */
+		DONE
+	}
+
+	/**
+	 * Instantiates a new move picker.
+	 *
+	 * @param moves
+	 *            the moves of the node
+	 * @param tableMove
+	 *            the move of the transposition table, may be the null move
+	 * @param heuristics
+	 *            the heuristics with the killers and history
+	 * @param ply
+	 *            the distance from the root
+	 * @param losingCaptures
+	 *            whether to hand out the captures that lose material
+	 */
+	public MovePicker(final Collection<Move> moves, final Move tableMove, final SearchHeuristics heuristics,
+			final int ply, final boolean losingCaptures) {
+		this.moves = moves;
+		this.tableMove = tableMove;
+		this.heuristics = heuristics;
+		this.ply = ply;
+		this.losingCaptures = losingCaptures;
+		this.stage = Stage.TABLE_MOVE;
+		this.nextStage = Stage.TABLE_MOVE;
+		this.stageMoves = new ArrayList<>();
+		this.stageScores = new ArrayList<>();
+		this.quietMoves = new ArrayList<>();
+		this.losingMoves = new ArrayList<>();
+	}
+
+	/**
+	 * Gets the stage.
+	 *
+	 * @return the stage of the last move handed out
+	 */
+	public Stage getStage() {
+		return this.stage;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Iterable#iterator()
+	 */
+	@Override
+	public Iterator<Move> iterator() {
+		return this;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.Iterator#hasNext()
+	 */
+	@Override
+	public boolean hasNext() {
+		if (this.next == null) {
+			this.next = pick();
+		}
+		return this.next != null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.Iterator#next()
+	 */
+	@Override
+	public Move next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		final Move move = this.next;
+		this.next = null;
+		return move;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.Iterator#remove()
+	 */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Pick. Tactical moves that turn out to lose material are put aside for
+	 * the last stage.
+	 *
+	 * @return the next move, null when all moves have been handed out
+	 */
+	private Move pick() {
+		while (true) {
+			final Move move = pickStage();
+			if (move == null || this.stage != Stage.TACTICAL || move.isCastlingMove()
+					|| !StaticExchangeEvaluator.get().isLosingCapture(move)) {
+				return move;
+			}
+			this.losingMoves.add(move);
+		}
+	}
+
+	/**
+	 * Pick stage. Fills the stages one after the other until one has a move
+	 * left.
+	 *
+	 * @return the best move of the stage, null when all stages are done
+	 */
+	private Move pickStage() {
+		while (this.stageMoves.isEmpty()) {
+			if (this.nextStage == Stage.DONE) {
+				this.stage = Stage.DONE;
+				return null;
+			}
+			this.stage = this.nextStage;
+			switch (this.stage) {
+			case TABLE_MOVE:
+				this.pickedTableMove = findTableMove();
+				if (this.pickedTableMove != null) {
+					add(this.pickedTableMove, 0);
+				}
+				this.nextStage = Stage.TACTICAL;
+				break;
+			case TACTICAL:
+				fillTactical();
+				this.nextStage = Stage.KILLERS;
+				break;
+			case KILLERS:
+				fillKillers();
+				this.nextStage = Stage.QUIET;
+				break;
+			case QUIET:
+				fillQuiet();
+				this.nextStage = Stage.LOSING_CAPTURES;
+				break;
+			default:
+				if (this.losingCaptures) {
+					for (final Move losingMove : this.losingMoves) {
+						add(losingMove, mvvlva(losingMove));
+					}
+				}
+				this.nextStage = Stage.DONE;
+				break;
+			}
+		}
+		return takeBest();
+	}
+
+	/**
+	 * Find table move.
+	 *
+	 * @return the move of the node that equals the table move, null if there
+	 *         is none or it is a losing capture that is left out
+	 */
+	private Move findTableMove() {
+		if (this.tableMove == MoveFactory.getNullMove()) {
+			return null;
+		}
+		for (final Move move : this.moves) {
+			if (move.equals(this.tableMove)) {
+				return this.losingCaptures || !StaticExchangeEvaluator.get().isLosingCapture(move) ? move : null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Fill tactical. Splits the moves into the tactical and quiet moves,
+	 * castles first among the tactical moves.
+	 */
+	private void fillTactical() {
+		for (final Move move : this.moves) {
+			if (move == this.pickedTableMove) {
+				continue;
+			}
+			if (move.isCastlingMove()) {
+				add(move, Integer.MAX_VALUE);
+			} else if (isQuiet(move)) {
+				this.quietMoves.add(move);
+			} else {
+				add(move, mvvlva(move));
+			}
+		}
+	}
+
+	/**
+	 * Fill killers. Takes the killers out of the quiet moves.
+	 */
+	private void fillKillers() {
+		final Iterator<Move> quietIterator = this.quietMoves.iterator();
+		while (quietIterator.hasNext()) {
+			final Move move = quietIterator.next();
+			if (this.heuristics.isKiller(move, this.ply)) {
+				add(move, 0);
+				quietIterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Fill quiet. Quiet moves with equal history keep the MVV/LVA order, which
+	 * moves the cheaper pieces first.
+	 */
+	private void fillQuiet() {
+		for (final Move move : this.quietMoves) {
+			final long score = (long) this.heuristics.historyScore(move) * 100000 + mvvlva(move);
+			add(move, (int) Math.min(score, Integer.MAX_VALUE));
+		}
+		this.quietMoves.clear();
+	}
+
+	/**
+	 * Adds the.
+	 *
+	 * @param move
+	 *            the move
+	 * @param score
+	 *            the score
+	 */
+	private void add(final Move move, final int score) {
+		this.stageMoves.add(move);
+		this.stageScores.add(score);
+	}
+
+	/**
+	 * Take best. The first of the highest scored stage moves, so ties keep
+	 * the order of the legal moves.
+	 *
+	 * @return the move
+	 */
+	private Move takeBest() {
+		int best = 0;
+		for (int i = 1; i < this.stageScores.size(); i++) {
+			if (this.stageScores.get(i) > this.stageScores.get(best)) {
+				best = i;
+			}
+		}
+		this.stageScores.remove(best);
+		return this.stageMoves.remove(best);
+	}
+
+	/**
+	 * Checks if is quiet.
+	 *
+	 * @param move
+	 *            the move
+	 * @return true, if the move is neither a capture, a castle nor a
+	 *         promotion
+	 */
+	static boolean isQuiet(final Move move) {
+		return !move.isAttack() && !move.isCastlingMove() && !(move instanceof PawnPromotion);
+	}
+}
@@ -27,4 +27,12 @@ public interface MoveStrategy {
 	 * @return the move
 	 */
 	Move execute(Board board);
+
+	/**
+	 * Stop. Asks a running search to return as soon as it can; the strategy
+	 * can not be used to search again.
+	 *
+	 * @return the best move found so far, the null move if there is none
+	 */
+	Move stop();
 }
\ No newline at end of file
@@ -0,0 +1,271 @@
+package com.chess.engine.classic.player.ai;
+
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.pieces.Piece;
+import com.chess.engine.classic.player.Player;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * A board evaluator backed by an {@link NnueNetwork}. The first layer
+ * accumulators of every evaluated board are cached, and the accumulators of a
+ * board are derived from those of the board its transition move was made on:
+ * only the features of the squares the move changed are subtracted and added,
+ * and a perspective is rebuilt from scratch only when its own king moved.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public final class NnueBoardEvaluator implements BoardEvaluator {
+
+	/** The Constant CHECK_MATE_SCORE. */
+	private static final int CHECK_MATE_SCORE = 10000;
+
+	/**
+	 * The Constant MAX_UPDATE_DEPTH. How many moves back to look for a cached
+	 * accumulator before rebuilding one from scratch.
+	 */
+	private static final int MAX_UPDATE_DEPTH = 16;
+
+	/** The Constant DEFAULT_CACHE_SIZE. */
+	private static final int DEFAULT_CACHE_SIZE = 1 << 16;
+
+	/** The Constant KING. */
+	private static final int KING = Piece.PieceType.KING.ordinal();
+
+	/** The network. */
+	private final NnueNetwork network;
+
+	/** The accumulators, keyed by board identity. */
+	private final Cache<Board, Accumulator> accumulators;
+
+	/**
+	 * Instantiates a new nnue board evaluator.
+	 *
+	 * @param network
+	 *            the network
+	 */
+	public NnueBoardEvaluator(final NnueNetwork network) {
+		this(network, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Instantiates a new nnue board evaluator.
+	 *
+	 * @param network
+	 *            the network
+	 * @param cacheSize
+	 *            the number of accumulators to keep
+	 */
+	public NnueBoardEvaluator(final NnueNetwork network, final int cacheSize) {
+		this.network = network;
+		this.accumulators = CacheBuilder.newBuilder().weakKeys().maximumSize(cacheSize).build();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.chess.engine.classic.player.ai.BoardEvaluator#evaluate(com.chess.
+	 * engine.classic.board.Board, int)
+	 */
+	@Override
+	public int evaluate(final Board board, final int depth) {
+		final Player currentPlayer = board.currentPlayer();
+		if (currentPlayer.isInCheck() && currentPlayer.isInCheckMate()) {
+			final int mateScore = CHECK_MATE_SCORE * (depth == 0 ? 1 : 100 * depth);
+			return currentPlayer.getAlliance().isWhite() ? -mateScore : mateScore;
+		}
+		final Accumulator accumulator = accumulator(board, MAX_UPDATE_DEPTH);
+		if (currentPlayer.getAlliance().isWhite()) {
+			return this.network.propagate(accumulator.white, accumulator.black);
+		}
+		return -this.network.propagate(accumulator.black, accumulator.white);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.chess.engine.classic.player.ai.BoardEvaluator#evaluate(com.chess.
+	 * engine.classic.board.Board, int, int, int)
+	 */
+	@Override
+	public int evaluate(final Board board, final int depth, final int alpha, final int beta) {
+		// the network costs the same whatever the window, nothing to skip
+		return evaluate(board, depth);
+	}
+
+	/**
+	 * Accumulator. Looks the board up in the cache, otherwise updates the
+	 * accumulator of the previous board, otherwise builds one from scratch.
+	 *
+	 * @param board
+	 *            the board
+	 * @param budget
+	 *            how many more previous boards may be visited
+	 * @return the accumulator
+	 */
+	private Accumulator accumulator(final Board board, final int budget) {
+		Accumulator accumulator = this.accumulators.getIfPresent(board);
+		if (accumulator != null) {
+			return accumulator;
+		}
+		final Board previous = board.getTransitionMove().getBoard();
+		accumulator = new Accumulator(this.network.getHiddenSize(), board);
+		if (previous == null || budget == 0) {
+			refresh(accumulator, true);
+			refresh(accumulator, false);
+		} else {
+			update(accumulator(previous, budget - 1), accumulator);
+		}
+		this.accumulators.put(board, accumulator);
+		return accumulator;
+	}
+
+	/**
+	 * Update.
+	 *
+	 * @param from
+	 *            the accumulator of the previous board
+	 * @param to
+	 *            the accumulator to fill
+	 */
+	private void update(final Accumulator from, final Accumulator to) {
+		final boolean whiteKingMoved = from.whiteKing != to.whiteKing;
+		final boolean blackKingMoved = from.blackKing != to.blackKing;
+		if (whiteKingMoved) {
+			refresh(to, true);
+		} else {
+			System.arraycopy(from.white, 0, to.white, 0, to.white.length);
+		}
+		if (blackKingMoved) {
+			refresh(to, false);
+		} else {
+			System.arraycopy(from.black, 0, to.black, 0, to.black.length);
+		}
+		for (int square = 0; square < 64; square++) {
+			final byte removed = from.pieces[square];
+			final byte added = to.pieces[square];
+			if (removed == added) {
+				continue;
+			}
+			if (isFeature(removed)) {
+				if (!whiteKingMoved) {
+					this.network.removeFeature(to.white, to.feature(true, removed, square));
+				}
+				if (!blackKingMoved) {
+					this.network.removeFeature(to.black, to.feature(false, removed, square));
+				}
+			}
+			if (isFeature(added)) {
+				if (!whiteKingMoved) {
+					this.network.addFeature(to.white, to.feature(true, added, square));
+				}
+				if (!blackKingMoved) {
+					this.network.addFeature(to.black, to.feature(false, added, square));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Refresh. Builds the accumulator of one perspective from scratch.
+	 *
+	 * @param accumulator
+	 *            the accumulator
+	 * @param white
+	 *            the perspective
+	 */
+	private void refresh(final Accumulator accumulator, final boolean white) {
+		final short[] values = white ? accumulator.white : accumulator.black;
+		this.network.refresh(values);
+		for (int square = 0; square < 64; square++) {
+			if (isFeature(accumulator.pieces[square])) {
+				this.network.addFeature(values, accumulator.feature(white, accumulator.pieces[square], square));
+			}
+		}
+	}
+
+	/**
+	 * Checks if is feature. Kings are not features, their squares select
+	 * the weights instead.
+	 *
+	 * @param piece
+	 *            the piece code
+	 * @return true, if the piece is a feature
+	 */
+	private static boolean isFeature(final byte piece) {
+		return piece != 0 && (piece - 1) >> 1 != KING;
+	}
+
+	/**
+	 * The Class Accumulator. The first layer of both perspectives, and the
+	 * pieces they were computed from.
+	 */
+	private static final class Accumulator {
+
+		/** The white perspective. */
+		final short[] white;
+
+		/** The black perspective. */
+		final short[] black;
+
+		/**
+		 * The pieces. 0 for an empty square, otherwise one plus the piece type
+		 * times two, plus one for a black piece.
+		 */
+		final byte[] pieces;
+
+		/** The white king. */
+		int whiteKing;
+
+		/** The black king. */
+		int blackKing;
+
+		/**
+		 * Instantiates a new accumulator.
+		 *
+		 * @param hiddenSize
+		 *            the hidden size
+		 * @param board
+		 *            the board
+		 */
+		Accumulator(final int hiddenSize, final Board board) {
+			this.white = new short[hiddenSize];
+			this.black = new short[hiddenSize];
+			this.pieces = new byte[64];
+			for (final Piece piece : board.getAllPieces()) {
+				final int type = piece.getPieceType().ordinal();
+				final boolean isWhite = piece.getPieceAllegiance().isWhite();
+				this.pieces[piece.getPiecePosition()] = (byte) (1 + 2 * type + (isWhite ? 0 : 1));
+				if (type == KING) {
+					if (isWhite) {
+						this.whiteKing = piece.getPiecePosition();
+					} else {
+						this.blackKing = piece.getPiecePosition();
+					}
+				}
+			}
+		}
+
+		/**
+		 * Feature.
+		 *
+		 * @param white
+		 *            the perspective
+		 * @param piece
+		 *            the piece code
+		 * @param square
+		 *            the square
+		 * @return the feature index
+		 */
+		int feature(final boolean white, final int piece, final int square) {
+			final int type = (piece - 1) >> 1;
+			final boolean pieceIsWhite = ((piece - 1) & 1) == 0;
+			return NnueNetwork.featureIndex(white, white ? this.whiteKing : this.blackKing, type, pieceIsWhite,
+					square);
+		}
+	}
+}
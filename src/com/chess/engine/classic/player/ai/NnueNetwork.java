@@ -0,0 +1,307 @@
+package com.chess.engine.classic.player.ai;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.FileInputStream;
+import java.io.DataInputStream;
+import java.io.BufferedInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The weights of a small king relative (HalfKP) network, quantized to
+ * shorts. The input layer has one feature for every (own king square, piece
+ * type, piece colour, piece square) of a perspective, kings excluded; the
+ * hidden layer is a clipped ReLU over the accumulator of each side, and the
+ * output layer is a single neuron over both halves, side to move first.
+ * <p>
+ * The binary format is little endian: the magic number, the hidden size, the
+ * feature weights (feature major), the feature biases, the output weights and
+ * the output bias as an int.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public final class NnueNetwork {
+
+	/** The Constant PIECE_FEATURES. Five piece types in two colours. */
+	public static final int PIECE_FEATURES = 10;
+
+	/** The Constant INPUT_SIZE. */
+	public static final int INPUT_SIZE = 64 * PIECE_FEATURES * 64;
+
+	/** The Constant ACTIVATION_LIMIT. The ceiling of the clipped ReLU. */
+	public static final int ACTIVATION_LIMIT = 255;
+
+	/** The Constant OUTPUT_QUANTIZATION. */
+	public static final int OUTPUT_QUANTIZATION = 64;
+
+	/** The Constant OUTPUT_SCALE. Centipawns per unit of network output. */
+	public static final int OUTPUT_SCALE = 400;
+
+	/** The Constant MAGIC. */
+	private static final int MAGIC = 0x314E4E54;
+
+	/** The hidden size. */
+	private final int hiddenSize;
+
+	/** The feature weights. */
+	private final short[] featureWeights;
+
+	/** The feature biases. */
+	private final short[] featureBiases;
+
+	/** The output weights. */
+	private final short[] outputWeights;
+
+	/** The output bias. */
+	private final int outputBias;
+
+	/**
+	 * Instantiates a new nnue network. The arrays are used as they are, not
+	 * copied.
+	 *
+	 * @param hiddenSize
+	 *            the hidden size
+	 * @param featureWeights
+	 *            the feature weights, INPUT_SIZE rows of hiddenSize
+	 * @param featureBiases
+	 *            the feature biases
+	 * @param outputWeights
+	 *            the output weights, side to move half first
+	 * @param outputBias
+	 *            the output bias
+	 */
+	public NnueNetwork(final int hiddenSize, final short[] featureWeights, final short[] featureBiases,
+			final short[] outputWeights, final int outputBias) {
+		if (hiddenSize < 1 || featureWeights.length != INPUT_SIZE * hiddenSize || featureBiases.length != hiddenSize
+				|| outputWeights.length != 2 * hiddenSize) {
+			throw new IllegalArgumentException("network layers do not match hidden size " + hiddenSize);
+		}
+		this.hiddenSize = hiddenSize;
+		this.featureWeights = featureWeights;
+		this.featureBiases = featureBiases;
+		this.outputWeights = outputWeights;
+		this.outputBias = outputBias;
+	}
+
+	/**
+	 * Load.
+	 *
+	 * @param file
+	 *            the file
+	 * @return the nnue network
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static NnueNetwork load(final File file) throws IOException {
+		try (final InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+			return read(in);
+		}
+	}
+
+	/**
+	 * Read.
+	 *
+	 * @param in
+	 *            the in
+	 * @return the nnue network
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static NnueNetwork read(final InputStream in) throws IOException {
+		final DataInputStream data = new DataInputStream(in);
+		final ByteBuffer header = readBytes(data, 8);
+		if (header.getInt() != MAGIC) {
+			throw new IOException("not a network file");
+		}
+		final int hiddenSize = header.getInt();
+		if (hiddenSize < 1 || hiddenSize > 4096) {
+			throw new IOException("bad hidden size " + hiddenSize);
+		}
+		final short[] featureWeights = readShorts(data, INPUT_SIZE * hiddenSize);
+		final short[] featureBiases = readShorts(data, hiddenSize);
+		final short[] outputWeights = readShorts(data, 2 * hiddenSize);
+		final int outputBias = readBytes(data, 4).getInt();
+		return new NnueNetwork(hiddenSize, featureWeights, featureBiases, outputWeights, outputBias);
+	}
+
+	/**
+	 * Write.
+	 *
+	 * @param out
+	 *            the out
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void write(final OutputStream out) throws IOException {
+		final ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(this.hiddenSize);
+		out.write(header.array());
+		writeShorts(out, this.featureWeights);
+		writeShorts(out, this.featureBiases);
+		writeShorts(out, this.outputWeights);
+		out.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(this.outputBias).array());
+		out.flush();
+	}
+
+	/**
+	 * Gets the hidden size.
+	 *
+	 * @return the hidden size
+	 */
+	public int getHiddenSize() {
+		return this.hiddenSize;
+	}
+
+	/**
+	 * Feature index. Black looks at the board upside down and sees its own
+	 * pieces as the first colour, so both perspectives share the same
+	 * weights.
+	 *
+	 * @param white
+	 *            the perspective
+	 * @param kingSquare
+	 *            the square of the perspective's king
+	 * @param pieceType
+	 *            the piece type ordinal, kings excluded
+	 * @param pieceIsWhite
+	 *            the colour of the piece
+	 * @param square
+	 *            the square of the piece
+	 * @return the int
+	 */
+	static int featureIndex(final boolean white, final int kingSquare, final int pieceType,
+			final boolean pieceIsWhite, final int square) {
+		final int flip = white ? 0 : 56;
+		final int pieceFeature = 2 * pieceType + (pieceIsWhite == white ? 0 : 1);
+		return (((kingSquare ^ flip) * PIECE_FEATURES) + pieceFeature) * 64 + (square ^ flip);
+	}
+
+	/**
+	 * Refresh. Sets the accumulator to the biases.
+	 *
+	 * @param accumulator
+	 *            the accumulator
+	 */
+	void refresh(final short[] accumulator) {
+		System.arraycopy(this.featureBiases, 0, accumulator, 0, this.hiddenSize);
+	}
+
+	/**
+	 * Adds the feature.
+	 *
+	 * @param accumulator
+	 *            the accumulator
+	 * @param feature
+	 *            the feature
+	 */
+	void addFeature(final short[] accumulator, final int feature) {
+		final short[] weights = this.featureWeights;
+		final int offset = feature * this.hiddenSize;
+		for (int i = 0; i < this.hiddenSize; i++) {
+			accumulator[i] += weights[offset + i];
+		}
+	}
+
+	/**
+	 * Removes the feature.
+	 *
+	 * @param accumulator
+	 *            the accumulator
+	 * @param feature
+	 *            the feature
+	 */
+	void removeFeature(final short[] accumulator, final int feature) {
+		final short[] weights = this.featureWeights;
+		final int offset = feature * this.hiddenSize;
+		for (int i = 0; i < this.hiddenSize; i++) {
+			accumulator[i] -= weights[offset + i];
+		}
+	}
+
+	/**
+	 * Propagate. Runs the output layer over the accumulators of both sides.
+	 *
+	 * @param us
+	 *            the accumulator of the side to move
+	 * @param them
+	 *            the accumulator of the other side
+	 * @return the score in centipawns, from the side to move's point of view
+	 */
+	int propagate(final short[] us, final short[] them) {
+		final short[] weights = this.outputWeights;
+		final int size = this.hiddenSize;
+		long sum = 0;
+		for (int i = 0; i < size; i++) {
+			sum += clippedReLU(us[i]) * weights[i];
+		}
+		for (int i = 0; i < size; i++) {
+			sum += clippedReLU(them[i]) * weights[size + i];
+		}
+		return (int) ((sum + this.outputBias) * OUTPUT_SCALE / (ACTIVATION_LIMIT * OUTPUT_QUANTIZATION));
+	}
+
+	/**
+	 * Clipped ReLU.
+	 *
+	 * @param value
+	 *            the value
+	 * @return the int
+	 */
+	private static int clippedReLU(final short value) {
+		return Math.min(Math.max(value, 0), ACTIVATION_LIMIT);
+	}
+
+	/**
+	 * Read bytes.
+	 *
+	 * @param data
+	 *            the data
+	 * @param length
+	 *            the length
+	 * @return the byte buffer
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static ByteBuffer readBytes(final DataInputStream data, final int length) throws IOException {
+		final byte[] bytes = new byte[length];
+		data.readFully(bytes);
+		return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Read shorts.
+	 *
+	 * @param data
+	 *            the data
+	 * @param count
+	 *            the count
+	 * @return the short[]
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static short[] readShorts(final DataInputStream data, final int count) throws IOException {
+		final short[] values = new short[count];
+		readBytes(data, 2 * count).asShortBuffer().get(values);
+		return values;
+	}
+
+	/**
+	 * Write shorts.
+	 *
+	 * @param out
+	 *            the out
+	 * @param values
+	 *            the values
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static void writeShorts(final OutputStream out, final short[] values) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(2 * values.length).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.asShortBuffer().put(values);
+		out.write(buffer.array());
+	}
+}
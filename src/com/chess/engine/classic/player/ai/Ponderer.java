@@ -0,0 +1,188 @@
+package com.chess.engine.classic.player.ai;
+
+import java.util.Observable;
+import java.util.concurrent.Future;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ExecutorService;
+
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.board.MoveTransition;
+import com.chess.engine.classic.board.Move.MoveFactory;
+
+/**
+ * Background analysis while the opponent of the engine is to move. Searches
+ * the position for the opponent first, which gives a hint of its best move
+ * (sent to the observers), and then searches the engine's reply to that hint.
+ * When the opponent moves, {@link #convert(Board)} hands the reply search over
+ * if the hinted move was played and stops the analysis otherwise.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public final class Ponderer extends Observable {
+
+	/** The executor. A single thread, so a session's searches run in turn. */
+	private final ExecutorService executor;
+
+	/** The current session, null if not pondering. */
+	private Session session;
+
+	/**
+	 * Instantiates a new ponderer.
+	 */
+	public Ponderer() {
+		this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "Ponderer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Start. Stops the current analysis and starts one of the board.
+	 *
+	 * @param board
+	 *            the board, with the opponent of the engine to move
+	 * @param searchDepth
+	 *            the depth of the reply search; the hint is searched a ply
+	 *            shallower
+	 */
+	public synchronized void start(final Board board, final int searchDepth) {
+		stop();
+		final Session current = new Session(board, searchDepth);
+		current.hintSearch = this.executor.submit(new Callable<Move>() {
+			@Override
+			public Move call() {
+				return hint(current);
+			}
+		});
+		current.replySearch = this.executor.submit(new Callable<Move>() {
+			@Override
+			public Move call() {
+				return reply(current);
+			}
+		});
+		this.session = current;
+	}
+
+	/**
+	 * Gets the hint.
+	 *
+	 * @return the best move found for the opponent, the null move if there is
+	 *         none yet
+	 */
+	public synchronized Move getHint() {
+		return this.session != null ? this.session.hint : MoveFactory.getNullMove();
+	}
+
+	/**
+	 * Convert. Called once the opponent has moved.
+	 *
+	 * @param board
+	 *            the board after the move of the opponent
+	 * @return the reply search if the move was the hint, null otherwise; the
+	 *         reply is a move of the board the hint was played on, not of this
+	 *         board
+	 */
+	public synchronized Future<Move> convert(final Board board) {
+		final Session current = this.session;
+		final Move opponentMove = board.getTransitionMove();
+		if (current == null || opponentMove.getBoard() != current.board || !current.hintSearch.isDone()
+				|| !opponentMove.equals(current.hint)) {
+			stop();
+			return null;
+		}
+		return current.replySearch;
+	}
+
+	/**
+	 * Stop. Stops the analysis, including a converted reply search.
+	 */
+	public synchronized void stop() {
+		if (this.session != null) {
+			this.session.hintStrategy.stop();
+			this.session.replyStrategy.stop();
+			this.session = null;
+		}
+	}
+
+	/**
+	 * Hint.
+	 *
+	 * @param current
+	 *            the session
+	 * @return the hint
+	 */
+	private Move hint(final Session current) {
+		final Move hint = current.hintStrategy.execute(current.board);
+		current.hint = hint;
+		if (hint != MoveFactory.getNullMove()) {
+			setChanged();
+			notifyObservers("Hint: " + hint);
+		}
+		return hint;
+	}
+
+	/**
+	 * Reply.
+	 *
+	 * @param current
+	 *            the session
+	 * @return the reply to the hint, the null move if there is no hint
+	 */
+	private static Move reply(final Session current) {
+		final Move hint = current.hint;
+		if (hint == MoveFactory.getNullMove()) {
+			return hint;
+		}
+		final MoveTransition transition = current.board.currentPlayer().makeMove(hint);
+		return transition.getMoveStatus().isDone() ? current.replyStrategy.execute(transition.getToBoard())
+				: MoveFactory.getNullMove();
+	}
+
+	/**
+	 * The Class Session. One analysis of one board.
+	 */
+	private static final class Session {
+
+		/** The board. */
+		final Board board;
+
+		/** The hint strategy. */
+		final MoveStrategy hintStrategy;
+
+		/** The reply strategy. */
+		final MoveStrategy replyStrategy;
+
+		/** The hint. */
+		volatile Move hint;
+
+		/** The hint search. */
+		Future<Move> hintSearch;
+
+		/** The reply search. */
+		Future<Move> replySearch;
+
+		/**
+		 * Instantiates a new session. The strategies are the ones the computer
+		 * player searches with, learning into the heuristics of the engine.
+		 *
+		 * @param board
+		 *            the board
+		 * @param searchDepth
+		 *            the search depth
+		 */
+		Session(final Board board, final int searchDepth) {
+			this.board = board;
+			this.hintStrategy = EngineService.get().newStrategy(Math.max(1, searchDepth - 1));
+			this.replyStrategy = EngineService.get().newStrategy(searchDepth);
+			this.hint = MoveFactory.getNullMove();
+		}
+	}
+}
@@ -0,0 +1,257 @@
+package com.chess.engine.classic.player.ai;
+
+import java.util.List;
+
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.pieces.King;
+import com.chess.engine.classic.pieces.Piece;
+
+/**
+ * Many positions in struct of arrays layout: one bitboard array per piece
+ * type and colour, a side to move array and a castling array, all indexed by
+ * position. Bit n of a bitboard is the board coordinate n, so a8 is bit 0 and
+ * h1 is bit 63.
+ * <p>
+ * A packed position is {@value #PACKED_LONGS} longs: the twelve bitboards in
+ * {@link #pieceIndex(Piece.PieceType, boolean)} order followed by the flags,
+ * {@link #WHITE_TO_MOVE} or'ed with the castling bits.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public final class PositionBatch {
+
+	/** The Constant PIECE_KINDS. Six piece types in two colours. */
+	public static final int PIECE_KINDS = 12;
+
+	/** The Constant PACKED_LONGS. */
+	public static final int PACKED_LONGS = PIECE_KINDS + 1;
+
+	/** The Constant WHITE_KING_SIDE. */
+	public static final int WHITE_KING_SIDE = 1;
+
+	/** The Constant WHITE_QUEEN_SIDE. */
+	public static final int WHITE_QUEEN_SIDE = 1 << 1;
+
+	/** The Constant BLACK_KING_SIDE. */
+	public static final int BLACK_KING_SIDE = 1 << 2;
+
+	/** The Constant BLACK_QUEEN_SIDE. */
+	public static final int BLACK_QUEEN_SIDE = 1 << 3;
+
+	/** The Constant WHITE_CASTLED. */
+	public static final int WHITE_CASTLED = 1 << 4;
+
+	/** The Constant BLACK_CASTLED. */
+	public static final int BLACK_CASTLED = 1 << 5;
+
+	/** The Constant WHITE_TO_MOVE. Only used in the packed flags. */
+	public static final long WHITE_TO_MOVE = 1L << 8;
+
+	/** The Constant PIECE_LETTERS. The FEN letters in piece index order. */
+	private static final String PIECE_LETTERS = "PNBRQKpnbrqk";
+
+	/** The bitboards, one array per piece kind. */
+	final long[][] pieces;
+
+	/** The side to move. */
+	final boolean[] whiteToMove;
+
+	/** The castling rights and castled flags. */
+	final byte[] castling;
+
+	/** The size. */
+	private final int size;
+
+	/**
+	 * Instantiates a new position batch.
+	 *
+	 * @param size
+	 *            the size
+	 */
+	private PositionBatch(final int size) {
+		this.size = size;
+		this.pieces = new long[PIECE_KINDS][size];
+		this.whiteToMove = new boolean[size];
+		this.castling = new byte[size];
+	}
+
+	/**
+	 * From FEN. Reads the piece placement, side to move and castling fields
+	 * directly, without building boards.
+	 *
+	 * @param fenStrings
+	 *            the fen strings
+	 * @return the position batch
+	 */
+	public static PositionBatch fromFEN(final List<String> fenStrings) {
+		final PositionBatch batch = new PositionBatch(fenStrings.size());
+		for (int i = 0; i < batch.size; i++) {
+			batch.parseFEN(i, fenStrings.get(i));
+		}
+		return batch;
+	}
+
+	/**
+	 * From packed.
+	 *
+	 * @param packed
+	 *            the packed positions, PACKED_LONGS longs each
+	 * @return the position batch
+	 */
+	public static PositionBatch fromPacked(final long[] packed) {
+		if (packed.length % PACKED_LONGS != 0) {
+			throw new IllegalArgumentException("packed positions are " + PACKED_LONGS + " longs each");
+		}
+		final PositionBatch batch = new PositionBatch(packed.length / PACKED_LONGS);
+		for (int i = 0; i < batch.size; i++) {
+			final int offset = i * PACKED_LONGS;
+			for (int kind = 0; kind < PIECE_KINDS; kind++) {
+				batch.pieces[kind][i] = packed[offset + kind];
+			}
+			final long flags = packed[offset + PIECE_KINDS];
+			batch.whiteToMove[i] = (flags & WHITE_TO_MOVE) != 0;
+			batch.castling[i] = (byte) flags;
+		}
+		return batch;
+	}
+
+	/**
+	 * From boards.
+	 *
+	 * @param boards
+	 *            the boards
+	 * @return the position batch
+	 */
+	public static PositionBatch fromBoards(final List<Board> boards) {
+		final PositionBatch batch = new PositionBatch(boards.size());
+		for (int i = 0; i < batch.size; i++) {
+			final Board board = boards.get(i);
+			for (final Piece piece : board.getAllPieces()) {
+				final boolean white = piece.getPieceAllegiance().isWhite();
+				batch.pieces[pieceIndex(piece.getPieceType(), white)][i] |= 1L << piece.getPiecePosition();
+				if (piece.getPieceType().isKing()) {
+					batch.castling[i] |= castlingFlags((King) piece, white);
+				}
+			}
+			batch.whiteToMove[i] = board.currentPlayer().getAlliance().isWhite();
+		}
+		return batch;
+	}
+
+	/**
+	 * Pack.
+	 *
+	 * @return the positions, PACKED_LONGS longs each
+	 */
+	public long[] pack() {
+		final long[] packed = new long[this.size * PACKED_LONGS];
+		for (int i = 0; i < this.size; i++) {
+			final int offset = i * PACKED_LONGS;
+			for (int kind = 0; kind < PIECE_KINDS; kind++) {
+				packed[offset + kind] = this.pieces[kind][i];
+			}
+			packed[offset + PIECE_KINDS] = (this.whiteToMove[i] ? WHITE_TO_MOVE : 0) | (this.castling[i] & 0xFF);
+		}
+		return packed;
+	}
+
+	/**
+	 * Size.
+	 *
+	 * @return the int
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Piece index.
+	 *
+	 * @param type
+	 *            the type
+	 * @param white
+	 *            the colour
+	 * @return the index of the bitboard array, white pieces first
+	 */
+	public static int pieceIndex(final Piece.PieceType type, final boolean white) {
+		return type.ordinal() + (white ? 0 : PIECE_KINDS / 2);
+	}
+
+	/**
+	 * Castling flags.
+	 *
+	 * @param king
+	 *            the king
+	 * @param white
+	 *            the colour
+	 * @return the int
+	 */
+	private static int castlingFlags(final King king, final boolean white) {
+		int flags = 0;
+		if (king.isKingSideCastleCapable()) {
+			flags |= white ? WHITE_KING_SIDE : BLACK_KING_SIDE;
+		}
+		if (king.isQueenSideCastleCapable()) {
+			flags |= white ? WHITE_QUEEN_SIDE : BLACK_QUEEN_SIDE;
+		}
+		if (king.isCastled()) {
+			flags |= white ? WHITE_CASTLED : BLACK_CASTLED;
+		}
+		return flags;
+	}
+
+	/**
+	 * Parses the FEN.
+	 *
+	 * @param index
+	 *            the position index
+	 * @param fenString
+	 *            the fen string
+	 */
+	private void parseFEN(final int index, final String fenString) {
+		final String fen = fenString.trim();
+		int square = 0;
+		int i = 0;
+		for (; i < fen.length() && fen.charAt(i) != ' '; i++) {
+			final char c = fen.charAt(i);
+			if (c == '/') {
+				continue;
+			}
+			if (c >= '1' && c <= '8') {
+				square += c - '0';
+				continue;
+			}
+			final int kind = PIECE_LETTERS.indexOf(c);
+			if (kind < 0 || square > 63) {
+				throw new RuntimeException("Invalid FEN String " + fenString);
+			}
+			this.pieces[kind][index] |= 1L << square;
+			square++;
+		}
+		if (square != 64 || i + 2 > fen.length()) {
+			throw new RuntimeException("Invalid FEN String " + fenString);
+		}
+		this.whiteToMove[index] = fen.charAt(i + 1) == 'w';
+		int flags = 0;
+		for (i += 3; i < fen.length() && fen.charAt(i) != ' '; i++) {
+			switch (fen.charAt(i)) {
+			case 'K':
+				flags |= WHITE_KING_SIDE;
+				break;
+			case 'Q':
+				flags |= WHITE_QUEEN_SIDE;
+				break;
+			case 'k':
+				flags |= BLACK_KING_SIDE;
+				break;
+			case 'q':
+				flags |= BLACK_QUEEN_SIDE;
+				break;
+			default:
+				break;
+			}
+		}
+		this.castling[index] = (byte) flags;
+	}
+}
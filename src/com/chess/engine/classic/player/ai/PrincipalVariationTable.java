@@ -0,0 +1,104 @@
+package com.chess.engine.classic.player.ai;
+
+import java.util.List;
+import java.util.Arrays;
+
+import com.chess.engine.classic.board.Move;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Triangular principal variation table. Row n holds the best line found from
+ * the node at ply n; when a move raises the score of that node, the row
+ * becomes the move followed by the row of the child. Plies beyond the capacity
+ * of the table are not recorded.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+final class PrincipalVariationTable {
+
+	/** The moves, row n being maxPly - n long. */
+	private final Move[][] moves;
+
+	/** The lengths of the rows. */
+	private final int[] lengths;
+
+	/**
+	 * Instantiates a new principal variation table.
+	 *
+	 * @param maxPly
+	 *            the most plies to record
+	 */
+	PrincipalVariationTable(final int maxPly) {
+		this.moves = new Move[maxPly][];
+		for (int ply = 0; ply < maxPly; ply++) {
+			this.moves[ply] = new Move[maxPly - ply];
+		}
+		this.lengths = new int[maxPly];
+	}
+
+	/**
+	 * Clear. Called when a node is entered.
+	 *
+	 * @param ply
+	 *            the ply of the node
+	 */
+	void clear(final int ply) {
+		if (ply < this.lengths.length) {
+			this.lengths[ply] = 0;
+		}
+	}
+
+	/**
+	 * Update. Called when a move raises the score of the node, right after the
+	 * child of the move was searched.
+	 *
+	 * @param ply
+	 *            the ply of the node
+	 * @param move
+	 *            the move
+	 */
+	void update(final int ply, final Move move) {
+		if (ply >= this.lengths.length) {
+			return;
+		}
+		this.moves[ply][0] = move;
+		final int childLength = ply + 1 < this.lengths.length ? this.lengths[ply + 1] : 0;
+		if (childLength > 0) {
+			System.arraycopy(this.moves[ply + 1], 0, this.moves[ply], 1, childLength);
+		}
+		this.lengths[ply] = childLength + 1;
+	}
+
+	/**
+	 * Copy. Takes over the row of another table of the same size, for a search
+	 * whose root moves were searched with tables of their own.
+	 *
+	 * @param other
+	 *            the other table
+	 * @param ply
+	 *            the ply of the row
+	 */
+	void copy(final PrincipalVariationTable other, final int ply) {
+		if (ply >= this.lengths.length) {
+			return;
+		}
+		System.arraycopy(other.moves[ply], 0, this.moves[ply], 0, other.lengths[ply]);
+		this.lengths[ply] = other.lengths[ply];
+	}
+
+	/**
+	 * Gets the variation.
+	 *
+	 * @param ply
+	 *            the ply
+	 * @return the best line from the node at the ply
+	 */
+	List<Move> getVariation(final int ply) {
+		if (ply >= this.lengths.length) {
+			return ImmutableList.of();
+		}
+		return ImmutableList.copyOf(Arrays.copyOf(this.moves[ply], this.lengths[ply]));
+	}
+}
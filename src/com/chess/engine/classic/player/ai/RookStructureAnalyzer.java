@@ -27,7 +27,7 @@ public final class RookStructureAnalyzer {
 	private static final List<List<Boolean>> BOARD_COLUMNS = initColumns();
 
 	/** The Constant OPEN_COLUMN_ROOK_BONUS. */
-	private static final int OPEN_COLUMN_ROOK_BONUS = 25;
+	static final int OPEN_COLUMN_ROOK_BONUS = 25;
 
 	/** The Constant NO_BONUS. */
 	private static final int NO_BONUS = 0;
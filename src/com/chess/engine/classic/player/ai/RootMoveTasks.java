@@ -0,0 +1,75 @@
+package com.chess.engine.classic.player.ai;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Runs the searches of root moves on a fork join pool for the strategies that
+ * split the root. A search that was stopped has no result; anything else a
+ * search throws is thrown again to the caller.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+final class RootMoveTasks {
+
+	/**
+	 * Instantiates a new root move tasks.
+	 */
+	private RootMoveTasks() {
+		throw new RuntimeException("Not instantiable!");
+	}
+
+	/**
+	 * Invoke all. Returns once every search is over.
+	 *
+	 * @param <T>
+	 *            the result type
+	 * @param pool
+	 *            the pool
+	 * @param searches
+	 *            the searches
+	 * @return the results in the order of the searches, null for the searches
+	 *         that were stopped
+	 */
+	static <T> List<T> invokeAll(final ForkJoinPool pool, final List<? extends Callable<T>> searches) {
+		final List<T> results = new ArrayList<>(searches.size());
+		for (final Future<T> future : pool.invokeAll(searches)) {
+			results.add(result(future));
+		}
+		return results;
+	}
+
+	/**
+	 * Result.
+	 *
+	 * @param <T>
+	 *            the result type
+	 * @param future
+	 *            the future of a finished search
+	 * @return the result, null if the search was stopped
+	 */
+	private static <T> T result(final Future<T> future) {
+		try {
+			return future.get();
+		} catch (final CancellationException e) {
+			return null;
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof SearchCancelledException) {
+				return null;
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package com.chess.engine.classic.player.ai;
+
+/**
+ * Thrown from deep inside a search whose {@link CancellationToken} has been
+ * cancelled, to unwind it back to the root where the best move found so far
+ * is kept.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+final class SearchCancelledException extends RuntimeException {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = -2840367719518934263L;
+
+	/**
+	 * Instantiates a new search cancelled exception.
+	 */
+	SearchCancelledException() {
+		super("search cancelled");
+	}
+}
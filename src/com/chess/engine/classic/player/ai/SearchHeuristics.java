@@ -0,0 +1,244 @@
+package com.chess.engine.classic.player.ai;
+
+import java.util.Arrays;
+
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.BoardUtils;
+
+/**
+ * The state a search learns besides its result: the transposition table, the
+ * history and killer tables and the evaluation cache. One instance can serve
+ * many searches, one after the other or at the same time; the tables are
+ * written without locks, and a lost update only costs a little move ordering.
+ * {@link #age()} between moves keeps what is still useful.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public final class SearchHeuristics {
+
+	/** The Constant DEFAULT_TABLE_BITS. 64K entries, a megabyte. */
+	public static final int DEFAULT_TABLE_BITS = 16;
+
+	/** The Constant MAX_PLY. The deepest ply with killer moves. */
+	public static final int MAX_PLY = 64;
+
+	/** The Constant NO_EVALUATION. */
+	public static final int NO_EVALUATION = Integer.MIN_VALUE;
+
+	/** The Constant KILLERS_PER_PLY. */
+	private static final int KILLERS_PER_PLY = 2;
+
+	/** The Constant PLIES_PER_MOVE. The root moves two plies between searches. */
+	private static final int PLIES_PER_MOVE = 2;
+
+	/** The Constant EVALUATION_CACHE_BITS. */
+	private static final int EVALUATION_CACHE_BITS = 16;
+
+	/** The transposition table. */
+	private final TranspositionTable transpositionTable;
+
+	/**
+	 * The history scores of the quiet moves that caused cut offs, by side and
+	 * from and to squares.
+	 */
+	private final int[][] history;
+
+	/** The killer moves, by ply, encoded as by the transposition table. */
+	private final int[][] killers;
+
+	/** The evaluation cache keys, exclusive or'ed with the scores. */
+	private final long[] evaluationKeys;
+
+	/** The evaluation cache scores. */
+	private final int[] evaluationScores;
+
+	/**
+	 * Instantiates new search heuristics with a table of the default size.
+	 */
+	public SearchHeuristics() {
+		this(DEFAULT_TABLE_BITS);
+	}
+
+	/**
+	 * Instantiates new search heuristics.
+	 *
+	 * @param tableBits
+	 *            the base two logarithm of the number of transposition table
+	 *            entries
+	 */
+	public SearchHeuristics(final int tableBits) {
+		this.transpositionTable = new TranspositionTable(tableBits);
+		this.history = new int[2][BoardUtils.NUM_TILES * BoardUtils.NUM_TILES];
+		this.killers = new int[MAX_PLY][KILLERS_PER_PLY];
+		this.evaluationKeys = new long[1 << EVALUATION_CACHE_BITS];
+		this.evaluationScores = new int[1 << EVALUATION_CACHE_BITS];
+	}
+
+	/**
+	 * Copy ordering. New heuristics with their own transposition table and
+	 * evaluation cache, starting from a copy of the history and killer tables,
+	 * for a search whose result must not depend on what other searches learn
+	 * while it runs.
+	 *
+	 * @param tableBits
+	 *            the base two logarithm of the number of transposition table
+	 *            entries of the copy
+	 * @return the copy
+	 */
+	public SearchHeuristics copyOrdering(final int tableBits) {
+		final SearchHeuristics copy = new SearchHeuristics(tableBits);
+		for (int side = 0; side < this.history.length; side++) {
+			System.arraycopy(this.history[side], 0, copy.history[side], 0, this.history[side].length);
+		}
+		for (int ply = 0; ply < MAX_PLY; ply++) {
+			copy.killers[ply] = this.killers[ply].clone();
+		}
+		return copy;
+	}
+
+	/**
+	 * Gets the transposition table.
+	 *
+	 * @return the transposition table
+	 */
+	public TranspositionTable getTranspositionTable() {
+		return this.transpositionTable;
+	}
+
+	/**
+	 * History score.
+	 *
+	 * @param move
+	 *            the move
+	 * @return the history score of the move
+	 */
+	public int historyScore(final Move move) {
+		return sideHistory(move)[TranspositionTable.encodeMove(move)];
+	}
+
+	/**
+	 * Adds the history. Deeper cut offs count more.
+	 *
+	 * @param move
+	 *            the quiet move that caused a cut off
+	 * @param depth
+	 *            the depth of the node
+	 */
+	public void addHistory(final Move move, final int depth) {
+		sideHistory(move)[TranspositionTable.encodeMove(move)] += depth * depth;
+	}
+
+	/**
+	 * Checks if is killer.
+	 *
+	 * @param move
+	 *            the move
+	 * @param ply
+	 *            the distance from the root
+	 * @return true, if the move caused a cut off at the ply
+	 */
+	public boolean isKiller(final Move move, final int ply) {
+		if (ply >= MAX_PLY) {
+			return false;
+		}
+		final int encoded = TranspositionTable.encodeMove(move);
+		for (final int killer : this.killers[ply]) {
+			if (killer == encoded) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Adds the killer. The oldest killer of the ply makes way.
+	 *
+	 * @param move
+	 *            the quiet move that caused a cut off
+	 * @param ply
+	 *            the distance from the root
+	 */
+	public void addKiller(final Move move, final int ply) {
+		if (ply >= MAX_PLY || isKiller(move, ply)) {
+			return;
+		}
+		final int[] plyKillers = this.killers[ply];
+		System.arraycopy(plyKillers, 0, plyKillers, 1, KILLERS_PER_PLY - 1);
+		plyKillers[0] = TranspositionTable.encodeMove(move);
+	}
+
+	/**
+	 * Probe evaluation.
+	 *
+	 * @param key
+	 *            the key of the position and the depth it is evaluated at
+	 * @return the score, {@link #NO_EVALUATION} if it is not cached
+	 */
+	public int probeEvaluation(final long key) {
+		final int slot = (int) key & (this.evaluationKeys.length - 1);
+		final int score = this.evaluationScores[slot];
+		return (this.evaluationKeys[slot] ^ score) == key ? score : NO_EVALUATION;
+	}
+
+	/**
+	 * Store evaluation.
+	 *
+	 * @param key
+	 *            the key of the position and the depth it is evaluated at
+	 * @param score
+	 *            the full score
+	 */
+	public void storeEvaluation(final long key, final int score) {
+		final int slot = (int) key & (this.evaluationKeys.length - 1);
+		this.evaluationScores[slot] = score;
+		this.evaluationKeys[slot] = key ^ score;
+	}
+
+	/**
+	 * Age. Called between moves: the transposition table starts a new
+	 * generation, history scores are halved and the killers move two plies up
+	 * with the root. Evaluations do not change, so the cache is kept.
+	 */
+	public void age() {
+		this.transpositionTable.newSearch();
+		for (final int[] sideHistory : this.history) {
+			for (int i = 0; i < sideHistory.length; i++) {
+				sideHistory[i] >>= 1;
+			}
+		}
+		for (int ply = 0; ply < MAX_PLY; ply++) {
+			if (ply + PLIES_PER_MOVE < MAX_PLY) {
+				this.killers[ply] = this.killers[ply + PLIES_PER_MOVE].clone();
+			} else {
+				Arrays.fill(this.killers[ply], 0);
+			}
+		}
+	}
+
+	/**
+	 * Clear. Forgets everything, for a new game.
+	 */
+	public void clear() {
+		this.transpositionTable.clear();
+		for (final int[] sideHistory : this.history) {
+			Arrays.fill(sideHistory, 0);
+		}
+		for (final int[] plyKillers : this.killers) {
+			Arrays.fill(plyKillers, 0);
+		}
+		Arrays.fill(this.evaluationKeys, 0);
+		Arrays.fill(this.evaluationScores, 0);
+	}
+
+	/**
+	 * Side history.
+	 *
+	 * @param move
+	 *            the move
+	 * @return the history table of the side making the move
+	 */
+	private int[] sideHistory(final Move move) {
+		return this.history[move.getMovedPiece().getPieceAllegiance().isWhite() ? 0 : 1];
+	}
+}
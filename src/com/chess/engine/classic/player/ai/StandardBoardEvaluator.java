@@ -1,12 +1,15 @@
 package com.chess.engine.classic.player.ai;
 
+import java.util.List;
+import java.util.ArrayList;
+
 import com.chess.engine.classic.board.Move;
 import com.chess.engine.classic.board.Board;
 import com.chess.engine.classic.pieces.Piece;
 import com.chess.engine.classic.player.Player;
 import com.chess.engine.classic.player.ai.KingSafetyAnalyzer.KingDistance;
 
-import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 
 /**
  * Documentation will not be provided for this class for this class is an A.I.
@@ -24,10 +27,10 @@ public final class StandardBoardEvaluator implements BoardEvaluator {
 	private final static int CHECK_BONUS = 50;
 
 	/** The Constant CASTLE_BONUS. */
-	private final static int CASTLE_BONUS = 60;
+	final static int CASTLE_BONUS = 60;
 
 	/** The Constant CASTLE_CAPABLE_BONUS. */
-	private final static int CASTLE_CAPABLE_BONUS = 25;
+	final static int CASTLE_CAPABLE_BONUS = 25;
 
 	/** The Constant MOBILITY_MULTIPLIER. */
 	private final static int MOBILITY_MULTIPLIER = 2;
@@ -36,19 +39,46 @@ public final class StandardBoardEvaluator implements BoardEvaluator {
 	private final static int ATTACK_MULTIPLIER = 2;
 
 	/** The Constant TWO_BISHOPS_BONUS. */
-	private final static int TWO_BISHOPS_BONUS = 50;
+	final static int TWO_BISHOPS_BONUS = 50;
+
+	/**
+	 * The Constant MAX_PAWN_STRUCTURE_PENALTY. Eight pawns that are all both
+	 * doubled and isolated.
+	 */
+	private final static int MAX_PAWN_STRUCTURE_PENALTY = 8
+			* (PawnStructureAnalyzer.DOUBLED_PAWN_PENALTY + PawnStructureAnalyzer.ISOLATED_PAWN_PENALTY);
+
+	/**
+	 * The Constant MAX_KING_SAFETY. The enemy king as the closest attacker,
+	 * seven squares away.
+	 */
+	private final static int MAX_KING_SAFETY = (Piece.PieceType.KING.getPieceValue() / 100) * 7;
 
 	/** The Constant INSTANCE. */
-	private static final StandardBoardEvaluator INSTANCE = new StandardBoardEvaluator();
+	private static final StandardBoardEvaluator INSTANCE = new Builder().addTerm(Term.MATERIAL)
+			.addTerm(Term.MOBILITY).addTerm(Term.KING_THREATS).addTerm(Term.CASTLE).addTerm(Term.ATTACKS)
+			.addTerm(Term.PAWN_STRUCTURE).build();
+
+	/** The terms. */
+	private final List<EvaluationTerm> terms;
+
+	/** The profiler, null when profiling is disabled. */
+	private final EvaluationProfiler profiler;
 
 	/**
 	 * Instantiates a new standard board evaluator.
+	 *
+	 * @param builder
+	 *            the builder
 	 */
-	private StandardBoardEvaluator() {
+	private StandardBoardEvaluator(final Builder builder) {
+		this.terms = ImmutableList.copyOf(builder.terms);
+		this.profiler = builder.sampleRate > 0 ? new EvaluationProfiler(this.terms, builder.sampleRate) : null;
 	}
 
 	/**
-	 * Gets the.
+	 * Gets the. The default pipeline: material, mobility, king threats,
+	 * castling, attacks and pawn structure.
 	 *
 	 * @return the standard board evaluator
 	 */
@@ -56,6 +86,24 @@ public final class StandardBoardEvaluator implements BoardEvaluator {
 		return INSTANCE;
 	}
 
+	/**
+	 * Gets the terms.
+	 *
+	 * @return the terms, in the order they are evaluated
+	 */
+	public List<EvaluationTerm> getTerms() {
+		return this.terms;
+	}
+
+	/**
+	 * Gets the profiler.
+	 *
+	 * @return the profiler, null if the evaluator was built without one
+	 */
+	public EvaluationProfiler getProfiler() {
+		return this.profiler;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -65,22 +113,90 @@ public final class StandardBoardEvaluator implements BoardEvaluator {
 	 */
 	@Override
 	public int evaluate(final Board board, final int depth) {
-		return score(board.whitePlayer(), depth) - score(board.blackPlayer(), depth);
+		int score = 0;
+		for (int i = 0; i < this.terms.size(); i++) {
+			score += contribution(i, board, depth);
+		}
+		return score;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.chess.engine.classic.player.ai.BoardEvaluator#evaluate(com.chess.
+	 * engine.classic.board.Board, int, int, int)
+	 */
+	@Override
+	public int evaluate(final Board board, final int depth, final int alpha, final int beta) {
+		final Player whitePlayer = board.whitePlayer();
+		final Player blackPlayer = board.blackPlayer();
+		// an unbounded term adds about 2^32 to these, so nothing is cut off
+		// before it has been computed
+		long maxGain = 0;
+		long maxLoss = 0;
+		for (final EvaluationTerm term : this.terms) {
+			maxGain += gain(term, board, whitePlayer, blackPlayer, depth);
+			maxLoss += gain(term, board, blackPlayer, whitePlayer, depth);
+		}
+		long score = 0;
+		for (int i = 0; i < this.terms.size(); i++) {
+			if (score + maxGain <= alpha) {
+				return (int) (score + maxGain);
+			}
+			if (score - maxLoss >= beta) {
+				return (int) (score - maxLoss);
+			}
+			final EvaluationTerm term = this.terms.get(i);
+			maxGain -= gain(term, board, whitePlayer, blackPlayer, depth);
+			maxLoss -= gain(term, board, blackPlayer, whitePlayer, depth);
+			score += contribution(i, board, depth);
+		}
+		return (int) score;
+	}
+
+	/**
+	 * Contribution. The score of the term for white minus its score for
+	 * black, timed when the profiler asks for a sample.
+	 *
+	 * @param termIndex
+	 *            the term index
+	 * @param board
+	 *            the board
+	 * @param depth
+	 *            the depth
+	 * @return the int
+	 */
+	private int contribution(final int termIndex, final Board board, final int depth) {
+		final EvaluationTerm term = this.terms.get(termIndex);
+		if (this.profiler == null || !this.profiler.shouldSample(termIndex)) {
+			return term.score(board, board.whitePlayer(), depth) - term.score(board, board.blackPlayer(), depth);
+		}
+		final long start = System.nanoTime();
+		final int contribution = term.score(board, board.whitePlayer(), depth)
+				- term.score(board, board.blackPlayer(), depth);
+		this.profiler.record(termIndex, System.nanoTime() - start, contribution);
+		return contribution;
 	}
 
 	/**
-	 * Score.
+	 * Gain. The most the term can move the score in favour of the player.
 	 *
+	 * @param term
+	 *            the term
+	 * @param board
+	 *            the board
 	 * @param player
 	 *            the player
+	 * @param opponent
+	 *            the opponent
 	 * @param depth
 	 *            the depth
-	 * @return the int
+	 * @return the long
 	 */
-	@VisibleForTesting
-	private static int score(final Player player, final int depth) {
-		return mobility(player) + kingThreats(player, depth) + attacks(player) + castle(player)
-				+ pieceEvaluations(player) + pawnStructure(player);
+	private static long gain(final EvaluationTerm term, final Board board, final Player player,
+			final Player opponent, final int depth) {
+		return (long) term.upperBound(board, player, depth) - term.lowerBound(board, opponent, depth);
 	}
 
 	/**
@@ -220,9 +336,11 @@ public final class StandardBoardEvaluator implements BoardEvaluator {
 	 *            the player
 	 * @return the int
 	 */
-	@SuppressWarnings("unused")
 	private static int kingSafety(final Player player) {
 		final KingDistance kingDistance = KingSafetyAnalyzer.get().calculateKingTropism(player);
+		if (kingDistance.getEnemyPiece() == null) {
+			return 0;
+		}
 		return ((kingDistance.getEnemyPiece().getPieceValue() / 100) * kingDistance.getDistance());
 	}
 
@@ -235,8 +353,220 @@ public final class StandardBoardEvaluator implements BoardEvaluator {
 	 *            the player
 	 * @return the int
 	 */
-	@SuppressWarnings("unused")
 	private static int rookStructure(final Board board, final Player player) {
 		return RookStructureAnalyzer.get().rookStructureScore(board, player);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * The terms of the standard evaluation. Each scores one player; the
+	 * evaluator subtracts black's score from white's.
+	 */
+	public enum Term implements EvaluationTerm {
+
+		/** Material, piece squares and the bishop pair. */
+		MATERIAL {
+			@Override
+			public int score(final Board board, final Player player, final int depth) {
+				return pieceEvaluations(player);
+			}
+		},
+
+		/** The mobility. */
+		MOBILITY {
+			@Override
+			public int score(final Board board, final Player player, final int depth) {
+				return mobility(player);
+			}
+		},
+
+		/** Checks and checkmates given to the opponent. */
+		KING_THREATS {
+			@Override
+			public int score(final Board board, final Player player, final int depth) {
+				return kingThreats(player, depth);
+			}
+
+			@Override
+			public int lowerBound(final Board board, final Player player, final int depth) {
+				return 0;
+			}
+
+			@Override
+			public int upperBound(final Board board, final Player player, final int depth) {
+				return player.getOpponent().isInCheck() ? CHECK_MATE_BONUS * depthBonus(depth) : 0;
+			}
+		},
+
+		/** The castle. */
+		CASTLE {
+			@Override
+			public int score(final Board board, final Player player, final int depth) {
+				return castle(player);
+			}
+
+			@Override
+			public int lowerBound(final Board board, final Player player, final int depth) {
+				return 0;
+			}
+
+			@Override
+			public int upperBound(final Board board, final Player player, final int depth) {
+				return Math.max(CASTLE_BONUS, CASTLE_CAPABLE_BONUS);
+			}
+		},
+
+		/** Captures of pieces worth at least the capturing piece. */
+		ATTACKS {
+			@Override
+			public int score(final Board board, final Player player, final int depth) {
+				return attacks(player);
+			}
+
+			@Override
+			public int lowerBound(final Board board, final Player player, final int depth) {
+				return 0;
+			}
+
+			@Override
+			public int upperBound(final Board board, final Player player, final int depth) {
+				return ATTACK_MULTIPLIER * player.getLegalMoves().size();
+			}
+		},
+
+		/** The pawn structure. */
+		PAWN_STRUCTURE {
+			@Override
+			public int score(final Board board, final Player player, final int depth) {
+				return pawnStructure(player);
+			}
+
+			@Override
+			public int lowerBound(final Board board, final Player player, final int depth) {
+				return MAX_PAWN_STRUCTURE_PENALTY;
+			}
+
+			@Override
+			public int upperBound(final Board board, final Player player, final int depth) {
+				return 0;
+			}
+		},
+
+		/** The king tropism of the closest enemy piece. */
+		KING_SAFETY {
+			@Override
+			public int score(final Board board, final Player player, final int depth) {
+				return kingSafety(player);
+			}
+
+			@Override
+			public int lowerBound(final Board board, final Player player, final int depth) {
+				return 0;
+			}
+
+			@Override
+			public int upperBound(final Board board, final Player player, final int depth) {
+				return MAX_KING_SAFETY;
+			}
+		},
+
+		/** Rooks on open files. */
+		ROOK_STRUCTURE {
+			@Override
+			public int score(final Board board, final Player player, final int depth) {
+				return rookStructure(board, player);
+			}
+
+			@Override
+			public int lowerBound(final Board board, final Player player, final int depth) {
+				return 0;
+			}
+
+			@Override
+			public int upperBound(final Board board, final Player player, final int depth) {
+				return RookStructureAnalyzer.OPEN_COLUMN_ROOK_BONUS * player.getActivePieces().size();
+			}
+		};
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see
+		 * com.chess.engine.classic.player.ai.EvaluationTerm#lowerBound(com.chess.
+		 * engine.classic.board.Board, com.chess.engine.classic.player.Player, int)
+		 */
+		@Override
+		public int lowerBound(final Board board, final Player player, final int depth) {
+			return Integer.MIN_VALUE;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see
+		 * com.chess.engine.classic.player.ai.EvaluationTerm#upperBound(com.chess.
+		 * engine.classic.board.Board, com.chess.engine.classic.player.Player, int)
+		 */
+		@Override
+		public int upperBound(final Board board, final Player player, final int depth) {
+			return Integer.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * The Class Builder. Terms are evaluated in the order they are added, so
+	 * the lazy evaluation cuts off soonest when the cheap, unbounded terms come
+	 * first.
+	 */
+	public static class Builder {
+
+		/** The terms. */
+		private final List<EvaluationTerm> terms;
+
+		/** The sample rate, 0 to build without a profiler. */
+		private int sampleRate;
+
+		/**
+		 * Instantiates a new builder.
+		 */
+		public Builder() {
+			this.terms = new ArrayList<>();
+			this.sampleRate = 0;
+		}
+
+		/**
+		 * Adds the term.
+		 *
+		 * @param term
+		 *            the term
+		 * @return the builder
+		 */
+		public Builder addTerm(final EvaluationTerm term) {
+			this.terms.add(term);
+			return this;
+		}
+
+		/**
+		 * Sets the profiler sample rate.
+		 *
+		 * @param sampleRate
+		 *            one out of every sampleRate calls of a term is timed
+		 * @return the builder
+		 */
+		public Builder setProfilerSampleRate(final int sampleRate) {
+			if (sampleRate < 1) {
+				throw new IllegalArgumentException("sample rate must be positive: " + sampleRate);
+			}
+			this.sampleRate = sampleRate;
+			return this;
+		}
+
+		/**
+		 * Builds the.
+		 *
+		 * @return the standard board evaluator
+		 */
+		public StandardBoardEvaluator build() {
+			return new StandardBoardEvaluator(this);
+		}
+	}
+}
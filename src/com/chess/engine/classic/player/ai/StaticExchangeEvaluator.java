@@ -0,0 +1,252 @@
+package com.chess.engine.classic.player.ai;
+
+import com.chess.engine.classic.Alliance;
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.pieces.Piece;
+import com.chess.engine.classic.pieces.Piece.PieceType;
+
+/**
+ * Static exchange evaluation. Plays out the sequence of captures on the
+ * destination square of a move, each side always recapturing with its least
+ * valuable attacker and free to stop whenever continuing would lose material,
+ * and returns the net material won by the side making the move. Sliding
+ * pieces behind an attacker (x-rays) join in once the attacker is gone; pins
+ * are ignored.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public final class StaticExchangeEvaluator {
+
+	/** The Constant INSTANCE. */
+	private static final StaticExchangeEvaluator INSTANCE = new StaticExchangeEvaluator();
+
+	/** The Constant MAX_EXCHANGES. Every piece on the board takes part. */
+	private static final int MAX_EXCHANGES = 32;
+
+	/** The Constant KNIGHT_JUMPS. Row and column offsets. */
+	private static final int[][] KNIGHT_JUMPS = { { -2, -1 }, { -2, 1 }, { -1, -2 }, { -1, 2 }, { 1, -2 }, { 1, 2 },
+			{ 2, -1 }, { 2, 1 } };
+
+	/** The Constant DIAGONALS. */
+	private static final int[][] DIAGONALS = { { -1, -1 }, { -1, 1 }, { 1, -1 }, { 1, 1 } };
+
+	/** The Constant LINES. */
+	private static final int[][] LINES = { { -1, 0 }, { 1, 0 }, { 0, -1 }, { 0, 1 } };
+
+	/**
+	 * Instantiates a new static exchange evaluator.
+	 */
+	private StaticExchangeEvaluator() {
+	}
+
+	/**
+	 * Gets the.
+	 *
+	 * @return the static exchange evaluator
+	 */
+	public static StaticExchangeEvaluator get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Evaluate.
+	 *
+	 * @param move
+	 *            the move
+	 * @return the material the moving side wins (negative if it loses) once
+	 *         the exchange on the destination square is over
+	 */
+	public int evaluate(final Move move) {
+		final Board board = move.getBoard();
+		final int target = move.getDestinationCoordinate();
+		long occupied = occupancy(board);
+		final int[] gain = new int[MAX_EXCHANGES];
+		if (move.isAttack()) {
+			gain[0] = move.getAttackedPiece().getPieceValue();
+			occupied &= ~(1L << move.getAttackedPiece().getPiecePosition());
+		}
+		Piece attacker = move.getMovedPiece();
+		occupied &= ~(1L << attacker.getPiecePosition());
+		Alliance side = attacker.getPieceAllegiance();
+		int depth = 0;
+		while (depth < MAX_EXCHANGES - 1) {
+			side = side.isWhite() ? Alliance.BLACK : Alliance.WHITE;
+			final Piece nextAttacker = leastValuableAttacker(board, target, side, occupied);
+			if (nextAttacker == null) {
+				break;
+			}
+			depth++;
+			// what the side to move wins by taking the piece on the square,
+			// before any further recapture
+			gain[depth] = attacker.getPieceValue() - gain[depth - 1];
+			attacker = nextAttacker;
+			occupied &= ~(1L << attacker.getPiecePosition());
+		}
+		for (; depth > 0; depth--) {
+			gain[depth - 1] = -Math.max(-gain[depth - 1], gain[depth]);
+		}
+		return gain[0];
+	}
+
+	/**
+	 * Checks if is losing capture.
+	 *
+	 * @param move
+	 *            the move
+	 * @return true, if the move is a capture that loses material
+	 */
+	public boolean isLosingCapture(final Move move) {
+		// taking a piece worth at least the capturer can never lose material
+		return move.isAttack() && move.getAttackedPiece().getPieceValue() < move.getMovedPiece().getPieceValue()
+				&& evaluate(move) < 0;
+	}
+
+	/**
+	 * Least valuable attacker.
+	 *
+	 * @param board
+	 *            the board
+	 * @param target
+	 *            the target square
+	 * @param side
+	 *            the attacking side
+	 * @param occupied
+	 *            the squares whose pieces have not been exchanged yet
+	 * @return the piece, or null if the side has no attacker left
+	 */
+	private static Piece leastValuableAttacker(final Board board, final int target, final Alliance side,
+			final long occupied) {
+		final int row = target / 8;
+		final int column = target % 8;
+		// pawns capture towards the other side, so look one row back
+		final int pawnRow = side.isWhite() ? row + 1 : row - 1;
+		Piece best = null;
+		best = cheaper(best, pieceAt(board, pawnRow, column - 1, side, occupied, PieceType.PAWN, null));
+		best = cheaper(best, pieceAt(board, pawnRow, column + 1, side, occupied, PieceType.PAWN, null));
+		if (best != null) {
+			return best;
+		}
+		for (final int[] jump : KNIGHT_JUMPS) {
+			best = cheaper(best,
+					pieceAt(board, row + jump[0], column + jump[1], side, occupied, PieceType.KNIGHT, null));
+		}
+		for (final int[] direction : DIAGONALS) {
+			best = cheaper(best, slider(board, row, column, direction, side, occupied, PieceType.BISHOP));
+		}
+		for (final int[] direction : LINES) {
+			best = cheaper(best, slider(board, row, column, direction, side, occupied, PieceType.ROOK));
+		}
+		for (int rowOffset = -1; rowOffset <= 1; rowOffset++) {
+			for (int columnOffset = -1; columnOffset <= 1; columnOffset++) {
+				if (rowOffset != 0 || columnOffset != 0) {
+					best = cheaper(best, pieceAt(board, row + rowOffset, column + columnOffset, side, occupied,
+							PieceType.KING, null));
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Slider. The first piece along the direction, if it belongs to the side
+	 * and moves that way.
+	 *
+	 * @param board
+	 *            the board
+	 * @param row
+	 *            the row of the target
+	 * @param column
+	 *            the column of the target
+	 * @param direction
+	 *            the direction
+	 * @param side
+	 *            the side
+	 * @param occupied
+	 *            the occupied squares
+	 * @param type
+	 *            the slider type besides the queen
+	 * @return the piece
+	 */
+	private static Piece slider(final Board board, final int row, final int column, final int[] direction,
+			final Alliance side, final long occupied, final PieceType type) {
+		int r = row + direction[0];
+		int c = column + direction[1];
+		while (r >= 0 && r < 8 && c >= 0 && c < 8) {
+			if ((occupied & (1L << (r * 8 + c))) != 0) {
+				return pieceAt(board, r, c, side, occupied, type, PieceType.QUEEN);
+			}
+			r += direction[0];
+			c += direction[1];
+		}
+		return null;
+	}
+
+	/**
+	 * Piece at.
+	 *
+	 * @param board
+	 *            the board
+	 * @param row
+	 *            the row
+	 * @param column
+	 *            the column
+	 * @param side
+	 *            the side
+	 * @param occupied
+	 *            the occupied squares
+	 * @param type
+	 *            the wanted type
+	 * @param otherType
+	 *            another wanted type, may be null
+	 * @return the piece on the square if it is still on the board and matches,
+	 *         null otherwise
+	 */
+	private static Piece pieceAt(final Board board, final int row, final int column, final Alliance side,
+			final long occupied, final PieceType type, final PieceType otherType) {
+		if (row < 0 || row >= 8 || column < 0 || column >= 8) {
+			return null;
+		}
+		final int square = row * 8 + column;
+		if ((occupied & (1L << square)) == 0) {
+			return null;
+		}
+		final Piece piece = board.getTile(square).getPiece();
+		if (piece.getPieceAllegiance() != side) {
+			return null;
+		}
+		return piece.getPieceType() == type || piece.getPieceType() == otherType ? piece : null;
+	}
+
+	/**
+	 * Cheaper.
+	 *
+	 * @param best
+	 *            the best so far
+	 * @param candidate
+	 *            the candidate
+	 * @return the cheaper of the two
+	 */
+	private static Piece cheaper(final Piece best, final Piece candidate) {
+		if (candidate == null) {
+			return best;
+		}
+		return best == null || candidate.getPieceValue() < best.getPieceValue() ? candidate : best;
+	}
+
+	/**
+	 * Occupancy.
+	 *
+	 * @param board
+	 *            the board
+	 * @return one bit for every occupied square
+	 */
+	private static long occupancy(final Board board) {
+		long occupied = 0;
+		for (final Piece piece : board.getAllPieces()) {
+			occupied |= 1L << piece.getPiecePosition();
+		}
+		return occupied;
+	}
+}
@@ -3,17 +3,31 @@ package com.chess.engine.classic.player.ai;
 import static com.chess.engine.classic.board.Move.MoveFactory;
 import static com.chess.engine.classic.board.BoardUtils.mvvlva;
 
+import java.util.Map;
+import java.util.Set;
+import java.util.List;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Observable;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.chess.engine.classic.board.Move;
 import com.chess.engine.classic.board.Board;
 import com.chess.engine.classic.player.Player;
 import com.chess.engine.classic.board.BoardUtils;
 import com.chess.engine.classic.board.MoveTransition;
+import com.chess.engine.classic.pieces.Piece;
 
+import com.google.common.collect.Sets;
 import com.google.common.collect.Ordering;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ComparisonChain;
 
 /**
@@ -42,30 +56,132 @@ public class StockAlphaBeta extends Observable implements MoveStrategy {
 	/** The Constant MAX_QUIESCENCE. */
 	private static final int MAX_QUIESCENCE = 5000;
 
+	/** The Constant NULL_MOVE_MIN_DEPTH. */
+	private static final int NULL_MOVE_MIN_DEPTH = 3;
+
+	/** The Constant LATE_MOVE_INDEX. The moves before it are never reduced. */
+	private static final int LATE_MOVE_INDEX = 3;
+
+	/** The Constant VERY_LATE_MOVE_INDEX. */
+	private static final int VERY_LATE_MOVE_INDEX = 8;
+
+	/** The Constant LATE_MOVE_MIN_DEPTH. The least child depth to reduce. */
+	private static final int LATE_MOVE_MIN_DEPTH = 2;
+
+	/** The Constant FUTILITY_MARGIN. */
+	private static final int FUTILITY_MARGIN = 300;
+
+	/** The Constant RAZORING_DEPTH. */
+	private static final int RAZORING_DEPTH = 2;
+
+	/** The Constant RAZORING_MARGIN. */
+	private static final int RAZORING_MARGIN = 600;
+
+	/** The Constant MAX_EXTENSION_PLIES. Quiescence plies the PV can hold. */
+	private static final int MAX_EXTENSION_PLIES = 16;
+
+	/** The Constant DRAW_SCORE. */
+	private static final int DRAW_SCORE = 0;
+
+	/**
+	 * The Constant MATE_SCORE. Scores beyond it carry a mate bonus that
+	 * depends on the depth left, so they are not reused from the table.
+	 */
+	private static final int MATE_SCORE = 10000;
+
+	/**
+	 * The Constant TABLEBASE_WIN. Less the moves to mate, the score of a won
+	 * tablebase position. It stays below MATE_SCORE, as the tables know the
+	 * mate whatever the depth.
+	 */
+	private static final int TABLEBASE_WIN = MATE_SCORE / 2;
+
+	/** The Constant QUIESCENCE_KEY. Quiescence nodes are stored apart. */
+	private static final long QUIESCENCE_KEY = 0x6A09E667F3BCC908L;
+
+	/** The Constant WHITE_CASTLED_KEY. The castle bonus is not in the key. */
+	private static final long WHITE_CASTLED_KEY = 0xBB67AE8584CAA73BL;
+
+	/** The Constant BLACK_CASTLED_KEY. */
+	private static final long BLACK_CASTLED_KEY = 0x3C6EF372FE94F82BL;
+
+	/** The Constant DEPTH_KEY. Evaluations depend on the depth left. */
+	private static final long DEPTH_KEY = 0x9E3779B97F4A7C15L;
+
+	/** The Constant WORKER_TABLE_BITS. The size of the own table of a worker. */
+	private static final int WORKER_TABLE_BITS = 14;
+
+	/** The principal variation. */
+	private final PrincipalVariationTable principalVariation;
+
+	/** The cancellation token. */
+	private final CancellationToken cancellationToken;
+
+	/** The best move so far, read by {@link #stop()}. */
+	private volatile Move bestMoveSoFar;
+
+	/** The enabled pruning techniques. */
+	private final Set<Pruning> pruning;
+
+	/** The pruned counts of the last search, by pruning ordinal. */
+	private final long[] prunedCounts;
+
+	/** The transposition table, history, killers and evaluation cache. */
+	private final SearchHeuristics heuristics;
+
+	/** The table of the parallel search a worker belongs to, only read; null if this is no worker. */
+	private final TranspositionTable parentTable;
+
+	/** The pool the root moves are split across, null to search serially. */
+	private ForkJoinPool rootPool;
+
+	/** The tablebase, null to search every endgame. */
+	private Tablebase tablebase;
+
+	/**
+	 * The Enum Pruning. The forward pruning techniques. None of them is used
+	 * in quiescence or when the side to move is in check.
+	 */
+	public enum Pruning {
+
+		/**
+		 * The null move. The opponent moves twice in a row at reduced depth; if
+		 * the side to move still beats the bound, the node is cut. Not tried
+		 * when the side has nothing but pawns, where zugzwang is common, nor
+		 * twice in a row.
+		 */
+		NULL_MOVE,
+
+		/**
+		 * The late move reduction. Quiet moves late in the move order are
+		 * searched a ply shallower, two with no history, and again at full
+		 * depth if they beat the bound.
+		 */
+		LATE_MOVE_REDUCTION,
+
+		/**
+		 * The futility. At frontier nodes whose static score is far behind the
+		 * bound, quiet moves that do not give check are skipped.
+		 */
+		FUTILITY,
+
+		/**
+		 * The razoring. Pre-frontier nodes whose static score is hopelessly
+		 * behind the bound are searched as frontier nodes.
+		 */
+		RAZORING
+	}
+
 	/**
 	 * The Enum MoveSorter.
 	 */
 	private enum MoveSorter {
 
-		/** The standard. */
-		STANDARD {
-			@Override
-			Collection<Move> sort(final Collection<Move> moves) {
-				return Ordering.from(new Comparator<Move>() {
-					@Override
-					public int compare(final Move move1, final Move move2) {
-						return ComparisonChain.start().compareTrueFirst(move1.isCastlingMove(), move2.isCastlingMove())
-								.compare(mvvlva(move2), mvvlva(move1)).result();
-					}
-				}).immutableSortedCopy(moves);
-			}
-		},
-
 		/** The expensve. */
 		EXPENSIVE {
 			@Override
 			Collection<Move> sort(final Collection<Move> moves) {
-				return Ordering.from(new Comparator<Move>() {
+				return losingCapturesLast(Ordering.from(new Comparator<Move>() {
 					@Override
 					public int compare(final Move move1, final Move move2) {
 						return ComparisonChain.start()
@@ -73,7 +189,7 @@ public class StockAlphaBeta extends Observable implements MoveStrategy {
 								.compareTrueFirst(move1.isCastlingMove(), move2.isCastlingMove())
 								.compare(mvvlva(move2), mvvlva(move1)).result();
 					}
-				}).immutableSortedCopy(moves);
+				}).immutableSortedCopy(moves), true);
 			}
 		};
 
@@ -85,6 +201,34 @@ public class StockAlphaBeta extends Observable implements MoveStrategy {
 		 * @return the collection
 		 */
 		abstract Collection<Move> sort(Collection<Move> moves);
+
+		/**
+		 * Losing captures last. Keeps the order of the sorted moves but moves
+		 * the captures that lose material in the static exchange behind the
+		 * quiet moves, or drops them.
+		 *
+		 * @param sortedMoves
+		 *            the sorted moves
+		 * @param keepLosingCaptures
+		 *            whether to keep the losing captures
+		 * @return the collection
+		 */
+		private static Collection<Move> losingCapturesLast(final List<Move> sortedMoves,
+				final boolean keepLosingCaptures) {
+			final ImmutableList.Builder<Move> orderedMoves = ImmutableList.builder();
+			final List<Move> losingCaptures = new ArrayList<>();
+			for (final Move move : sortedMoves) {
+				if (StaticExchangeEvaluator.get().isLosingCapture(move)) {
+					losingCaptures.add(move);
+				} else {
+					orderedMoves.add(move);
+				}
+			}
+			if (keepLosingCaptures) {
+				orderedMoves.addAll(losingCaptures);
+			}
+			return orderedMoves.build();
+		}
 	}
 
 	/**
@@ -94,8 +238,85 @@ public class StockAlphaBeta extends Observable implements MoveStrategy {
 	 *            the search depth
 	 */
 	public StockAlphaBeta(final int searchDepth) {
-		this.evaluator = StandardBoardEvaluator.get();
+		this(searchDepth, StandardBoardEvaluator.get());
+	}
+
+	/**
+	 * Instantiates a new stock alpha beta.
+	 *
+	 * @param searchDepth
+	 *            the search depth
+	 * @param evaluator
+	 *            the evaluator
+	 */
+	public StockAlphaBeta(final int searchDepth, final BoardEvaluator evaluator) {
+		this(searchDepth, evaluator, EnumSet.noneOf(Pruning.class));
+	}
+
+	/**
+	 * Instantiates a new stock alpha beta.
+	 *
+	 * @param searchDepth
+	 *            the search depth
+	 * @param evaluator
+	 *            the evaluator
+	 * @param pruning
+	 *            the forward pruning techniques to use
+	 */
+	public StockAlphaBeta(final int searchDepth, final BoardEvaluator evaluator, final Set<Pruning> pruning) {
+		this(searchDepth, evaluator, pruning, new SearchHeuristics());
+	}
+
+	/**
+	 * Instantiates a new stock alpha beta that shares what it learns with
+	 * other searches.
+	 *
+	 * @param searchDepth
+	 *            the search depth
+	 * @param evaluator
+	 *            the evaluator
+	 * @param pruning
+	 *            the forward pruning techniques to use
+	 * @param heuristics
+	 *            the heuristics, aged by their owner between moves
+	 */
+	public StockAlphaBeta(final int searchDepth, final BoardEvaluator evaluator, final Set<Pruning> pruning,
+			final SearchHeuristics heuristics) {
+		this.evaluator = evaluator;
 		this.searchDepth = searchDepth;
+		this.pruning = Sets.immutableEnumSet(pruning);
+		this.prunedCounts = new long[Pruning.values().length];
+		this.heuristics = heuristics;
+		this.parentTable = null;
+		this.principalVariation = new PrincipalVariationTable(searchDepth + MAX_EXTENSION_PLIES);
+		this.cancellationToken = new CancellationToken();
+		this.bestMoveSoFar = MoveFactory.getNullMove();
+		this.boardsEvaluated = 0;
+		this.quiescenceCount = 0;
+	}
+
+	/**
+	 * Instantiates a new stock alpha beta that searches a root move for a
+	 * parallel search. It shares the cancellation token of the parent, reads
+	 * the table of the parent, which no search writes while the workers run,
+	 * and learns into heuristics of its own that start from a copy of the
+	 * history and killers of the parent, so what it finds does not depend on
+	 * the other workers. It counts and records its own lines.
+	 *
+	 * @param parent
+	 *            the parent
+	 */
+	private StockAlphaBeta(final StockAlphaBeta parent) {
+		this.evaluator = parent.evaluator;
+		this.searchDepth = parent.searchDepth;
+		this.pruning = parent.pruning;
+		this.prunedCounts = new long[Pruning.values().length];
+		this.heuristics = parent.heuristics.copyOrdering(WORKER_TABLE_BITS);
+		this.parentTable = parent.heuristics.getTranspositionTable();
+		this.principalVariation = new PrincipalVariationTable(this.searchDepth + MAX_EXTENSION_PLIES);
+		this.cancellationToken = parent.cancellationToken;
+		this.tablebase = parent.tablebase;
+		this.bestMoveSoFar = MoveFactory.getNullMove();
 		this.boardsEvaluated = 0;
 		this.quiescenceCount = 0;
 	}
@@ -121,6 +342,86 @@ public class StockAlphaBeta extends Observable implements MoveStrategy {
 		return this.boardsEvaluated;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.chess.engine.classic.player.ai.MoveStrategy#stop()
+	 */
+	@Override
+	public Move stop() {
+		this.cancellationToken.cancel();
+		return this.bestMoveSoFar;
+	}
+
+	/**
+	 * Gets the principal variation.
+	 *
+	 * @return the best line found by the last search, starting with the
+	 *         selected move
+	 */
+	public List<Move> getPrincipalVariation() {
+		return this.principalVariation.getVariation(0);
+	}
+
+	/**
+	 * Gets the heuristics.
+	 *
+	 * @return the heuristics
+	 */
+	public SearchHeuristics getHeuristics() {
+		return this.heuristics;
+	}
+
+	/**
+	 * Gets the pruning.
+	 *
+	 * @return the enabled pruning techniques
+	 */
+	public Set<Pruning> getPruning() {
+		return this.pruning;
+	}
+
+	/**
+	 * Sets the root pool. With a pool, the first root move is searched alone
+	 * to get a bound and the other root moves are searched on the pool
+	 * against a bound the searches tighten for each other. The evaluator must
+	 * then be safe to share between threads.
+	 *
+	 * @param rootPool
+	 *            the root pool, null to search the root moves one by one
+	 */
+	public void setRootPool(final ForkJoinPool rootPool) {
+		this.rootPool = rootPool;
+	}
+
+	/**
+	 * Sets the tablebase. Positions the tables know are scored from them
+	 * instead of being searched, and at the root the move is taken straight
+	 * from the tables.
+	 *
+	 * @param tablebase
+	 *            the tablebase, null to search without one
+	 */
+	public void setTablebase(final Tablebase tablebase) {
+		this.tablebase = tablebase;
+	}
+
+	/**
+	 * Gets the pruned counts. For the null move and razoring the number of
+	 * nodes cut or made shallower, for the late move reduction the number of
+	 * reduced moves that were not searched again and for futility the number
+	 * of skipped moves.
+	 *
+	 * @return the pruned counts of the last search
+	 */
+	public Map<Pruning, Long> getPrunedCounts() {
+		final Map<Pruning, Long> counts = new EnumMap<>(Pruning.class);
+		for (final Pruning technique : this.pruning) {
+			counts.put(technique, this.prunedCounts[technique.ordinal()]);
+		}
+		return counts;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -130,12 +431,25 @@ public class StockAlphaBeta extends Observable implements MoveStrategy {
 	 */
 	@Override
 	public Move execute(final Board board) {
+		final Move tablebaseMove = this.tablebase != null ? this.tablebase.bestMove(board)
+				: MoveFactory.getNullMove();
+		if (tablebaseMove != MoveFactory.getNullMove()) {
+			this.bestMoveSoFar = tablebaseMove;
+			System.out.println(board.currentPlayer() + " SELECTS " + tablebaseMove + " from the tablebase");
+			return tablebaseMove;
+		}
+		if (this.rootPool != null) {
+			return executeInParallel(board);
+		}
 		final long startTime = System.currentTimeMillis();
 		final Player currentPlayer = board.currentPlayer();
 		Move bestMove = MoveFactory.getNullMove();
 		int highestSeenValue = Integer.MIN_VALUE;
 		int lowestSeenValue = Integer.MAX_VALUE;
 		int currentValue;
+		Arrays.fill(this.prunedCounts, 0);
+		this.principalVariation.clear(0);
+		this.bestMoveSoFar = bestMove;
 		System.out.println(board.currentPlayer() + " THINKING with depth = " + this.searchDepth);
 		int moveCounter = 1;
 		int numMoves = board.currentPlayer().getLegalMoves().size();
@@ -145,18 +459,25 @@ public class StockAlphaBeta extends Observable implements MoveStrategy {
 			final String s;
 			if (moveTransition.getMoveStatus().isDone()) {
 				final long candidateMoveStartTime = System.nanoTime();
-				currentValue = currentPlayer.getAlliance().isWhite()
-						? min(moveTransition.getToBoard(), this.searchDepth - 1, highestSeenValue, lowestSeenValue)
-						: max(moveTransition.getToBoard(), this.searchDepth - 1, highestSeenValue, lowestSeenValue);
+				try {
+					currentValue = searchRootMove(moveTransition.getToBoard(), highestSeenValue, lowestSeenValue);
+				} catch (final SearchCancelledException e) {
+					System.out.println("\t" + toString() + " stopped, best: " + bestMove);
+					break;
+				}
 				if (currentPlayer.getAlliance().isWhite() && currentValue > highestSeenValue) {
 					highestSeenValue = currentValue;
 					bestMove = move;
+					this.bestMoveSoFar = move;
+					this.principalVariation.update(0, move);
 					if (moveTransition.getToBoard().blackPlayer().isInCheckMate()) {
 						break;
 					}
 				} else if (currentPlayer.getAlliance().isBlack() && currentValue < lowestSeenValue) {
 					lowestSeenValue = currentValue;
 					bestMove = move;
+					this.bestMoveSoFar = move;
+					this.principalVariation.update(0, move);
 					if (moveTransition.getToBoard().whitePlayer().isInCheckMate()) {
 						break;
 					}
@@ -176,12 +497,353 @@ public class StockAlphaBeta extends Observable implements MoveStrategy {
 			moveCounter++;
 		}
 		this.executionTime = System.currentTimeMillis() - startTime;
-		System.out.printf("%s SELECTS %s [#boards evaluated = %d, time taken = %d ms, rate = %.1f\n",
+		System.out.printf(
+				"%s SELECTS %s [#boards evaluated = %d, time taken = %d ms, rate = %.1f, pruned = %s, pv = %s\n",
+				board.currentPlayer(), bestMove, this.boardsEvaluated, this.executionTime,
+				(1000 * ((double) this.boardsEvaluated / this.executionTime)), getPrunedCounts(),
+				getPrincipalVariation());
+		return bestMove;
+	}
+
+	/**
+	 * Execute in parallel. The result does not depend on the order the root
+	 * searches finish in: every search has its own heuristics, reads only the
+	 * table filled by the first move, and starts from the score of the first
+	 * move rather than from the shared bound, which other searches tighten at
+	 * times that vary from run to run. A search reports whether its move
+	 * reaches the score of the first move, those that do report an exact
+	 * score, and the best of those wins with ties going to the earlier root
+	 * move. The shared bound only decides the move {@link #stop()} returns.
+	 *
+	 * @param board
+	 *            the board
+	 * @return the best move
+	 */
+	private Move executeInParallel(final Board board) {
+		final long startTime = System.currentTimeMillis();
+		final boolean white = board.currentPlayer().getAlliance().isWhite();
+		Arrays.fill(this.prunedCounts, 0);
+		this.principalVariation.clear(0);
+		this.bestMoveSoFar = MoveFactory.getNullMove();
+		System.out.println(board.currentPlayer() + " THINKING with depth = " + this.searchDepth + " on "
+				+ this.rootPool.getParallelism() + " threads");
+		final List<Move> rootMoves = new ArrayList<>();
+		final List<Board> rootBoards = new ArrayList<>();
+		for (final Move move : MoveSorter.EXPENSIVE.sort(board.currentPlayer().getLegalMoves())) {
+			final MoveTransition moveTransition = board.currentPlayer().makeMove(move);
+			if (moveTransition.getMoveStatus().isDone()) {
+				rootMoves.add(move);
+				rootBoards.add(moveTransition.getToBoard());
+			}
+		}
+		Move bestMove = MoveFactory.getNullMove();
+		if (!rootMoves.isEmpty()) {
+			final long candidateMoveStartTime = System.nanoTime();
+			final int firstValue;
+			try {
+				this.quiescenceCount = 0;
+				firstValue = searchRootMove(rootBoards.get(0), Integer.MIN_VALUE, Integer.MAX_VALUE);
+			} catch (final SearchCancelledException e) {
+				System.out.println("\t" + toString() + " stopped, best: " + bestMove);
+				return bestMove;
+			}
+			bestMove = rootMoves.get(0);
+			int bestValue = firstValue;
+			this.bestMoveSoFar = bestMove;
+			this.principalVariation.update(0, bestMove);
+			report(1, rootMoves.size(), bestMove, firstValue, candidateMoveStartTime);
+			final AtomicInteger bound = new AtomicInteger(firstValue);
+			final List<RootMoveSearch> searches = new ArrayList<>();
+			for (int i = 1; i < rootMoves.size(); i++) {
+				searches.add(new RootMoveSearch(i + 1, rootMoves.size(), rootMoves.get(i), rootBoards.get(i),
+						firstValue, bound));
+			}
+			final List<Integer> values = RootMoveTasks.invokeAll(this.rootPool, searches);
+			for (int i = 0; i < searches.size(); i++) {
+				final RootMoveSearch search = searches.get(i);
+				this.boardsEvaluated += search.worker.boardsEvaluated;
+				for (int technique = 0; technique < this.prunedCounts.length; technique++) {
+					this.prunedCounts[technique] += search.worker.prunedCounts[technique];
+				}
+				final Integer value = values.get(i);
+				if (value != null && search.reachedBound && (white ? value > bestValue : value < bestValue)) {
+					bestValue = value;
+					bestMove = search.move;
+					this.principalVariation.copy(search.worker.principalVariation, 0);
+				}
+			}
+			this.bestMoveSoFar = bestMove;
+			if (this.cancellationToken.isCancelled()) {
+				System.out.println("\t" + toString() + " stopped, best: " + bestMove);
+			}
+		}
+		this.executionTime = System.currentTimeMillis() - startTime;
+		System.out.printf(
+				"%s SELECTS %s [#boards evaluated = %d, time taken = %d ms, rate = %.1f, pruned = %s, pv = %s\n",
 				board.currentPlayer(), bestMove, this.boardsEvaluated, this.executionTime,
-				(1000 * ((double) this.boardsEvaluated / this.executionTime)));
+				(1000 * ((double) this.boardsEvaluated / this.executionTime)), getPrunedCounts(),
+				getPrincipalVariation());
 		return bestMove;
 	}
 
+	/**
+	 * Report. Prints the score of a root move and passes it to the observers.
+	 *
+	 * @param moveCounter
+	 *            the move counter
+	 * @param numMoves
+	 *            the number of root moves
+	 * @param move
+	 *            the move
+	 * @param value
+	 *            the value
+	 * @param candidateMoveStartTime
+	 *            the time the search of the move started, in nanoseconds
+	 */
+	private synchronized void report(final int moveCounter, final int numMoves, final Move move, final int value,
+			final long candidateMoveStartTime) {
+		final String s = "\t" + toString() + "(" + this.searchDepth + "), m: (" + moveCounter + "/" + numMoves + ") "
+				+ move + ", scores " + value + ", t: " + calculateTimeTaken(candidateMoveStartTime, System.nanoTime());
+		System.out.println(s);
+		setChanged();
+		notifyObservers(s);
+	}
+
+	/**
+	 * The Class RootMoveSearch. Searches one root move of a parallel search
+	 * with its own worker.
+	 */
+	private final class RootMoveSearch implements Callable<Integer> {
+
+		/** The move counter. */
+		private final int moveCounter;
+
+		/** The number of root moves. */
+		private final int numMoves;
+
+		/** The move. */
+		private final Move move;
+
+		/** The board after the move. */
+		private final Board toBoard;
+
+		/** The score of the first root move, which every search starts from. */
+		private final int startBound;
+
+		/** The best score found so far, shared by the searches. */
+		private final AtomicInteger bound;
+
+		/** The worker. */
+		private final StockAlphaBeta worker;
+
+		/** Whether the move reached the bound, making its score exact. */
+		private boolean reachedBound;
+
+		/**
+		 * Instantiates a new root move search.
+		 *
+		 * @param moveCounter
+		 *            the move counter
+		 * @param numMoves
+		 *            the number of root moves
+		 * @param move
+		 *            the move
+		 * @param toBoard
+		 *            the board after the move
+		 * @param startBound
+		 *            the score of the first root move
+		 * @param bound
+		 *            the shared bound
+		 */
+		RootMoveSearch(final int moveCounter, final int numMoves, final Move move, final Board toBoard,
+				final int startBound, final AtomicInteger bound) {
+			this.moveCounter = moveCounter;
+			this.numMoves = numMoves;
+			this.move = move;
+			this.toBoard = toBoard;
+			this.startBound = startBound;
+			this.bound = bound;
+			this.worker = new StockAlphaBeta(StockAlphaBeta.this);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		@Override
+		public Integer call() {
+			final long candidateMoveStartTime = System.nanoTime();
+			final boolean white = this.toBoard.currentPlayer().getAlliance().isBlack();
+			// a window one wider than the bound, so a move that only ties the
+			// first move still gets an exact score
+			final int startBound = this.startBound;
+			final int value = white ? this.worker.searchRootMove(this.toBoard, startBound - 1, Integer.MAX_VALUE)
+					: this.worker.searchRootMove(this.toBoard, Integer.MIN_VALUE, startBound + 1);
+			this.reachedBound = white ? value >= startBound : value <= startBound;
+			if (this.reachedBound) {
+				this.worker.principalVariation.update(0, this.move);
+				tighten(value, white);
+			}
+			report(this.moveCounter, this.numMoves, this.move, value, candidateMoveStartTime);
+			return value;
+		}
+
+		/**
+		 * Tighten. Raises the shared bound for white and lowers it for black
+		 * if the value is better.
+		 *
+		 * @param value
+		 *            the exact value of the move
+		 * @param white
+		 *            whether white is to move at the root
+		 */
+		private void tighten(final int value, final boolean white) {
+			int current = this.bound.get();
+			while (white ? value > current : value < current) {
+				if (this.bound.compareAndSet(current, value)) {
+					StockAlphaBeta.this.bestMoveSoFar = this.move;
+					return;
+				}
+				current = this.bound.get();
+			}
+		}
+	}
+
+	/**
+	 * Analyze. A multi-PV search: every pass searches the root moves that the
+	 * earlier passes did not pick with a full window, so the best of them gets
+	 * an exact score, and the passes share the transposition table, which
+	 * keeps the later passes cheap. The lines are ranked by score at the end,
+	 * keeping the order of the passes for equal scores, since with pruning a
+	 * later pass can score a little better than an earlier one. The root
+	 * moves are searched one by one even with a root pool.
+	 *
+	 * @param board
+	 *            the board
+	 * @param lineCount
+	 *            the number of lines wanted
+	 * @return the lines, best first; fewer than asked for if there are fewer
+	 *         legal moves or the search was stopped
+	 */
+	public List<AnalysisLine> analyze(final Board board, final int lineCount) {
+		final long startTime = System.currentTimeMillis();
+		final boolean white = board.currentPlayer().getAlliance().isWhite();
+		final Collection<Move> rootMoves = MoveSorter.EXPENSIVE.sort(board.currentPlayer().getLegalMoves());
+		final List<AnalysisLine> lines = new ArrayList<>();
+		final List<Move> pickedMoves = new ArrayList<>();
+		Arrays.fill(this.prunedCounts, 0);
+		this.bestMoveSoFar = MoveFactory.getNullMove();
+		System.out.println(board.currentPlayer() + " ANALYZING " + lineCount + " lines with depth = "
+				+ this.searchDepth);
+		try {
+			while (lines.size() < lineCount) {
+				final long lineStartTime = System.nanoTime();
+				final AnalysisLine line = searchBestRemaining(board, rootMoves, pickedMoves);
+				if (line == null) {
+					break;
+				}
+				lines.add(line);
+				pickedMoves.add(line.getMove());
+				if (lines.size() == 1) {
+					this.bestMoveSoFar = line.getMove();
+				}
+				final String s = "\t" + toString() + "(" + this.searchDepth + "), line " + lines.size() + ": " + line
+						+ ", t: " + calculateTimeTaken(lineStartTime, System.nanoTime());
+				System.out.println(s);
+				setChanged();
+				notifyObservers(s);
+			}
+		} catch (final SearchCancelledException e) {
+			System.out.println("\t" + toString() + " stopped after " + lines.size() + " lines");
+		}
+		// a stable sort, so lines of equal score stay in the order found
+		Collections.sort(lines, new Comparator<AnalysisLine>() {
+			@Override
+			public int compare(final AnalysisLine line1, final AnalysisLine line2) {
+				return white ? Integer.compare(line2.getScore(), line1.getScore())
+						: Integer.compare(line1.getScore(), line2.getScore());
+			}
+		});
+		this.executionTime = System.currentTimeMillis() - startTime;
+		System.out.printf("%s ANALYZED %d lines [#boards evaluated = %d, time taken = %d ms]\n",
+				board.currentPlayer(), lines.size(), this.boardsEvaluated, this.executionTime);
+		return lines;
+	}
+
+	/**
+	 * Search best remaining. One pass of the multi-PV search.
+	 *
+	 * @param board
+	 *            the board
+	 * @param rootMoves
+	 *            the sorted root moves
+	 * @param pickedMoves
+	 *            the moves picked by the earlier passes
+	 * @return the line of the best move left, null if no legal move is left
+	 */
+	private AnalysisLine searchBestRemaining(final Board board, final Collection<Move> rootMoves,
+			final List<Move> pickedMoves) {
+		final boolean white = board.currentPlayer().getAlliance().isWhite();
+		this.principalVariation.clear(0);
+		Move bestMove = MoveFactory.getNullMove();
+		int highestSeenValue = Integer.MIN_VALUE;
+		int lowestSeenValue = Integer.MAX_VALUE;
+		for (final Move move : rootMoves) {
+			if (pickedMoves.contains(move)) {
+				continue;
+			}
+			final MoveTransition moveTransition = board.currentPlayer().makeMove(move);
+			if (!moveTransition.getMoveStatus().isDone()) {
+				continue;
+			}
+			this.quiescenceCount = 0;
+			final int currentValue = searchRootMove(moveTransition.getToBoard(), highestSeenValue, lowestSeenValue);
+			if (white ? currentValue > highestSeenValue : currentValue < lowestSeenValue) {
+				if (white) {
+					highestSeenValue = currentValue;
+				} else {
+					lowestSeenValue = currentValue;
+				}
+				bestMove = move;
+				this.principalVariation.update(0, move);
+			}
+		}
+		if (bestMove == MoveFactory.getNullMove()) {
+			return null;
+		}
+		return new AnalysisLine(bestMove, white ? highestSeenValue : lowestSeenValue, getPrincipalVariation());
+	}
+
+	/**
+	 * Search root move. Once the root has a score, the other moves are first
+	 * searched with a zero window around it and only searched again with the
+	 * full window if they beat it.
+	 *
+	 * @param toBoard
+	 *            the board after the root move
+	 * @param highest
+	 *            the highest seen value
+	 * @param lowest
+	 *            the lowest seen value
+	 * @return the value of the move
+	 */
+	private int searchRootMove(final Board toBoard, final int highest, final int lowest) {
+		final int depth = this.searchDepth - 1;
+		if (toBoard.currentPlayer().getAlliance().isBlack()) {
+			if (highest == Integer.MIN_VALUE) {
+				return min(toBoard, depth, 1, highest, lowest, false);
+			}
+			final int value = min(toBoard, depth, 1, highest, highest + 1, false);
+			return value > highest ? min(toBoard, depth, 1, highest, lowest, false) : value;
+		}
+		if (lowest == Integer.MAX_VALUE) {
+			return max(toBoard, depth, 1, highest, lowest, false);
+		}
+		final int value = max(toBoard, depth, 1, lowest - 1, lowest, false);
+		return value < lowest ? max(toBoard, depth, 1, highest, lowest, false) : value;
+	}
+
 	/**
 	 * Score.
 	 *
@@ -209,28 +871,88 @@ public class StockAlphaBeta extends Observable implements MoveStrategy {
 	 *            the board
 	 * @param depth
 	 *            the depth
+	 * @param ply
+	 *            the distance from the root
 	 * @param highest
 	 *            the highest
 	 * @param lowest
 	 *            the lowest
+	 * @param quiescence
+	 *            whether the node lies beyond the search depth
 	 * @return the int
 	 */
-	private int max(final Board board, final int depth, final int highest, final int lowest) {
+	private int max(final Board board, final int depth, final int ply, final int highest, final int lowest,
+			final boolean quiescence) {
+		this.cancellationToken.checkpoint();
+		this.principalVariation.clear(ply);
+		if (isDrawnInSearch(board, ply)) {
+			return DRAW_SCORE;
+		}
+		final int tablebaseScore = tablebaseScore(board);
+		if (tablebaseScore != Tablebase.UNKNOWN) {
+			return Math.max(highest, Math.min(lowest, tablebaseScore));
+		}
 		if (depth == 0 || BoardUtils.isEndGame(board)) {
-			this.boardsEvaluated++;
-			return this.evaluator.evaluate(board, depth);
+			return evaluate(board, depth, highest, lowest);
+		}
+		final long key = tableKey(board, quiescence);
+		final long entry = probeTable(key);
+		if (isTableCutoff(entry, depth, highest, lowest)) {
+			return TranspositionTable.score(entry) >= lowest ? lowest : highest;
 		}
+		final boolean inCheck = board.currentPlayer().isInCheck();
+		final boolean prune = !quiescence && !inCheck;
+		if (prune && isRefutedByNullMove(board, depth, ply, highest, lowest)) {
+			return lowest;
+		}
+		final int shortfall = prune ? frontierShortfall(board, depth, highest, lowest) : Integer.MIN_VALUE;
+		final int nodeDepth = razoredDepth(depth, shortfall);
+		final boolean futile = isFutile(nodeDepth, shortfall);
 		int currentHighest = highest;
-		for (final Move move : MoveSorter.STANDARD.sort((board.currentPlayer().getLegalMoves()))) {
+		Move bestMove = MoveFactory.getNullMove();
+		int moveIndex = 0;
+		for (final Move move : new MovePicker(board.currentPlayer().getLegalMoves(),
+				TranspositionTable.bestMove(entry, board), this.heuristics, ply, !quiescence || inCheck)) {
 			final MoveTransition moveTransition = board.currentPlayer().makeMove(move);
 			if (moveTransition.getMoveStatus().isDone()) {
-				currentHighest = Math.max(currentHighest, min(moveTransition.getToBoard(),
-						calculateQuiescenceDepth(moveTransition, depth), currentHighest, lowest));
-				if (currentHighest >= lowest) {
-					return lowest;
+				final Board toBoard = moveTransition.getToBoard();
+				final boolean quiet = MovePicker.isQuiet(move) && !toBoard.currentPlayer().isInCheck();
+				if (futile && quiet) {
+					this.prunedCounts[Pruning.FUTILITY.ordinal()]++;
+					continue;
+				}
+				final int childDepth = calculateQuiescenceDepth(moveTransition, nodeDepth);
+				final boolean childQuiescence = quiescence || childDepth >= nodeDepth;
+				final int reduction = prune && quiet ? lateMoveReduction(move, moveIndex, childDepth) : 0;
+				int value;
+				if (moveIndex == 0) {
+					value = min(toBoard, childDepth, ply + 1, currentHighest, lowest, childQuiescence);
+				} else {
+					// zero window: only find out whether the move beats the best so far
+					value = min(toBoard, childDepth - reduction, ply + 1, currentHighest, currentHighest + 1,
+							childQuiescence);
+					if (value > currentHighest && (reduction > 0 || value < lowest)) {
+						value = min(toBoard, childDepth, ply + 1, currentHighest, lowest, childQuiescence);
+					} else if (reduction > 0) {
+						this.prunedCounts[Pruning.LATE_MOVE_REDUCTION.ordinal()]++;
+					}
+				}
+				if (value > currentHighest) {
+					currentHighest = value;
+					if (currentHighest >= lowest) {
+						recordCutoff(key, nodeDepth, ply, currentHighest, TranspositionTable.Bound.LOWER, move, quiet);
+						return lowest;
+					}
+					bestMove = move;
+					this.principalVariation.update(ply, move);
 				}
+				moveIndex++;
 			}
 		}
+		this.heuristics.getTranspositionTable().store(key, nodeDepth, currentHighest,
+				bestMove != MoveFactory.getNullMove() ? TranspositionTable.Bound.EXACT
+						: TranspositionTable.Bound.UPPER,
+				bestMove);
 		return currentHighest;
 	}
 
@@ -241,31 +963,369 @@ public class StockAlphaBeta extends Observable implements MoveStrategy {
 	 *            the board
 	 * @param depth
 	 *            the depth
+	 * @param ply
+	 *            the distance from the root
 	 * @param highest
 	 *            the highest
 	 * @param lowest
 	 *            the lowest
+	 * @param quiescence
+	 *            whether the node lies beyond the search depth
 	 * @return the int
 	 */
-	private int min(final Board board, final int depth, final int highest, final int lowest) {
+	private int min(final Board board, final int depth, final int ply, final int highest, final int lowest,
+			final boolean quiescence) {
+		this.cancellationToken.checkpoint();
+		this.principalVariation.clear(ply);
+		if (isDrawnInSearch(board, ply)) {
+			return DRAW_SCORE;
+		}
+		final int tablebaseScore = tablebaseScore(board);
+		if (tablebaseScore != Tablebase.UNKNOWN) {
+			return Math.max(highest, Math.min(lowest, tablebaseScore));
+		}
 		if (depth == 0 || BoardUtils.isEndGame(board)) {
-			this.boardsEvaluated++;
-			return this.evaluator.evaluate(board, depth);
+			return evaluate(board, depth, highest, lowest);
+		}
+		final long key = tableKey(board, quiescence);
+		final long entry = probeTable(key);
+		if (isTableCutoff(entry, depth, highest, lowest)) {
+			return TranspositionTable.score(entry) <= highest ? highest : lowest;
 		}
+		final boolean inCheck = board.currentPlayer().isInCheck();
+		final boolean prune = !quiescence && !inCheck;
+		if (prune && isRefutedByNullMove(board, depth, ply, highest, lowest)) {
+			return highest;
+		}
+		final int shortfall = prune ? frontierShortfall(board, depth, highest, lowest) : Integer.MIN_VALUE;
+		final int nodeDepth = razoredDepth(depth, shortfall);
+		final boolean futile = isFutile(nodeDepth, shortfall);
 		int currentLowest = lowest;
-		for (final Move move : MoveSorter.STANDARD.sort((board.currentPlayer().getLegalMoves()))) {
+		Move bestMove = MoveFactory.getNullMove();
+		int moveIndex = 0;
+		for (final Move move : new MovePicker(board.currentPlayer().getLegalMoves(),
+				TranspositionTable.bestMove(entry, board), this.heuristics, ply, !quiescence || inCheck)) {
 			final MoveTransition moveTransition = board.currentPlayer().makeMove(move);
 			if (moveTransition.getMoveStatus().isDone()) {
-				currentLowest = Math.min(currentLowest, max(moveTransition.getToBoard(),
-						calculateQuiescenceDepth(moveTransition, depth), highest, currentLowest));
-				if (currentLowest <= highest) {
-					return highest;
+				final Board toBoard = moveTransition.getToBoard();
+				final boolean quiet = MovePicker.isQuiet(move) && !toBoard.currentPlayer().isInCheck();
+				if (futile && quiet) {
+					this.prunedCounts[Pruning.FUTILITY.ordinal()]++;
+					continue;
 				}
+				final int childDepth = calculateQuiescenceDepth(moveTransition, nodeDepth);
+				final boolean childQuiescence = quiescence || childDepth >= nodeDepth;
+				final int reduction = prune && quiet ? lateMoveReduction(move, moveIndex, childDepth) : 0;
+				int value;
+				if (moveIndex == 0) {
+					value = max(toBoard, childDepth, ply + 1, highest, currentLowest, childQuiescence);
+				} else {
+					// zero window: only find out whether the move beats the best so far
+					value = max(toBoard, childDepth - reduction, ply + 1, currentLowest - 1, currentLowest,
+							childQuiescence);
+					if (value < currentLowest && (reduction > 0 || value > highest)) {
+						value = max(toBoard, childDepth, ply + 1, highest, currentLowest, childQuiescence);
+					} else if (reduction > 0) {
+						this.prunedCounts[Pruning.LATE_MOVE_REDUCTION.ordinal()]++;
+					}
+				}
+				if (value < currentLowest) {
+					currentLowest = value;
+					if (currentLowest <= highest) {
+						recordCutoff(key, nodeDepth, ply, currentLowest, TranspositionTable.Bound.UPPER, move, quiet);
+						return highest;
+					}
+					bestMove = move;
+					this.principalVariation.update(ply, move);
+				}
+				moveIndex++;
 			}
 		}
+		this.heuristics.getTranspositionTable().store(key, nodeDepth, currentLowest,
+				bestMove != MoveFactory.getNullMove() ? TranspositionTable.Bound.EXACT
+						: TranspositionTable.Bound.LOWER,
+				bestMove);
 		return currentLowest;
 	}
 
+	/**
+	 * Evaluate. Counts the board and answers from the evaluation cache when it
+	 * can; only full scores, strictly inside the window, are cached.
+	 *
+	 * @param board
+	 *            the board
+	 * @param depth
+	 *            the depth
+	 * @param highest
+	 *            the highest
+	 * @param lowest
+	 *            the lowest
+	 * @return the score
+	 */
+	private int evaluate(final Board board, final int depth, final int highest, final int lowest) {
+		this.boardsEvaluated++;
+		final long key = tableKey(board, false) ^ (depth + 1) * DEPTH_KEY;
+		final int cached = this.heuristics.probeEvaluation(key);
+		if (cached != SearchHeuristics.NO_EVALUATION) {
+			return cached;
+		}
+		final int score = this.evaluator.evaluate(board, depth, highest, lowest);
+		if (score > highest && score < lowest) {
+			this.heuristics.storeEvaluation(key, score);
+		}
+		return score;
+	}
+
+	/**
+	 * Table key.
+	 *
+	 * @param board
+	 *            the board
+	 * @param quiescence
+	 *            whether the node lies beyond the search depth
+	 * @return the zobrist key of the board, adjusted for what else the score
+	 *         depends on
+	 */
+	private static long tableKey(final Board board, final boolean quiescence) {
+		long key = board.getZobristKey();
+		if (quiescence) {
+			key ^= QUIESCENCE_KEY;
+		}
+		if (board.whitePlayer().getPlayerKing().isCastled()) {
+			key ^= WHITE_CASTLED_KEY;
+		}
+		if (board.blackPlayer().getPlayerKing().isCastled()) {
+			key ^= BLACK_CASTLED_KEY;
+		}
+		return key;
+	}
+
+	/**
+	 * Probe table. A worker falls back on the table of its parent.
+	 *
+	 * @param key
+	 *            the table key
+	 * @return the entry, {@link TranspositionTable#MISS} if the position is
+	 *         not stored
+	 */
+	private long probeTable(final long key) {
+		final long entry = this.heuristics.getTranspositionTable().probe(key);
+		return entry == TranspositionTable.MISS && this.parentTable != null ? this.parentTable.probe(key) : entry;
+	}
+
+	/**
+	 * Checks if is table cutoff. Only zero window nodes are cut, so the
+	 * principal variation is always searched.
+	 *
+	 * @param entry
+	 *            the transposition table entry
+	 * @param depth
+	 *            the depth
+	 * @param highest
+	 *            the highest
+	 * @param lowest
+	 *            the lowest
+	 * @return true, if the stored score settles the node
+	 */
+	private static boolean isTableCutoff(final long entry, final int depth, final int highest, final int lowest) {
+		if (entry == TranspositionTable.MISS || (long) lowest - highest > 1
+				|| TranspositionTable.depth(entry) < depth) {
+			return false;
+		}
+		final int score = TranspositionTable.score(entry);
+		if (Math.abs(score) >= MATE_SCORE) {
+			return false;
+		}
+		switch (TranspositionTable.bound(entry)) {
+		case LOWER:
+			return score >= lowest;
+		case UPPER:
+			return score <= highest;
+		default:
+			return score >= lowest || score <= highest;
+		}
+	}
+
+	/**
+	 * Record cutoff. Stores the bound and, for a quiet move, credits its
+	 * history and makes it a killer of the ply.
+	 *
+	 * @param key
+	 *            the table key
+	 * @param depth
+	 *            the depth the node was searched with
+	 * @param ply
+	 *            the distance from the root
+	 * @param value
+	 *            the value that beat the bound
+	 * @param bound
+	 *            the bound
+	 * @param move
+	 *            the move
+	 * @param quiet
+	 *            whether the move is quiet
+	 */
+	private void recordCutoff(final long key, final int depth, final int ply, final int value,
+			final TranspositionTable.Bound bound, final Move move, final boolean quiet) {
+		this.heuristics.getTranspositionTable().store(key, depth, value, bound, move);
+		if (quiet) {
+			this.heuristics.addHistory(move, depth);
+			this.heuristics.addKiller(move, ply);
+		}
+	}
+
+	/**
+	 * Checks if is refuted by null move. Passes the turn and searches the
+	 * reply at reduced depth with a null window on the bound of the side to
+	 * move.
+	 *
+	 * @param board
+	 *            the board
+	 * @param depth
+	 *            the depth
+	 * @param ply
+	 *            the distance from the root
+	 * @param highest
+	 *            the highest
+	 * @param lowest
+	 *            the lowest
+	 * @return true, if the side to move beats its bound even without moving
+	 */
+	private boolean isRefutedByNullMove(final Board board, final int depth, final int ply, final int highest,
+			final int lowest) {
+		final boolean white = board.currentPlayer().getAlliance().isWhite();
+		if (!this.pruning.contains(Pruning.NULL_MOVE) || depth < NULL_MOVE_MIN_DEPTH
+				|| (white ? lowest == Integer.MAX_VALUE : highest == Integer.MIN_VALUE)
+				|| board.getTransitionMove() == MoveFactory.getNullMove()
+				|| !hasPiecesBesidesPawns(board.currentPlayer())) {
+			return false;
+		}
+		final int reducedDepth = depth - 1 - (depth > 6 ? 3 : 2);
+		final Board passedBoard = passTurn(board);
+		final boolean refuted = white ? min(passedBoard, reducedDepth, ply + 1, lowest - 1, lowest, false) >= lowest
+				: max(passedBoard, reducedDepth, ply + 1, highest, highest + 1, false) <= highest;
+		if (refuted) {
+			this.prunedCounts[Pruning.NULL_MOVE.ordinal()]++;
+		}
+		return refuted;
+	}
+
+	/**
+	 * Frontier shortfall. How far the static score of a frontier or
+	 * pre-frontier node falls behind the bound of the side to move.
+	 *
+	 * @param board
+	 *            the board
+	 * @param depth
+	 *            the depth
+	 * @param highest
+	 *            the highest
+	 * @param lowest
+	 *            the lowest
+	 * @return the shortfall, Integer.MIN_VALUE if the node is not considered
+	 */
+	private int frontierShortfall(final Board board, final int depth, final int highest, final int lowest) {
+		if (depth > RAZORING_DEPTH
+				|| (!this.pruning.contains(Pruning.FUTILITY) && !this.pruning.contains(Pruning.RAZORING))) {
+			return Integer.MIN_VALUE;
+		}
+		final boolean white = board.currentPlayer().getAlliance().isWhite();
+		if (white ? highest == Integer.MIN_VALUE : lowest == Integer.MAX_VALUE) {
+			return Integer.MIN_VALUE;
+		}
+		final int staticScore = evaluate(board, depth, Integer.MIN_VALUE, Integer.MAX_VALUE);
+		return white ? highest - staticScore : staticScore - lowest;
+	}
+
+	/**
+	 * Razored depth.
+	 *
+	 * @param depth
+	 *            the depth
+	 * @param shortfall
+	 *            the frontier shortfall
+	 * @return the depth to search the node with
+	 */
+	private int razoredDepth(final int depth, final int shortfall) {
+		if (this.pruning.contains(Pruning.RAZORING) && depth == RAZORING_DEPTH && shortfall >= RAZORING_MARGIN) {
+			this.prunedCounts[Pruning.RAZORING.ordinal()]++;
+			return depth - 1;
+		}
+		return depth;
+	}
+
+	/**
+	 * Checks if is futile.
+	 *
+	 * @param depth
+	 *            the depth
+	 * @param shortfall
+	 *            the frontier shortfall
+	 * @return true, if the quiet moves of the node can be skipped
+	 */
+	private boolean isFutile(final int depth, final int shortfall) {
+		return this.pruning.contains(Pruning.FUTILITY) && depth == 1 && shortfall >= FUTILITY_MARGIN;
+	}
+
+	/**
+	 * Late move reduction. Moves that caused cut offs at this depth before
+	 * are not reduced.
+	 *
+	 * @param move
+	 *            the move
+	 * @param moveIndex
+	 *            the index of the move among the legal moves searched
+	 * @param childDepth
+	 *            the child depth
+	 * @return the plies to take off the child depth
+	 */
+	private int lateMoveReduction(final Move move, final int moveIndex, final int childDepth) {
+		if (!this.pruning.contains(Pruning.LATE_MOVE_REDUCTION) || moveIndex < LATE_MOVE_INDEX
+				|| childDepth < LATE_MOVE_MIN_DEPTH) {
+			return 0;
+		}
+		final int historyScore = this.heuristics.historyScore(move);
+		if (historyScore > childDepth * childDepth) {
+			return 0;
+		}
+		final int reduction = moveIndex >= VERY_LATE_MOVE_INDEX && historyScore == 0 ? 2 : 1;
+		return Math.min(reduction, childDepth - 1);
+	}
+
+
+	/**
+	 * Checks for pieces besides pawns.
+	 *
+	 * @param player
+	 *            the player
+	 * @return true, if the player has a piece other than the king and pawns
+	 */
+	private static boolean hasPiecesBesidesPawns(final Player player) {
+		for (final Piece piece : player.getActivePieces()) {
+			if (!piece.getPieceType().isPawn() && !piece.getPieceType().isKing()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Pass turn.
+	 *
+	 * @param board
+	 *            the board
+	 * @return the same position with the other side to move and no en passant
+	 *         pawn
+	 */
+	private static Board passTurn(final Board board) {
+		final Board.Builder builder = new Board.Builder();
+		for (final Piece piece : board.getAllPieces()) {
+			builder.setPiece(piece);
+		}
+		builder.setMoveMaker(board.currentPlayer().getOpponent().getAlliance());
+		return builder.build();
+	}
+
 	/**
 	 * Calculate quiescence depth.
 	 *
@@ -294,6 +1354,46 @@ public class StockAlphaBeta extends Observable implements MoveStrategy {
 		return depth - 1;
 	}
 
+	/**
+	 * Tablebase score.
+	 *
+	 * @param board
+	 *            the board
+	 * @return the score of the board from white's view if the tables know
+	 *         it, {@link Tablebase#UNKNOWN} otherwise
+	 */
+	private int tablebaseScore(final Board board) {
+		if (this.tablebase == null) {
+			return Tablebase.UNKNOWN;
+		}
+		final int result = this.tablebase.probe(board);
+		if (result == Tablebase.UNKNOWN) {
+			return result;
+		}
+		final int score;
+		if (result > 0) {
+			score = TABLEBASE_WIN - result;
+		} else {
+			score = result < 0 ? -TABLEBASE_WIN - result - 1 : DRAW_SCORE;
+		}
+		return board.currentPlayer().getAlliance().isWhite() ? score : -score;
+	}
+
+	/**
+	 * Checks if is drawn in search. Below the root a single repetition is
+	 * enough: if repeating was good, it was as good the first time round.
+	 *
+	 * @param board
+	 *            the board
+	 * @param ply
+	 *            the distance from the root
+	 * @return true, if the position repeats one since the last capture or
+	 *         pawn move, or the fifty move rule applies
+	 */
+	private static boolean isDrawnInSearch(final Board board, final int ply) {
+		return ply > 0 && (BoardUtils.repetitions(board, 1) > 0 || BoardUtils.isFiftyMoveDraw(board));
+	}
+
 	/**
 	 * Calculate time taken.
 	 *
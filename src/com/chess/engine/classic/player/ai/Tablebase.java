@@ -0,0 +1,269 @@
+package com.chess.engine.classic.player.ai;
+
+import static com.chess.engine.classic.board.Move.MoveFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.ByteBuffer;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.FileOutputStream;
+import java.nio.channels.FileChannel;
+import java.io.BufferedOutputStream;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.collect.Iterables;
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Tile;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.pieces.King;
+import com.chess.engine.classic.pieces.Piece;
+import com.chess.engine.classic.board.MoveTransition;
+
+/**
+ * Endgame tablebase prober. Reads the distance to mate of positions with at
+ * most {@value #MAX_PIECES} pieces from the tables {@link TablebaseGenerator}
+ * writes, one file per material. A file is memory mapped the first time a
+ * position of its material is probed, so a probe is a single read at the
+ * position's index and the operating system decides how much of the tables
+ * stays in memory. Missing tables are remembered and simply answer
+ * {@link #UNKNOWN}, as do positions with castling rights or an en passant
+ * capture, which the tables do not know about.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public final class Tablebase {
+
+	/** The Constant UNKNOWN. The probe result for positions without a table. */
+	public static final int UNKNOWN = Integer.MIN_VALUE;
+
+	/** The Constant MAX_PIECES. */
+	public static final int MAX_PIECES = 4;
+
+	/** The Constant EXTENSION. */
+	static final String EXTENSION = ".tb";
+
+	/** The Constant MAGIC. */
+	private static final int MAGIC = 0x31425454;
+
+	/** The Constant HEADER_SIZE. The magic number and the number of positions. */
+	private static final int HEADER_SIZE = 8;
+
+	/** The Constant MISSING. Stands in for the tables that are not there. */
+	private static final ByteBuffer MISSING = ByteBuffer.allocate(0);
+
+	/** The directory. */
+	private final File directory;
+
+	/** The tables mapped so far, by signature. */
+	private final ConcurrentMap<String, ByteBuffer> tables;
+
+	/**
+	 * Instantiates a new tablebase.
+	 *
+	 * @param directory
+	 *            the directory of the table files
+	 */
+	public Tablebase(final File directory) {
+		this.directory = directory;
+		this.tables = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Gets the directory.
+	 *
+	 * @return the directory
+	 */
+	public File getDirectory() {
+		return this.directory;
+	}
+
+	/**
+	 * Probe.
+	 *
+	 * @param board
+	 *            the board
+	 * @return the number of moves the side to move needs to mate if positive,
+	 *         minus one more than the number of moves until it is mated if
+	 *         negative, zero for a draw, or {@link #UNKNOWN}
+	 */
+	public int probe(final Board board) {
+		if (hasEnPassantCapture(board)) {
+			return UNKNOWN;
+		}
+		final int[] types = new int[MAX_PIECES];
+		final boolean[] white = new boolean[MAX_PIECES];
+		final int[] squares = new int[MAX_PIECES];
+		int count = 0;
+		for (final Piece piece : board.getAllPieces()) {
+			if (count == MAX_PIECES || (piece.getPieceType().isKing()
+					&& (((King) piece).isKingSideCastleCapable() || ((King) piece).isQueenSideCastleCapable()))) {
+				return UNKNOWN;
+			}
+			types[count] = TablebaseMaterial.PIECE_LETTERS.indexOf(piece.getPieceType().toString());
+			white[count] = piece.getPieceAllegiance().isWhite();
+			squares[count] = piece.getPiecePosition();
+			count++;
+		}
+		if (count <= 2) {
+			return UNKNOWN;
+		}
+		final TablebaseMaterial.Placement placement = TablebaseMaterial.place(types, white, squares, count,
+				board.currentPlayer().getAlliance().isWhite());
+		final ByteBuffer table = table(placement.material.getSignature());
+		return table == MISSING ? UNKNOWN : table.get(placement.index);
+	}
+
+	/**
+	 * Best move. The move to the position that is worst for the opponent:
+	 * the fastest mate when winning, the slowest when losing, and a draw over
+	 * a loss.
+	 *
+	 * @param board
+	 *            the board
+	 * @return the move, or the null move if the board or one of the positions
+	 *         it leads to is not in the tables
+	 */
+	public Move bestMove(final Board board) {
+		if (probe(board) == UNKNOWN) {
+			return MoveFactory.getNullMove();
+		}
+		Move bestMove = MoveFactory.getNullMove();
+		int bestRank = Integer.MIN_VALUE;
+		for (final Move move : board.currentPlayer().getLegalMoves()) {
+			final MoveTransition transition = board.currentPlayer().makeMove(move);
+			if (!transition.getMoveStatus().isDone()) {
+				continue;
+			}
+			final Board toBoard = transition.getToBoard();
+			// taking the last piece leaves the bare kings
+			final int reply = Iterables.size(toBoard.getAllPieces()) == 2 ? 0 : probe(toBoard);
+			if (reply == UNKNOWN) {
+				return MoveFactory.getNullMove();
+			}
+			final int rank = rank(reply > 0 ? -(reply + 1) : -reply);
+			if (rank > bestRank) {
+				bestRank = rank;
+				bestMove = move;
+			}
+		}
+		return bestMove;
+	}
+
+	/**
+	 * Rank. Orders probe results from worst to best for the side to move.
+	 *
+	 * @param result
+	 *            the probe result
+	 * @return the rank
+	 */
+	static int rank(final int result) {
+		if (result > 0) {
+			return 1000 - result;
+		}
+		return result < 0 ? -1001 - result : 0;
+	}
+
+	/**
+	 * Table.
+	 *
+	 * @param signature
+	 *            the signature
+	 * @return the mapped table, or MISSING
+	 */
+	private ByteBuffer table(final String signature) {
+		final ByteBuffer table = this.tables.get(signature);
+		if (table != null) {
+			return table;
+		}
+		final File file = new File(this.directory, signature + EXTENSION);
+		ByteBuffer mapped = MISSING;
+		if (file.isFile()) {
+			try {
+				mapped = map(file, TablebaseMaterial.of(signature).size());
+			} catch (final IOException e) {
+				System.out.println("Tablebase " + file + " could not be read: " + e.getMessage());
+			}
+		}
+		final ByteBuffer previous = this.tables.putIfAbsent(signature, mapped);
+		return previous != null ? previous : mapped;
+	}
+
+	/**
+	 * Map.
+	 *
+	 * @param file
+	 *            the table file
+	 * @param size
+	 *            the number of positions in the table
+	 * @return the values, one byte per position index
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	static ByteBuffer map(final File file, final int size) throws IOException {
+		try (final RandomAccessFile in = new RandomAccessFile(file, "r")) {
+			final FileChannel channel = in.getChannel();
+			if (channel.size() != HEADER_SIZE + (long) size) {
+				throw new IOException("bad table size " + channel.size());
+			}
+			final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			if (header.getInt() != MAGIC || header.getInt() != size) {
+				throw new IOException("not a table of " + size + " positions");
+			}
+			// the mapping stays valid once the channel is closed
+			return channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, size);
+		}
+	}
+
+	/**
+	 * Write.
+	 *
+	 * @param file
+	 *            the table file
+	 * @param values
+	 *            the values, one byte per position index
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	static void write(final File file, final byte[] values) throws IOException {
+		try (final OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+			out.write(ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN).putInt(MAGIC)
+					.putInt(values.length).array());
+			out.write(values);
+		}
+	}
+
+	/**
+	 * Checks for en passant capture.
+	 *
+	 * @param board
+	 *            the board
+	 * @return true, if the side to move can take a pawn en passant
+	 */
+	private static boolean hasEnPassantCapture(final Board board) {
+		if (board.getEnPassantPawn() == null) {
+			return false;
+		}
+		final int position = board.getEnPassantPawn().getPiecePosition();
+		return (position % 8 > 0 && isCapturingPawn(board, board.getTile(position - 1)))
+				|| (position % 8 < 7 && isCapturingPawn(board, board.getTile(position + 1)));
+	}
+
+	/**
+	 * Checks if is capturing pawn.
+	 *
+	 * @param board
+	 *            the board
+	 * @param tile
+	 *            the tile next to the en passant pawn
+	 * @return true, if a pawn of the side to move is on the tile
+	 */
+	private static boolean isCapturingPawn(final Board board, final Tile tile) {
+		return tile.isTileOccupied() && tile.getPiece().getPieceType().isPawn()
+				&& tile.getPiece().getPieceAllegiance() == board.currentPlayer().getAlliance();
+	}
+}
@@ -0,0 +1,1088 @@
+package com.chess.engine.classic.player.ai;
+
+import java.io.File;
+import java.util.Set;
+import java.util.Map;
+import java.util.List;
+import java.util.Arrays;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.nio.ByteBuffer;
+import java.io.IOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Endgame tablebase generator. Solves every position of a material by
+ * retrograde analysis and writes one table file per material for
+ * {@link Tablebase} to probe. A position is first scored by its moves that
+ * leave the material, captures and promotions, which are looked up in the
+ * smaller tables, and its other legal moves are counted. Then, one ply at a
+ * time starting from the mates, the solved positions are un-moved: a position
+ * lost in n plies makes every position leading to it won in n + 1, and a
+ * position won in n plies takes a move away from every position leading to
+ * it, which is lost in n + 1 once it has none left and no better way out of
+ * the material. Whatever is never reached is a draw.
+ * <p>
+ * Tables are solved in waves by number of pieces and pawns, so that every
+ * table a wave needs is done before it starts, and the tables of a wave and
+ * the scoring of each table are split across a fork join pool. Castling and
+ * en passant are not part of the tables. A four piece table needs about 170
+ * MB while it is solved.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public final class TablebaseGenerator {
+
+	/** The Constant UNKNOWN. Not solved yet. */
+	private static final short UNKNOWN = Short.MAX_VALUE;
+
+	/** The Constant ILLEGAL. The side not to move is in check, or pieces overlap. */
+	private static final short ILLEGAL = Short.MIN_VALUE;
+
+	/** The Constant NO_EXIT. No capture or promotion. */
+	private static final short NO_EXIT = Short.MIN_VALUE;
+
+	/** The Constant DRAW. */
+	private static final short DRAW = 0;
+
+	/** The Constant CHUNK_SIZE. The positions scored by one task. */
+	private static final int CHUNK_SIZE = 1 << 16;
+
+	/** The Constant PROMOTIONS. */
+	private static final int[] PROMOTIONS = { TablebaseMaterial.QUEEN, TablebaseMaterial.ROOK,
+			TablebaseMaterial.BISHOP, TablebaseMaterial.KNIGHT };
+
+	/** The Constant DIRECTIONS. Row and column steps, diagonals first. */
+	private static final int[][] DIRECTIONS = { { -1, -1 }, { -1, 1 }, { 1, -1 }, { 1, 1 }, { -1, 0 }, { 1, 0 },
+			{ 0, -1 }, { 0, 1 } };
+
+	/** The Constant KNIGHT_JUMPS. */
+	private static final int[][] KNIGHT_JUMPS = { { -2, -1 }, { -2, 1 }, { -1, -2 }, { -1, 2 }, { 1, -2 }, { 1, 2 },
+			{ 2, -1 }, { 2, 1 } };
+
+	/** The Constant RAYS. The squares in each direction from each square. */
+	private static final int[][][] RAYS = new int[64][DIRECTIONS.length][];
+
+	/** The Constant KING_STEPS. */
+	private static final int[][] KING_STEPS = new int[64][];
+
+	/** The Constant KNIGHT_STEPS. */
+	private static final int[][] KNIGHT_STEPS = new int[64][];
+
+	static {
+		for (int square = 0; square < 64; square++) {
+			final int[] kingSteps = new int[DIRECTIONS.length];
+			int kingCount = 0;
+			for (int direction = 0; direction < DIRECTIONS.length; direction++) {
+				final int[] ray = new int[7];
+				int length = 0;
+				int row = square / 8 + DIRECTIONS[direction][0];
+				int column = square % 8 + DIRECTIONS[direction][1];
+				while (row >= 0 && row < 8 && column >= 0 && column < 8) {
+					ray[length++] = row * 8 + column;
+					row += DIRECTIONS[direction][0];
+					column += DIRECTIONS[direction][1];
+				}
+				RAYS[square][direction] = Arrays.copyOf(ray, length);
+				if (length > 0) {
+					kingSteps[kingCount++] = ray[0];
+				}
+			}
+			KING_STEPS[square] = Arrays.copyOf(kingSteps, kingCount);
+			final int[] knightSteps = new int[KNIGHT_JUMPS.length];
+			int knightCount = 0;
+			for (final int[] jump : KNIGHT_JUMPS) {
+				final int row = square / 8 + jump[0];
+				final int column = square % 8 + jump[1];
+				if (row >= 0 && row < 8 && column >= 0 && column < 8) {
+					knightSteps[knightCount++] = row * 8 + column;
+				}
+			}
+			KNIGHT_STEPS[square] = Arrays.copyOf(knightSteps, knightCount);
+		}
+	}
+
+	/** The directory. */
+	private final File directory;
+
+	/** The pool. */
+	private final ForkJoinPool pool;
+
+	/** The finished tables, by signature. */
+	private final Map<String, ByteBuffer> tables;
+
+	/**
+	 * Instantiates a new tablebase generator.
+	 *
+	 * @param directory
+	 *            the directory the tables are written to, and where tables
+	 *            already there are reused from
+	 * @param pool
+	 *            the pool
+	 */
+	public TablebaseGenerator(final File directory, final ForkJoinPool pool) {
+		this.directory = directory;
+		this.pool = pool;
+		this.tables = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Generate. All tables with up to the given number of pieces.
+	 *
+	 * @param maxPieces
+	 *            the most pieces, kings included
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void generate(final int maxPieces) throws IOException {
+		if (maxPieces > Tablebase.MAX_PIECES) {
+			throw new IllegalArgumentException("at most " + Tablebase.MAX_PIECES + " pieces");
+		}
+		final Set<String> signatures = new TreeSet<>();
+		for (int pieces = 3; pieces <= maxPieces; pieces++) {
+			addSignatures("K", "K", pieces - 2, 0, signatures);
+		}
+		generate(signatures);
+	}
+
+	/**
+	 * Generate. The tables of the given materials and every table they lead
+	 * to.
+	 *
+	 * @param signatures
+	 *            the signatures, in any colour order
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void generate(final Collection<String> signatures) throws IOException {
+		final Map<Integer, List<TablebaseMaterial>> waves = new TreeMap<>();
+		for (final String signature : dependencies(signatures)) {
+			final TablebaseMaterial material = TablebaseMaterial.of(signature);
+			final Integer wave = material.getPieceCount() * 8 + material.getPawnCount();
+			if (!waves.containsKey(wave)) {
+				waves.put(wave, new ArrayList<TablebaseMaterial>());
+			}
+			waves.get(wave).add(material);
+		}
+		for (final List<TablebaseMaterial> wave : waves.values()) {
+			final List<Callable<byte[]>> solvers = new ArrayList<>();
+			for (final TablebaseMaterial material : wave) {
+				final File file = file(material);
+				if (file.isFile()) {
+					this.tables.put(material.getSignature(), Tablebase.map(file, material.size()));
+				} else {
+					solvers.add(new Solver(material));
+				}
+			}
+			try {
+				for (final Future<byte[]> solved : this.pool.invokeAll(solvers)) {
+					solved.get();
+				}
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("interrupted", e);
+			} catch (final ExecutionException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Dependencies.
+	 *
+	 * @param signatures
+	 *            the signatures
+	 * @return the canonical signatures of the tables and of every table a
+	 *         capture or promotion leads to, except the bare kings
+	 */
+	static Set<String> dependencies(final Collection<String> signatures) {
+		final Set<String> dependencies = new TreeSet<>();
+		final List<String> pending = new ArrayList<>();
+		for (final String signature : signatures) {
+			pending.add(TablebaseMaterial.canonical(signature));
+		}
+		while (!pending.isEmpty()) {
+			final String signature = pending.remove(pending.size() - 1);
+			if (signature.length() <= 2 || !dependencies.add(signature)) {
+				continue;
+			}
+			if (signature.length() > Tablebase.MAX_PIECES) {
+				throw new IllegalArgumentException("at most " + Tablebase.MAX_PIECES + " pieces: " + signature);
+			}
+			for (int i = 1; i < signature.length(); i++) {
+				final char piece = signature.charAt(i);
+				if (piece == 'K') {
+					continue;
+				}
+				pending.add(TablebaseMaterial.canonical(signature.substring(0, i) + signature.substring(i + 1)));
+				if (piece == 'P') {
+					for (final int promotion : PROMOTIONS) {
+						pending.add(TablebaseMaterial.canonical(signature.substring(0, i)
+								+ TablebaseMaterial.PIECE_LETTERS.charAt(promotion) + signature.substring(i + 1)));
+					}
+				}
+			}
+		}
+		return dependencies;
+	}
+
+	/**
+	 * Adds the signatures.
+	 *
+	 * @param whitePieces
+	 *            the white pieces so far
+	 * @param blackPieces
+	 *            the black pieces so far
+	 * @param remaining
+	 *            the number of pieces still to add
+	 * @param firstType
+	 *            the weakest piece kind added so far, so every set is added
+	 *            once
+	 * @param signatures
+	 *            the signatures
+	 */
+	private static void addSignatures(final String whitePieces, final String blackPieces, final int remaining,
+			final int firstType, final Set<String> signatures) {
+		if (remaining == 0) {
+			signatures.add(TablebaseMaterial.canonical(whitePieces + blackPieces));
+			return;
+		}
+		// the ten kinds are the five piece types in both colours
+		for (int kind = firstType; kind < 10; kind++) {
+			final char piece = TablebaseMaterial.PIECE_LETTERS.charAt(1 + kind % 5);
+			if (kind < 5) {
+				addSignatures(whitePieces + piece, blackPieces, remaining - 1, kind, signatures);
+			} else {
+				addSignatures(whitePieces, blackPieces + piece, remaining - 1, kind, signatures);
+			}
+		}
+	}
+
+	/**
+	 * File.
+	 *
+	 * @param material
+	 *            the material
+	 * @return the table file
+	 */
+	private File file(final TablebaseMaterial material) {
+		return new File(this.directory, material.getSignature() + Tablebase.EXTENSION);
+	}
+
+	/**
+	 * Exit value. The value of a capture or promotion, from the smaller
+	 * tables.
+	 *
+	 * @param types
+	 *            the piece types after the move
+	 * @param white
+	 *            the piece colours after the move
+	 * @param squares
+	 *            the piece squares after the move
+	 * @param count
+	 *            the number of pieces after the move
+	 * @param whiteToMove
+	 *            whether white is to move after the move
+	 * @return the value for the side making the move
+	 */
+	private short exitValue(final int[] types, final boolean[] white, final int[] squares, final int count,
+			final boolean whiteToMove) {
+		if (count == 2) {
+			return DRAW;
+		}
+		final TablebaseMaterial.Placement placement = TablebaseMaterial.place(types, white, squares, count,
+				whiteToMove);
+		final ByteBuffer table = this.tables.get(placement.material.getSignature());
+		if (table == null) {
+			throw new IllegalStateException("table " + placement.material + " is not solved");
+		}
+		return parentValue(plies(table.get(placement.index)));
+	}
+
+	/**
+	 * Plies. A value in moves, as in the files, in plies.
+	 *
+	 * @param moves
+	 *            the value in moves
+	 * @return the value in plies
+	 */
+	private static short plies(final byte moves) {
+		if (moves > 0) {
+			return (short) (2 * moves - 1);
+		}
+		return moves < 0 ? (short) (-2 * (-moves - 1) - 1) : DRAW;
+	}
+
+	/**
+	 * Moves. A value in plies in moves, with the values of positions that were
+	 * not reached as draws.
+	 *
+	 * @param plies
+	 *            the value in plies
+	 * @return the value in moves
+	 */
+	private static byte moves(final short plies) {
+		if (plies == UNKNOWN || plies == ILLEGAL) {
+			return DRAW;
+		}
+		if (plies > 0) {
+			return (byte) ((plies + 1) / 2);
+		}
+		return (byte) (plies < 0 ? -((-plies - 1) / 2 + 1) : DRAW);
+	}
+
+	/**
+	 * Parent value. Values in plies are positive for a win in that many plies,
+	 * minus one more than the plies to a loss for a loss, and zero for a
+	 * draw.
+	 *
+	 * @param value
+	 *            the value of a position
+	 * @return the value of the move to it, for the side making the move
+	 */
+	private static short parentValue(final short value) {
+		if (value > 0) {
+			return (short) -(value + 2);
+		}
+		return value < 0 ? (short) -value : DRAW;
+	}
+
+	/**
+	 * Ply.
+	 *
+	 * @param value
+	 *            a win or loss value in plies
+	 * @return the number of plies to mate
+	 */
+	private static int ply(final short value) {
+		return value > 0 ? value : -value - 1;
+	}
+
+	/**
+	 * The main method. Writes all tables with up to the given number of
+	 * pieces.
+	 *
+	 * @param args
+	 *            the directory, tablebases by default, and the most pieces,
+	 *            four by default
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static void main(final String[] args) throws IOException {
+		final File directory = new File(args.length > 0 ? args[0] : "tablebases");
+		final int maxPieces = args.length > 1 ? Integer.parseInt(args[1]) : Tablebase.MAX_PIECES;
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("cannot create " + directory);
+		}
+		final long startTime = System.currentTimeMillis();
+		new TablebaseGenerator(directory, new ForkJoinPool()).generate(maxPieces);
+		System.out.println("Tablebases written to " + directory + " in "
+				+ (System.currentTimeMillis() - startTime) / 1000 + " s");
+	}
+
+	/**
+	 * Solves one table and writes it.
+	 */
+	private final class Solver implements Callable<byte[]> {
+
+		/** The material. */
+		private final TablebaseMaterial material;
+
+		/** The values in plies, UNKNOWN or ILLEGAL. */
+		private final short[] values;
+
+		/** The best capture or promotion, or NO_EXIT. */
+		private final short[] exits;
+
+		/** The legal moves that stay in the material and are not solved yet. */
+		private final byte[] counts;
+
+		/** The positions whose best exit is won or lost, by plies to mate. */
+		private final List<IntList> exitsByPly;
+
+		/** The mates. */
+		private final IntList mates;
+
+		/**
+		 * Instantiates a new solver.
+		 *
+		 * @param material
+		 *            the material
+		 */
+		Solver(final TablebaseMaterial material) {
+			this.material = material;
+			this.values = new short[material.size()];
+			this.exits = new short[material.size()];
+			this.counts = new byte[material.size()];
+			this.exitsByPly = new ArrayList<>();
+			this.mates = new IntList();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		@Override
+		public byte[] call() throws IOException {
+			final long startTime = System.currentTimeMillis();
+			new Initialize(this, 0, this.values.length).invoke();
+			for (int index = 0; index < this.values.length; index++) {
+				if (this.values[index] == UNKNOWN && this.exits[index] != NO_EXIT && this.exits[index] != DRAW) {
+					final int ply = ply(this.exits[index]);
+					while (this.exitsByPly.size() <= ply) {
+						this.exitsByPly.add(new IntList());
+					}
+					this.exitsByPly.get(ply).add(index);
+				} else if (this.values[index] == -1) {
+					this.mates.add(index);
+				}
+			}
+			solve();
+			final byte[] result = new byte[this.values.length];
+			int longest = 0;
+			for (int index = 0; index < result.length; index++) {
+				result[index] = moves(this.values[index]);
+				longest = Math.max(longest, result[index]);
+			}
+			final File file = file(this.material);
+			Tablebase.write(file, result);
+			TablebaseGenerator.this.tables.put(this.material.getSignature(), ByteBuffer.wrap(result));
+			System.out.println("Tablebase " + this.material + ": longest mate " + longest + " moves, "
+					+ (System.currentTimeMillis() - startTime) + " ms");
+			return result;
+		}
+
+		/**
+		 * Solve. Goes through the plies until no position is solved at the
+		 * current ply and no exit is left for a later one.
+		 */
+		private void solve() {
+			final Position position = new Position(this.material);
+			IntList current = this.mates;
+			for (int ply = 0; ply < this.exitsByPly.size() || current.size > 0; ply++) {
+				if (ply < this.exitsByPly.size()) {
+					final IntList exitPositions = this.exitsByPly.get(ply);
+					for (int i = 0; i < exitPositions.size; i++) {
+						final int index = exitPositions.items[i];
+						final short exit = this.exits[index];
+						// a lost exit only counts once every other move is lost too
+						if (this.values[index] == UNKNOWN && (exit > 0 || this.counts[index] == 0)) {
+							this.values[index] = exit;
+							current.add(index);
+						}
+					}
+				}
+				final IntList next = new IntList();
+				for (int i = 0; i < current.size; i++) {
+					retract(position, current.items[i], ply, next);
+				}
+				current = next;
+			}
+		}
+
+		/**
+		 * Retract. Updates the unsolved positions leading to a position solved
+		 * at the given ply.
+		 *
+		 * @param position
+		 *            the scratch position
+		 * @param index
+		 *            the index of the solved position
+		 * @param ply
+		 *            the ply
+		 * @param next
+		 *            the positions solved at the next ply
+		 */
+		private void retract(final Position position, final int index, final int ply, final IntList next) {
+			final boolean lost = this.values[index] < 0;
+			position.set(index);
+			final int[] predecessors = position.predecessors(index);
+			final int predecessorCount = predecessors[predecessors.length - 1];
+			for (int i = 0; i < predecessorCount; i++) {
+				final int predecessor = predecessors[i];
+				if (this.values[predecessor] != UNKNOWN) {
+					continue;
+				}
+				if (lost) {
+					this.values[predecessor] = (short) (ply + 1);
+					next.add(predecessor);
+				} else if (--this.counts[predecessor] == 0) {
+					final short exit = this.exits[predecessor];
+					if (exit == DRAW) {
+						this.values[predecessor] = DRAW;
+					} else if (exit == NO_EXIT || (exit < 0 && ply(exit) <= ply + 1)) {
+						this.values[predecessor] = (short) -(ply + 2);
+						next.add(predecessor);
+					}
+				}
+			}
+			position.clear();
+		}
+	}
+
+	/**
+	 * Scores a range of positions by their moves.
+	 */
+	private final class Initialize extends RecursiveAction {
+
+		/** The Constant serialVersionUID. */
+		private static final long serialVersionUID = 1L;
+
+		/** The solver. */
+		private final Solver solver;
+
+		/** The first index. */
+		private final int from;
+
+		/** The index past the last. */
+		private final int to;
+
+		/**
+		 * Instantiates a new initialize.
+		 *
+		 * @param solver
+		 *            the solver
+		 * @param from
+		 *            the first index
+		 * @param to
+		 *            the index past the last
+		 */
+		Initialize(final Solver solver, final int from, final int to) {
+			this.solver = solver;
+			this.from = from;
+			this.to = to;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		@Override
+		protected void compute() {
+			if (this.to - this.from > CHUNK_SIZE) {
+				final int middle = (this.from + this.to) >>> 1;
+				invokeAll(new Initialize(this.solver, this.from, middle),
+						new Initialize(this.solver, middle, this.to));
+				return;
+			}
+			final Position position = new Position(this.solver.material);
+			for (int index = this.from; index < this.to; index++) {
+				if (!position.set(index) || !position.isLegal()) {
+					this.solver.values[index] = ILLEGAL;
+				} else {
+					position.score(this.solver, index);
+				}
+				position.clear();
+			}
+		}
+	}
+
+	/**
+	 * A position of a table on a small board of its own, for one thread.
+	 */
+	private final class Position {
+
+		/** The material. */
+		private final TablebaseMaterial material;
+
+		/** The piece count. */
+		private final int count;
+
+		/** The piece types, changed by promotions. */
+		private final int[] types;
+
+		/** The piece colours. */
+		private final boolean[] white;
+
+		/** The piece squares, -1 for a captured piece. */
+		private final int[] squares;
+
+		/** The piece number on each square, -1 for an empty square. */
+		private final int[] board;
+
+		/** The predecessors, their number in the last element. */
+		private final int[] predecessors;
+
+		/** The targets of one piece, their number in the last element. */
+		private final int[] targets;
+
+		/** The white to move. */
+		private boolean whiteToMove;
+
+		/**
+		 * Instantiates a new position.
+		 *
+		 * @param material
+		 *            the material
+		 */
+		Position(final TablebaseMaterial material) {
+			this.material = material;
+			this.count = material.getPieceCount();
+			this.types = new int[this.count];
+			this.white = new boolean[this.count];
+			this.squares = new int[this.count];
+			this.board = new int[64];
+			// a queen has at most 27 moves back
+			this.predecessors = new int[this.count * 28 + 1];
+			this.targets = new int[28];
+			Arrays.fill(this.board, -1);
+			for (int piece = 0; piece < this.count; piece++) {
+				this.white[piece] = material.isWhite(piece);
+			}
+		}
+
+		/**
+		 * Sets the position.
+		 *
+		 * @param index
+		 *            the index
+		 * @return false, if two pieces share a square or a pawn stands on the
+		 *         first or last row
+		 */
+		boolean set(final int index) {
+			this.whiteToMove = TablebaseMaterial.isWhiteToMove(index);
+			boolean valid = true;
+			for (int piece = 0; piece < this.count; piece++) {
+				final int square = TablebaseMaterial.square(index, piece);
+				this.types[piece] = this.material.getType(piece);
+				this.squares[piece] = square;
+				if (this.board[square] >= 0 || (this.types[piece] == TablebaseMaterial.PAWN
+						&& (square < 8 || square >= 56))) {
+					valid = false;
+				} else {
+					this.board[square] = piece;
+				}
+			}
+			return valid;
+		}
+
+		/**
+		 * Clear.
+		 */
+		void clear() {
+			for (int piece = 0; piece < this.count; piece++) {
+				if (this.squares[piece] >= 0 && this.board[this.squares[piece]] == piece) {
+					this.board[this.squares[piece]] = -1;
+				}
+			}
+		}
+
+		/**
+		 * Checks if is legal.
+		 *
+		 * @return true, if the side not to move is not in check
+		 */
+		boolean isLegal() {
+			return !isAttacked(this.squares[king(!this.whiteToMove)], this.whiteToMove);
+		}
+
+		/**
+		 * Score. Counts the moves that stay in the material, finds the best
+		 * exit and marks mates and stalemates.
+		 *
+		 * @param solver
+		 *            the solver
+		 * @param index
+		 *            the index
+		 */
+		void score(final Solver solver, final int index) {
+			int moves = 0;
+			short exit = NO_EXIT;
+			final int king = king(this.whiteToMove);
+			for (int piece = 0; piece < this.count; piece++) {
+				if (this.white[piece] != this.whiteToMove) {
+					continue;
+				}
+				final int from = this.squares[piece];
+				final int[] targets = targets(piece);
+				final int targetCount = targets[targets.length - 1];
+				for (int i = 0; i < targetCount; i++) {
+					final int to = targets[i];
+					final int captured = this.board[to];
+					// make the move
+					this.board[from] = -1;
+					if (captured >= 0) {
+						this.squares[captured] = -1;
+					}
+					this.squares[piece] = to;
+					this.board[to] = piece;
+					if (!isAttacked(this.squares[king], !this.whiteToMove)) {
+						final boolean promotion = this.types[piece] == TablebaseMaterial.PAWN
+								&& (to < 8 || to >= 56);
+						if (promotion) {
+							for (final int type : PROMOTIONS) {
+								this.types[piece] = type;
+								exit = better(exit, exitValue(captured));
+							}
+							this.types[piece] = TablebaseMaterial.PAWN;
+						} else if (captured >= 0) {
+							exit = better(exit, exitValue(captured));
+						} else {
+							moves++;
+						}
+					}
+					// unmake it
+					this.board[to] = captured;
+					if (captured >= 0) {
+						this.squares[captured] = to;
+					}
+					this.squares[piece] = from;
+					this.board[from] = piece;
+				}
+			}
+			solver.counts[index] = (byte) moves;
+			solver.exits[index] = exit;
+			if (moves > 0 || exit != NO_EXIT) {
+				solver.values[index] = moves == 0 && exit == DRAW ? DRAW : UNKNOWN;
+			} else {
+				solver.values[index] = isAttacked(this.squares[king], !this.whiteToMove) ? -1 : DRAW;
+			}
+		}
+
+		/**
+		 * Exit value.
+		 *
+		 * @param captured
+		 *            the captured piece, or -1
+		 * @return the value of the position after the move, for the side that
+		 *         made it
+		 */
+		private short exitValue(final int captured) {
+			final int[] types = new int[this.count];
+			final boolean[] white = new boolean[this.count];
+			final int[] squares = new int[this.count];
+			int remaining = 0;
+			for (int piece = 0; piece < this.count; piece++) {
+				if (piece != captured) {
+					types[remaining] = this.types[piece];
+					white[remaining] = this.white[piece];
+					squares[remaining] = this.squares[piece];
+					remaining++;
+				}
+			}
+			return TablebaseGenerator.this.exitValue(types, white, squares, remaining, !this.whiteToMove);
+		}
+
+		/**
+		 * Predecessors. The positions the side not to move could have come
+		 * from without capturing or promoting.
+		 *
+		 * @param index
+		 *            the index of the position
+		 * @return the indexes, their number in the last element
+		 */
+		int[] predecessors(final int index) {
+			int found = 0;
+			for (int piece = 0; piece < this.count; piece++) {
+				if (this.white[piece] == this.whiteToMove) {
+					continue;
+				}
+				final int square = this.squares[piece];
+				switch (this.types[piece]) {
+				case TablebaseMaterial.KING:
+					found = addSteps(KING_STEPS[square], index, piece, found);
+					break;
+				case TablebaseMaterial.KNIGHT:
+					found = addSteps(KNIGHT_STEPS[square], index, piece, found);
+					break;
+				case TablebaseMaterial.PAWN:
+					// pawns come back from where they started
+					final int back = this.white[piece] ? 8 : -8;
+					final int row = (square + back) / 8;
+					if (row >= 1 && row <= 6 && this.board[square + back] < 0) {
+						this.predecessors[found++] = TablebaseMaterial.move(index, piece, square + back);
+						if ((this.white[piece] ? row == 5 : row == 2) && this.board[square + 2 * back] < 0) {
+							this.predecessors[found++] = TablebaseMaterial.move(index, piece, square + 2 * back);
+						}
+					}
+					break;
+				default:
+					for (final int direction : slides(this.types[piece])) {
+						for (final int origin : RAYS[square][direction]) {
+							if (this.board[origin] >= 0) {
+								break;
+							}
+							this.predecessors[found++] = TablebaseMaterial.move(index, piece, origin);
+						}
+					}
+					break;
+				}
+			}
+			this.predecessors[this.predecessors.length - 1] = found;
+			return this.predecessors;
+		}
+
+		/**
+		 * Adds the steps.
+		 *
+		 * @param steps
+		 *            the squares a king or knight reaches
+		 * @param index
+		 *            the index of the position
+		 * @param piece
+		 *            the piece
+		 * @param found
+		 *            the predecessors found so far
+		 * @return the predecessors found
+		 */
+		private int addSteps(final int[] steps, final int index, final int piece, final int found) {
+			int added = found;
+			for (final int origin : steps) {
+				if (this.board[origin] < 0) {
+					this.predecessors[added++] = TablebaseMaterial.move(index, piece, origin);
+				}
+			}
+			return added;
+		}
+
+		/**
+		 * Targets. The pseudo legal moves of a piece.
+		 *
+		 * @param piece
+		 *            the piece
+		 * @return the target squares, their number in the last element
+		 */
+		private int[] targets(final int piece) {
+			final int[] targets = this.targets;
+			int found = 0;
+			final int square = this.squares[piece];
+			switch (this.types[piece]) {
+			case TablebaseMaterial.KING:
+				found = addTargets(KING_STEPS[square], piece, targets, found);
+				break;
+			case TablebaseMaterial.KNIGHT:
+				found = addTargets(KNIGHT_STEPS[square], piece, targets, found);
+				break;
+			case TablebaseMaterial.PAWN:
+				final int forward = this.white[piece] ? -8 : 8;
+				final int column = square % 8;
+				if (this.board[square + forward] < 0) {
+					targets[found++] = square + forward;
+					final int startRow = this.white[piece] ? 6 : 1;
+					if (square / 8 == startRow && this.board[square + 2 * forward] < 0) {
+						targets[found++] = square + 2 * forward;
+					}
+				}
+				if (column > 0 && isEnemy(piece, square + forward - 1)) {
+					targets[found++] = square + forward - 1;
+				}
+				if (column < 7 && isEnemy(piece, square + forward + 1)) {
+					targets[found++] = square + forward + 1;
+				}
+				break;
+			default:
+				for (final int direction : slides(this.types[piece])) {
+					for (final int target : RAYS[square][direction]) {
+						if (this.board[target] >= 0) {
+							if (isEnemy(piece, target)) {
+								targets[found++] = target;
+							}
+							break;
+						}
+						targets[found++] = target;
+					}
+				}
+				break;
+			}
+			targets[targets.length - 1] = found;
+			return targets;
+		}
+
+		/**
+		 * Adds the targets.
+		 *
+		 * @param steps
+		 *            the squares a king or knight reaches
+		 * @param piece
+		 *            the piece
+		 * @param targets
+		 *            the targets
+		 * @param found
+		 *            the targets found so far
+		 * @return the targets found
+		 */
+		private int addTargets(final int[] steps, final int piece, final int[] targets, final int found) {
+			int added = found;
+			for (final int target : steps) {
+				if (this.board[target] < 0 || isEnemy(piece, target)) {
+					targets[added++] = target;
+				}
+			}
+			return added;
+		}
+
+		/**
+		 * Checks if is enemy.
+		 *
+		 * @param piece
+		 *            the piece
+		 * @param square
+		 *            the square
+		 * @return true, if a piece of the other colour stands on the square
+		 */
+		private boolean isEnemy(final int piece, final int square) {
+			return this.board[square] >= 0 && this.white[this.board[square]] != this.white[piece];
+		}
+
+		/**
+		 * Checks if is attacked.
+		 *
+		 * @param square
+		 *            the square
+		 * @param byWhite
+		 *            the attacking colour
+		 * @return true, if a piece of the colour attacks the square
+		 */
+		private boolean isAttacked(final int square, final boolean byWhite) {
+			for (int piece = 0; piece < this.count; piece++) {
+				if (this.white[piece] == byWhite && this.squares[piece] >= 0 && attacks(piece, square)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Attacks.
+		 *
+		 * @param piece
+		 *            the piece
+		 * @param square
+		 *            the square
+		 * @return true, if the piece attacks the square
+		 */
+		private boolean attacks(final int piece, final int square) {
+			final int from = this.squares[piece];
+			final int rows = square / 8 - from / 8;
+			final int columns = square % 8 - from % 8;
+			switch (this.types[piece]) {
+			case TablebaseMaterial.KING:
+				return from != square && Math.abs(rows) <= 1 && Math.abs(columns) <= 1;
+			case TablebaseMaterial.KNIGHT:
+				return Math.abs(rows * columns) == 2;
+			case TablebaseMaterial.PAWN:
+				return rows == (this.white[piece] ? -1 : 1) && Math.abs(columns) == 1;
+			case TablebaseMaterial.BISHOP:
+				return Math.abs(rows) == Math.abs(columns) && isPathClear(from, rows, columns);
+			case TablebaseMaterial.ROOK:
+				return (rows == 0 || columns == 0) && isPathClear(from, rows, columns);
+			default:
+				return (rows == 0 || columns == 0 || Math.abs(rows) == Math.abs(columns))
+						&& isPathClear(from, rows, columns);
+			}
+		}
+
+		/**
+		 * Checks if is path clear.
+		 *
+		 * @param from
+		 *            the square of the slider
+		 * @param rows
+		 *            the rows to the target
+		 * @param columns
+		 *            the columns to the target
+		 * @return true, if the squares between are empty
+		 */
+		private boolean isPathClear(final int from, final int rows, final int columns) {
+			final int distance = Math.max(Math.abs(rows), Math.abs(columns));
+			if (distance == 0) {
+				return false;
+			}
+			final int step = Integer.signum(rows) * 8 + Integer.signum(columns);
+			for (int square = from + step, i = 1; i < distance; square += step, i++) {
+				if (this.board[square] >= 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * King.
+		 *
+		 * @param ofWhite
+		 *            the colour
+		 * @return the piece number of the king
+		 */
+		private int king(final boolean ofWhite) {
+			for (int piece = 0; piece < this.count; piece++) {
+				if (this.types[piece] == TablebaseMaterial.KING && this.white[piece] == ofWhite) {
+					return piece;
+				}
+			}
+			throw new IllegalStateException("no king in " + this.material);
+		}
+	}
+
+	/**
+	 * Slides.
+	 *
+	 * @param type
+	 *            the slider type
+	 * @return the directions it moves in
+	 */
+	private static int[] slides(final int type) {
+		switch (type) {
+		case TablebaseMaterial.BISHOP:
+			return new int[] { 0, 1, 2, 3 };
+		case TablebaseMaterial.ROOK:
+			return new int[] { 4, 5, 6, 7 };
+		default:
+			return new int[] { 0, 1, 2, 3, 4, 5, 6, 7 };
+		}
+	}
+
+	/**
+	 * Better.
+	 *
+	 * @param value
+	 *            a value, or NO_EXIT
+	 * @param other
+	 *            another value
+	 * @return the better of the two for the side to move
+	 */
+	private static short better(final short value, final short other) {
+		if (value == NO_EXIT) {
+			return other;
+		}
+		return Tablebase.rank(other) > Tablebase.rank(value) ? other : value;
+	}
+
+	/**
+	 * A growable list of ints.
+	 */
+	private static final class IntList {
+
+		/** The items. */
+		int[] items = new int[16];
+
+		/** The size. */
+		int size;
+
+		/**
+		 * Adds the.
+		 *
+		 * @param item
+		 *            the item
+		 */
+		void add(final int item) {
+			if (this.size == this.items.length) {
+				this.items = Arrays.copyOf(this.items, this.size * 2);
+			}
+			this.items[this.size++] = item;
+		}
+	}
+}
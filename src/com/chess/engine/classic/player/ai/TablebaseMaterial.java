@@ -0,0 +1,364 @@
+package com.chess.engine.classic.player.ai;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The material of one tablebase table and the indexing of its positions. A
+ * signature lists the white pieces, king first, then the black pieces, each in
+ * {@link #PIECE_LETTERS} order, like KQKR. Only the signatures where white is
+ * at least as strong as black have a table; the others are looked up with the
+ * colours swapped and the board mirrored top to bottom. Pieces are numbered in
+ * signature order, and a position's index holds the side to move in bit 0 and
+ * the square of piece n in the six bits above those of piece n - 1, so a table
+ * has two entries for every placement of its pieces, legal or not.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+final class TablebaseMaterial {
+
+	/** The Constant KING. */
+	static final int KING = 0;
+
+	/** The Constant QUEEN. */
+	static final int QUEEN = 1;
+
+	/** The Constant ROOK. */
+	static final int ROOK = 2;
+
+	/** The Constant BISHOP. */
+	static final int BISHOP = 3;
+
+	/** The Constant KNIGHT. */
+	static final int KNIGHT = 4;
+
+	/** The Constant PAWN. */
+	static final int PAWN = 5;
+
+	/** The Constant PIECE_LETTERS. The letters of the piece types, strongest first. */
+	static final String PIECE_LETTERS = "KQRBNP";
+
+	/** The Constant PIECE_VALUES. In pawns, by piece type. */
+	private static final int[] PIECE_VALUES = { 0, 9, 5, 3, 3, 1 };
+
+	/** The Constant MATERIALS. */
+	private static final ConcurrentMap<String, TablebaseMaterial> MATERIALS = new ConcurrentHashMap<>();
+
+	/** The signature. */
+	private final String signature;
+
+	/** The piece types, by piece number. */
+	private final int[] types;
+
+	/** The piece colours, by piece number. */
+	private final boolean[] white;
+
+	/**
+	 * Instantiates a new tablebase material.
+	 *
+	 * @param signature
+	 *            the signature
+	 */
+	private TablebaseMaterial(final String signature) {
+		this.signature = signature;
+		final int blackKing = signature.indexOf('K', 1);
+		this.types = new int[signature.length()];
+		this.white = new boolean[signature.length()];
+		for (int i = 0; i < signature.length(); i++) {
+			this.types[i] = PIECE_LETTERS.indexOf(signature.charAt(i));
+			this.white[i] = i < blackKing;
+		}
+	}
+
+	/**
+	 * Of.
+	 *
+	 * @param signature
+	 *            the signature of a table
+	 * @return the material
+	 */
+	static TablebaseMaterial of(final String signature) {
+		TablebaseMaterial material = MATERIALS.get(signature);
+		if (material == null) {
+			if (!signature.equals(canonical(signature))) {
+				throw new IllegalArgumentException("no table for " + signature);
+			}
+			material = new TablebaseMaterial(signature);
+			MATERIALS.putIfAbsent(signature, material);
+		}
+		return material;
+	}
+
+	/**
+	 * Canonical.
+	 *
+	 * @param signature
+	 *            any signature
+	 * @return the signature of the table that holds its positions
+	 */
+	static String canonical(final String signature) {
+		final int blackKing = signature.indexOf('K', 1);
+		if (signature.isEmpty() || signature.charAt(0) != 'K' || blackKing < 0
+				|| signature.indexOf('K', blackKing + 1) >= 0) {
+			throw new IllegalArgumentException("bad signature " + signature);
+		}
+		for (int i = 0; i < signature.length(); i++) {
+			if (PIECE_LETTERS.indexOf(signature.charAt(i)) < 0) {
+				throw new IllegalArgumentException("bad signature " + signature);
+			}
+		}
+		final String whitePieces = sortPieces(signature.substring(0, blackKing));
+		final String blackPieces = sortPieces(signature.substring(blackKing));
+		return isStronger(blackPieces, whitePieces) ? blackPieces + whitePieces : whitePieces + blackPieces;
+	}
+
+	/**
+	 * Place. Finds the table and index of a position given piece by piece in
+	 * any order.
+	 *
+	 * @param types
+	 *            the piece types
+	 * @param white
+	 *            the piece colours
+	 * @param squares
+	 *            the piece squares
+	 * @param count
+	 *            the number of pieces
+	 * @param whiteToMove
+	 *            whether white is to move
+	 * @return the placement
+	 */
+	static Placement place(final int[] types, final boolean[] white, final int[] squares, final int count,
+			final boolean whiteToMove) {
+		final StringBuilder whitePieces = new StringBuilder(count);
+		final StringBuilder blackPieces = new StringBuilder(count);
+		for (int type = KING; type <= PAWN; type++) {
+			for (int i = 0; i < count; i++) {
+				if (types[i] == type) {
+					(white[i] ? whitePieces : blackPieces).append(PIECE_LETTERS.charAt(type));
+				}
+			}
+		}
+		final boolean flip = isStronger(blackPieces.toString(), whitePieces.toString());
+		final TablebaseMaterial material = flip ? of(blackPieces.append(whitePieces).toString())
+				: of(whitePieces.append(blackPieces).toString());
+		int index = whiteToMove != flip ? 0 : 1;
+		int shift = 1;
+		for (int side = 0; side < 2; side++) {
+			// the colour that is white in the table goes first
+			final boolean colour = (side == 0) != flip;
+			for (int type = KING; type <= PAWN; type++) {
+				for (int i = 0; i < count; i++) {
+					if (types[i] == type && white[i] == colour) {
+						index |= (flip ? squares[i] ^ 56 : squares[i]) << shift;
+						shift += 6;
+					}
+				}
+			}
+		}
+		return new Placement(material, index);
+	}
+
+	/**
+	 * Square.
+	 *
+	 * @param index
+	 *            the position index
+	 * @param piece
+	 *            the piece number
+	 * @return the square of the piece
+	 */
+	static int square(final int index, final int piece) {
+		return (index >>> (1 + 6 * piece)) & 63;
+	}
+
+	/**
+	 * Move.
+	 *
+	 * @param index
+	 *            the position index
+	 * @param piece
+	 *            the piece number
+	 * @param square
+	 *            the new square of the piece
+	 * @return the index with the piece moved and the other side to move
+	 */
+	static int move(final int index, final int piece, final int square) {
+		final int shift = 1 + 6 * piece;
+		return ((index & ~(63 << shift)) | (square << shift)) ^ 1;
+	}
+
+	/**
+	 * Checks if is white to move.
+	 *
+	 * @param index
+	 *            the position index
+	 * @return true, if white is to move
+	 */
+	static boolean isWhiteToMove(final int index) {
+		return (index & 1) == 0;
+	}
+
+	/**
+	 * Checks if one side is stronger. More material is stronger, then more
+	 * pieces, then stronger pieces.
+	 *
+	 * @param pieces
+	 *            the sorted pieces of one side
+	 * @param otherPieces
+	 *            the sorted pieces of the other side
+	 * @return true, if the first side is strictly stronger
+	 */
+	private static boolean isStronger(final String pieces, final String otherPieces) {
+		final int value = value(pieces);
+		final int otherValue = value(otherPieces);
+		if (value != otherValue) {
+			return value > otherValue;
+		}
+		if (pieces.length() != otherPieces.length()) {
+			return pieces.length() > otherPieces.length();
+		}
+		for (int i = 0; i < pieces.length(); i++) {
+			final int type = PIECE_LETTERS.indexOf(pieces.charAt(i));
+			final int otherType = PIECE_LETTERS.indexOf(otherPieces.charAt(i));
+			if (type != otherType) {
+				return type < otherType;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Value.
+	 *
+	 * @param pieces
+	 *            the pieces
+	 * @return the material in pawns
+	 */
+	private static int value(final String pieces) {
+		int value = 0;
+		for (int i = 0; i < pieces.length(); i++) {
+			value += PIECE_VALUES[PIECE_LETTERS.indexOf(pieces.charAt(i))];
+		}
+		return value;
+	}
+
+	/**
+	 * Sort pieces.
+	 *
+	 * @param pieces
+	 *            the pieces
+	 * @return the pieces in piece letter order
+	 */
+	private static String sortPieces(final String pieces) {
+		final StringBuilder sorted = new StringBuilder(pieces.length());
+		for (int type = KING; type <= PAWN; type++) {
+			for (int i = 0; i < pieces.length(); i++) {
+				if (pieces.charAt(i) == PIECE_LETTERS.charAt(type)) {
+					sorted.append(pieces.charAt(i));
+				}
+			}
+		}
+		return sorted.toString();
+	}
+
+	/**
+	 * Gets the signature.
+	 *
+	 * @return the signature
+	 */
+	String getSignature() {
+		return this.signature;
+	}
+
+	/**
+	 * Gets the piece count.
+	 *
+	 * @return the piece count
+	 */
+	int getPieceCount() {
+		return this.types.length;
+	}
+
+	/**
+	 * Gets the type.
+	 *
+	 * @param piece
+	 *            the piece number
+	 * @return the type
+	 */
+	int getType(final int piece) {
+		return this.types[piece];
+	}
+
+	/**
+	 * Checks if is white.
+	 *
+	 * @param piece
+	 *            the piece number
+	 * @return true, if the piece is white
+	 */
+	boolean isWhite(final int piece) {
+		return this.white[piece];
+	}
+
+	/**
+	 * Gets the pawn count.
+	 *
+	 * @return the pawn count
+	 */
+	int getPawnCount() {
+		int pawns = 0;
+		for (final int type : this.types) {
+			if (type == PAWN) {
+				pawns++;
+			}
+		}
+		return pawns;
+	}
+
+	/**
+	 * Size.
+	 *
+	 * @return the number of positions in the table
+	 */
+	int size() {
+		return 2 << (6 * this.types.length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return this.signature;
+	}
+
+	/**
+	 * The position of a piece set in its table.
+	 */
+	static final class Placement {
+
+		/** The material. */
+		final TablebaseMaterial material;
+
+		/** The index. */
+		final int index;
+
+		/**
+		 * Instantiates a new placement.
+		 *
+		 * @param material
+		 *            the material
+		 * @param index
+		 *            the index
+		 */
+		private Placement(final TablebaseMaterial material, final int index) {
+			this.material = material;
+			this.index = index;
+		}
+	}
+}
@@ -0,0 +1,238 @@
+package com.chess.engine.classic.player.ai;
+
+import java.util.Arrays;
+
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.board.BoardUtils;
+import com.chess.engine.classic.board.Move.MoveFactory;
+
+/**
+ * Transposition table. One entry per slot, each a key and a packed long of the
+ * score, depth, bound, best move and the generation of the search that stored
+ * it. The key is stored exclusive or'ed with the data, so an entry torn by two
+ * threads writing at once just fails to match instead of handing out a wrong
+ * score. Deeper entries and entries of the current search are kept over
+ * shallower entries of older searches.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public final class TranspositionTable {
+
+	/** The Constant MISS. What {@link #probe(long)} returns for no entry. */
+	public static final long MISS = 0;
+
+	/** The Constant DEPTH_SHIFT. */
+	private static final int DEPTH_SHIFT = 32;
+
+	/** The Constant BOUND_SHIFT. */
+	private static final int BOUND_SHIFT = 40;
+
+	/** The Constant MOVE_SHIFT. */
+	private static final int MOVE_SHIFT = 42;
+
+	/** The Constant GENERATION_SHIFT. */
+	private static final int GENERATION_SHIFT = 56;
+
+	/** The Constant NO_MOVE. From and to squares are never the same. */
+	private static final int NO_MOVE = 0;
+
+	/** The keys, exclusive or'ed with the data. */
+	private final long[] keys;
+
+	/** The data. */
+	private final long[] data;
+
+	/** The mask. */
+	private final int mask;
+
+	/** The generation. */
+	private volatile int generation;
+
+	/**
+	 * The Enum Bound. How the stored score relates to the real one.
+	 */
+	public enum Bound {
+
+		/** The exact score. */
+		EXACT,
+
+		/** The lower bound. The search failed high. */
+		LOWER,
+
+		/** The upper bound. The search failed low. */
+		UPPER
+	}
+
+	/**
+	 * Instantiates a new transposition table.
+	 *
+	 * @param sizeBits
+	 *            the base two logarithm of the number of entries
+	 */
+	public TranspositionTable(final int sizeBits) {
+		if (sizeBits < 1 || sizeBits > 30) {
+			throw new IllegalArgumentException("size bits must be between 1 and 30, not " + sizeBits);
+		}
+		this.keys = new long[1 << sizeBits];
+		this.data = new long[1 << sizeBits];
+		this.mask = (1 << sizeBits) - 1;
+		this.generation = 0;
+	}
+
+	/**
+	 * Probe.
+	 *
+	 * @param key
+	 *            the zobrist key
+	 * @return the entry, {@link #MISS} if the position is not stored
+	 */
+	public long probe(final long key) {
+		final int slot = (int) key & this.mask;
+		final long entry = this.data[slot];
+		return entry != MISS && (this.keys[slot] ^ entry) == key ? entry : MISS;
+	}
+
+	/**
+	 * Store.
+	 *
+	 * @param key
+	 *            the zobrist key
+	 * @param depth
+	 *            the depth searched
+	 * @param score
+	 *            the score
+	 * @param bound
+	 *            the bound
+	 * @param bestMove
+	 *            the best move, may be the null move
+	 */
+	public void store(final long key, final int depth, final int score, final Bound bound, final Move bestMove) {
+		final int slot = (int) key & this.mask;
+		final long old = this.data[slot];
+		final boolean samePosition = (this.keys[slot] ^ old) == key;
+		if (old != MISS && !samePosition && generation(old) == this.generation && depth(old) > depth) {
+			return;
+		}
+		int move = encodeMove(bestMove);
+		if (move == NO_MOVE && samePosition) {
+			// keep the move of an earlier search of the position
+			move = (int) (old >>> MOVE_SHIFT) & 0xFFF;
+		}
+		final long entry = (score & 0xFFFFFFFFL) | ((long) Math.min(depth, 0xFF) << DEPTH_SHIFT)
+				| ((long) (bound.ordinal() + 1) << BOUND_SHIFT) | ((long) move << MOVE_SHIFT)
+				| ((long) this.generation << GENERATION_SHIFT);
+		this.data[slot] = entry;
+		this.keys[slot] = key ^ entry;
+	}
+
+	/**
+	 * New search. Ages the entries, which may now be replaced by shallower
+	 * ones.
+	 */
+	public void newSearch() {
+		this.generation = (this.generation + 1) & 0xFF;
+	}
+
+	/**
+	 * Clear.
+	 */
+	public void clear() {
+		Arrays.fill(this.keys, 0);
+		Arrays.fill(this.data, MISS);
+		this.generation = 0;
+	}
+
+	/**
+	 * Usage.
+	 *
+	 * @return the entries stored by the current search, per thousand of a
+	 *         sample of the table
+	 */
+	public int usage() {
+		final int sample = Math.min(1000, this.data.length);
+		int used = 0;
+		for (int i = 0; i < sample; i++) {
+			if (this.data[i] != MISS && generation(this.data[i]) == this.generation) {
+				used++;
+			}
+		}
+		return used * 1000 / sample;
+	}
+
+	/**
+	 * Score.
+	 *
+	 * @param entry
+	 *            the entry
+	 * @return the score
+	 */
+	public static int score(final long entry) {
+		return (int) entry;
+	}
+
+	/**
+	 * Depth.
+	 *
+	 * @param entry
+	 *            the entry
+	 * @return the depth
+	 */
+	public static int depth(final long entry) {
+		return (int) (entry >>> DEPTH_SHIFT) & 0xFF;
+	}
+
+	/**
+	 * Bound.
+	 *
+	 * @param entry
+	 *            the entry
+	 * @return the bound
+	 */
+	public static Bound bound(final long entry) {
+		return Bound.values()[((int) (entry >>> BOUND_SHIFT) & 0x3) - 1];
+	}
+
+	/**
+	 * Best move.
+	 *
+	 * @param entry
+	 *            the entry
+	 * @param board
+	 *            the board of the entry
+	 * @return the best move, the null move if the entry has none
+	 */
+	public static Move bestMove(final long entry, final Board board) {
+		final int move = (int) (entry >>> MOVE_SHIFT) & 0xFFF;
+		if (entry == MISS || move == NO_MOVE) {
+			return MoveFactory.getNullMove();
+		}
+		return MoveFactory.createMove(board, move / BoardUtils.NUM_TILES, move % BoardUtils.NUM_TILES);
+	}
+
+	/**
+	 * Encode move.
+	 *
+	 * @param move
+	 *            the move
+	 * @return the from and to squares in twelve bits
+	 */
+	static int encodeMove(final Move move) {
+		if (move == MoveFactory.getNullMove()) {
+			return NO_MOVE;
+		}
+		return move.getCurrentCoordinate() * BoardUtils.NUM_TILES + move.getDestinationCoordinate();
+	}
+
+	/**
+	 * Generation.
+	 *
+	 * @param entry
+	 *            the entry
+	 * @return the generation
+	 */
+	private static int generation(final long entry) {
+		return (int) (entry >>> GENERATION_SHIFT) & 0xFF;
+	}
+}
@@ -11,6 +11,8 @@ import static com.chess.pgn.PGNUtilities.writeGameToPGNFile;
 import java.io.File;
 import java.util.List;
 import java.awt.Color;
+import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
 import java.awt.Toolkit;
 import javax.swing.JMenu;
 import javax.swing.JFrame;
@@ -40,6 +42,8 @@ import javax.swing.JColorChooser;
 import java.awt.event.MouseEvent;
 import java.awt.event.ActionEvent;
 import javax.swing.WindowConstants;
+import java.awt.event.WindowEvent;
+import java.awt.event.WindowAdapter;
 import java.awt.image.BufferedImage;
 import java.awt.event.MouseListener;
 import java.awt.event.ActionListener;
@@ -51,7 +55,11 @@ import javax.swing.filechooser.FileFilter;
 import network.ClientGUI;
 import network.ServerGUI;
 import network.ChatMessage;
+import com.chess.pgn.OpeningBook;
 import com.chess.pgn.FenUtilities;
+import com.chess.pgn.FileGameStore;
+import com.chess.pgn.BookProvider;
+import com.chess.pgn.PGNPersistence;
 import com.chess.pgn.MySqlGamePersistence;
 import com.chess.engine.classic.board.Tile;
 import com.chess.engine.classic.board.Move;
@@ -61,7 +69,8 @@ import com.chess.engine.classic.player.Player;
 import com.chess.engine.classic.board.BoardUtils;
 import com.chess.engine.classic.board.MoveTransition;
 import com.chess.engine.classic.board.Move.MoveFactory;
-import com.chess.engine.classic.player.ai.StockAlphaBeta;
+import com.chess.engine.classic.player.ai.Ponderer;
+import com.chess.engine.classic.player.ai.EngineService;
 import com.chess.engine.classic.player.ai.StandardBoardEvaluator;
 
 import com.google.common.collect.Lists;
@@ -128,6 +137,12 @@ public final class Table extends Observable {
 	/** The use book. */
 	private boolean useBook;
 
+	/** The opening book file, null to ask the game store for book moves. */
+	private final OpeningBook openingBook;
+
+	/** The embedded game store, null to use the database. */
+	private final FileGameStore gameStore;
+
 	/** The highlight mage. */
 	private BufferedImage highlightImage;
 
@@ -137,6 +152,12 @@ public final class Table extends Observable {
 	/** The server GUI. */
 	private ServerGUI serverGUI;
 
+	/** The think tank searching for the computer, null if none is. */
+	private AIThinkTank thinkTank;
+
+	/** The ponderer, analysing while the human is to move. */
+	private final Ponderer ponderer;
+
 	/** The light tile color. */
 	private Color lightTileColor = Color.decode("#FFFACD");
 
@@ -152,6 +173,12 @@ public final class Table extends Observable {
 	/** The Constant TILE_PANEL_DIMENSION. */
 	private static final Dimension TILE_PANEL_DIMENSION = new Dimension(5, 5);
 
+	/** The Constant BOOK_FILE. */
+	private static final String BOOK_FILE = "book.bin";
+
+	/** The Constant GAME_STORE_DIRECTORY. */
+	private static final String GAME_STORE_DIRECTORY = "games";
+
 	/** The Constant INSTANCE. */
 	private static final Table INSTANCE = new Table();
 
@@ -168,6 +195,8 @@ public final class Table extends Observable {
 		this.boardDirection = BoardDirection.NORMAL;
 		this.highlightLegalMoves = true;
 		this.useBook = true;
+		this.openingBook = openBook(new File(BOOK_FILE));
+		this.gameStore = openGameStore(new File(GAME_STORE_DIRECTORY));
 		Table.pieceIconPath = "art/cburnett/";
 		try {
 			this.gameFrame.setIconImage(ImageIO.read(new File("art/main_elements/logo.png")));
@@ -177,6 +206,8 @@ public final class Table extends Observable {
 		}
 		this.gameHistoryPanel = new GameHistoryPanel();
 		this.debugPanel = new DebugPanel();
+		this.ponderer = new Ponderer();
+		this.ponderer.addObserver(this.debugPanel);
 		this.takenPiecesPanel = new TakenPiecesPanel();
 		this.boardPanel = new BoardPanel();
 		this.moveLog = new MoveLog();
@@ -187,6 +218,12 @@ public final class Table extends Observable {
 		this.gameFrame.add(this.gameHistoryPanel, BorderLayout.EAST);
 		this.gameFrame.add(debugPanel, BorderLayout.SOUTH);
 		setDefaultLookAndFeelDecorated(true);
+		this.gameFrame.addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosing(final WindowEvent e) {
+				stopThinking();
+			}
+		});
 		this.gameFrame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
 		this.gameFrame.setSize(OUTER_FRAME_DIMENSION);
 		center(this.gameFrame);
@@ -301,6 +338,64 @@ public final class Table extends Observable {
 		return this.useBook;
 	}
 
+	/**
+	 * Gets the book. The book file if there is one, the game store otherwise.
+	 *
+	 * @return the book
+	 */
+	private BookProvider getBook() {
+		return this.openingBook != null ? this.openingBook : getGameStore();
+	}
+
+	/**
+	 * Gets the game store. The embedded store if its directory exists, the
+	 * database otherwise.
+	 *
+	 * @return the game store
+	 */
+	private PGNPersistence getGameStore() {
+		return this.gameStore != null ? this.gameStore : MySqlGamePersistence.get();
+	}
+
+	/**
+	 * Open game store.
+	 *
+	 * @param directory
+	 *            the directory of the store
+	 * @return the game store, null if the directory is missing or the store
+	 *         unreadable
+	 */
+	private static FileGameStore openGameStore(final File directory) {
+		if (!directory.isDirectory()) {
+			return null;
+		}
+		try {
+			return FileGameStore.open(directory);
+		} catch (final IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Open book.
+	 *
+	 * @param file
+	 *            the book file
+	 * @return the opening book, null if the file is missing or unreadable
+	 */
+	private static OpeningBook openBook(final File file) {
+		if (!file.isFile()) {
+			return null;
+		}
+		try {
+			return OpeningBook.open(file);
+		} catch (final IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
 	/**
 	 * Gets the current FEN.
 	 *
@@ -418,6 +513,7 @@ public final class Table extends Observable {
 			public void actionPerformed(final ActionEvent e) {
 				String fenString = JOptionPane.showInputDialog("Input FEN", "Input Here");
 				undoAllMoves();
+				EngineService.get().newGame();
 				chessBoard = FenUtilities.createGameFromFEN(fenString);
 				Table.get().getBoardPanel().drawBoard(chessBoard);
 			}
@@ -452,6 +548,7 @@ public final class Table extends Observable {
 		exitMenuItem.addActionListener(new ActionListener() {
 			@Override
 			public void actionPerformed(final ActionEvent e) {
+				stopThinking();
 				Table.get().getGameFrame().dispose();
 				System.exit(0);
 			}
@@ -475,6 +572,7 @@ public final class Table extends Observable {
 			@Override
 			public void actionPerformed(final ActionEvent e) {
 				undoAllMoves();
+				EngineService.get().newGame();
 				Table.get().getDebugPanel().getTimer().reset();
 				Table.get().getDebugPanel().getTimer().stop();
 				if (clientGUI != null) {
@@ -538,10 +636,23 @@ public final class Table extends Observable {
 		});
 		singlePlayerMenu.add(evaluateBoardMenuItem);
 
+		final JMenuItem hintMenuItem = new JMenuItem("Show Hint", KeyEvent.VK_I);
+		hintMenuItem.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(final ActionEvent e) {
+				final Move hint = ponderer.getHint();
+				JOptionPane.showMessageDialog(Table.get().getBoardPanel(),
+						hint != MoveFactory.getNullMove() ? "Hint: " + hint : "No hint yet, the A.I. is thinking.",
+						"Hint", JOptionPane.INFORMATION_MESSAGE);
+			}
+		});
+		singlePlayerMenu.add(hintMenuItem);
+
 		final JMenuItem setupGameMenuItem = new JMenuItem("Setup Game", KeyEvent.VK_S);
 		setupGameMenuItem.addActionListener(new ActionListener() {
 			@Override
 			public void actionPerformed(final ActionEvent e) {
+				stopThinking();
 				Table.get().getGameSetup().promptUser();
 				Table.get().setupUpdate(Table.get().getGameSetup());
 				Table.get().getDebugPanel().getTimer().reset();
@@ -719,7 +830,8 @@ public final class Table extends Observable {
 
 		preferencesMenu.add(cbLegalMoveHighlighter);
 
-		final JCheckBoxMenuItem cbUseBookMoves = new JCheckBoxMenuItem("Use Book Moves (Requires a database set-up)",
+		final JCheckBoxMenuItem cbUseBookMoves = new JCheckBoxMenuItem(
+				"Use Book Moves (Requires " + BOOK_FILE + ", a " + GAME_STORE_DIRECTORY + " directory or a database)",
 				true);
 
 		cbUseBookMoves.addActionListener(new ActionListener() {
@@ -814,10 +926,23 @@ public final class Table extends Observable {
 		this.computerMove = move;
 	}
 
+	/**
+	 * Stop thinking. Abandons the search of the computer player, if there is
+	 * one, without playing its move, and the analysis of the ponderer.
+	 */
+	private void stopThinking() {
+		if (this.thinkTank != null) {
+			this.thinkTank.stopSearch();
+			this.thinkTank = null;
+		}
+		this.ponderer.stop();
+	}
+
 	/**
 	 * Undo all moves.
 	 */
 	private void undoAllMoves() {
+		stopThinking();
 		for (int i = Table.get().getMoveLog().size() - 1; i >= 0; i--) {
 			final Move lastMove = Table.get().getMoveLog().removeMove(Table.get().getMoveLog().size() - 1);
 			this.chessBoard = this.chessBoard.currentPlayer().unMakeMove(lastMove).getToBoard();
@@ -839,7 +964,7 @@ public final class Table extends Observable {
 	 */
 	private static void loadPGNFile(final File pgnFile) {
 		try {
-			persistPGNFile(pgnFile);
+			persistPGNFile(pgnFile, Table.get().getGameStore());
 		} catch (final IOException e) {
 			e.printStackTrace();
 		}
@@ -863,6 +988,7 @@ public final class Table extends Observable {
 	 * Undo last move.
 	 */
 	private void undoLastMove() {
+		stopThinking();
 		final Move lastMove = Table.get().getMoveLog().removeMove(Table.get().getMoveLog().size() - 1);
 		this.chessBoard = this.chessBoard.currentPlayer().unMakeMove(lastMove).getToBoard();
 		this.computerMove = null;
@@ -910,10 +1036,11 @@ public final class Table extends Observable {
 		public void update(final Observable o, final Object arg) {
 			if (Table.get().getGameSetup().isAIPlayer(Table.get().getGameBoard().currentPlayer())
 					&& !Table.get().getGameBoard().currentPlayer().isInCheckMate()
-					&& !Table.get().getGameBoard().currentPlayer().isInStaleMate()) {
+					&& !Table.get().getGameBoard().currentPlayer().isInStaleMate()
+					&& !BoardUtils.isDrawByRule(Table.get().getGameBoard())) {
 				System.out.println(Table.get().getGameBoard().currentPlayer() + " is set to AI, thinking....");
-				final AIThinkTank thinkTank = new AIThinkTank();
-				thinkTank.execute();
+				Table.get().thinkTank = new AIThinkTank();
+				Table.get().thinkTank.execute();
 			}
 			if (Table.get().getGameBoard().currentPlayer().isInCheckMate()) {
 				Table.get().getDebugPanel().getTimer().stop();
@@ -929,6 +1056,14 @@ public final class Table extends Observable {
 						"Game Over", JOptionPane.INFORMATION_MESSAGE);
 				Table.get().getDebugPanel().getTimer().reset();
 			}
+			if (BoardUtils.isDrawByRule(Table.get().getGameBoard())) {
+				Table.get().getDebugPanel().getTimer().stop();
+				final String rule = BoardUtils.isFiftyMoveDraw(Table.get().getGameBoard()) ? "the fifty move rule"
+						: "threefold repetition";
+				JOptionPane.showMessageDialog(Table.get().getBoardPanel(), "Game Over: Draw by " + rule + "!",
+						"Game Over", JOptionPane.INFORMATION_MESSAGE);
+				Table.get().getDebugPanel().getTimer().reset();
+			}
 		}
 	}
 
@@ -950,12 +1085,27 @@ public final class Table extends Observable {
 	 */
 	private static class AIThinkTank extends SwingWorker<Move, String> {
 
+		/** The engine search, once it has been requested. */
+		private volatile Future<Move> search;
+
 		/**
 		 * Instantiates a new AI think tank.
 		 */
 		private AIThinkTank() {
 		}
 
+		/**
+		 * Stop search. Cancels the worker and its engine search, so the engine
+		 * thread is freed within a few hundred nodes.
+		 */
+		void stopSearch() {
+			cancel(false);
+			final Future<Move> runningSearch = this.search;
+			if (runningSearch != null) {
+				runningSearch.cancel(false);
+			}
+		}
+
 		/*
 		 * (non-Javadoc)
 		 * 
@@ -964,23 +1114,55 @@ public final class Table extends Observable {
 		@Override
 		protected Move doInBackground() throws Exception {
 			final Move bestMove;
-			final Move bookMove = Table.get().getUseBook() ? MySqlGamePersistence.get().getNextBestMove(
+			final Move bookMove = Table.get().getUseBook() ? Table.get().getBook().getNextBestMove(
 					Table.get().getGameBoard(), Table.get().getGameBoard().currentPlayer(),
 					Table.get().getMoveLog().getMoves().toString().replaceAll("\\[", "").replaceAll("\\]", ""))
 					: MoveFactory.getNullMove();
 			if (Table.get().getUseBook() && bookMove != MoveFactory.getNullMove()) {
+				Table.get().ponderer.stop();
 				bestMove = bookMove;
 			} else {
+				final Move ponderedMove = ponderedReply();
+				if (ponderedMove != MoveFactory.getNullMove()) {
+					return ponderedMove;
+				}
 				// final int moveNumber = Table.get().getMoveLog().size();
 				// final int quiescenceFactor = 2000 + (100 * moveNumber);
-				final StockAlphaBeta strategy = new StockAlphaBeta(Table.get().getGameSetup().getSearchDepth());
-				strategy.addObserver(Table.get().getDebugPanel());
+				final Future<Move> search = EngineService.get().search(Table.get().getGameBoard(),
+						Table.get().getGameSetup().getSearchDepth(), Table.get().getDebugPanel());
 				// Table.get().getGameBoard().currentPlayer().setMoveStrategy(strategy);
-				bestMove = strategy.execute(Table.get().getGameBoard());
+				this.search = search;
+				// stopSearch may have run before the search was published
+				if (isCancelled()) {
+					search.cancel(false);
+					return MoveFactory.getNullMove();
+				}
+				bestMove = search.get();
 			}
 			return bestMove;
 		}
 
+		/**
+		 * Pondered reply. Waits for the reply the ponderer searched if the
+		 * human played the hinted move.
+		 *
+		 * @return the reply on the game board, the null move if there is none
+		 * @throws InterruptedException
+		 *             the interrupted exception
+		 * @throws ExecutionException
+		 *             the execution exception
+		 */
+		private static Move ponderedReply() throws InterruptedException, ExecutionException {
+			final Board board = Table.get().getGameBoard();
+			final Future<Move> reply = Table.get().ponderer.convert(board);
+			if (reply == null) {
+				return MoveFactory.getNullMove();
+			}
+			final Move move = reply.get();
+			// the reply was found on the board the hint was played on
+			return MoveFactory.createMove(board, move.getCurrentCoordinate(), move.getDestinationCoordinate());
+		}
+
 		/*
 		 * (non-Javadoc)
 		 * 
@@ -988,6 +1170,12 @@ public final class Table extends Observable {
 		 */
 		@Override
 		public void done() {
+			if (isCancelled()) {
+				return;
+			}
+			if (Table.get().thinkTank == this) {
+				Table.get().thinkTank = null;
+			}
 			try {
 				final Move bestMove = get();
 				Table.get().updateComputerMove(bestMove);
@@ -997,6 +1185,11 @@ public final class Table extends Observable {
 				Table.get().getTakenPiecesPanel().redo(Table.get().getMoveLog());
 				Table.get().getBoardPanel().drawBoard(Table.get().getGameBoard());
 				Table.get().getDebugPanel().redo();
+				final Board board = Table.get().getGameBoard();
+				if (!Table.get().getGameSetup().isAIPlayer(board.currentPlayer()) && !BoardUtils.isEndGame(board)
+						&& !BoardUtils.isDrawByRule(board)) {
+					Table.get().ponderer.start(board, Table.get().getGameSetup().getSearchDepth());
+				}
 				Table.get().moveMadeUpdate(PlayerType.COMPUTER);
 			} catch (final Exception e) {
 				e.printStackTrace();
@@ -1280,7 +1473,8 @@ public final class Table extends Observable {
 
 					if (Table.get().getGameSetup().isAIPlayer(Table.get().getGameBoard().currentPlayer())
 							|| Table.get().getGameSetup().isAnotherHuman(Table.get().getGameBoard().currentPlayer())
-							|| BoardUtils.isEndGame(Table.get().getGameBoard())) {
+							|| BoardUtils.isEndGame(Table.get().getGameBoard())
+							|| BoardUtils.isDrawByRule(Table.get().getGameBoard())) {
 						return;
 					}
 
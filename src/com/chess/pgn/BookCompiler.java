@@ -0,0 +1,567 @@
+package com.chess.pgn;
+
+import java.io.File;
+import java.util.List;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.io.IOException;
+import java.util.Collections;
+import java.io.EOFException;
+import java.util.Comparator;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.util.PriorityQueue;
+import java.io.FileInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.util.concurrent.Future;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Executors;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.board.MoveTransition;
+import com.chess.engine.classic.board.Move.MoveFactory;
+
+/**
+ * Compiles PGN files into an {@link OpeningBook}. The files are streamed a
+ * line at a time and their games handed in batches over a bounded queue to a
+ * worker on every core, which replays each game for its first plies and counts
+ * the wins, draws and losses of every move played in every position in its own
+ * {@link BookStatistics}. A full table is spilled to a sorted run file in the
+ * work directory, and the runs are merged into the book at the end, so the
+ * memory used depends on the table capacity, not on the size of the PGN files.
+ * A move weighs two for each game the side playing it won and one for each
+ * draw, scaled down to sixteen bits within a position if need be, and its learn
+ * value is the number of games it was played in. Moves that only lost are left
+ * out.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public final class BookCompiler {
+
+	/** The Constant BATCH_SIZE. Games handed to a worker at once. */
+	private static final int BATCH_SIZE = 64;
+
+	/** The Constant END_OF_GAMES. Tells a worker there are no more games. */
+	private static final List<String[]> END_OF_GAMES = Collections.unmodifiableList(new ArrayList<String[]>());
+
+	/** The plies of a game that go into the book. */
+	private final int maxPlies;
+
+	/** The number of workers. */
+	private final int threads;
+
+	/** The most entries a worker holds before spilling. */
+	private final int capacity;
+
+	/** The directory of the run files. */
+	private final File workDirectory;
+
+	/** The games read. */
+	private final AtomicLong games = new AtomicLong();
+
+	/** The games left out of the book. */
+	private final AtomicLong invalidGames = new AtomicLong();
+
+	/**
+	 * Instantiates a new book compiler.
+	 *
+	 * @param maxPlies
+	 *            the plies of a game that go into the book
+	 * @param threads
+	 *            the number of workers
+	 * @param capacity
+	 *            the most entries a worker holds before spilling, each takes
+	 *            about {@value BookStatistics#RECORD_SIZE} bytes twice over
+	 * @param workDirectory
+	 *            the directory of the run files
+	 */
+	public BookCompiler(final int maxPlies, final int threads, final int capacity, final File workDirectory) {
+		if (maxPlies < 1 || threads < 1 || capacity < 1) {
+			throw new IllegalArgumentException("plies, threads and capacity must be positive");
+		}
+		this.maxPlies = maxPlies;
+		this.threads = threads;
+		this.capacity = capacity;
+		this.workDirectory = workDirectory;
+	}
+
+	/**
+	 * Compile.
+	 *
+	 * @param pgnFiles
+	 *            the PGN files
+	 * @param bookFile
+	 *            the book file
+	 * @return the number of entries written
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public long compile(final List<File> pgnFiles, final File bookFile) throws IOException {
+		final BlockingQueue<List<String[]>> batches = new ArrayBlockingQueue<>(this.threads * 4);
+		final ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+		final List<Future<List<File>>> workers = new ArrayList<>();
+		final List<File> runs = new ArrayList<>();
+		try {
+			for (int i = 0; i < this.threads; i++) {
+				workers.add(executor.submit(new Worker(batches)));
+			}
+			read(pgnFiles, batches, workers);
+			for (int i = 0; i < this.threads; i++) {
+				put(batches, END_OF_GAMES, workers);
+			}
+			for (final Future<List<File>> worker : workers) {
+				runs.addAll(worker.get());
+			}
+			return merge(runs, bookFile);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while compiling " + bookFile, e);
+		} catch (final ExecutionException e) {
+			throw new IOException("could not compile " + bookFile, e.getCause());
+		} finally {
+			executor.shutdownNow();
+			for (final File run : runs) {
+				run.delete();
+			}
+		}
+	}
+
+	/**
+	 * Gets the games.
+	 *
+	 * @return the games read
+	 */
+	public long getGames() {
+		return this.games.get();
+	}
+
+	/**
+	 * Gets the invalid games.
+	 *
+	 * @return the games without a result or with a move that could not be
+	 *         replayed
+	 */
+	public long getInvalidGames() {
+		return this.invalidGames.get();
+	}
+
+	/**
+	 * Read. Splits the PGN files into games of move text and outcome.
+	 *
+	 * @param pgnFiles
+	 *            the PGN files
+	 * @param batches
+	 *            the batches
+	 * @param workers
+	 *            the workers
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 * @throws ExecutionException
+	 *             if a worker failed
+	 */
+	private void read(final List<File> pgnFiles, final BlockingQueue<List<String[]>> batches,
+			final List<Future<List<File>>> workers) throws IOException, InterruptedException, ExecutionException {
+		List<String[]> batch = new ArrayList<>(BATCH_SIZE);
+		for (final File pgnFile : pgnFiles) {
+			try (final BufferedReader br = new BufferedReader(new FileReader(pgnFile))) {
+				StringBuilder gameTextBuilder = new StringBuilder();
+				String line;
+				while ((line = br.readLine()) != null) {
+					line = line.trim();
+					if (line.isEmpty() || PGNUtilities.isTag(line)) {
+						continue;
+					}
+					if (PGNUtilities.isEndOfGame(line)) {
+						final String outcome = line.substring(line.lastIndexOf(' ') + 1);
+						gameTextBuilder.append(line, 0, line.length() - outcome.length());
+						batch.add(new String[] { gameTextBuilder.toString().trim(), outcome });
+						this.games.incrementAndGet();
+						if (batch.size() == BATCH_SIZE) {
+							put(batches, batch, workers);
+							batch = new ArrayList<>(BATCH_SIZE);
+						}
+						gameTextBuilder = new StringBuilder();
+					} else {
+						gameTextBuilder.append(line).append(' ');
+					}
+				}
+			}
+		}
+		if (!batch.isEmpty()) {
+			put(batches, batch, workers);
+		}
+	}
+
+	/**
+	 * Put. Hands a batch over to the workers, waiting while the queue is full
+	 * unless a worker has failed.
+	 *
+	 * @param batches
+	 *            the batches
+	 * @param batch
+	 *            the batch
+	 * @param workers
+	 *            the workers
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 * @throws ExecutionException
+	 *             if a worker failed
+	 */
+	private static void put(final BlockingQueue<List<String[]>> batches, final List<String[]> batch,
+			final List<Future<List<File>>> workers) throws InterruptedException, ExecutionException {
+		while (!batches.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+			for (final Future<List<File>> worker : workers) {
+				if (worker.isDone()) {
+					worker.get();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Merge. Sums the counts of each position and move over the runs and
+	 * writes the book entries.
+	 *
+	 * @param runs
+	 *            the run files
+	 * @param bookFile
+	 *            the book file
+	 * @return the number of entries written
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static long merge(final List<File> runs, final File bookFile) throws IOException {
+		final PriorityQueue<Run> queue = new PriorityQueue<>(Math.max(runs.size(), 1), new Comparator<Run>() {
+			@Override
+			public int compare(final Run run, final Run other) {
+				return BookStatistics.compare(run.key, run.move, other.key, other.move);
+			}
+		});
+		long written = 0;
+		try (final DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(bookFile), 1 << 16))) {
+			for (final File file : runs) {
+				final Run run = new Run(file);
+				if (run.next()) {
+					queue.add(run);
+				} else {
+					run.close();
+				}
+			}
+			final List<long[]> position = new ArrayList<>();
+			long positionKey = 0;
+			while (!queue.isEmpty()) {
+				final Run run = queue.poll();
+				if (!position.isEmpty() && run.key != positionKey) {
+					written += writePosition(out, positionKey, position);
+					position.clear();
+				}
+				positionKey = run.key;
+				final long[] last = position.isEmpty() ? null : position.get(position.size() - 1);
+				if (last != null && last[0] == run.move) {
+					last[1] += run.wins;
+					last[2] += run.draws;
+					last[3] += run.losses;
+				} else {
+					position.add(new long[] { run.move, run.wins, run.draws, run.losses });
+				}
+				if (run.next()) {
+					queue.add(run);
+				} else {
+					run.close();
+				}
+			}
+			if (!position.isEmpty()) {
+				written += writePosition(out, positionKey, position);
+			}
+		} finally {
+			for (final Run run : queue) {
+				run.close();
+			}
+		}
+		return written;
+	}
+
+	/**
+	 * Write position.
+	 *
+	 * @param out
+	 *            the book
+	 * @param key
+	 *            the position key
+	 * @param moves
+	 *            the move, wins, draws and losses of each move of the position
+	 * @return the number of entries written
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static int writePosition(final DataOutputStream out, final long key, final List<long[]> moves)
+			throws IOException {
+		long heaviest = 0;
+		for (final long[] move : moves) {
+			heaviest = Math.max(heaviest, 2 * move[1] + move[2]);
+		}
+		final List<BookEntry> entries = new ArrayList<>(moves.size());
+		for (final long[] move : moves) {
+			final long weight = 2 * move[1] + move[2];
+			if (weight > 0) {
+				final long scaled = heaviest > 0xFFFF ? Math.max(1, weight * 0xFFFF / heaviest) : weight;
+				final long played = move[1] + move[2] + move[3];
+				entries.add(new BookEntry(key, (short) move[0], (short) scaled, (int) Math.min(played,
+						Integer.MAX_VALUE)));
+			}
+		}
+		Collections.sort(entries);
+		for (final BookEntry entry : entries) {
+			entry.write(out);
+		}
+		return entries.size();
+	}
+
+	/**
+	 * Result.
+	 *
+	 * @param outcome
+	 *            the outcome of a game
+	 * @param whiteMoves
+	 *            whether white makes the move
+	 * @return 1 if the side making the move won, -1 if it lost, 0 for a draw,
+	 *         or null if the game has no result
+	 */
+	private static Integer result(final String outcome, final boolean whiteMoves) {
+		switch (outcome) {
+		case "1-0":
+			return whiteMoves ? 1 : -1;
+		case "0-1":
+			return whiteMoves ? -1 : 1;
+		case "1/2-1/2":
+			return 0;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Replays the games of the batches and counts their moves.
+	 */
+	private final class Worker implements Callable<List<File>> {
+
+		/** The batches. */
+		private final BlockingQueue<List<String[]>> batches;
+
+		/** The statistics. */
+		private final BookStatistics statistics = new BookStatistics(BookCompiler.this.capacity);
+
+		/** The run files written. */
+		private final List<File> runs = new ArrayList<>();
+
+		/**
+		 * Instantiates a new worker.
+		 *
+		 * @param batches
+		 *            the batches
+		 */
+		private Worker(final BlockingQueue<List<String[]>> batches) {
+			this.batches = batches;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		@Override
+		public List<File> call() throws IOException, InterruptedException {
+			try {
+				List<String[]> batch;
+				while ((batch = this.batches.take()) != END_OF_GAMES) {
+					for (final String[] game : batch) {
+						if (!replay(game[0], game[1])) {
+							BookCompiler.this.invalidGames.incrementAndGet();
+						}
+					}
+				}
+				if (this.statistics.size() > 0) {
+					spill();
+				}
+				return this.runs;
+			} catch (final IOException | InterruptedException | RuntimeException e) {
+				for (final File run : this.runs) {
+					run.delete();
+				}
+				throw e;
+			}
+		}
+
+		/**
+		 * Replay.
+		 *
+		 * @param gameText
+		 *            the move text
+		 * @param outcome
+		 *            the outcome
+		 * @return true, if the game has a result and its moves up to the last
+		 *         ply counted are legal
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private boolean replay(final String gameText, final String outcome) throws IOException {
+			final List<String> moves;
+			try {
+				moves = PGNUtilities.processMoveText(gameText);
+			} catch (final ParsePGNException e) {
+				return false;
+			}
+			if (moves.isEmpty() || result(outcome, true) == null) {
+				return false;
+			}
+			final int plies = Math.min(moves.size(), BookCompiler.this.maxPlies);
+			final long[] keys = new long[plies];
+			final short[] codes = new short[plies];
+			final int[] results = new int[plies];
+			Board board = Board.createStandardBoard();
+			for (int ply = 0; ply < plies; ply++) {
+				final Move move;
+				try {
+					move = PGNUtilities.createMove(board, moves.get(ply));
+				} catch (final RuntimeException e) {
+					return false;
+				}
+				if (move == MoveFactory.getNullMove()) {
+					return false;
+				}
+				final MoveTransition transition = board.currentPlayer().makeMove(move);
+				if (!transition.getMoveStatus().isDone()) {
+					return false;
+				}
+				keys[ply] = board.getZobristKey();
+				codes[ply] = OpeningBook.encodeMove(move);
+				results[ply] = result(outcome, board.currentPlayer().getAlliance().isWhite());
+				board = transition.getToBoard();
+			}
+			// only games replayed in full are counted
+			for (int ply = 0; ply < plies; ply++) {
+				this.statistics.add(keys[ply], codes[ply], results[ply]);
+				if (this.statistics.isFull()) {
+					spill();
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Spill.
+		 *
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private void spill() throws IOException {
+			final File run = File.createTempFile("book", ".run", BookCompiler.this.workDirectory);
+			run.deleteOnExit();
+			this.runs.add(run);
+			this.statistics.spill(run);
+		}
+	}
+
+	/**
+	 * A run file being merged, positioned at its current record.
+	 */
+	private static final class Run {
+
+		/** The in. */
+		private final DataInputStream in;
+
+		/** The key. */
+		private long key;
+
+		/** The move. */
+		private short move;
+
+		/** The wins. */
+		private int wins;
+
+		/** The draws. */
+		private int draws;
+
+		/** The losses. */
+		private int losses;
+
+		/**
+		 * Instantiates a new run.
+		 *
+		 * @param file
+		 *            the file
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private Run(final File file) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		}
+
+		/**
+		 * Next.
+		 *
+		 * @return true, if a record was read, false at the end of the run
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private boolean next() throws IOException {
+			try {
+				this.key = this.in.readLong();
+			} catch (final EOFException e) {
+				return false;
+			}
+			this.move = this.in.readShort();
+			this.wins = this.in.readInt();
+			this.draws = this.in.readInt();
+			this.losses = this.in.readInt();
+			return true;
+		}
+
+		/**
+		 * Close.
+		 *
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private void close() throws IOException {
+			this.in.close();
+		}
+	}
+
+	/**
+	 * The main method. Compiles PGN files into an opening book.
+	 *
+	 * @param args
+	 *            the book file, the plies per game and the PGN files
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static void main(final String[] args) throws IOException {
+		final List<File> pgnFiles = new ArrayList<>();
+		for (int i = 2; i < args.length; i++) {
+			pgnFiles.add(new File(args[i]));
+		}
+		final File bookFile = new File(args[0]);
+		final BookCompiler compiler = new BookCompiler(Integer.parseInt(args[1]),
+				Runtime.getRuntime().availableProcessors(), 1 << 20, bookFile.getAbsoluteFile().getParentFile());
+		final long start = System.currentTimeMillis();
+		final long entries = compiler.compile(pgnFiles, bookFile);
+		System.out.println("Compiled " + compiler.getGames() + " games, " + compiler.getInvalidGames()
+				+ " invalid, into " + entries + " entries of " + bookFile + " in "
+				+ (System.currentTimeMillis() - start) + " ms");
+	}
+}
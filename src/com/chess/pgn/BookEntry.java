@@ -0,0 +1,160 @@
+package com.chess.pgn;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * One entry of an {@link OpeningBook}: a move played in a position, with the
+ * weight it is picked by and a learn value, stored in {@value #SIZE} bytes.
+ * Entries sort by position key as an unsigned number, then by weight, highest
+ * first.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public final class BookEntry implements Comparable<BookEntry> {
+
+	/** The Constant SIZE. The key, move, weight and learn value. */
+	public static final int SIZE = 16;
+
+	/** The key. */
+	private final long key;
+
+	/** The move. */
+	private final short move;
+
+	/** The weight. */
+	private final short weight;
+
+	/** The learn. */
+	private final int learn;
+
+	/**
+	 * Instantiates a new book entry.
+	 *
+	 * @param key
+	 *            the Zobrist key of the position
+	 * @param move
+	 *            the move, see {@link OpeningBook#encodeMove}
+	 * @param weight
+	 *            the weight, read as an unsigned number
+	 * @param learn
+	 *            the learn value
+	 */
+	public BookEntry(final long key, final short move, final short weight, final int learn) {
+		this.key = key;
+		this.move = move;
+		this.weight = weight;
+		this.learn = learn;
+	}
+
+	/**
+	 * Gets the key.
+	 *
+	 * @return the key
+	 */
+	public long getKey() {
+		return this.key;
+	}
+
+	/**
+	 * Gets the move.
+	 *
+	 * @return the move
+	 */
+	public short getMove() {
+		return this.move;
+	}
+
+	/**
+	 * Gets the weight.
+	 *
+	 * @return the weight, 0 to 65535
+	 */
+	public int getWeight() {
+		return this.weight & 0xFFFF;
+	}
+
+	/**
+	 * Gets the learn.
+	 *
+	 * @return the learn
+	 */
+	public int getLearn() {
+		return this.learn;
+	}
+
+	/**
+	 * Write.
+	 *
+	 * @param out
+	 *            the out
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void write(final DataOutput out) throws IOException {
+		out.writeLong(this.key);
+		out.writeShort(this.move);
+		out.writeShort(this.weight);
+		out.writeInt(this.learn);
+	}
+
+	/**
+	 * Compare keys.
+	 *
+	 * @param key
+	 *            a key
+	 * @param otherKey
+	 *            another key
+	 * @return the order of the keys as unsigned numbers
+	 */
+	public static int compareKeys(final long key, final long otherKey) {
+		return Long.compare(key ^ Long.MIN_VALUE, otherKey ^ Long.MIN_VALUE);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Comparable#compareTo(java.lang.Object)
+	 */
+	@Override
+	public int compareTo(final BookEntry other) {
+		final int keyOrder = compareKeys(this.key, other.key);
+		return keyOrder != 0 ? keyOrder : Integer.compare(other.getWeight(), getWeight());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(final Object other) {
+		if (!(other instanceof BookEntry)) {
+			return false;
+		}
+		final BookEntry entry = (BookEntry) other;
+		return this.key == entry.key && this.move == entry.move && this.weight == entry.weight
+				&& this.learn == entry.learn;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return (int) (this.key ^ (this.key >>> 32)) * 31 + (this.move * 31 + this.weight) * 31 + this.learn;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.format("%016x %04x w=%d l=%d", this.key, this.move, getWeight(), this.learn);
+	}
+}
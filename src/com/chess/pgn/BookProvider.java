@@ -0,0 +1,27 @@
+package com.chess.pgn;
+
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.player.Player;
+
+/**
+ * Source of book moves.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public interface BookProvider {
+
+	/**
+	 * Gets the next best move.
+	 *
+	 * @param board
+	 *            the board
+	 * @param player
+	 *            the player
+	 * @param gameText
+	 *            the game text
+	 * @return the next best move
+	 */
+	Move getNextBestMove(Board board, Player player, String gameText);
+}
\ No newline at end of file
@@ -0,0 +1,215 @@
+package com.chess.pgn;
+
+import java.io.File;
+import java.util.Arrays;
+import java.io.IOException;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.BufferedOutputStream;
+
+/**
+ * Win, draw and loss counts of moves played in positions, for the
+ * {@link BookCompiler}. An open addressing hash table over primitive arrays,
+ * keyed by position key and move, that holds at most a fixed number of
+ * entries; once full it is spilled to a run file sorted by key and move, and
+ * cleared.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+final class BookStatistics {
+
+	/** The Constant RECORD_SIZE. The key, move and three counts of a run record. */
+	static final int RECORD_SIZE = 8 + 2 + 3 * 4;
+
+	/** The Constant MIX. Spreads the moves over the table. */
+	private static final long MIX = 0x9E3779B97F4A7C15L;
+
+	/** The most entries. */
+	private final int capacity;
+
+	/** The mask. */
+	private final int mask;
+
+	/** The keys. */
+	private final long[] keys;
+
+	/** The moves. */
+	private final short[] moves;
+
+	/** The wins of the side making the move. */
+	private final int[] wins;
+
+	/** The draws. */
+	private final int[] draws;
+
+	/** The losses of the side making the move. */
+	private final int[] losses;
+
+	/** The number of entries. */
+	private int size;
+
+	/**
+	 * Instantiates a new book statistics.
+	 *
+	 * @param capacity
+	 *            the most entries before the table is full
+	 */
+	BookStatistics(final int capacity) {
+		this.capacity = capacity;
+		// at most half the slots are used
+		final int slots = Integer.highestOneBit(Math.max(capacity, 1) * 2 - 1) << 1;
+		this.mask = slots - 1;
+		this.keys = new long[slots];
+		this.moves = new short[slots];
+		this.wins = new int[slots];
+		this.draws = new int[slots];
+		this.losses = new int[slots];
+	}
+
+	/**
+	 * Adds the.
+	 *
+	 * @param key
+	 *            the position key
+	 * @param move
+	 *            the move code
+	 * @param result
+	 *            1 if the side making the move won the game, 0 for a draw, -1
+	 *            for a loss
+	 */
+	void add(final long key, final short move, final int result) {
+		int slot = (int) ((key ^ move * MIX) >>> 40) & this.mask;
+		while (isUsed(slot) && (this.keys[slot] != key || this.moves[slot] != move)) {
+			slot = (slot + 1) & this.mask;
+		}
+		if (!isUsed(slot)) {
+			this.keys[slot] = key;
+			this.moves[slot] = move;
+			this.size++;
+		}
+		if (result > 0) {
+			this.wins[slot]++;
+		} else if (result < 0) {
+			this.losses[slot]++;
+		} else {
+			this.draws[slot]++;
+		}
+	}
+
+	/**
+	 * Checks if is full.
+	 *
+	 * @return true, if the table holds its most entries
+	 */
+	boolean isFull() {
+		return this.size >= this.capacity;
+	}
+
+	/**
+	 * Size.
+	 *
+	 * @return the number of entries
+	 */
+	int size() {
+		return this.size;
+	}
+
+	/**
+	 * Spill. Writes the entries sorted by key and move and clears the table.
+	 *
+	 * @param file
+	 *            the run file
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	void spill(final File file) throws IOException {
+		final int[] order = new int[this.size];
+		int count = 0;
+		for (int slot = 0; slot <= this.mask; slot++) {
+			if (isUsed(slot)) {
+				order[count++] = slot;
+			}
+		}
+		sort(order, new int[count], 0, count);
+		try (final DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+			for (final int slot : order) {
+				out.writeLong(this.keys[slot]);
+				out.writeShort(this.moves[slot]);
+				out.writeInt(this.wins[slot]);
+				out.writeInt(this.draws[slot]);
+				out.writeInt(this.losses[slot]);
+			}
+		}
+		Arrays.fill(this.wins, 0);
+		Arrays.fill(this.draws, 0);
+		Arrays.fill(this.losses, 0);
+		this.size = 0;
+	}
+
+	/**
+	 * Compare.
+	 *
+	 * @param key
+	 *            a key
+	 * @param move
+	 *            a move
+	 * @param otherKey
+	 *            another key
+	 * @param otherMove
+	 *            another move
+	 * @return the order of the entries, by key as an unsigned number, then by
+	 *         move
+	 */
+	static int compare(final long key, final short move, final long otherKey, final short otherMove) {
+		final int keyOrder = BookEntry.compareKeys(key, otherKey);
+		return keyOrder != 0 ? keyOrder : Integer.compare(move, otherMove);
+	}
+
+	/**
+	 * Sort. A merge sort of slots, so the entries never move.
+	 *
+	 * @param order
+	 *            the slots
+	 * @param buffer
+	 *            the buffer
+	 * @param from
+	 *            the first position
+	 * @param to
+	 *            the position past the last
+	 */
+	private void sort(final int[] order, final int[] buffer, final int from, final int to) {
+		if (to - from < 2) {
+			return;
+		}
+		final int middle = (from + to) >>> 1;
+		sort(order, buffer, from, middle);
+		sort(order, buffer, middle, to);
+		int left = from;
+		int right = middle;
+		int next = from;
+		while (left < middle && right < to) {
+			buffer[next++] = compare(this.keys[order[right]], this.moves[order[right]], this.keys[order[left]],
+					this.moves[order[left]]) < 0 ? order[right++] : order[left++];
+		}
+		while (left < middle) {
+			buffer[next++] = order[left++];
+		}
+		while (right < to) {
+			buffer[next++] = order[right++];
+		}
+		System.arraycopy(buffer, from, order, from, to - from);
+	}
+
+	/**
+	 * Checks if is used.
+	 *
+	 * @param slot
+	 *            the slot
+	 * @return true, if an entry is in the slot
+	 */
+	private boolean isUsed(final int slot) {
+		return this.wins[slot] != 0 || this.draws[slot] != 0 || this.losses[slot] != 0;
+	}
+}
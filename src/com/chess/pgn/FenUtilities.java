@@ -46,7 +46,8 @@ public class FenUtilities {
 	 */
 	public static String createFENFromGame(final Board board) {
 		return calculateBoardText(board) + " " + calculateCurrentPlayerText(board) + " " + calculateCastleText(board)
-				+ " " + calculateEnPassantSquare(board) + " " + "0 1";
+				+ " " + calculateEnPassantSquare(board) + " " + board.getHalfmoveClock() + " "
+				+ board.getFullmoveNumber();
 	}
 
 	/**
@@ -128,9 +129,29 @@ public class FenUtilities {
 			}
 		}
 		builder.setMoveMaker(moveMaker(fenPartitions[1]));
+		// the move counters are optional
+		if (fenPartitions.length > 5) {
+			builder.setHalfmoveClock(moveCounter(fenPartitions[4]));
+			builder.setFullmoveNumber(moveCounter(fenPartitions[5]));
+		}
 		return builder.build();
 	}
 
+	/**
+	 * Move counter.
+	 *
+	 * @param moveCounterString
+	 *            the move counter string
+	 * @return the int
+	 */
+	private static int moveCounter(final String moveCounterString) {
+		try {
+			return Integer.parseInt(moveCounterString);
+		} catch (final NumberFormatException e) {
+			throw new RuntimeException("Invalid FEN String " + moveCounterString);
+		}
+	}
+
 	/**
 	 * Move maker.
 	 *
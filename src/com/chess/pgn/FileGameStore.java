@@ -0,0 +1,666 @@
+package com.chess.pgn;
+
+import java.io.File;
+import java.util.List;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.RandomAccessFile;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.BufferedInputStream;
+import java.nio.channels.FileChannel;
+import java.io.BufferedOutputStream;
+import java.util.regex.Pattern;
+import java.util.regex.Matcher;
+import java.nio.file.StandardCopyOption;
+
+import com.google.common.collect.ImmutableList;
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.player.Player;
+import com.chess.engine.classic.board.MoveTransition;
+import com.chess.engine.classic.board.Move.MoveFactory;
+
+/**
+ * An embedded game store in a directory, needing no database. Games are
+ * appended to segment files, games-00000.seg and on, each record a length, a
+ * CRC32 and the game: its outcome, its number of plies and the
+ * {@link OpeningBook#encodeMove(Move) move code} of each ply, two bytes a
+ * move. A segment is closed and the next one started when it is full. The
+ * moves of the first {@value #MAX_PLIES} plies of the games with a result are
+ * counted per position, by Zobrist key, in {@link BookStatistics}, and
+ * {@link #flush()} forces the segment to disk and then merges those counts into
+ * the index, a sorted file of the records written by
+ * {@link BookStatistics#spill(File)} with a header telling how far into the
+ * segments it counts. Each index is written under the next version number,
+ * positions-00000.idx and on, and renamed into place once it is whole; the
+ * store then maps it and deletes the older one, so a mapped file is never
+ * replaced, which Windows does not allow. The index never counts games that
+ * are not on disk. Opening the store maps the newest index and reads only the
+ * records after the place it tells, cutting the segments at the first record
+ * that was not written whole, so a crash loses at most the games appended
+ * since the last flush.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public final class FileGameStore implements PGNPersistence {
+
+	/** The Constant MAX_PLIES. Moves past this ply are not counted. */
+	public static final int MAX_PLIES = 40;
+
+	/** The Constant SEGMENT_SIZE. */
+	public static final int SEGMENT_SIZE = 1 << 26;
+
+	/** The Constant CAPACITY. The positions counted before a flush. */
+	public static final int CAPACITY = 1 << 20;
+
+	/** The Constant INDEX_PATTERN. The versioned index files. */
+	private static final Pattern INDEX_PATTERN = Pattern.compile("positions-(\\d+)\\.idx");
+
+	/** The Constant MAGIC. */
+	private static final int MAGIC = 0x53475454;
+
+	/** The Constant HEADER_SIZE. The magic, the segment, the offset and the game count. */
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 8;
+
+	/** The Constant RECORD_HEADER_SIZE. The length and the CRC32. */
+	private static final int RECORD_HEADER_SIZE = 8;
+
+	/** The Constant WINNERS. Indexed by the outcome byte of a record. */
+	private static final List<String> WINNERS = ImmutableList.of("None", "White", "Black", "Tie");
+
+	/** The directory. */
+	private final File directory;
+
+	/** The segment size. */
+	private final int segmentSize;
+
+	/** The positions counted since the index was written. */
+	private final BookStatistics statistics;
+
+	/** The checksum. */
+	private final CRC32 checksum = new CRC32();
+
+	/** The Constant INDEX_SEGMENT_BITS. A mapped index segment holds 2^26 entries, about 1.4 GB. */
+	private static final int INDEX_SEGMENT_BITS = 26;
+
+	/** The mapped segments of the index entries, empty if no index was written. */
+	private ByteBuffer[] index = new ByteBuffer[0];
+
+	/** The number of entries in the index. */
+	private long entries;
+
+	/** The version of the index, -1 if none was written. */
+	private long version = -1;
+
+	/** The number of the segment written to. */
+	private int segment;
+
+	/** The channel of the segment written to. */
+	private FileChannel channel;
+
+	/** The number of games. */
+	private long games;
+
+	/**
+	 * Instantiates a new file game store.
+	 *
+	 * @param directory
+	 *            the directory
+	 * @param segmentSize
+	 *            the segment size
+	 * @param capacity
+	 *            the positions counted before the index is written
+	 */
+	private FileGameStore(final File directory, final int segmentSize, final int capacity) {
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.statistics = new BookStatistics(capacity);
+	}
+
+	/**
+	 * Open.
+	 *
+	 * @param directory
+	 *            the directory, made if it does not exist
+	 * @return the file game store
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static FileGameStore open(final File directory) throws IOException {
+		return open(directory, SEGMENT_SIZE, CAPACITY);
+	}
+
+	/**
+	 * Open. Reads the games appended after the index was written, and cuts the
+	 * segments at the first damaged record.
+	 *
+	 * @param directory
+	 *            the directory, made if it does not exist
+	 * @param segmentSize
+	 *            the size past which no game is appended to a segment
+	 * @param capacity
+	 *            the positions counted before the index is written
+	 * @return the file game store
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static FileGameStore open(final File directory, final int segmentSize, final int capacity)
+			throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("could not make " + directory);
+		}
+		final FileGameStore store = new FileGameStore(directory, segmentSize, capacity);
+		long offset = 0;
+		final File indexFile = store.findIndex();
+		if (indexFile != null) {
+			final ByteBuffer header = store.mapIndex(indexFile);
+			store.segment = header.getInt(4);
+			offset = header.getLong(8);
+			store.games = header.getLong(16);
+		}
+		store.recover(offset);
+		return store;
+	}
+
+	/**
+	 * Size.
+	 *
+	 * @return the number of games stored
+	 */
+	public synchronized long size() {
+		return this.games;
+	}
+
+	/**
+	 * Close. Flushes the store.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public synchronized void close() throws IOException {
+		flush();
+		this.channel.close();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.chess.pgn.PGNPersistence#persistGame(com.chess.pgn.Game)
+	 */
+	@Override
+	public synchronized void persistGame(final Game game) {
+		final List<String> moves = game.getMoves();
+		final int outcome = WINNERS.indexOf(game.getWinner());
+		final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + 3 + 2 * moves.size());
+		record.position(RECORD_HEADER_SIZE);
+		record.put((byte) Math.max(outcome, 0));
+		record.putShort((short) moves.size());
+		final long[] keys = new long[moves.size()];
+		final short[] codes = new short[moves.size()];
+		Board board = Board.createStandardBoard();
+		for (int ply = 0; ply < moves.size(); ply++) {
+			final Move move = PGNUtilities.createMove(board, moves.get(ply));
+			final MoveTransition transition = move == MoveFactory.getNullMove() ? null
+					: board.currentPlayer().makeMove(move);
+			if (transition == null || !transition.getMoveStatus().isDone()) {
+				// games with an illegal move are not stored
+				return;
+			}
+			keys[ply] = board.getZobristKey();
+			codes[ply] = OpeningBook.encodeMove(move);
+			record.putShort(codes[ply]);
+			board = transition.getToBoard();
+		}
+		try {
+			append(record);
+			count(keys, codes, outcome);
+			if (this.statistics.isFull()) {
+				this.channel.force(false);
+				writeIndex();
+			}
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.chess.pgn.PGNPersistence#flush()
+	 */
+	@Override
+	public synchronized void flush() {
+		try {
+			this.channel.force(false);
+			writeIndex();
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.chess.pgn.BookProvider#getNextBestMove(com.chess.engine.classic.
+	 * board.Board, com.chess.engine.classic.player.Player, java.lang.String)
+	 */
+	@Override
+	public synchronized Move getNextBestMove(final Board board, final Player player, final String gameText) {
+		if (this.statistics.size() > 0) {
+			flush();
+		}
+		final long key = board.getZobristKey();
+		Move bestMove = MoveFactory.getNullMove();
+		int bestWins = 0;
+		for (long entry = firstEntry(key); entry < this.entries && keyAt(entry) == key; entry++) {
+			final int wins = indexSegment(entry).getInt(offsetOf(entry) + 10);
+			if (wins > bestWins) {
+				final Move move = OpeningBook.decodeMove(board, indexSegment(entry).getShort(offsetOf(entry) + 8));
+				if (move != MoveFactory.getNullMove()
+						&& board.currentPlayer().makeMove(move).getMoveStatus().isDone()) {
+					bestMove = move;
+					bestWins = wins;
+				}
+			}
+		}
+		System.out.println("\tselected book move = " + bestMove + " with " + bestWins + " wins");
+		return bestMove;
+	}
+
+	/**
+	 * Append. Starts the next segment if the record does not fit in this one.
+	 *
+	 * @param record
+	 *            the record, after its header
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void append(final ByteBuffer record) throws IOException {
+		this.checksum.reset();
+		this.checksum.update(record.array(), RECORD_HEADER_SIZE, record.capacity() - RECORD_HEADER_SIZE);
+		record.putInt(0, record.capacity() - RECORD_HEADER_SIZE);
+		record.putInt(4, (int) this.checksum.getValue());
+		record.rewind();
+		if (this.channel.position() > 0 && this.channel.position() + record.capacity() > this.segmentSize) {
+			this.channel.force(false);
+			this.channel.close();
+			this.segment++;
+			this.channel = openSegment(this.segment);
+		}
+		while (record.hasRemaining()) {
+			this.channel.write(record);
+		}
+		this.games++;
+	}
+
+	/**
+	 * Count. Adds the first plies of a game with a result to the statistics.
+	 * The statistics have room for twice their capacity, and the index is
+	 * written as soon as they are full, so the games read back when opening
+	 * always fit.
+	 *
+	 * @param keys
+	 *            the Zobrist keys before each ply
+	 * @param codes
+	 *            the move codes
+	 * @param outcome
+	 *            the outcome, an index of the winners
+	 */
+	private void count(final long[] keys, final short[] codes, final int outcome) {
+		if (outcome <= 0) {
+			return;
+		}
+		for (int ply = 0; ply < Math.min(keys.length, MAX_PLIES); ply++) {
+			// 1 if the side making the move won, -1 if it lost
+			final int result = outcome == 3 ? 0 : (outcome == 1) == (ply % 2 == 0) ? 1 : -1;
+			this.statistics.add(keys[ply], codes[ply], result);
+		}
+	}
+
+	/**
+	 * Recover. Counts the games from the offset in the segment written to
+	 * onwards, and opens the last segment for appending.
+	 *
+	 * @param from
+	 *            the offset in the segment written to
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void recover(final long from) throws IOException {
+		long offset = from;
+		while (true) {
+			final FileChannel segmentChannel = openSegment(this.segment);
+			final long end = recoverSegment(segmentChannel, offset);
+			final boolean damaged = end < segmentChannel.size();
+			if (damaged) {
+				segmentChannel.truncate(end);
+				segmentChannel.force(true);
+			}
+			final File next = segmentFile(this.segment + 1);
+			if (!next.isFile()) {
+				segmentChannel.position(end);
+				this.channel = segmentChannel;
+				return;
+			}
+			if (damaged) {
+				// nothing after a damaged record can be trusted
+				for (int number = this.segment + 1; segmentFile(number).isFile(); number++) {
+					Files.delete(segmentFile(number).toPath());
+				}
+				segmentChannel.position(end);
+				this.channel = segmentChannel;
+				return;
+			}
+			segmentChannel.close();
+			this.segment++;
+			offset = 0;
+		}
+	}
+
+	/**
+	 * Recover segment.
+	 *
+	 * @param segmentChannel
+	 *            the channel of the segment
+	 * @param from
+	 *            the offset of the first record to read
+	 * @return the offset past the last whole record
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private long recoverSegment(final FileChannel segmentChannel, final long from) throws IOException {
+		final long size = segmentChannel.size();
+		if (from >= size) {
+			return from;
+		}
+		final ByteBuffer bytes = segmentChannel.map(FileChannel.MapMode.READ_ONLY, from, size - from);
+		while (bytes.remaining() >= RECORD_HEADER_SIZE) {
+			final int start = bytes.position();
+			final int length = bytes.getInt();
+			final int crc = bytes.getInt();
+			if (length < 3 || length > bytes.remaining()) {
+				return from + start;
+			}
+			final byte[] payload = new byte[length];
+			bytes.get(payload);
+			this.checksum.reset();
+			this.checksum.update(payload, 0, length);
+			if ((int) this.checksum.getValue() != crc || !recount(ByteBuffer.wrap(payload))) {
+				return from + start;
+			}
+			this.games++;
+		}
+		return from + bytes.position();
+	}
+
+	/**
+	 * Recount. Replays the moves of a stored game to count its positions.
+	 *
+	 * @param payload
+	 *            the game
+	 * @return true, if the moves are legal
+	 */
+	private boolean recount(final ByteBuffer payload) {
+		final int outcome = payload.get();
+		final int plies = payload.getShort() & 0xFFFF;
+		if (outcome < 0 || outcome >= WINNERS.size() || payload.remaining() != 2 * plies) {
+			return false;
+		}
+		final long[] keys = new long[Math.min(plies, MAX_PLIES)];
+		final short[] codes = new short[keys.length];
+		Board board = Board.createStandardBoard();
+		for (int ply = 0; ply < keys.length; ply++) {
+			codes[ply] = payload.getShort();
+			final Move move = OpeningBook.decodeMove(board, codes[ply]);
+			final MoveTransition transition = move == MoveFactory.getNullMove() ? null
+					: board.currentPlayer().makeMove(move);
+			if (transition == null || !transition.getMoveStatus().isDone()) {
+				return false;
+			}
+			keys[ply] = board.getZobristKey();
+			board = transition.getToBoard();
+		}
+		count(keys, codes, outcome);
+		return true;
+	}
+
+	/**
+	 * Write index. Merges the counted positions into the index through a
+	 * temporary file, and maps the new index.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void writeIndex() throws IOException {
+		final File indexFile = indexFile(this.version + 1);
+		final File run = new File(indexFile.getPath() + ".run");
+		final File next = new File(indexFile.getPath() + ".tmp");
+		this.statistics.spill(run);
+		final long runEntries = run.length() / BookStatistics.RECORD_SIZE;
+		try (final DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(run), 1 << 16));
+				final FileOutputStream file = new FileOutputStream(next);
+				final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(this.segment);
+			out.writeLong(this.channel.position());
+			out.writeLong(this.games);
+			long runEntry = 0;
+			long entry = 0;
+			boolean haveRun = false;
+			long key = 0;
+			short move = 0;
+			int wins = 0;
+			int draws = 0;
+			int losses = 0;
+			while (runEntry < runEntries || entry < this.entries) {
+				if (!haveRun && runEntry < runEntries) {
+					key = in.readLong();
+					move = in.readShort();
+					wins = in.readInt();
+					draws = in.readInt();
+					losses = in.readInt();
+					haveRun = true;
+				}
+				final int order = !haveRun ? 1 : entry == this.entries ? -1
+						: BookStatistics.compare(key, move, keyAt(entry),
+								indexSegment(entry).getShort(offsetOf(entry) + 8));
+				if (order >= 0) {
+					final ByteBuffer record = indexSegment(entry);
+					final int offset = offsetOf(entry);
+					if (order == 0) {
+						wins += record.getInt(offset + 10);
+						draws += record.getInt(offset + 14);
+						losses += record.getInt(offset + 18);
+					} else {
+						out.writeLong(keyAt(entry));
+						out.writeShort(record.getShort(offset + 8));
+						out.writeInt(record.getInt(offset + 10));
+						out.writeInt(record.getInt(offset + 14));
+						out.writeInt(record.getInt(offset + 18));
+					}
+					entry++;
+				}
+				if (order <= 0) {
+					out.writeLong(key);
+					out.writeShort(move);
+					out.writeInt(wins);
+					out.writeInt(draws);
+					out.writeInt(losses);
+					haveRun = false;
+					runEntry++;
+				}
+			}
+			out.flush();
+			file.getChannel().force(true);
+		}
+		Files.move(next.toPath(), indexFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		Files.delete(run.toPath());
+		mapIndex(indexFile);
+		this.version++;
+		deleteOldIndexes();
+	}
+
+	/**
+	 * Find index. Takes the newest index, and deletes the older ones and the
+	 * files of an index that was not finished.
+	 *
+	 * @return the newest index file, null if none was written
+	 */
+	private File findIndex() {
+		for (final File file : this.directory.listFiles()) {
+			final Matcher matcher = INDEX_PATTERN.matcher(file.getName());
+			if (matcher.matches()) {
+				this.version = Math.max(this.version, Long.parseLong(matcher.group(1)));
+			} else if (file.getName().startsWith("positions-")) {
+				file.delete();
+			}
+		}
+		deleteOldIndexes();
+		return this.version < 0 ? null : indexFile(this.version);
+	}
+
+	/**
+	 * Delete old indexes. An index still mapped by this or another store can
+	 * not be deleted on Windows; it is left for a later try.
+	 */
+	private void deleteOldIndexes() {
+		for (final File file : this.directory.listFiles()) {
+			final Matcher matcher = INDEX_PATTERN.matcher(file.getName());
+			if (matcher.matches() && Long.parseLong(matcher.group(1)) < this.version) {
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * Index file.
+	 *
+	 * @param number
+	 *            the version of the index
+	 * @return the index file
+	 */
+	private File indexFile(final long number) {
+		return new File(this.directory, String.format("positions-%05d.idx", number));
+	}
+
+	/**
+	 * Map index. Maps the entries in segments, so the index may outgrow the
+	 * 2 GB a single mapping can hold.
+	 *
+	 * @param indexFile
+	 *            the index file
+	 * @return the header of the index
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private ByteBuffer mapIndex(final File indexFile) throws IOException {
+		try (final RandomAccessFile in = new RandomAccessFile(indexFile, "r")) {
+			final FileChannel indexChannel = in.getChannel();
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			while (header.hasRemaining() && indexChannel.read(header, header.position()) >= 0) {
+				// the header is read whole
+			}
+			if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+				throw new IOException(indexFile + " is not a game store index");
+			}
+			final long size = (in.length() - HEADER_SIZE) / BookStatistics.RECORD_SIZE;
+			final ByteBuffer[] segments = new ByteBuffer[(int) ((size + (1L << INDEX_SEGMENT_BITS) - 1)
+					>>> INDEX_SEGMENT_BITS)];
+			for (int i = 0; i < segments.length; i++) {
+				final long first = (long) i << INDEX_SEGMENT_BITS;
+				final long count = Math.min(size - first, 1L << INDEX_SEGMENT_BITS);
+				segments[i] = indexChannel.map(FileChannel.MapMode.READ_ONLY,
+						HEADER_SIZE + first * BookStatistics.RECORD_SIZE, count * BookStatistics.RECORD_SIZE);
+			}
+			this.index = segments;
+			this.entries = size;
+			return header;
+		}
+	}
+
+	/**
+	 * First entry.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the first entry with the key or a greater one
+	 */
+	private long firstEntry(final long key) {
+		long low = 0;
+		long high = this.entries;
+		while (low < high) {
+			final long middle = (low + high) >>> 1;
+			if (BookEntry.compareKeys(keyAt(middle), key) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Key at.
+	 *
+	 * @param entry
+	 *            the entry
+	 * @return the key of the entry
+	 */
+	private long keyAt(final long entry) {
+		return indexSegment(entry).getLong(offsetOf(entry));
+	}
+
+	/**
+	 * Index segment.
+	 *
+	 * @param entry
+	 *            the entry
+	 * @return the mapped segment holding the entry
+	 */
+	private ByteBuffer indexSegment(final long entry) {
+		return this.index[(int) (entry >>> INDEX_SEGMENT_BITS)];
+	}
+
+	/**
+	 * Offset of.
+	 *
+	 * @param entry
+	 *            the entry
+	 * @return the offset of the entry in its segment
+	 */
+	private static int offsetOf(final long entry) {
+		return (int) (entry & ((1L << INDEX_SEGMENT_BITS) - 1)) * BookStatistics.RECORD_SIZE;
+	}
+
+	/**
+	 * Open segment.
+	 *
+	 * @param number
+	 *            the number of the segment
+	 * @return the channel of the segment, made if it does not exist
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private FileChannel openSegment(final int number) throws IOException {
+		return new RandomAccessFile(segmentFile(number), "rw").getChannel();
+	}
+
+	/**
+	 * Segment file.
+	 *
+	 * @param number
+	 *            the number of the segment
+	 * @return the segment file
+	 */
+	private File segmentFile(final int number) {
+		return new File(this.directory, String.format("games-%05d.seg", number));
+	}
+}
@@ -0,0 +1,220 @@
+package com.chess.pgn;
+
+import java.util.List;
+import java.util.Arrays;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Connection;
+import java.util.Collections;
+import java.sql.SQLException;
+import java.sql.PreparedStatement;
+
+import com.google.common.base.Joiner;
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.player.Player;
+
+/**
+ * Stores games in the Game table of a JDBC database, and their moves in a
+ * {@link MoveTrie} for finding book moves. Games are written the way an import
+ * needs: ids are given out in process, starting after the largest id found
+ * when the persistence is made, one prepared insert is reused for every game,
+ * and the rows are sent with {@link PreparedStatement#executeBatch()} and
+ * committed, together with the nodes and counts of the trie, once per batch
+ * instead of once per game. Games persisted since the last full batch are
+ * written by {@link #flush()}. A batch that fails is rolled back and its games
+ * are lost; the ids are read again from the database after it. Only one
+ * process may write to the tables at a time.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public class JdbcGamePersistence implements PGNPersistence {
+
+	/** The Constant BATCH_SIZE. */
+	public static final int BATCH_SIZE = 500;
+
+	/** The connection. */
+	private final Connection connection;
+
+	/** The move trie. */
+	private final MoveTrie moveTrie;
+
+	/** The insert statement. */
+	private final PreparedStatement insertStatement;
+
+	/** The batch size. */
+	private final int batchSize;
+
+	/** The next game id. */
+	private int nextId;
+
+	/** The number of games added to the batch. */
+	private int pending;
+
+	/**
+	 * Instantiates a new JDBC game persistence. Creates the tables if they do
+	 * not exist, and fills the move trie with the stored games if it is empty,
+	 * sending its counts once per batch of games. The connection is left out
+	 * of auto commit mode.
+	 *
+	 * @param connection
+	 *            the connection
+	 * @param batchSize
+	 *            the number of games written in one batch and transaction
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	public JdbcGamePersistence(final Connection connection, final int batchSize) throws SQLException {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("batch size " + batchSize);
+		}
+		this.connection = connection;
+		this.batchSize = batchSize;
+		try (final Statement statement = connection.createStatement()) {
+			statement.execute(
+					"CREATE TABLE IF NOT EXISTS Game(id int primary key, outcome varchar(10), moves varchar(4000));");
+		}
+		connection.setAutoCommit(false);
+		this.nextId = getMaxGameRow() + 1;
+		this.insertStatement = connection.prepareStatement("INSERT INTO Game(id, outcome, moves) VALUES(?, ?, ?)");
+		this.moveTrie = new MoveTrie(connection);
+		if (this.moveTrie.isEmpty()) {
+			try (final Statement gameStatement = connection.createStatement();
+					final ResultSet resultSet = gameStatement.executeQuery("SELECT outcome, moves FROM Game")) {
+				int games = 0;
+				while (resultSet.next()) {
+					this.moveTrie.addGame(splitMoves(resultSet.getString(2)), resultSet.getString(1));
+					if (++games % batchSize == 0) {
+						this.moveTrie.flush();
+					}
+				}
+			}
+			this.moveTrie.flush();
+		}
+		connection.commit();
+	}
+
+	/**
+	 * Gets the max game row.
+	 *
+	 * @return the largest game id in the table, 0 if it is empty
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	public synchronized int getMaxGameRow() throws SQLException {
+		try (final Statement statement = this.connection.createStatement();
+				final ResultSet resultSet = statement.executeQuery("SELECT MAX(id) FROM Game")) {
+			return resultSet.next() ? resultSet.getInt(1) : 0;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.chess.pgn.PGNPersistence#persistGame(com.chess.pgn.Game)
+	 */
+	@Override
+	public synchronized void persistGame(final Game game) {
+		try {
+			this.insertStatement.setInt(1, this.nextId++);
+			this.insertStatement.setString(2, game.getWinner());
+			this.insertStatement.setString(3, joinMoves(game.getMoves()));
+			this.insertStatement.addBatch();
+			this.pending++;
+			this.moveTrie.addGame(game.getMoves(), game.getWinner());
+		} catch (final SQLException e) {
+			throw new RuntimeException(rollBack(e));
+		}
+		if (this.pending >= this.batchSize) {
+			flush();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.chess.pgn.PGNPersistence#flush()
+	 */
+	@Override
+	public synchronized void flush() {
+		try {
+			if (this.pending > 0) {
+				this.insertStatement.executeBatch();
+				this.pending = 0;
+			}
+			this.moveTrie.flush();
+			this.connection.commit();
+		} catch (final SQLException e) {
+			throw new RuntimeException(rollBack(e));
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.chess.pgn.BookProvider#getNextBestMove(com.chess.engine.classic.
+	 * board.Board, com.chess.engine.classic.player.Player, java.lang.String)
+	 */
+	@Override
+	public synchronized Move getNextBestMove(final Board board, final Player player, final String gameText) {
+		String bestMove = "";
+		int count = 0;
+		try {
+			final MoveTrie.Child child = this.moveTrie.bestNextMove(splitMoves(gameText),
+					player.getAlliance().isWhite());
+			if (child != null) {
+				bestMove = child.move;
+				count = child.wins;
+			}
+		} catch (final SQLException e) {
+			e.printStackTrace();
+		}
+		System.out.println("\tselected book move = " + bestMove + " with " + count + " hits");
+		return PGNUtilities.createMove(board, bestMove);
+	}
+
+	/**
+	 * Roll back. Drops the batch and the transaction after a failure.
+	 *
+	 * @param failure
+	 *            the failure
+	 * @return the failure, with any failure of the roll back added to it
+	 */
+	private SQLException rollBack(final SQLException failure) {
+		this.pending = 0;
+		try {
+			this.insertStatement.clearBatch();
+			this.connection.rollback();
+			this.moveTrie.reload();
+			this.nextId = getMaxGameRow() + 1;
+		} catch (final SQLException e) {
+			failure.addSuppressed(e);
+		}
+		return failure;
+	}
+
+	/**
+	 * Join moves.
+	 *
+	 * @param moves
+	 *            the moves
+	 * @return the moves separated by commas
+	 */
+	static String joinMoves(final List<String> moves) {
+		return Joiner.on(", ").join(moves);
+	}
+
+	/**
+	 * Split moves.
+	 *
+	 * @param moveText
+	 *            the moves separated by commas
+	 * @return the moves
+	 */
+	static List<String> splitMoves(final String moveText) {
+		return moveText == null || moveText.trim().isEmpty() ? Collections.<String>emptyList()
+				: Arrays.asList(moveText.trim().split("\\s*,\\s*"));
+	}
+}
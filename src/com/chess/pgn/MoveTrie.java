@@ -0,0 +1,376 @@
+package com.chess.pgn;
+
+import java.util.Map;
+import java.util.List;
+import java.util.HashMap;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.sql.PreparedStatement;
+
+/**
+ * The games of a database as a trie of move prefixes in the MoveNode table.
+ * A node is the position reached by a sequence of moves, stored with the id of
+ * the node before its last move, that move, and the number of games through it
+ * won by white, won by black and tied. The root, the starting position, has id
+ * 0 and no row. Moves are kept in SAN without check, mate or annotation marks,
+ * so moves read from PGN files and moves written by the move log are the same
+ * text. Finding the moves after a prefix walks one node per move and reads the
+ * children of the last one, each an indexed lookup, and the ids of recently
+ * walked nodes are kept in a small LRU cache, since ids never change. Nothing
+ * is written until {@link #flush()}, which is done before reading counts: new
+ * nodes are kept in process with their counts and sent as one batch of
+ * inserts, and the counts added to existing nodes are summed per node and sent
+ * as one batch of updates, so an import updates a popular node once per batch
+ * of games instead of once per game. The children of a node that is not
+ * written yet are found in process, without asking the database.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+final class MoveTrie {
+
+	/** The Constant MAX_PLIES. Moves past this ply are not stored. */
+	static final int MAX_PLIES = 40;
+
+	/** The Constant ROOT. */
+	static final long ROOT = 0;
+
+	/** The Constant CACHE_SIZE. */
+	private static final int CACHE_SIZE = 4096;
+
+	/** The find statement. */
+	private final PreparedStatement findStatement;
+
+	/** The insert statement. */
+	private final PreparedStatement insertStatement;
+
+	/** The count statement. */
+	private final PreparedStatement countStatement;
+
+	/** The children statement. */
+	private final PreparedStatement childrenStatement;
+
+	/** The max id statement. */
+	private final PreparedStatement maxIdStatement;
+
+	/** The white, black and tie counts not yet sent, by node id. */
+	private final Map<Long, int[]> pendingCounts = new HashMap<>();
+
+	/** The nodes not yet inserted, by parent id and move. */
+	private final Map<String, NewNode> newNodes = new LinkedHashMap<>();
+
+	/** The node ids by parent id and move. */
+	private final Map<String, Long> nodeCache = new LinkedHashMap<String, Long>(CACHE_SIZE, 0.75f, true) {
+
+		/** The Constant serialVersionUID. */
+		private static final long serialVersionUID = -2407331593410474181L;
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+		 */
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, Long> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	/** The next node id. */
+	private long nextId;
+
+	/** The id of the first node that is not inserted yet. */
+	private long firstNewId;
+
+	/**
+	 * Instantiates a new move trie. Creates the table if it does not exist.
+	 *
+	 * @param connection
+	 *            the connection
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	MoveTrie(final Connection connection) throws SQLException {
+		try (final Statement statement = connection.createStatement()) {
+			statement.execute("CREATE TABLE IF NOT EXISTS MoveNode(id bigint primary key, parent bigint not null, "
+					+ "move varchar(10) not null, white int not null, black int not null, tie int not null, "
+					+ "UNIQUE INDEX ParentMoveIndex (parent, move));");
+		}
+		this.maxIdStatement = connection.prepareStatement("SELECT MAX(id) FROM MoveNode");
+		this.findStatement = connection.prepareStatement("SELECT id FROM MoveNode WHERE parent = ? AND move = ?");
+		this.insertStatement = connection
+				.prepareStatement("INSERT INTO MoveNode(id, parent, move, white, black, tie) VALUES(?, ?, ?, ?, ?, ?)");
+		this.countStatement = connection.prepareStatement(
+				"UPDATE MoveNode SET white = white + ?, black = black + ?, tie = tie + ? WHERE id = ?");
+		this.childrenStatement = connection
+				.prepareStatement("SELECT move, white, black, tie FROM MoveNode WHERE parent = ?");
+		reload();
+	}
+
+	/**
+	 * Reload. Forgets the cached ids and the nodes and counts not yet sent,
+	 * and reads the next id again, after a transaction was rolled back.
+	 *
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	synchronized void reload() throws SQLException {
+		this.nodeCache.clear();
+		this.pendingCounts.clear();
+		this.newNodes.clear();
+		this.insertStatement.clearBatch();
+		this.countStatement.clearBatch();
+		try (final ResultSet resultSet = this.maxIdStatement.executeQuery()) {
+			this.nextId = resultSet.next() ? resultSet.getLong(1) + 1 : ROOT + 1;
+		}
+		this.firstNewId = this.nextId;
+	}
+
+	/**
+	 * Flush. Inserts the new nodes, then sends the counts added to existing
+	 * nodes.
+	 *
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	synchronized void flush() throws SQLException {
+		if (!this.newNodes.isEmpty()) {
+			for (final NewNode newNode : this.newNodes.values()) {
+				final int[] counts = this.pendingCounts.remove(newNode.id);
+				this.insertStatement.setLong(1, newNode.id);
+				this.insertStatement.setLong(2, newNode.parent);
+				this.insertStatement.setString(3, newNode.move);
+				this.insertStatement.setInt(4, counts[0]);
+				this.insertStatement.setInt(5, counts[1]);
+				this.insertStatement.setInt(6, counts[2]);
+				this.insertStatement.addBatch();
+			}
+			this.insertStatement.executeBatch();
+			for (final Map.Entry<String, NewNode> entry : this.newNodes.entrySet()) {
+				this.nodeCache.put(entry.getKey(), entry.getValue().id);
+			}
+			this.newNodes.clear();
+			this.firstNewId = this.nextId;
+		}
+		if (this.pendingCounts.isEmpty()) {
+			return;
+		}
+		for (final Map.Entry<Long, int[]> entry : this.pendingCounts.entrySet()) {
+			this.countStatement.setInt(1, entry.getValue()[0]);
+			this.countStatement.setInt(2, entry.getValue()[1]);
+			this.countStatement.setInt(3, entry.getValue()[2]);
+			this.countStatement.setLong(4, entry.getKey());
+			this.countStatement.addBatch();
+		}
+		this.pendingCounts.clear();
+		this.countStatement.executeBatch();
+	}
+
+	/**
+	 * Checks if is empty.
+	 *
+	 * @return true, if the trie has no node but the root
+	 */
+	synchronized boolean isEmpty() {
+		return this.nextId == ROOT + 1;
+	}
+
+	/**
+	 * Adds the game. Counts its outcome on the node of each of its first
+	 * {@value #MAX_PLIES} moves, adding the nodes that are missing.
+	 *
+	 * @param moves
+	 *            the moves of the game
+	 * @param winner
+	 *            White, Black or Tie; games without an outcome are not added
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	synchronized void addGame(final List<String> moves, final String winner) throws SQLException {
+		final int white = "White".equals(winner) ? 1 : 0;
+		final int black = "Black".equals(winner) ? 1 : 0;
+		final int tie = "Tie".equals(winner) ? 1 : 0;
+		if (white + black + tie == 0) {
+			return;
+		}
+		long node = ROOT;
+		boolean known = true;
+		for (int ply = 0; ply < Math.min(moves.size(), MAX_PLIES); ply++) {
+			final String move = normalize(moves.get(ply));
+			final long parent = node;
+			// the children of a node made by this game are new
+			node = known ? find(parent, move) : ROOT;
+			if (node == ROOT) {
+				known = false;
+				node = this.nextId++;
+				this.newNodes.put(cacheKey(parent, move), new NewNode(node, parent, move));
+			}
+			int[] counts = this.pendingCounts.get(node);
+			if (counts == null) {
+				counts = new int[3];
+				this.pendingCounts.put(node, counts);
+			}
+			counts[0] += white;
+			counts[1] += black;
+			counts[2] += tie;
+		}
+	}
+
+	/**
+	 * Best next move.
+	 *
+	 * @param moves
+	 *            the moves played so far
+	 * @param white
+	 *            whether white is to move
+	 * @return the move played after them in the most games won by the side to
+	 *         move, or null if there is none
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	synchronized Child bestNextMove(final List<String> moves, final boolean white) throws SQLException {
+		flush();
+		long node = ROOT;
+		for (final String move : moves) {
+			node = find(node, normalize(move));
+			if (node == ROOT) {
+				return null;
+			}
+		}
+		Child best = null;
+		this.childrenStatement.setLong(1, node);
+		try (final ResultSet resultSet = this.childrenStatement.executeQuery()) {
+			while (resultSet.next()) {
+				final int wins = resultSet.getInt(white ? 2 : 3);
+				if (wins > 0 && (best == null || wins > best.wins)) {
+					best = new Child(resultSet.getString(1), wins);
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Find. Asks the database only if the node is neither cached nor new and
+	 * its parent is already inserted.
+	 *
+	 * @param parent
+	 *            the parent node id
+	 * @param move
+	 *            the normalized move
+	 * @return the id of the node, or the root id if there is none
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	private long find(final long parent, final String move) throws SQLException {
+		final String key = cacheKey(parent, move);
+		final Long cached = this.nodeCache.get(key);
+		if (cached != null) {
+			return cached;
+		}
+		final NewNode newNode = this.newNodes.get(key);
+		if (newNode != null) {
+			return newNode.id;
+		}
+		if (parent >= this.firstNewId) {
+			return ROOT;
+		}
+		this.findStatement.setLong(1, parent);
+		this.findStatement.setString(2, move);
+		try (final ResultSet resultSet = this.findStatement.executeQuery()) {
+			if (!resultSet.next()) {
+				return ROOT;
+			}
+			final long node = resultSet.getLong(1);
+			this.nodeCache.put(key, node);
+			return node;
+		}
+	}
+
+	/**
+	 * Cache key.
+	 *
+	 * @param parent
+	 *            the parent node id
+	 * @param move
+	 *            the move
+	 * @return the string
+	 */
+	private static String cacheKey(final long parent, final String move) {
+		return parent + " " + move;
+	}
+
+	/**
+	 * Normalize.
+	 *
+	 * @param move
+	 *            a move in SAN
+	 * @return the move without check, mate or annotation marks
+	 */
+	static String normalize(final String move) {
+		int end = move.length();
+		while (end > 0 && "+#!?".indexOf(move.charAt(end - 1)) >= 0) {
+			end--;
+		}
+		return move.substring(0, end).trim();
+	}
+
+	/**
+	 * A node made since the last flush.
+	 */
+	private static final class NewNode {
+
+		/** The id. */
+		final long id;
+
+		/** The parent node id. */
+		final long parent;
+
+		/** The normalized move. */
+		final String move;
+
+		/**
+		 * Instantiates a new new node.
+		 *
+		 * @param id
+		 *            the id
+		 * @param parent
+		 *            the parent node id
+		 * @param move
+		 *            the normalized move
+		 */
+		private NewNode(final long id, final long parent, final String move) {
+			this.id = id;
+			this.parent = parent;
+			this.move = move;
+		}
+	}
+
+	/**
+	 * A move after a prefix and the games won by the side making it.
+	 */
+	static final class Child {
+
+		/** The move. */
+		final String move;
+
+		/** The wins. */
+		final int wins;
+
+		/**
+		 * Instantiates a new child.
+		 *
+		 * @param move
+		 *            the move
+		 * @param wins
+		 *            the wins
+		 */
+		private Child(final String move, final int wins) {
+			this.move = move;
+			this.wins = wins;
+		}
+	}
+}
@@ -5,7 +5,6 @@ import java.sql.ResultSet;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.DriverManager;
-import java.sql.PreparedStatement;
 
 import com.chess.engine.classic.board.Move;
 import com.chess.engine.classic.board.Board;
@@ -24,6 +23,9 @@ public class MySqlGamePersistence implements PGNPersistence {
 	/** The db connection. */
 	private final Connection dbConnection;
 
+	/** The games. */
+	private final JdbcGamePersistence games;
+
 	/** The nstance. */
 	private static MySqlGamePersistence INSTANCE = new MySqlGamePersistence();
 
@@ -31,7 +33,7 @@ public class MySqlGamePersistence implements PGNPersistence {
 	private static final String JDBC_DRIVER = "com.mysql.jdbc.Driver";
 
 	/** The Constant DB_URL. */
-	private static final String DB_URL = "jdbc:mysql://localhost:3306/sys?useSSL=false";
+	private static final String DB_URL = "jdbc:mysql://localhost:3306/sys?useSSL=false&rewriteBatchedStatements=true";
 
 	/** The Constant USER. */
 	private static final String USER = "root";
@@ -39,19 +41,13 @@ public class MySqlGamePersistence implements PGNPersistence {
 	/** The Constant PASS. */
 	private static final String PASS = "selam";
 
-	/** The Constant NEXT_BEST_MOVE_QUERY. */
-	private static final String NEXT_BEST_MOVE_QUERY = "SELECT SUBSTR(g1.moves, LENGTH('%s') + %d, INSTR(SUBSTR(g1.moves, LENGTH('%s') + %d, LENGTH(g1.moves)), ',') - 1), "
-			+ "COUNT(*) FROM game g1 WHERE g1.moves LIKE '%s%%' AND (outcome = '%s') GROUP BY substr(g1.moves, LENGTH('%s') + %d, "
-			+ "INSTR(substr(g1.moves, LENGTH('%s') + %d, LENGTH(g1.moves)), ',') - 1) ORDER BY 2 DESC";
-
 	/**
 	 * Instantiates a new my sql game persistence.
 	 */
 	private MySqlGamePersistence() {
 		this.dbConnection = createDBConnection();
-		createGameTable();
+		this.games = createGames();
 		createIndex("outcome", "OutcomeIndex");
-		createIndex("moves", "MoveIndex");
 
 		// createOutcomeIndex();
 		// createMovesIndex();
@@ -71,6 +67,19 @@ public class MySqlGamePersistence implements PGNPersistence {
 		}
 	}
 
+	/**
+	 * Creates the games. Makes the tables and the move trie.
+	 *
+	 * @return the JDBC game persistence
+	 */
+	private JdbcGamePersistence createGames() {
+		try {
+			return new JdbcGamePersistence(this.dbConnection, JdbcGamePersistence.BATCH_SIZE);
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	/**
 	 * Gets the.
 	 *
@@ -87,72 +96,29 @@ public class MySqlGamePersistence implements PGNPersistence {
 	 */
 	@Override
 	public void persistGame(final Game game) {
-		executePersist(game);
+		this.games.persistGame(game);
 	}
 
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see
-	 * com.chess.pgn.PGNPersistence#getNextBestMove(com.chess.engine.classic.
-	 * board.Board, com.chess.engine.classic.player.Player, java.lang.String)
+	 * @see com.chess.pgn.PGNPersistence#flush()
 	 */
 	@Override
-	public Move getNextBestMove(final Board board, final Player player, final String gameText) {
-		return queryBestMove(board, player, gameText);
-	}
-
-	/**
-	 * Query best move.
-	 *
-	 * @param board
-	 *            the board
-	 * @param player
-	 *            the player
-	 * @param gameText
-	 *            the game text
-	 * @return the move
-	 */
-	private Move queryBestMove(final Board board, final Player player, final String gameText) {
-		String bestMove = "";
-		String count = "0";
-		try {
-			final int offSet = gameText.isEmpty() ? 1 : 3;
-			final String sqlString = String.format(NEXT_BEST_MOVE_QUERY, gameText, offSet, gameText, offSet, gameText,
-					player.getAlliance().name(), gameText, offSet, gameText, offSet);
-			System.out.println("exec 68");
-			System.out.println(sqlString);
-			System.out.println("exec 70");
-			final Statement gameStatement = this.dbConnection.createStatement();
-			System.out.println(gameStatement);
-			gameStatement.execute(sqlString);
-			final ResultSet rs2 = gameStatement.getResultSet();
-			System.out.println("exec 75");
-			System.out.println(rs2);
-			if (rs2.next()) {
-				bestMove = rs2.getString(1);
-				count = rs2.getString(2);
-			}
-			gameStatement.close();
-		} catch (final SQLException e) {
-			e.printStackTrace();
-		}
-		System.out.println("\tselected book move = " + bestMove + " with " + count + " hits");
-		return PGNUtilities.createMove(board, bestMove);
+	public void flush() {
+		this.games.flush();
 	}
 
-	/**
-	 * Creates the game table.
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.chess.pgn.BookProvider#getNextBestMove(com.chess.engine.classic.
+	 * board.Board, com.chess.engine.classic.player.Player, java.lang.String)
 	 */
-	private void createGameTable() {
-		try {
-			final Statement statement = this.dbConnection.createStatement();
-			statement.execute(
-					"CREATE TABLE IF NOT EXISTS Game(id int primary key, outcome varchar(10), moves varchar(4000));");
-			statement.close();
-		} catch (final SQLException e) {
-			e.printStackTrace();
-		}
+	@Override
+	public Move getNextBestMove(final Board board, final Player player, final String gameText) {
+		return this.games.getNextBestMove(board, player, gameText);
 	}
 
 	/**
@@ -229,40 +195,11 @@ public class MySqlGamePersistence implements PGNPersistence {
 	 * @return the max game row
 	 */
 	public int getMaxGameRow() {
-		int maxId = 0;
-		try {
-			final String sqlString = "SELECT MAX(ID) FROM Game";
-			final Statement gameStatement = this.dbConnection.createStatement();
-			gameStatement.execute(sqlString);
-			final ResultSet rs2 = gameStatement.getResultSet();
-			if (rs2.next()) {
-				maxId = rs2.getInt(1);
-			}
-			gameStatement.close();
-		} catch (final SQLException e) {
-			e.printStackTrace();
-		}
-		return maxId;
-	}
-
-	/**
-	 * Execute persist.
-	 *
-	 * @param game
-	 *            the game
-	 */
-	private void executePersist(final Game game) {
 		try {
-			final String gameSqlString = "INSERT INTO Game(id, outcome, moves) VALUES(?, ?, ?);";
-			final PreparedStatement gameStatement = this.dbConnection.prepareStatement(gameSqlString);
-			gameStatement.setInt(1, getMaxGameRow() + 1);
-			gameStatement.setString(2, game.getWinner());
-			gameStatement.setString(3, game.getMoves().toString().replaceAll("\\[", "").replaceAll("\\]", ""));
-			gameStatement.executeUpdate();
-			gameStatement.close();
+			return this.games.getMaxGameRow();
 		} catch (final SQLException e) {
-			System.out.print("a");
 			e.printStackTrace();
+			return 0;
 		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,261 @@
+package com.chess.pgn;
+
+import static com.chess.engine.classic.board.Move.MoveFactory;
+
+import java.io.File;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Collection;
+import java.nio.ByteBuffer;
+import java.io.IOException;
+import java.io.DataOutputStream;
+import java.io.RandomAccessFile;
+import java.io.FileOutputStream;
+import java.nio.channels.FileChannel;
+import java.io.BufferedOutputStream;
+
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.pieces.Piece;
+import com.chess.engine.classic.player.Player;
+import com.chess.engine.classic.board.Move.PawnPromotion;
+
+/**
+ * Opening book file in the layout of a Polyglot book: {@link BookEntry}
+ * entries of {@value BookEntry#SIZE} bytes, big endian, sorted by position
+ * key. The file is memory mapped and a position is found by binary search on
+ * the Zobrist key of the board, so a lookup touches a few pages of the file
+ * instead of asking a database, and transpositions find the same moves. The
+ * keys are the engine's own Zobrist keys and a move is its source square, its
+ * destination square and its promotion piece in board coordinates, so the
+ * files are not interchangeable with Polyglot books.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public final class OpeningBook implements BookProvider {
+
+	/** The Constant SEGMENT_BITS. A mapped segment holds 2^26 entries, 1 GB. */
+	private static final int SEGMENT_BITS = 26;
+
+	/** The Constant PROMOTION_LETTERS. The promotion pieces by move code. */
+	private static final String PROMOTION_LETTERS = " NBRQ";
+
+	/** The segments. */
+	private final ByteBuffer[] segments;
+
+	/** The number of entries. */
+	private final long size;
+
+	/**
+	 * Instantiates a new opening book.
+	 *
+	 * @param segments
+	 *            the segments
+	 * @param size
+	 *            the number of entries
+	 */
+	private OpeningBook(final ByteBuffer[] segments, final long size) {
+		this.segments = segments;
+		this.size = size;
+	}
+
+	/**
+	 * Open. Maps the book file.
+	 *
+	 * @param file
+	 *            the file
+	 * @return the opening book
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static OpeningBook open(final File file) throws IOException {
+		try (final RandomAccessFile in = new RandomAccessFile(file, "r")) {
+			final FileChannel channel = in.getChannel();
+			if (channel.size() % BookEntry.SIZE != 0) {
+				throw new IOException(file + " is not a book, its size is not a multiple of " + BookEntry.SIZE);
+			}
+			final long size = channel.size() / BookEntry.SIZE;
+			final ByteBuffer[] segments = new ByteBuffer[(int) ((size + (1L << SEGMENT_BITS) - 1) >>> SEGMENT_BITS)];
+			for (int i = 0; i < segments.length; i++) {
+				final long first = (long) i << SEGMENT_BITS;
+				final long count = Math.min(size - first, 1L << SEGMENT_BITS);
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, first * BookEntry.SIZE,
+						count * BookEntry.SIZE);
+			}
+			return new OpeningBook(segments, size);
+		}
+	}
+
+	/**
+	 * Write. Sorts the entries and writes them as a book file.
+	 *
+	 * @param file
+	 *            the file
+	 * @param entries
+	 *            the entries
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static void write(final File file, final Collection<BookEntry> entries) throws IOException {
+		final List<BookEntry> sorted = new ArrayList<>(entries);
+		Collections.sort(sorted);
+		try (final DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)))) {
+			for (final BookEntry entry : sorted) {
+				entry.write(out);
+			}
+		}
+	}
+
+	/**
+	 * Size.
+	 *
+	 * @return the number of entries
+	 */
+	public long size() {
+		return this.size;
+	}
+
+	/**
+	 * Probe.
+	 *
+	 * @param key
+	 *            the Zobrist key of a position
+	 * @return the entries of the position, highest weight first
+	 */
+	public List<BookEntry> probe(final long key) {
+		long low = 0;
+		long high = this.size;
+		while (low < high) {
+			final long middle = (low + high) >>> 1;
+			if (BookEntry.compareKeys(keyAt(middle), key) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		final List<BookEntry> entries = new ArrayList<>();
+		for (long index = low; index < this.size && keyAt(index) == key; index++) {
+			entries.add(entryAt(index));
+		}
+		return entries;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.chess.pgn.BookProvider#getNextBestMove(com.chess.engine.classic.
+	 * board.Board, com.chess.engine.classic.player.Player, java.lang.String)
+	 */
+	@Override
+	public Move getNextBestMove(final Board board, final Player player, final String gameText) {
+		for (final BookEntry entry : probe(board.getZobristKey())) {
+			final Move move = decodeMove(board, entry.getMove());
+			if (move != MoveFactory.getNullMove() && board.currentPlayer().makeMove(move).getMoveStatus().isDone()) {
+				System.out.println("\tselected book move = " + move + " with weight " + entry.getWeight());
+				return move;
+			}
+		}
+		return MoveFactory.getNullMove();
+	}
+
+	/**
+	 * Encode move.
+	 *
+	 * @param move
+	 *            the move
+	 * @return the source square in bits 0 to 5, the destination square in bits
+	 *         6 to 11 and the promotion piece in bits 12 to 14, 1 to 4 for a
+	 *         knight, bishop, rook or queen
+	 */
+	public static short encodeMove(final Move move) {
+		return (short) (move.getCurrentCoordinate() | move.getDestinationCoordinate() << 6 | promotion(move) << 12);
+	}
+
+	/**
+	 * Decode move.
+	 *
+	 * @param board
+	 *            the board
+	 * @param code
+	 *            the move code
+	 * @return the move of the board, or the null move if it has none such
+	 */
+	public static Move decodeMove(final Board board, final short code) {
+		final int from = code & 63;
+		final int to = (code >>> 6) & 63;
+		final int promotion = (code >>> 12) & 7;
+		for (final Move move : board.currentPlayer().getLegalMoves()) {
+			if (move.getCurrentCoordinate() == from && move.getDestinationCoordinate() == to
+					&& promotion(move) == promotion) {
+				return move;
+			}
+		}
+		return MoveFactory.getNullMove();
+	}
+
+	/**
+	 * Promotion.
+	 *
+	 * @param move
+	 *            the move
+	 * @return the promotion code of the move, 0 if it is not a promotion
+	 */
+	private static int promotion(final Move move) {
+		if (!(move instanceof PawnPromotion)) {
+			return 0;
+		}
+		final Piece piece = ((PawnPromotion) move).getPromotionPiece();
+		return PROMOTION_LETTERS.indexOf(piece.getPieceType().toString());
+	}
+
+	/**
+	 * Key at.
+	 *
+	 * @param index
+	 *            the entry index
+	 * @return the key of the entry
+	 */
+	private long keyAt(final long index) {
+		return segment(index).getLong(offset(index));
+	}
+
+	/**
+	 * Entry at.
+	 *
+	 * @param index
+	 *            the entry index
+	 * @return the entry
+	 */
+	private BookEntry entryAt(final long index) {
+		final ByteBuffer segment = segment(index);
+		final int offset = offset(index);
+		return new BookEntry(segment.getLong(offset), segment.getShort(offset + 8), segment.getShort(offset + 10),
+				segment.getInt(offset + 12));
+	}
+
+	/**
+	 * Segment.
+	 *
+	 * @param index
+	 *            the entry index
+	 * @return the segment holding the entry
+	 */
+	private ByteBuffer segment(final long index) {
+		return this.segments[(int) (index >>> SEGMENT_BITS)];
+	}
+
+	/**
+	 * Offset.
+	 *
+	 * @param index
+	 *            the entry index
+	 * @return the byte offset of the entry in its segment
+	 */
+	private static int offset(final long index) {
+		return (int) (index & ((1L << SEGMENT_BITS) - 1)) * BookEntry.SIZE;
+	}
+}
@@ -0,0 +1,507 @@
+package com.chess.pgn;
+
+import java.io.File;
+import java.util.Map;
+import java.util.List;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.DataOutputStream;
+import java.io.RandomAccessFile;
+import java.io.FileOutputStream;
+import java.nio.channels.FileChannel;
+import java.io.BufferedOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A PGN file opened for browsing, with an index of its games in a side-car
+ * file next to it. The index holds the offset and length of every game and the
+ * values of its {@link #INDEXED_TAGS}, so a game is read by number without
+ * reading the games before it, and games are filtered by those tags without
+ * parsing any game. The index is built with one pass over the memory mapped
+ * file the first time the file is opened, and again whenever the file changes
+ * size or modification time; after that opening maps the index and reads
+ * nothing else. Tag values are kept once each in a sorted string table, and
+ * the games hold their numbers in it. Text is read as ISO-8859-1.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public final class PGNDatabase {
+
+	/** The Constant INDEXED_TAGS. */
+	public static final List<String> INDEXED_TAGS = ImmutableList.of("White", "Black", "Result", "Date", "ECO");
+
+	/** The Constant INDEX_EXTENSION. */
+	public static final String INDEX_EXTENSION = ".idx";
+
+	/** The Constant MAGIC. */
+	private static final int MAGIC = 0x58444950;
+
+	/** The Constant HEADER_SIZE. */
+	private static final int HEADER_SIZE = 32;
+
+	/** The Constant RECORD_SIZE. The offset, the length and a string per indexed tag. */
+	private static final int RECORD_SIZE = 8 + 4 + 4 * 5;
+
+	/** The Constant SEGMENT_SIZE. The PGN file is scanned a gigabyte at a time. */
+	private static final long SEGMENT_SIZE = 1L << 30;
+
+	/** The PGN file. */
+	private final RandomAccessFile pgn;
+
+	/** The index. */
+	private final ByteBuffer index;
+
+	/** The number of games. */
+	private final int size;
+
+	/** The number of strings. */
+	private final int strings;
+
+	/** The offset of the string offsets in the index. */
+	private final int stringOffsets;
+
+	/** The offset of the string bytes in the index. */
+	private final int stringBytes;
+
+	/**
+	 * Instantiates a new PGN database.
+	 *
+	 * @param pgn
+	 *            the PGN file
+	 * @param index
+	 *            the index
+	 */
+	private PGNDatabase(final RandomAccessFile pgn, final ByteBuffer index) {
+		this.pgn = pgn;
+		this.index = index;
+		this.size = index.getInt(4);
+		this.strings = index.getInt(24);
+		this.stringOffsets = HEADER_SIZE + this.size * RECORD_SIZE;
+		this.stringBytes = this.stringOffsets + (this.strings + 1) * 4;
+	}
+
+	/**
+	 * Open. Builds the index first if it is missing or out of date.
+	 *
+	 * @param pgnFile
+	 *            the PGN file
+	 * @return the PGN database
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static PGNDatabase open(final File pgnFile) throws IOException {
+		final File indexFile = indexFile(pgnFile);
+		ByteBuffer index = isCurrent(indexFile, pgnFile) ? map(indexFile) : null;
+		if (index == null) {
+			buildIndex(pgnFile, indexFile);
+			index = map(indexFile);
+		}
+		return new PGNDatabase(new RandomAccessFile(pgnFile, "r"), index);
+	}
+
+	/**
+	 * Index file.
+	 *
+	 * @param pgnFile
+	 *            the PGN file
+	 * @return the index file of it
+	 */
+	public static File indexFile(final File pgnFile) {
+		return new File(pgnFile.getPath() + INDEX_EXTENSION);
+	}
+
+	/**
+	 * Close.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void close() throws IOException {
+		this.pgn.close();
+	}
+
+	/**
+	 * Size.
+	 *
+	 * @return the number of games
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Gets the tag.
+	 *
+	 * @param game
+	 *            the game number, from 0
+	 * @param tag
+	 *            one of the indexed tags
+	 * @return the value of the tag, empty if the game does not have it
+	 */
+	public String getTag(final int game, final String tag) {
+		return string(this.index.getInt(record(game) + 12 + 4 * tagNumber(tag)));
+	}
+
+	/**
+	 * Game text.
+	 *
+	 * @param game
+	 *            the game number, from 0
+	 * @return the text of the game, tags and moves
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public String gameText(final int game) throws IOException {
+		final int record = record(game);
+		final ByteBuffer text = this.pgn.getChannel().map(FileChannel.MapMode.READ_ONLY,
+				this.index.getLong(record), this.index.getInt(record + 8));
+		return StandardCharsets.ISO_8859_1.decode(text).toString();
+	}
+
+	/**
+	 * Game. Parses one game.
+	 *
+	 * @param game
+	 *            the game number, from 0
+	 * @return the game, invalid if it has no moves
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public Game game(final int game) throws IOException {
+		final PGNGameTags.TagsBuilder tags = new PGNGameTags.TagsBuilder();
+		final List<String> moves = new ArrayList<>();
+		final String[] result = { "*" };
+		final String text = gameText(game);
+		new PGNParser(new PGNParser.Handler() {
+			@Override
+			public void tag(final String name, final String value) {
+				tags.addTag(name, value);
+			}
+
+			@Override
+			public void move(final String san) {
+				moves.add(san);
+			}
+
+			@Override
+			public void endGame(final String outcome) {
+				result[0] = outcome;
+			}
+		}).parse(new StringReader(text));
+		return moves.isEmpty() ? new InvalidGame(tags.build(), text, result[0])
+				: new ValidGame(tags.build(), moves, result[0]);
+	}
+
+	/**
+	 * Filter.
+	 *
+	 * @param tag
+	 *            one of the indexed tags
+	 * @param value
+	 *            the value
+	 * @return the numbers of the games with the value for the tag
+	 */
+	public List<Integer> filter(final String tag, final String value) {
+		final int field = 12 + 4 * tagNumber(tag);
+		final int string = find(value);
+		final List<Integer> games = new ArrayList<>();
+		if (string < 0) {
+			return games;
+		}
+		for (int game = 0; game < this.size; game++) {
+			if (this.index.getInt(record(game) + field) == string) {
+				games.add(game);
+			}
+		}
+		return games;
+	}
+
+	/**
+	 * Record.
+	 *
+	 * @param game
+	 *            the game number
+	 * @return the offset of its record in the index
+	 */
+	private int record(final int game) {
+		if (game < 0 || game >= this.size) {
+			throw new IndexOutOfBoundsException("game " + game + " of " + this.size);
+		}
+		return HEADER_SIZE + game * RECORD_SIZE;
+	}
+
+	/**
+	 * String.
+	 *
+	 * @param string
+	 *            the string number
+	 * @return the string
+	 */
+	private String string(final int string) {
+		final int from = this.index.getInt(this.stringOffsets + string * 4);
+		final int to = this.index.getInt(this.stringOffsets + string * 4 + 4);
+		final byte[] bytes = new byte[to - from];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = this.index.get(this.stringBytes + from + i);
+		}
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Find. Binary search of the string table.
+	 *
+	 * @param value
+	 *            the value
+	 * @return the string number, or -1 if the value is not in the table
+	 */
+	private int find(final String value) {
+		int low = 0;
+		int high = this.strings - 1;
+		while (low <= high) {
+			final int middle = (low + high) >>> 1;
+			final int order = string(middle).compareTo(value);
+			if (order < 0) {
+				low = middle + 1;
+			} else if (order > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Tag number.
+	 *
+	 * @param tag
+	 *            the tag
+	 * @return its place in the indexed tags
+	 */
+	private static int tagNumber(final String tag) {
+		final int number = INDEXED_TAGS.indexOf(tag);
+		if (number < 0) {
+			throw new IllegalArgumentException(tag + " is not indexed, only " + INDEXED_TAGS + " are");
+		}
+		return number;
+	}
+
+	/**
+	 * Checks if is current.
+	 *
+	 * @param indexFile
+	 *            the index file
+	 * @param pgnFile
+	 *            the PGN file
+	 * @return true, if the index was built from the PGN file as it is now
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static boolean isCurrent(final File indexFile, final File pgnFile) throws IOException {
+		if (!indexFile.isFile() || indexFile.length() < HEADER_SIZE) {
+			return false;
+		}
+		try (final RandomAccessFile in = new RandomAccessFile(indexFile, "r")) {
+			return in.readInt() == MAGIC && in.readInt() >= 0 && in.readLong() == pgnFile.length()
+					&& in.readLong() == pgnFile.lastModified();
+		}
+	}
+
+	/**
+	 * Map.
+	 *
+	 * @param indexFile
+	 *            the index file
+	 * @return the mapped index
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static ByteBuffer map(final File indexFile) throws IOException {
+		try (final RandomAccessFile in = new RandomAccessFile(indexFile, "r")) {
+			return in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+		}
+	}
+
+	/**
+	 * Builds the index. Games start at a tag line after a line that is not
+	 * one, or at the start of the file.
+	 *
+	 * @param pgnFile
+	 *            the PGN file
+	 * @param indexFile
+	 *            the index file
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static void buildIndex(final File pgnFile, final File indexFile) throws IOException {
+		final long length = pgnFile.length();
+		final long modified = pgnFile.lastModified();
+		final Map<String, Integer> stringNumbers = new HashMap<>();
+		long[] offsets = new long[1024];
+		int[] tags = new int[1024 * 5];
+		int games = 0;
+		try (final RandomAccessFile in = new RandomAccessFile(pgnFile, "r")) {
+			final FileChannel channel = in.getChannel();
+			final byte[] line = new byte[1 << 12];
+			int lineLength = 0;
+			boolean blankLine = true;
+			boolean tagLine = false;
+			boolean previousTagLine = false;
+			boolean movesSeen = false;
+			for (long first = 0; first < length; first += SEGMENT_SIZE) {
+				final ByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, first,
+						Math.min(SEGMENT_SIZE, length - first));
+				for (int i = 0; i < segment.limit(); i++) {
+					final byte b = segment.get(i);
+					if (b == '\n') {
+						if (tagLine) {
+							tag(line, Math.min(lineLength, line.length), stringNumbers, tags, games - 1);
+						}
+						previousTagLine = tagLine;
+						tagLine = false;
+						blankLine = true;
+						lineLength = 0;
+						continue;
+					}
+					if (b > ' ' && blankLine) {
+						blankLine = false;
+						tagLine = b == '[';
+						if ((tagLine && !previousTagLine) || (!tagLine && games == 0 && !movesSeen)) {
+							if (games == offsets.length) {
+								offsets = Arrays.copyOf(offsets, games * 2);
+								tags = Arrays.copyOf(tags, games * 2 * 5);
+							}
+							offsets[games] = first + i;
+							Arrays.fill(tags, games * 5, games * 5 + 5, -1);
+							games++;
+						}
+						movesSeen |= !tagLine;
+					}
+					if (tagLine && lineLength < line.length) {
+						line[lineLength] = b;
+					}
+					lineLength++;
+				}
+			}
+			if (tagLine) {
+				tag(line, Math.min(lineLength, line.length), stringNumbers, tags, games - 1);
+			}
+		}
+		writeIndex(indexFile, length, modified, offsets, tags, games, stringNumbers);
+	}
+
+	/**
+	 * Tag. Reads a tag line and keeps its value if the tag is indexed.
+	 *
+	 * @param line
+	 *            the line
+	 * @param length
+	 *            the length of the line
+	 * @param stringNumbers
+	 *            the numbers of the strings found so far
+	 * @param tags
+	 *            the string numbers of the indexed tags of the games
+	 * @param game
+	 *            the game number
+	 */
+	private static void tag(final byte[] line, final int length, final Map<String, Integer> stringNumbers,
+			final int[] tags, final int game) {
+		final String text = new String(line, 0, length, StandardCharsets.ISO_8859_1).trim();
+		final int space = text.indexOf(' ');
+		final int open = text.indexOf('"');
+		final int close = text.lastIndexOf('"');
+		if (game < 0 || space < 0 || open < 0 || close <= open) {
+			return;
+		}
+		final int number = INDEXED_TAGS.indexOf(text.substring(1, space));
+		if (number >= 0) {
+			final String value = text.substring(open + 1, close).replace("\\\"", "\"");
+			Integer string = stringNumbers.get(value);
+			if (string == null) {
+				string = stringNumbers.size();
+				stringNumbers.put(value, string);
+			}
+			tags[game * 5 + number] = string;
+		}
+	}
+
+	/**
+	 * Write index. Sorts the string table and writes the header, the game
+	 * records, the string offsets and the string bytes, through a temporary
+	 * file so a broken build leaves no index behind.
+	 *
+	 * @param indexFile
+	 *            the index file
+	 * @param length
+	 *            the length of the PGN file
+	 * @param modified
+	 *            the modification time of the PGN file
+	 * @param offsets
+	 *            the offsets of the games
+	 * @param tags
+	 *            the string numbers of the indexed tags of the games
+	 * @param games
+	 *            the number of games
+	 * @param stringNumbers
+	 *            the numbers of the strings in the order found
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static void writeIndex(final File indexFile, final long length, final long modified,
+			final long[] offsets, final int[] tags, final int games, final Map<String, Integer> stringNumbers)
+			throws IOException {
+		// the empty string stands for a missing tag
+		stringNumbers.put("", stringNumbers.containsKey("") ? stringNumbers.get("") : stringNumbers.size());
+		final String[] sorted = stringNumbers.keySet().toArray(new String[stringNumbers.size()]);
+		Arrays.sort(sorted);
+		final int[] renumbered = new int[sorted.length];
+		for (int i = 0; i < sorted.length; i++) {
+			renumbered[stringNumbers.get(sorted[i])] = i;
+		}
+		final int missing = renumbered[stringNumbers.get("")];
+		final byte[][] bytes = new byte[sorted.length][];
+		int totalBytes = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			bytes[i] = sorted[i].getBytes(StandardCharsets.ISO_8859_1);
+			totalBytes += bytes[i].length;
+		}
+		final File temporary = new File(indexFile.getPath() + ".tmp");
+		try (final DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(temporary), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(games);
+			out.writeLong(length);
+			out.writeLong(modified);
+			out.writeInt(sorted.length);
+			out.writeInt(totalBytes);
+			for (int game = 0; game < games; game++) {
+				final long end = game + 1 < games ? offsets[game + 1] : length;
+				out.writeLong(offsets[game]);
+				out.writeInt((int) Math.min(end - offsets[game], Integer.MAX_VALUE));
+				for (int tag = 0; tag < 5; tag++) {
+					final int string = tags[game * 5 + tag];
+					out.writeInt(string < 0 ? missing : renumbered[string]);
+				}
+			}
+			int offset = 0;
+			for (final byte[] string : bytes) {
+				out.writeInt(offset);
+				offset += string.length;
+			}
+			out.writeInt(offset);
+			for (final byte[] string : bytes) {
+				out.write(string);
+			}
+		}
+		if (indexFile.exists() && !indexFile.delete() || !temporary.renameTo(indexFile)) {
+			throw new IOException("could not write " + indexFile);
+		}
+	}
+}
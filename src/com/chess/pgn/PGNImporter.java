@@ -0,0 +1,505 @@
+package com.chess.pgn;
+
+import java.io.File;
+import java.util.Set;
+import java.util.List;
+import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.io.IOException;
+import java.util.Collections;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.board.MoveTransition;
+import com.chess.engine.classic.board.Move.MoveFactory;
+
+/**
+ * Imports PGN files into a {@link PGNPersistence} in three stages. The file is
+ * cut into chunks of about the same size that start where a game
+ * starts, and each chunk is memory mapped and parsed by a task of a
+ * {@link ForkJoinPool}. A game is valid if it starts from the standard position
+ * and all its moves are legal; valid games are told apart by a hash of their
+ * moves, so a game found twice is imported once, and handed over a bounded
+ * queue to a single writer thread, which persists them in batches. A full
+ * queue holds the parsers back until the writer catches up.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public final class PGNImporter {
+
+	/** The Constant QUEUE_CAPACITY. A default for the games waiting for the writer. */
+	public static final int QUEUE_CAPACITY = 1024;
+
+	/** The Constant BATCH_SIZE. A default for the games persisted at once. */
+	public static final int BATCH_SIZE = 256;
+
+	/** The Constant CHUNK_SIZE. A default for the bytes parsed by a task. */
+	public static final int CHUNK_SIZE = 1 << 22;
+
+	/** The Constant END_OF_GAMES. Tells the writer there are no more games. */
+	private static final Game END_OF_GAMES = new InvalidGame(new PGNGameTags.TagsBuilder().build(), "", "*");
+
+	/** The persistence. */
+	private final PGNPersistence persistence;
+
+	/** The pool. */
+	private final ForkJoinPool pool;
+
+	/** The chunk size. */
+	private final int chunkSize;
+
+	/** The queue capacity. */
+	private final int queueCapacity;
+
+	/** The batch size. */
+	private final int batchSize;
+
+	/**
+	 * Instantiates a new PGN importer.
+	 *
+	 * @param persistence
+	 *            the persistence
+	 * @param pool
+	 *            the pool of the parsers
+	 * @param chunkSize
+	 *            the bytes parsed by a task, more if a game crosses the end
+	 * @param queueCapacity
+	 *            the most games waiting for the writer
+	 * @param batchSize
+	 *            the most games the writer persists at once
+	 */
+	public PGNImporter(final PGNPersistence persistence, final ForkJoinPool pool, final int chunkSize,
+			final int queueCapacity, final int batchSize) {
+		this.persistence = persistence;
+		this.pool = pool;
+		this.chunkSize = chunkSize;
+		this.queueCapacity = queueCapacity;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Import file.
+	 *
+	 * @param pgnFile
+	 *            the PGN file
+	 * @return the statistics of the import
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public Statistics importFile(final File pgnFile) throws IOException {
+		final long start = System.nanoTime();
+		final Statistics statistics = new Statistics();
+		final BlockingQueue<Game> queue = new ArrayBlockingQueue<>(this.queueCapacity);
+		final Set<Long> seen = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+		final AtomicReference<Throwable> writerFailure = new AtomicReference<>();
+		final Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					write(queue);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (final RuntimeException e) {
+					writerFailure.set(e);
+				}
+			}
+		}, "PGN writer");
+		writer.start();
+		try (final RandomAccessFile in = new RandomAccessFile(pgnFile, "r")) {
+			final FileChannel channel = in.getChannel();
+			final List<long[]> chunks = chunks(channel, this.chunkSize);
+			final List<RecursiveAction> tasks = new ArrayList<>(chunks.size());
+			for (final long[] chunk : chunks) {
+				final ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]);
+				tasks.add(new ChunkTask(bytes, queue, seen, statistics, writer));
+			}
+			this.pool.invoke(new RecursiveAction() {
+
+				/** The Constant serialVersionUID. */
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					invokeAll(tasks);
+				}
+			});
+		} finally {
+			try {
+				while (writer.isAlive() && !queue.offer(END_OF_GAMES, 100, TimeUnit.MILLISECONDS)) {
+					// the writer is still draining the queue
+				}
+				writer.join();
+			} catch (final InterruptedException e) {
+				writer.interrupt();
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (writerFailure.get() != null) {
+			throw new IOException("could not persist the games of " + pgnFile, writerFailure.get());
+		}
+		statistics.nanos = System.nanoTime() - start;
+		return statistics;
+	}
+
+	/**
+	 * Write. Persists the games of the queue until it ends.
+	 *
+	 * @param queue
+	 *            the queue
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	private void write(final BlockingQueue<Game> queue) throws InterruptedException {
+		final List<Game> batch = new ArrayList<>(this.batchSize);
+		while (true) {
+			batch.add(queue.take());
+			queue.drainTo(batch, this.batchSize - 1);
+			for (final Game game : batch) {
+				if (game == END_OF_GAMES) {
+					this.persistence.flush();
+					return;
+				}
+				this.persistence.persistGame(game);
+			}
+			batch.clear();
+		}
+	}
+
+	/**
+	 * Chunks. Cuts the file where games start.
+	 *
+	 * @param channel
+	 *            the channel of the file
+	 * @param chunkSize
+	 *            the chunk size
+	 * @return the first and past the last offset of each chunk
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	static List<long[]> chunks(final FileChannel channel, final int chunkSize) throws IOException {
+		final long size = channel.size();
+		final List<long[]> chunks = new ArrayList<>();
+		long first = 0;
+		while (first < size) {
+			final long last = first + chunkSize >= size ? size : nextGame(channel, first + chunkSize);
+			chunks.add(new long[] { first, last });
+			first = last;
+		}
+		return chunks;
+	}
+
+	/**
+	 * Next game.
+	 *
+	 * @param channel
+	 *            the channel of the file
+	 * @param from
+	 *            the offset to look from
+	 * @return the offset of the first game starting at or after it, or the
+	 *         size of the file if there is none
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	static long nextGame(final FileChannel channel, final long from) throws IOException {
+		final ByteBuffer window = ByteBuffer.allocate(1 << 16);
+		long position = from;
+		// a game starts at a tag line after a line that is not one, so the
+		// line before a start must be read in full
+		int newLines = 0;
+		boolean tagLine = false;
+		boolean previousTagLine = false;
+		boolean blankLine = false;
+		while (position < channel.size()) {
+			window.clear();
+			final int read = channel.read(window, position);
+			for (int i = 0; i < read; i++, position++) {
+				final byte b = window.get(i);
+				if (b == '\n') {
+					newLines++;
+					previousTagLine = tagLine;
+					blankLine = true;
+					tagLine = false;
+				} else if (b > ' ' && blankLine) {
+					blankLine = false;
+					tagLine = b == '[';
+					if (tagLine && newLines >= 2 && !previousTagLine) {
+						return position;
+					}
+				}
+			}
+		}
+		return channel.size();
+	}
+
+	/**
+	 * Move hash. The FNV-1a hash of the moves without check and annotation
+	 * marks.
+	 *
+	 * @param moves
+	 *            the moves
+	 * @return the hash
+	 */
+	static long moveHash(final List<String> moves) {
+		long hash = 0xCBF29CE484222325L;
+		for (final String move : moves) {
+			final String normalized = MoveTrie.normalize(move);
+			for (int i = 0; i < normalized.length(); i++) {
+				hash = (hash ^ normalized.charAt(i)) * 0x100000001B3L;
+			}
+			hash = (hash ^ ' ') * 0x100000001B3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * Checks if is legal.
+	 *
+	 * @param moves
+	 *            the moves
+	 * @return true, if the moves can be played from the standard position
+	 */
+	static boolean isLegal(final List<String> moves) {
+		Board board = Board.createStandardBoard();
+		for (final String san : moves) {
+			final Move move = PGNUtilities.createMove(board, san);
+			if (move == MoveFactory.getNullMove()) {
+				return false;
+			}
+			final MoveTransition transition = board.currentPlayer().makeMove(move);
+			if (!transition.getMoveStatus().isDone()) {
+				return false;
+			}
+			board = transition.getToBoard();
+		}
+		return true;
+	}
+
+	/**
+	 * Parses the games of a chunk and queues the valid ones.
+	 */
+	private static final class ChunkTask extends RecursiveAction implements PGNParser.Handler {
+
+		/** The Constant serialVersionUID. */
+		private static final long serialVersionUID = 1L;
+
+		/** The bytes. */
+		private final ByteBuffer bytes;
+
+		/** The queue. */
+		private final BlockingQueue<Game> queue;
+
+		/** The hashes of the games seen. */
+		private final Set<Long> seen;
+
+		/** The statistics. */
+		private final Statistics statistics;
+
+		/** The writer. */
+		private final Thread writer;
+
+		/** The tags of the current game. */
+		private PGNGameTags.TagsBuilder tags = new PGNGameTags.TagsBuilder();
+
+		/** The moves of the current game. */
+		private List<String> moves = new ArrayList<>();
+
+		/** Whether the current game starts from a set up position. */
+		private boolean setUp;
+
+		/**
+		 * Instantiates a new chunk task.
+		 *
+		 * @param bytes
+		 *            the bytes
+		 * @param queue
+		 *            the queue
+		 * @param seen
+		 *            the hashes of the games seen
+		 * @param statistics
+		 *            the statistics
+		 * @param writer
+		 *            the writer
+		 */
+		private ChunkTask(final ByteBuffer bytes, final BlockingQueue<Game> queue, final Set<Long> seen,
+				final Statistics statistics, final Thread writer) {
+			this.bytes = bytes;
+			this.queue = queue;
+			this.seen = seen;
+			this.statistics = statistics;
+			this.writer = writer;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		@Override
+		protected void compute() {
+			new PGNParser(this).parse(this.bytes);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see com.chess.pgn.PGNParser.Handler#tag(java.lang.String,
+		 * java.lang.String)
+		 */
+		@Override
+		public void tag(final String name, final String value) {
+			this.tags.addTag(name, value);
+			this.setUp |= name.equals("FEN") || (name.equals("SetUp") && value.equals("1"));
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see com.chess.pgn.PGNParser.Handler#move(java.lang.String)
+		 */
+		@Override
+		public void move(final String san) {
+			this.moves.add(san);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see com.chess.pgn.PGNParser.Handler#endGame(java.lang.String)
+		 */
+		@Override
+		public void endGame(final String result) {
+			this.statistics.games.incrementAndGet();
+			final List<String> gameMoves = this.moves;
+			final boolean valid = !this.setUp && !gameMoves.isEmpty() && isLegal(gameMoves);
+			if (!valid) {
+				this.statistics.invalidGames.incrementAndGet();
+			} else if (!this.seen.add(moveHash(gameMoves))) {
+				this.statistics.duplicateGames.incrementAndGet();
+			} else {
+				put(new ValidGame(this.tags.build(), gameMoves, result));
+			}
+			this.tags = new PGNGameTags.TagsBuilder();
+			this.moves = new ArrayList<>();
+			this.setUp = false;
+		}
+
+		/**
+		 * Put. Waits while the queue is full, unless the writer has stopped.
+		 *
+		 * @param game
+		 *            the game
+		 */
+		private void put(final Game game) {
+			try {
+				while (!this.queue.offer(game, 100, TimeUnit.MILLISECONDS)) {
+					if (!this.writer.isAlive()) {
+						throw new IllegalStateException("the PGN writer stopped");
+					}
+				}
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			}
+			this.statistics.importedGames.incrementAndGet();
+		}
+	}
+
+	/**
+	 * The counts of an import.
+	 */
+	public static final class Statistics {
+
+		/** The games read. */
+		private final AtomicLong games = new AtomicLong();
+
+		/** The games imported. */
+		private final AtomicLong importedGames = new AtomicLong();
+
+		/** The invalid games. */
+		private final AtomicLong invalidGames = new AtomicLong();
+
+		/** The duplicate games. */
+		private final AtomicLong duplicateGames = new AtomicLong();
+
+		/** The time the import took. */
+		private long nanos;
+
+		/**
+		 * Gets the games.
+		 *
+		 * @return the games read
+		 */
+		public long getGames() {
+			return this.games.get();
+		}
+
+		/**
+		 * Gets the imported games.
+		 *
+		 * @return the games handed to the persistence
+		 */
+		public long getImportedGames() {
+			return this.importedGames.get();
+		}
+
+		/**
+		 * Gets the invalid games.
+		 *
+		 * @return the games from a set up position, without moves or with an
+		 *         illegal move
+		 */
+		public long getInvalidGames() {
+			return this.invalidGames.get();
+		}
+
+		/**
+		 * Gets the duplicate games.
+		 *
+		 * @return the valid games left out because their moves were imported
+		 *         already
+		 */
+		public long getDuplicateGames() {
+			return this.duplicateGames.get();
+		}
+
+		/**
+		 * Gets the games per second.
+		 *
+		 * @return the games read per second
+		 */
+		public double getGamesPerSecond() {
+			return this.nanos == 0 ? 0 : getGames() * 1e9 / this.nanos;
+		}
+
+		/**
+		 * Gets the invalid rate.
+		 *
+		 * @return the share of the games read that were invalid
+		 */
+		public double getInvalidRate() {
+			return getGames() == 0 ? 0 : (double) getInvalidGames() / getGames();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return String.format("%d games, %d imported, %d duplicates, %.1f%% invalid, %.1f games/sec", getGames(),
+					getImportedGames(), getDuplicateGames(), getInvalidRate() * 100, getGamesPerSecond());
+		}
+	}
+}
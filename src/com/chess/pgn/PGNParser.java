@@ -0,0 +1,402 @@
+package com.chess.pgn;
+
+import java.io.Reader;
+import java.util.Arrays;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A single pass PGN reader. Characters are read straight from a
+ * {@link Reader} or a {@link ByteBuffer} through a small state machine, with
+ * no regular expressions and no copy of the game text, and the tag pairs, the
+ * moves of the main line and the results are handed to a {@link Handler} as
+ * they are found. Comments, variations, NAGs, move numbers, escaped lines and
+ * annotation marks are skipped; check and mate marks are kept on the moves.
+ * Bytes are read as ISO-8859-1. A parser keeps state while parsing, so each
+ * thread needs its own.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public final class PGNParser {
+
+	/** The Constant NONE. No character was pushed back. */
+	private static final int NONE = -2;
+
+	/** The handler. */
+	private final Handler handler;
+
+	/** The token. */
+	private char[] token = new char[32];
+
+	/** The length of the token. */
+	private int tokenLength;
+
+	/** The tag name. */
+	private final StringBuilder tagName = new StringBuilder(16);
+
+	/** The tag value. */
+	private final StringBuilder tagValue = new StringBuilder(64);
+
+	/** The buffer. */
+	private final char[] buffer = new char[1 << 13];
+
+	/** The bytes copied out of the byte buffer. */
+	private final byte[] chunk = new byte[1 << 13];
+
+	/** The reader, when parsing characters. */
+	private Reader reader;
+
+	/** The bytes, when parsing bytes. */
+	private ByteBuffer bytes;
+
+	/** The position in the buffer. */
+	private int position;
+
+	/** The end of the characters in the buffer. */
+	private int limit;
+
+	/** The pushed back character. */
+	private int pushedBack = NONE;
+
+	/** The last character read. */
+	private int current;
+
+	/** The character before it. */
+	private int previous;
+
+	/** Whether a game has started and not ended. */
+	private boolean inGame;
+
+	/**
+	 * Instantiates a new PGN parser.
+	 *
+	 * @param handler
+	 *            the handler
+	 */
+	public PGNParser(final Handler handler) {
+		this.handler = handler;
+	}
+
+	/**
+	 * Parses the characters of a reader until it ends.
+	 *
+	 * @param in
+	 *            the in
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void parse(final Reader in) throws IOException {
+		this.reader = in;
+		this.bytes = null;
+		this.position = 0;
+		this.limit = 0;
+		run();
+	}
+
+	/**
+	 * Parses the remaining bytes of a buffer.
+	 *
+	 * @param in
+	 *            the in
+	 */
+	public void parse(final ByteBuffer in) {
+		this.reader = null;
+		this.bytes = in;
+		this.position = 0;
+		this.limit = 0;
+		try {
+			run();
+		} catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Run.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void run() throws IOException {
+		this.pushedBack = NONE;
+		this.current = '\n';
+		this.inGame = false;
+		int depth = 0;
+		int c;
+		while ((c = read()) >= 0) {
+			switch (c) {
+			case '{':
+				skipUntil('}');
+				break;
+			case ';':
+				skipUntil('\n');
+				break;
+			case '(':
+				depth++;
+				break;
+			case ')':
+				depth = Math.max(depth - 1, 0);
+				break;
+			case '}':
+				break;
+			case '[':
+				if (depth == 0) {
+					if (this.inGame) {
+						// the last game had no result
+						this.inGame = false;
+						this.handler.endGame("*");
+					}
+					readTag();
+				}
+				break;
+			case '$':
+				readToken(read());
+				break;
+			case '%':
+				if (this.previous == '\n') {
+					skipUntil('\n');
+				}
+				break;
+			default:
+				if (c > ' ') {
+					readToken(c);
+					if (depth == 0) {
+						token();
+					}
+				}
+				break;
+			}
+		}
+		if (this.inGame) {
+			this.handler.endGame("*");
+		}
+	}
+
+	/**
+	 * Token. Passes the token just read to the handler.
+	 */
+	private void token() {
+		final char[] text = this.token;
+		int start = 0;
+		int end = this.tokenLength;
+		final String result = result(text, end);
+		if (result != null) {
+			this.inGame = false;
+			this.handler.endGame(result);
+			return;
+		}
+		if (end >= 3 && text[0] == '0' && text[1] == '-' && text[2] == '0') {
+			for (int i = 0; i < end; i++) {
+				if (text[i] == '0') {
+					text[i] = 'O';
+				}
+			}
+		}
+		// a move number, maybe with the move after it
+		while (start < end && ((text[start] >= '0' && text[start] <= '9') || text[start] == '.')) {
+			start++;
+		}
+		while (end > start && (text[end - 1] == '!' || text[end - 1] == '?')) {
+			end--;
+		}
+		this.inGame |= start > 0;
+		if (start < end && isMoveStart(text[start])) {
+			for (int i = start; i < end; i++) {
+				if (text[i] == '.') {
+					return;
+				}
+			}
+			this.inGame = true;
+			this.handler.move(new String(text, start, end - start));
+		}
+	}
+
+	/**
+	 * Read tag.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void readTag() throws IOException {
+		int c = read();
+		while (c >= 0 && c <= ' ') {
+			c = read();
+		}
+		final StringBuilder name = this.tagName;
+		name.setLength(0);
+		while (c > ' ' && c != '"' && c != ']') {
+			name.append((char) c);
+			c = read();
+		}
+		while (c >= 0 && c != '"' && c != ']') {
+			c = read();
+		}
+		final StringBuilder value = this.tagValue;
+		value.setLength(0);
+		if (c == '"') {
+			while ((c = read()) >= 0 && c != '"') {
+				if (c == '\\') {
+					c = read();
+				}
+				if (c >= 0) {
+					value.append((char) c);
+				}
+			}
+			skipUntil(']');
+		}
+		this.handler.tag(name.toString(), value.toString());
+	}
+
+	/**
+	 * Read token. Reads up to the next space or delimiter into the token.
+	 *
+	 * @param first
+	 *            the first character
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void readToken(final int first) throws IOException {
+		int length = 0;
+		int c = first;
+		while (c > ' ' && c != '{' && c != '}' && c != '(' && c != ')' && c != '[' && c != ';' && c != '$') {
+			if (length == this.token.length) {
+				this.token = Arrays.copyOf(this.token, length * 2);
+			}
+			this.token[length++] = (char) c;
+			c = read();
+		}
+		this.tokenLength = length;
+		if (c >= 0) {
+			this.pushedBack = c;
+		}
+	}
+
+	/**
+	 * Skip until.
+	 *
+	 * @param end
+	 *            the character ending the skipped text
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void skipUntil(final int end) throws IOException {
+		int c;
+		do {
+			c = read();
+		} while (c >= 0 && c != end);
+	}
+
+	/**
+	 * Read.
+	 *
+	 * @return the next character, or -1 at the end
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private int read() throws IOException {
+		if (this.pushedBack != NONE) {
+			final int c = this.pushedBack;
+			this.pushedBack = NONE;
+			return c;
+		}
+		if (this.position == this.limit) {
+			fill();
+		}
+		final int c = this.position < this.limit ? this.buffer[this.position++] : -1;
+		this.previous = this.current;
+		this.current = c;
+		return c;
+	}
+
+	/**
+	 * Fill. Reads the next characters into the buffer.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void fill() throws IOException {
+		this.position = 0;
+		if (this.bytes == null) {
+			this.limit = Math.max(this.reader.read(this.buffer, 0, this.buffer.length), 0);
+			return;
+		}
+		this.limit = Math.min(this.bytes.remaining(), this.buffer.length);
+		this.bytes.get(this.chunk, 0, this.limit);
+		for (int i = 0; i < this.limit; i++) {
+			this.buffer[i] = (char) (this.chunk[i] & 0xFF);
+		}
+	}
+
+	/**
+	 * Result.
+	 *
+	 * @param text
+	 *            the text
+	 * @param length
+	 *            the length of the text
+	 * @return the game result the text is, or null if it is none
+	 */
+	private static String result(final char[] text, final int length) {
+		if (length == 1 && text[0] == '*') {
+			return "*";
+		}
+		if (length == 3 && text[1] == '-') {
+			if (text[0] == '1' && text[2] == '0') {
+				return "1-0";
+			}
+			if (text[0] == '0' && text[2] == '1') {
+				return "0-1";
+			}
+		}
+		if (length == 7 && text[0] == '1' && text[1] == '/' && text[2] == '2' && text[3] == '-' && text[4] == '1'
+				&& text[5] == '/' && text[6] == '2') {
+			return "1/2-1/2";
+		}
+		return null;
+	}
+
+	/**
+	 * Checks if is move start.
+	 *
+	 * @param c
+	 *            the first character of a token
+	 * @return true, if a move can start with it
+	 */
+	private static boolean isMoveStart(final char c) {
+		return (c >= 'a' && c <= 'h') || c == 'N' || c == 'B' || c == 'R' || c == 'Q' || c == 'K' || c == 'O';
+	}
+
+	/**
+	 * Receives what a {@link PGNParser} finds, in the order it is found.
+	 */
+	public interface Handler {
+
+		/**
+		 * Tag.
+		 *
+		 * @param name
+		 *            the name
+		 * @param value
+		 *            the value
+		 */
+		void tag(String name, String value);
+
+		/**
+		 * Move. A move of the main line, in SAN.
+		 *
+		 * @param san
+		 *            the move
+		 */
+		void move(String san);
+
+		/**
+		 * End game.
+		 *
+		 * @param result
+		 *            1-0, 0-1, 1/2-1/2 or *, which also ends a file that
+		 *            stops before the result of its last game
+		 */
+		void endGame(String result);
+	}
+}
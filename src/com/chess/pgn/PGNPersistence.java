@@ -1,16 +1,12 @@
 package com.chess.pgn;
 
-import com.chess.engine.classic.board.Move;
-import com.chess.engine.classic.board.Board;
-import com.chess.engine.classic.player.Player;
-
 /**
  * PGN processing interface.
  *
  * @author Doa Oru
  * @version 06.08.2017
  */
-public interface PGNPersistence {
+public interface PGNPersistence extends BookProvider {
 
 	/**
 	 * Persist game.
@@ -21,15 +17,7 @@ public interface PGNPersistence {
 	void persistGame(Game game);
 
 	/**
-	 * Gets the next best move.
-	 *
-	 * @param board
-	 *            the board
-	 * @param player
-	 *            the player
-	 * @param gameText
-	 *            the game text
-	 * @return the next best move
+	 * Flush. Writes the persisted games that are still buffered.
 	 */
-	Move getNextBestMove(Board board, Player player, String gameText);
+	void flush();
 }
\ No newline at end of file
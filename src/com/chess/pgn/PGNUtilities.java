@@ -4,28 +4,21 @@ import java.io.File;
 import java.io.Writer;
 import java.util.Date;
 import java.util.List;
-import java.util.Arrays;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.io.StringReader;
 import java.util.Collections;
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.io.FileOutputStream;
 import java.text.SimpleDateFormat;
 import java.io.OutputStreamWriter;
+import java.util.concurrent.ForkJoinPool;
 
 import com.chess.gui.Table.MoveLog;
 import com.chess.engine.classic.board.Move;
 import com.chess.engine.classic.board.Board;
-import com.chess.engine.classic.board.BoardUtils;
 import com.chess.engine.classic.board.Move.MoveFactory;
-
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableList.Builder;
+import com.chess.engine.classic.board.Move.PawnPromotion;
 
 /**
  * Utilities for PGN tasks. Has things likle writing a game to a PGN or reading
@@ -36,35 +29,6 @@ import com.google.common.collect.ImmutableList.Builder;
  */
 public class PGNUtilities {
 
-	/** The Constant PGN_PATTERN. */
-	private static final Pattern PGN_PATTERN = Pattern.compile("\\[(\\w+)\\s+\"(.*?)\"\\]$");
-
-	/** The Constant KING_SIDE_CASTLE. */
-	private static final Pattern KING_SIDE_CASTLE = Pattern.compile("O-O#?\\+?");
-
-	/** The Constant QUEEN_SIDE_CASTLE. */
-	private static final Pattern QUEEN_SIDE_CASTLE = Pattern.compile("O-O-O#?\\+?");
-
-	/** The Constant PLAIN_PAWN_MOVE. */
-	private static final Pattern PLAIN_PAWN_MOVE = Pattern.compile("^([a-h][0-8])(\\+)?(#)?$");
-
-	/** The Constant PAWN_ATTACK_MOVE. */
-	private static final Pattern PAWN_ATTACK_MOVE = Pattern.compile("(^[a-h])(x)([a-h][0-8])(\\+)?(#)?$");
-
-	/** The Constant PLAIN_MAJOR_MOVE. */
-	private static final Pattern PLAIN_MAJOR_MOVE = Pattern
-			.compile("^(B|N|R|Q|K)([a-h]|[1-8])?([a-h][0-8])(\\+)?(#)?$");
-
-	/** The Constant MAJOR_ATTACK_MOVE. */
-	private static final Pattern MAJOR_ATTACK_MOVE = Pattern
-			.compile("^(B|N|R|Q|K)([a-h]|[1-8])?(x)([a-h][0-8])(\\+)?(#)?$");
-
-	/** The Constant PLAIN_PAWN_PROMOTION_MOVE. */
-	private static final Pattern PLAIN_PAWN_PROMOTION_MOVE = Pattern.compile("(.*?)=(.*?)");
-
-	/** The Constant ATTACK_PAWN_PROMOTION_MOVE. */
-	private static final Pattern ATTACK_PAWN_PROMOTION_MOVE = Pattern.compile("(.*?)x(.*?)=(.*?)");
-
 	/**
 	 * Instantiates a new PGN utilities.
 	 */
@@ -77,50 +41,21 @@ public class PGNUtilities {
 	 *
 	 * @param pgnFile
 	 *            the pgn file
+	 * @param persistence
+	 *            the persistence the games are stored in
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	public static void persistPGNFile(final File pgnFile) throws IOException {
-		int count = 0;
-		int validCount = 0;
-		try (final BufferedReader br = new BufferedReader(new FileReader(pgnFile))) {
-			String line;
-			PGNGameTags.TagsBuilder tagsBuilder = new PGNGameTags.TagsBuilder();
-			StringBuilder gameTextBuilder = new StringBuilder();
-			while ((line = br.readLine()) != null) {
-				if (!line.isEmpty()) {
-					if (isTag(line)) {
-						final Matcher matcher = PGN_PATTERN.matcher(line);
-						if (matcher.find()) {
-							tagsBuilder.addTag(matcher.group(1), matcher.group(2));
-						}
-					} else if (isEndOfGame(line)) {
-						final String[] ending = line.split(" ");
-						final String outcome = ending[ending.length - 1];
-						System.out.print(outcome);
-						gameTextBuilder.append(line.replace(outcome, "")).append(" ");
-						final String gameText = gameTextBuilder.toString().trim();
-						System.out.print(gameText);
-						if (!gameText.isEmpty() && gameText.length() > 80) {
-							Game game = GameFactory.createGame(tagsBuilder.build(), gameText, outcome);
-							System.out
-									.println("(" + (++count) + ") Finished parsing " + game + " count = " + (++count));
-							if (game.isValid()) {
-								MySqlGamePersistence.get().persistGame(game);
-								validCount++;
-							}
-						}
-						gameTextBuilder = new StringBuilder();
-						tagsBuilder = new PGNGameTags.TagsBuilder();
-					} else {
-						gameTextBuilder.append(line).append(" ");
-					}
-				}
-			}
-			br.readLine();
+	public static void persistPGNFile(final File pgnFile, final PGNPersistence persistence) throws IOException {
+		final ForkJoinPool pool = new ForkJoinPool();
+		try {
+			final PGNImporter importer = new PGNImporter(persistence, pool, PGNImporter.CHUNK_SIZE,
+					PGNImporter.QUEUE_CAPACITY, PGNImporter.BATCH_SIZE);
+			final PGNImporter.Statistics statistics = importer.importFile(pgnFile);
+			System.out.println("Finished building book from pgn file: " + pgnFile + ", " + statistics);
+		} finally {
+			pool.shutdown();
 		}
-		System.out.println("Finished building book from pgn file: " + pgnFile + " Parsed " + count + " games, valid = "
-				+ validCount);
 	}
 
 	/**
@@ -186,67 +121,30 @@ public class PGNUtilities {
 	 *             the parse PGN exception
 	 */
 	public static List<String> processMoveText(final String gameText) throws ParsePGNException {
-		return gameText.isEmpty() ? Collections.<String>emptyList() : createMovesFromPGN(gameText);
-	}
-
-	/**
-	 * Creates the moves from PGN.
-	 *
-	 * @param pgnText
-	 *            the pgn text
-	 * @return the list
-	 */
-	private static List<String> createMovesFromPGN(final String pgnText) {
-		if (!pgnText.startsWith("1.")) {
-			return Collections.emptyList();
+		if (gameText.isEmpty()) {
+			return Collections.<String>emptyList();
 		}
-		final List<String> sanitizedMoves = new LinkedList<>(
-				Arrays.asList(removeParenthesis(pgnText).replaceAll(Pattern.quote("$") + "[0-9]+", "")
-						.replaceAll("[0-9]+\\s*\\.\\.\\.", "").split("\\s*[0-9]+" + Pattern.quote("."))));
-		final List<String> processedData = removeEmptyText(sanitizedMoves);
-		final String[] moveRows = processedData.toArray(new String[processedData.size()]);
-		final ImmutableList.Builder<String> moves = new Builder<>();
-		for (final String row : moveRows) {
-			final String[] moveContent = removeWhiteSpace(row).split(" ");
-			if (moveContent.length == 1) {
-				moves.add(moveContent[0]);
-			} else if (moveContent.length == 2) {
-				moves.add(moveContent[0]);
-				moves.add(moveContent[1]);
-			} else {
-				System.out.println("problem reading: " + pgnText + " skipping!");
-				return Collections.emptyList();
+		final List<String> moves = new ArrayList<>();
+		final PGNParser parser = new PGNParser(new PGNParser.Handler() {
+			@Override
+			public void tag(final String name, final String value) {
 			}
-		}
-		return moves.build();
-	}
 
-	/**
-	 * Removes the empty text.
-	 *
-	 * @param moves
-	 *            the moves
-	 * @return the list
-	 */
-	private static List<String> removeEmptyText(final List<String> moves) {
-		final List<String> result = new ArrayList<>();
-		for (final String moveText : moves) {
-			if (!moveText.isEmpty()) {
-				result.add(moveText);
+			@Override
+			public void move(final String san) {
+				moves.add(san);
 			}
-		}
-		return result;
-	}
 
-	/**
-	 * Removes the white space.
-	 *
-	 * @param row
-	 *            the row
-	 * @return the string
-	 */
-	private static String removeWhiteSpace(final String row) {
-		return row.trim().replaceAll("\\s+", " ");
+			@Override
+			public void endGame(final String result) {
+			}
+		});
+		try {
+			parser.parse(new StringReader(gameText));
+		} catch (final IOException e) {
+			throw new ParsePGNException(e.getMessage());
+		}
+		return moves;
 	}
 
 	/**
@@ -256,7 +154,7 @@ public class PGNUtilities {
 	 *            the game text
 	 * @return true, if is tag
 	 */
-	private static boolean isTag(final String gameText) {
+	static boolean isTag(final String gameText) {
 		return gameText.startsWith("[") && gameText.endsWith("]");
 	}
 
@@ -267,100 +165,155 @@ public class PGNUtilities {
 	 *            the game text
 	 * @return true, if is end of game
 	 */
-	private static boolean isEndOfGame(final String gameText) {
+	static boolean isEndOfGame(final String gameText) {
 		return gameText.endsWith("1-0") || gameText.endsWith("0-1") || gameText.endsWith("1/2-1/2")
 				|| gameText.endsWith("*");
 	}
 
 	/**
-	 * Removes the parenthesis.
+	 * Creates the move.
 	 *
-	 * @param gameText
-	 *            the game text
-	 * @return the string
+	 * @param board
+	 *            the board
+	 * @param pgnText
+	 *            the pgn text
+	 * @return the move
 	 */
-	private static String removeParenthesis(final String gameText) {
-		int parenthesisCounter = 0;
-		final StringBuilder builder = new StringBuilder();
-		for (final char c : gameText.toCharArray()) {
-			if (c == '(' || c == '{') {
-				parenthesisCounter++;
+	public static Move createMove(final Board board, final String pgnText) {
+		int end = pgnText.length();
+		while (end > 0 && "+#!?".indexOf(pgnText.charAt(end - 1)) >= 0) {
+			end--;
+		}
+		if (pgnText.startsWith("O-O-O") || pgnText.startsWith("0-0-0")) {
+			return extractCastleMove(board, "O-O-O");
+		}
+		if (pgnText.startsWith("O-O") || pgnText.startsWith("0-0")) {
+			return extractCastleMove(board, "O-O");
+		}
+		int start = 0;
+		char movedPiece = 'P';
+		if (end > 0 && "NBRQK".indexOf(pgnText.charAt(0)) >= 0) {
+			movedPiece = pgnText.charAt(0);
+			start = 1;
+		}
+		char promotion = ' ';
+		if (movedPiece == 'P' && end > 2 && "NBRQ".indexOf(pgnText.charAt(end - 1)) >= 0) {
+			promotion = pgnText.charAt(end - 1);
+			end -= pgnText.charAt(end - 2) == '=' ? 2 : 1;
+		}
+		if (end - start < 2 || !isFile(pgnText.charAt(end - 2)) || !isRank(pgnText.charAt(end - 1))) {
+			return MoveFactory.getNullMove();
+		}
+		final int destinationCoordinate = coordinate(pgnText.charAt(end - 2), pgnText.charAt(end - 1));
+		int sourceFile = -1;
+		int sourceRank = -1;
+		for (int i = start; i < end - 2; i++) {
+			final char c = pgnText.charAt(i);
+			if (isFile(c)) {
+				sourceFile = c - 'a';
+			} else if (isRank(c)) {
+				sourceRank = c - '1';
+			} else if (c != 'x' && c != ':' && c != '-') {
+				return MoveFactory.getNullMove();
 			}
-			if (c == ')' || c == '}') {
-				parenthesisCounter--;
+		}
+		Move found = MoveFactory.getNullMove();
+		boolean ambiguous = false;
+		for (final Move move : board.currentPlayer().getLegalMoves()) {
+			if (matches(move, movedPiece, destinationCoordinate, sourceFile, sourceRank, promotion)) {
+				ambiguous = found != MoveFactory.getNullMove();
+				if (ambiguous) {
+					break;
+				}
+				found = move;
 			}
-			if (!(c == '(' || c == '{' || c == ')' || c == '}') && parenthesisCounter == 0) {
-				builder.append(c);
+		}
+		if (!ambiguous) {
+			return found;
+		}
+		// a pin can leave only one of them legal
+		found = MoveFactory.getNullMove();
+		for (final Move move : board.currentPlayer().getLegalMoves()) {
+			if (matches(move, movedPiece, destinationCoordinate, sourceFile, sourceRank, promotion)
+					&& board.currentPlayer().makeMove(move).getMoveStatus().isDone()) {
+				if (found != MoveFactory.getNullMove()) {
+					return MoveFactory.getNullMove();
+				}
+				found = move;
 			}
 		}
-		return builder.toString();
+		return found;
 	}
 
 	/**
-	 * Creates the move.
+	 * Matches.
 	 *
-	 * @param board
-	 *            the board
-	 * @param pgnText
-	 *            the pgn text
-	 * @return the move
+	 * @param move
+	 *            the move
+	 * @param movedPiece
+	 *            the letter of the moved piece
+	 * @param destinationCoordinate
+	 *            the destination coordinate
+	 * @param sourceFile
+	 *            the file the piece moves from, or -1 if not given
+	 * @param sourceRank
+	 *            the rank the piece moves from, or -1 if not given
+	 * @param promotion
+	 *            the letter of the promotion piece, or a space if not given
+	 * @return true, if the move fits the SAN parts
 	 */
-	public static Move createMove(final Board board, final String pgnText) {
-		final Matcher kingSideCastleMatcher = KING_SIDE_CASTLE.matcher(pgnText);
-		final Matcher queenSideCastleMatcher = QUEEN_SIDE_CASTLE.matcher(pgnText);
-		final Matcher plainPawnMatcher = PLAIN_PAWN_MOVE.matcher(pgnText);
-		final Matcher attackPawnMatcher = PAWN_ATTACK_MOVE.matcher(pgnText);
-		final Matcher pawnPromotionMatcher = PLAIN_PAWN_PROMOTION_MOVE.matcher(pgnText);
-		final Matcher attackPawnPromotionMatcher = ATTACK_PAWN_PROMOTION_MOVE.matcher(pgnText);
-		final Matcher plainMajorMatcher = PLAIN_MAJOR_MOVE.matcher(pgnText);
-		final Matcher attackMajorMatcher = MAJOR_ATTACK_MOVE.matcher(pgnText);
+	private static boolean matches(final Move move, final char movedPiece, final int destinationCoordinate,
+			final int sourceFile, final int sourceRank, final char promotion) {
+		if (move.getDestinationCoordinate() != destinationCoordinate || move.isCastlingMove()
+				|| move.getMovedPiece().getPieceType().toString().charAt(0) != movedPiece) {
+			return false;
+		}
+		final int sourceCoordinate = move.getCurrentCoordinate();
+		if ((sourceFile >= 0 && sourceCoordinate % 8 != sourceFile)
+				|| (sourceRank >= 0 && 7 - sourceCoordinate / 8 != sourceRank)) {
+			return false;
+		}
+		if (!(move instanceof PawnPromotion)) {
+			return promotion == ' ';
+		}
+		// a promotion without a piece is to a queen
+		final char promotionPiece = ((PawnPromotion) move).getPromotionPiece().getPieceType().toString().charAt(0);
+		return promotionPiece == (promotion == ' ' ? 'Q' : promotion);
+	}
 
-		int currentCoordinate;
-		int destinationCoordinate;
+	/**
+	 * Checks if is file.
+	 *
+	 * @param c
+	 *            the c
+	 * @return true, if the character is a file letter
+	 */
+	private static boolean isFile(final char c) {
+		return c >= 'a' && c <= 'h';
+	}
 
-		if (kingSideCastleMatcher.matches()) {
-			return extractCastleMove(board, "O-O");
-		} else if (queenSideCastleMatcher.matches()) {
-			return extractCastleMove(board, "O-O-O");
-		} else if (plainPawnMatcher.matches()) {
-			final String destinationSquare = plainPawnMatcher.group(1);
-			destinationCoordinate = BoardUtils.INSTANCE.getCoordinateAtPosition(destinationSquare);
-			currentCoordinate = deriveCurrentCoordinate(board, "P", destinationSquare, "");
-			return MoveFactory.createMove(board, currentCoordinate, destinationCoordinate);
-		} else if (attackPawnMatcher.matches()) {
-			final String destinationSquare = attackPawnMatcher.group(3);
-			destinationCoordinate = BoardUtils.INSTANCE.getCoordinateAtPosition(destinationSquare);
-			final String disambiguationFile = attackPawnMatcher.group(1) != null ? attackPawnMatcher.group(1) : "";
-			currentCoordinate = deriveCurrentCoordinate(board, "P", destinationSquare, disambiguationFile);
-			return MoveFactory.createMove(board, currentCoordinate, destinationCoordinate);
-		} else if (attackPawnPromotionMatcher.matches()) {
-			final String destinationSquare = attackPawnPromotionMatcher.group(2);
-			final String disambiguationFile = attackPawnPromotionMatcher.group(1) != null
-					? attackPawnPromotionMatcher.group(1) : "";
-			destinationCoordinate = BoardUtils.INSTANCE.getCoordinateAtPosition(destinationSquare);
-			currentCoordinate = deriveCurrentCoordinate(board, "P", destinationSquare, disambiguationFile);
-			return MoveFactory.createMove(board, currentCoordinate, destinationCoordinate);
-		} else if (pawnPromotionMatcher.find()) {
-			final String destinationSquare = pawnPromotionMatcher.group(1);
-			destinationCoordinate = BoardUtils.INSTANCE.getCoordinateAtPosition(destinationSquare);
-			currentCoordinate = deriveCurrentCoordinate(board, "P", destinationSquare, "");
-			return MoveFactory.createMove(board, currentCoordinate, destinationCoordinate);
-		} else if (plainMajorMatcher.find()) {
-			final String destinationSquare = plainMajorMatcher.group(3);
-			destinationCoordinate = BoardUtils.INSTANCE.getCoordinateAtPosition(destinationSquare);
-			final String disambiguationFile = plainMajorMatcher.group(2) != null ? plainMajorMatcher.group(2) : "";
-			currentCoordinate = deriveCurrentCoordinate(board, plainMajorMatcher.group(1), destinationSquare,
-					disambiguationFile);
-			return MoveFactory.createMove(board, currentCoordinate, destinationCoordinate);
-		} else if (attackMajorMatcher.find()) {
-			final String destinationSquare = attackMajorMatcher.group(4);
-			destinationCoordinate = BoardUtils.INSTANCE.getCoordinateAtPosition(destinationSquare);
-			final String disambiguationFile = attackMajorMatcher.group(2) != null ? attackMajorMatcher.group(2) : "";
-			currentCoordinate = deriveCurrentCoordinate(board, attackMajorMatcher.group(1), destinationSquare,
-					disambiguationFile);
-			return MoveFactory.createMove(board, currentCoordinate, destinationCoordinate);
-		}
-		return MoveFactory.getNullMove();
+	/**
+	 * Checks if is rank.
+	 *
+	 * @param c
+	 *            the c
+	 * @return true, if the character is a rank number
+	 */
+	private static boolean isRank(final char c) {
+		return c >= '1' && c <= '8';
+	}
+
+	/**
+	 * Coordinate.
+	 *
+	 * @param file
+	 *            the file letter
+	 * @param rank
+	 *            the rank number
+	 * @return the coordinate of the square
+	 */
+	private static int coordinate(final char file, final char rank) {
+		return ('8' - rank) * 8 + (file - 'a');
 	}
 
 	/**
@@ -380,71 +333,4 @@ public class PGNUtilities {
 		}
 		return MoveFactory.getNullMove();
 	}
-
-	/**
-	 * Derive current coordinate.
-	 *
-	 * @param board
-	 *            the board
-	 * @param movedPiece
-	 *            the moved piece
-	 * @param destinationSquare
-	 *            the destination square
-	 * @param disambiguationFile
-	 *            the disambiguation file
-	 * @return the int
-	 * @throws RuntimeException
-	 *             the runtime exception
-	 */
-	private static int deriveCurrentCoordinate(final Board board, final String movedPiece,
-			final String destinationSquare, final String disambiguationFile) throws RuntimeException {
-		final List<Move> currentCandidates = new ArrayList<>();
-		final int destinationCoordinate = BoardUtils.INSTANCE.getCoordinateAtPosition(destinationSquare);
-		for (final Move move : board.currentPlayer().getLegalMoves()) {
-			if (move.getDestinationCoordinate() == destinationCoordinate
-					&& move.getMovedPiece().toString().equals(movedPiece)) {
-				currentCandidates.add(move);
-			}
-		}
-		if (currentCandidates.size() == 0) {
-			return -1;
-		}
-		return currentCandidates.size() == 1 ? currentCandidates.iterator().next().getCurrentCoordinate()
-				: extractFurther(currentCandidates, movedPiece, disambiguationFile);
-	}
-
-	/**
-	 * Extract further.
-	 *
-	 * @param candidateMoves
-	 *            the candidate moves
-	 * @param movedPiece
-	 *            the moved piece
-	 * @param disambiguationFile
-	 *            the disambiguation file
-	 * @return the int
-	 */
-	private static int extractFurther(final List<Move> candidateMoves, final String movedPiece,
-			final String disambiguationFile) {
-		final List<Move> currentCandidates = new ArrayList<>();
-		for (final Move move : candidateMoves) {
-			if (move.getMovedPiece().getPieceType().toString().equals(movedPiece)) {
-				currentCandidates.add(move);
-			}
-		}
-		if (currentCandidates.size() == 1) {
-			return currentCandidates.iterator().next().getCurrentCoordinate();
-		}
-		final List<Move> candidatesRefined = new ArrayList<>();
-		for (final Move move : currentCandidates) {
-			final String pos = BoardUtils.INSTANCE.getPositionAtCoordinate(move.getCurrentCoordinate());
-			if (pos.contains(disambiguationFile)) {
-				candidatesRefined.add(move);
-			}
-		}
-		if (candidatesRefined.size() == 1) {
-			return candidatesRefined.iterator().next().getCurrentCoordinate();
-		}
-		return -1;
-	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,728 @@
+package com.chess.pgn;
+
+import java.io.File;
+import java.util.List;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.RandomAccessFile;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.util.PriorityQueue;
+import java.io.BufferedInputStream;
+import java.nio.channels.FileChannel;
+import java.io.BufferedOutputStream;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.board.MoveTransition;
+import com.chess.engine.classic.board.Move.MoveFactory;
+
+/**
+ * The games of a PGN file that reach each position, by Zobrist key, so every
+ * game through a position is found whatever order its moves came in. The
+ * games are numbered as in the {@link PGNDatabase} of the file, and the index
+ * is kept next to it in a side-car file, rebuilt when the file changes. The
+ * file holds the posting lists, each the ascending game numbers of a position
+ * written as varint gaps, followed by a table of the positions sorted by key
+ * with the offset, size and length of their lists, which is memory mapped and
+ * binary searched, so a lookup reads one list. The starting position and the
+ * positions after every ply of every game are indexed, a game once per
+ * position however often it is reached; games from a set up position are left
+ * out, and so are the moves after the first illegal one. The index is built in parallel: the games are
+ * split into ranges replayed by a fork join pool, each range writing its pairs
+ * of key and game sorted to a run file, and the runs are merged into the
+ * lists.
+ *
+ * @author Doa Oru
+ * @version 06.08.2017
+ */
+public final class PositionIndex {
+
+	/** The Constant INDEX_EXTENSION. */
+	public static final String INDEX_EXTENSION = ".pos";
+
+	/** The Constant GAMES_PER_TASK. */
+	public static final int GAMES_PER_TASK = 4096;
+
+	/** The Constant MAGIC. */
+	private static final int MAGIC = 0x32534F50;
+
+	/** The Constant HEADER_SIZE. */
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8 + 8;
+
+	/** The Constant ENTRY_SIZE. The key, the offset, the size and the length of a list. */
+	private static final int ENTRY_SIZE = 8 + 8 + 4 + 4;
+
+	/** The Constant SEGMENT_BITS. A mapped segment holds 2^26 entries, 1.5 GB. */
+	private static final int SEGMENT_BITS = 26;
+
+	/** The Constant RUN_BUFFER. */
+	private static final int RUN_BUFFER = 1 << 14;
+
+	/** The file. */
+	private final RandomAccessFile file;
+
+	/** The segments of the position table. */
+	private final ByteBuffer[] segments;
+
+	/** The number of positions. */
+	private final long positions;
+
+	/** The number of games. */
+	private final int games;
+
+	/**
+	 * Instantiates a new position index.
+	 *
+	 * @param file
+	 *            the file
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private PositionIndex(final RandomAccessFile file) throws IOException {
+		this.file = file;
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		file.getChannel().read(header, 0);
+		this.games = header.getInt(4);
+		this.positions = header.getLong(24);
+		this.segments = new ByteBuffer[(int) ((this.positions + (1L << SEGMENT_BITS) - 1) >>> SEGMENT_BITS)];
+		for (int i = 0; i < this.segments.length; i++) {
+			final long first = (long) i << SEGMENT_BITS;
+			final long count = Math.min(this.positions - first, 1L << SEGMENT_BITS);
+			this.segments[i] = file.getChannel().map(FileChannel.MapMode.READ_ONLY,
+					header.getLong(32) + first * ENTRY_SIZE, count * ENTRY_SIZE);
+		}
+	}
+
+	/**
+	 * Open.
+	 *
+	 * @param pgnFile
+	 *            the PGN file
+	 * @param pool
+	 *            the pool replaying the games if the index is built
+	 * @return the position index
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static PositionIndex open(final File pgnFile, final ForkJoinPool pool) throws IOException {
+		return open(pgnFile, pool, GAMES_PER_TASK);
+	}
+
+	/**
+	 * Open. Builds the index first if it is missing or out of date.
+	 *
+	 * @param pgnFile
+	 *            the PGN file
+	 * @param pool
+	 *            the pool replaying the games if the index is built
+	 * @param gamesPerTask
+	 *            the games replayed by one task
+	 * @return the position index
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static PositionIndex open(final File pgnFile, final ForkJoinPool pool, final int gamesPerTask)
+			throws IOException {
+		final File indexFile = indexFile(pgnFile);
+		if (!isCurrent(indexFile, pgnFile)) {
+			final PGNDatabase database = PGNDatabase.open(pgnFile);
+			try {
+				build(database, pgnFile, indexFile, pool, gamesPerTask);
+			} finally {
+				database.close();
+			}
+		}
+		return new PositionIndex(new RandomAccessFile(indexFile, "r"));
+	}
+
+	/**
+	 * Index file.
+	 *
+	 * @param pgnFile
+	 *            the PGN file
+	 * @return the index file of it
+	 */
+	public static File indexFile(final File pgnFile) {
+		return new File(pgnFile.getPath() + INDEX_EXTENSION);
+	}
+
+	/**
+	 * Close.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void close() throws IOException {
+		this.file.close();
+	}
+
+	/**
+	 * Size.
+	 *
+	 * @return the number of positions
+	 */
+	public long size() {
+		return this.positions;
+	}
+
+	/**
+	 * Gets the games.
+	 *
+	 * @return the number of games of the PGN file
+	 */
+	public int getGames() {
+		return this.games;
+	}
+
+	/**
+	 * Games.
+	 *
+	 * @param board
+	 *            the board
+	 * @return the numbers of the games reaching the position, ascending
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int[] games(final Board board) throws IOException {
+		return games(board.getZobristKey());
+	}
+
+	/**
+	 * Games.
+	 *
+	 * @param key
+	 *            the Zobrist key of a position
+	 * @return the numbers of the games reaching the position, ascending
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public int[] games(final long key) throws IOException {
+		long low = 0;
+		long high = this.positions - 1;
+		while (low <= high) {
+			final long middle = (low + high) >>> 1;
+			final ByteBuffer segment = segment(middle);
+			final int entry = offset(middle);
+			final int order = BookEntry.compareKeys(segment.getLong(entry), key);
+			if (order < 0) {
+				low = middle + 1;
+			} else if (order > 0) {
+				high = middle - 1;
+			} else {
+				final ByteBuffer list = ByteBuffer.allocate(segment.getInt(entry + 20));
+				while (list.hasRemaining()) {
+					if (this.file.getChannel().read(list, segment.getLong(entry + 8) + list.position()) < 0) {
+						throw new IOException("the position index is cut short");
+					}
+				}
+				list.flip();
+				final int[] games = new int[segment.getInt(entry + 16)];
+				int game = -1;
+				for (int i = 0; i < games.length; i++) {
+					game += readVarint(list) + 1;
+					games[i] = game;
+				}
+				return games;
+			}
+		}
+		return new int[0];
+	}
+
+	/**
+	 * Segment.
+	 *
+	 * @param index
+	 *            the index of the entry
+	 * @return the segment holding the entry
+	 */
+	private ByteBuffer segment(final long index) {
+		return this.segments[(int) (index >>> SEGMENT_BITS)];
+	}
+
+	/**
+	 * Offset.
+	 *
+	 * @param index
+	 *            the index of the entry
+	 * @return the byte offset of the entry in its segment
+	 */
+	private static int offset(final long index) {
+		return (int) (index & ((1L << SEGMENT_BITS) - 1)) * ENTRY_SIZE;
+	}
+
+	/**
+	 * Checks if is current.
+	 *
+	 * @param indexFile
+	 *            the index file
+	 * @param pgnFile
+	 *            the PGN file
+	 * @return true, if the index was built from the PGN file as it is now
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static boolean isCurrent(final File indexFile, final File pgnFile) throws IOException {
+		if (!indexFile.isFile() || indexFile.length() < HEADER_SIZE) {
+			return false;
+		}
+		try (final RandomAccessFile in = new RandomAccessFile(indexFile, "r")) {
+			return in.readInt() == MAGIC && in.readInt() >= 0 && in.readLong() == pgnFile.length()
+					&& in.readLong() == pgnFile.lastModified();
+		}
+	}
+
+	/**
+	 * Builds the index.
+	 *
+	 * @param database
+	 *            the database of the PGN file
+	 * @param pgnFile
+	 *            the PGN file
+	 * @param indexFile
+	 *            the index file
+	 * @param pool
+	 *            the pool
+	 * @param gamesPerTask
+	 *            the games replayed by one task
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static void build(final PGNDatabase database, final File pgnFile, final File indexFile,
+			final ForkJoinPool pool, final int gamesPerTask) throws IOException {
+		final List<RangeTask> tasks = new ArrayList<>();
+		for (int first = 0; first < database.size(); first += gamesPerTask) {
+			tasks.add(new RangeTask(database, first, Math.min(first + gamesPerTask, database.size()),
+					indexFile.getAbsoluteFile().getParentFile()));
+		}
+		final List<File> runs = new ArrayList<>();
+		try {
+			for (final RangeTask task : tasks) {
+				pool.execute(task);
+			}
+			for (final RangeTask task : tasks) {
+				task.join();
+				runs.add(task.run);
+			}
+			merge(runs, database.size(), pgnFile, indexFile);
+		} catch (final RuntimeException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw e;
+		} finally {
+			for (final RangeTask task : tasks) {
+				if (task.run != null) {
+					Files.deleteIfExists(task.run.toPath());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Merge. Writes the posting lists and then the position table, through a
+	 * temporary file.
+	 *
+	 * @param runs
+	 *            the runs
+	 * @param games
+	 *            the number of games
+	 * @param pgnFile
+	 *            the PGN file
+	 * @param indexFile
+	 *            the index file
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static void merge(final List<File> runs, final int games, final File pgnFile, final File indexFile)
+			throws IOException {
+		final File temporary = new File(indexFile.getPath() + ".tmp");
+		final File tableFile = new File(indexFile.getPath() + ".table");
+		final PriorityQueue<Run> queue = new PriorityQueue<>(Math.max(runs.size(), 1), new Comparator<Run>() {
+			@Override
+			public int compare(final Run run, final Run other) {
+				final int keyOrder = BookEntry.compareKeys(run.key, other.key);
+				return keyOrder != 0 ? keyOrder : Integer.compare(run.game, other.game);
+			}
+		});
+		long positions = 0;
+		long offset = HEADER_SIZE;
+		try (final FileOutputStream file = new FileOutputStream(temporary);
+				final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+			out.write(new byte[HEADER_SIZE]);
+			for (final File runFile : runs) {
+				final Run run = new Run(runFile);
+				if (run.next()) {
+					queue.add(run);
+				} else {
+					run.close();
+				}
+			}
+			try (final DataOutputStream table = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tableFile), 1 << 16))) {
+				boolean started = false;
+				long key = 0;
+				int previous = -1;
+				int size = 0;
+				long start = offset;
+				while (!queue.isEmpty()) {
+					final Run run = queue.poll();
+					if (!started || run.key != key) {
+						if (started) {
+							writeEntry(table, key, start, size, (int) (offset - start));
+							positions++;
+						}
+						started = true;
+						key = run.key;
+						previous = -1;
+						size = 0;
+						start = offset;
+					}
+					// a game reaching a position twice is listed once
+					if (run.game != previous) {
+						offset += writeVarint(out, run.game - previous - 1);
+						previous = run.game;
+						size++;
+					}
+					if (run.next()) {
+						queue.add(run);
+					} else {
+						run.close();
+					}
+				}
+				if (started) {
+					writeEntry(table, key, start, size, (int) (offset - start));
+					positions++;
+				}
+			}
+			Files.copy(tableFile.toPath(), out);
+			out.flush();
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(games).putLong(pgnFile.length()).putLong(pgnFile.lastModified())
+					.putLong(positions).putLong(offset).flip();
+			file.getChannel().write(header, 0);
+			file.getChannel().force(true);
+		} finally {
+			for (final Run run : queue) {
+				run.close();
+			}
+			Files.deleteIfExists(tableFile.toPath());
+		}
+		Files.move(temporary.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Write entry.
+	 *
+	 * @param table
+	 *            the position table
+	 * @param key
+	 *            the key
+	 * @param offset
+	 *            the offset of the list
+	 * @param size
+	 *            the number of games in the list
+	 * @param length
+	 *            the length of the list in bytes
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static void writeEntry(final DataOutputStream table, final long key, final long offset, final int size,
+			final int length) throws IOException {
+		table.writeLong(key);
+		table.writeLong(offset);
+		table.writeInt(size);
+		table.writeInt(length);
+	}
+
+	/**
+	 * Write varint. Seven bits a byte, the lowest first, the high bit set on
+	 * all bytes but the last.
+	 *
+	 * @param out
+	 *            the out
+	 * @param value
+	 *            the value, not negative
+	 * @return the number of bytes written
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	static int writeVarint(final DataOutputStream out, final int value) throws IOException {
+		int rest = value;
+		int bytes = 1;
+		while ((rest & ~0x7F) != 0) {
+			out.writeByte((rest & 0x7F) | 0x80);
+			rest >>>= 7;
+			bytes++;
+		}
+		out.writeByte(rest);
+		return bytes;
+	}
+
+	/**
+	 * Read varint.
+	 *
+	 * @param in
+	 *            the in
+	 * @return the value
+	 */
+	static int readVarint(final ByteBuffer in) {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in.get();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return value;
+	}
+
+	/**
+	 * Replays a range of games and writes their pairs of key and game number
+	 * to a run file, sorted.
+	 */
+	private static final class RangeTask extends RecursiveAction {
+
+		/** The Constant serialVersionUID. */
+		private static final long serialVersionUID = 1L;
+
+		/** The database. */
+		private final PGNDatabase database;
+
+		/** The first game. */
+		private final int first;
+
+		/** The game past the last. */
+		private final int last;
+
+		/** The directory of the run. */
+		private final File directory;
+
+		/** The keys. */
+		private long[] keys = new long[1 << 12];
+
+		/** The games. */
+		private int[] games = new int[1 << 12];
+
+		/** The number of pairs. */
+		private int size;
+
+		/** The run, once written. */
+		private File run;
+
+		/**
+		 * Instantiates a new range task.
+		 *
+		 * @param database
+		 *            the database
+		 * @param first
+		 *            the first game
+		 * @param last
+		 *            the game past the last
+		 * @param directory
+		 *            the directory of the run
+		 */
+		private RangeTask(final PGNDatabase database, final int first, final int last, final File directory) {
+			this.database = database;
+			this.first = first;
+			this.last = last;
+			this.directory = directory;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		@Override
+		protected void compute() {
+			try {
+				for (int game = this.first; game < this.last; game++) {
+					replay(game);
+				}
+				sort(new long[this.size], new int[this.size], 0, this.size);
+				final File file = File.createTempFile("positions", ".run", this.directory);
+				file.deleteOnExit();
+				try (final DataOutputStream out = new DataOutputStream(
+						new BufferedOutputStream(new FileOutputStream(file), RUN_BUFFER))) {
+					for (int i = 0; i < this.size; i++) {
+						out.writeLong(this.keys[i]);
+						out.writeInt(this.games[i]);
+					}
+				} finally {
+					this.run = file;
+				}
+				this.keys = null;
+				this.games = null;
+			} catch (final IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		/**
+		 * Replay. Adds the positions of a game.
+		 *
+		 * @param game
+		 *            the game number
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private void replay(final int game) throws IOException {
+			final List<String> moves = new ArrayList<>();
+			final boolean[] setUp = { false };
+			new PGNParser(new PGNParser.Handler() {
+				@Override
+				public void tag(final String name, final String value) {
+					setUp[0] |= name.equals("FEN") || (name.equals("SetUp") && value.equals("1"));
+				}
+
+				@Override
+				public void move(final String san) {
+					moves.add(san);
+				}
+
+				@Override
+				public void endGame(final String result) {
+					// one game is parsed
+				}
+			}).parse(new StringReader(this.database.gameText(game)));
+			if (setUp[0]) {
+				return;
+			}
+			Board board = Board.createStandardBoard();
+			add(board.getZobristKey(), game);
+			for (final String san : moves) {
+				final Move move = PGNUtilities.createMove(board, san);
+				final MoveTransition transition = move == MoveFactory.getNullMove() ? null
+						: board.currentPlayer().makeMove(move);
+				if (transition == null || !transition.getMoveStatus().isDone()) {
+					return;
+				}
+				board = transition.getToBoard();
+				add(board.getZobristKey(), game);
+			}
+		}
+
+		/**
+		 * Adds the pair.
+		 *
+		 * @param key
+		 *            the key of the position
+		 * @param game
+		 *            the game number
+		 */
+		private void add(final long key, final int game) {
+			if (this.size == this.keys.length) {
+				this.keys = Arrays.copyOf(this.keys, this.size * 2);
+				this.games = Arrays.copyOf(this.games, this.size * 2);
+			}
+			this.keys[this.size] = key;
+			this.games[this.size] = game;
+			this.size++;
+		}
+
+		/**
+		 * Sort. A merge sort by key, which keeps the games of a key in the
+		 * ascending order they were added in.
+		 *
+		 * @param keyBuffer
+		 *            the key buffer
+		 * @param gameBuffer
+		 *            the game buffer
+		 * @param from
+		 *            the first pair
+		 * @param to
+		 *            the pair past the last
+		 */
+		private void sort(final long[] keyBuffer, final int[] gameBuffer, final int from, final int to) {
+			if (to - from < 2) {
+				return;
+			}
+			final int middle = (from + to) >>> 1;
+			sort(keyBuffer, gameBuffer, from, middle);
+			sort(keyBuffer, gameBuffer, middle, to);
+			int left = from;
+			int right = middle;
+			int next = from;
+			while (left < middle || right < to) {
+				final boolean takeRight = left == middle
+						|| (right < to && BookEntry.compareKeys(this.keys[right], this.keys[left]) < 0);
+				final int pair = takeRight ? right++ : left++;
+				keyBuffer[next] = this.keys[pair];
+				gameBuffer[next++] = this.games[pair];
+			}
+			System.arraycopy(keyBuffer, from, this.keys, from, to - from);
+			System.arraycopy(gameBuffer, from, this.games, from, to - from);
+		}
+	}
+
+	/**
+	 * A run file being merged, positioned at its current pair.
+	 */
+	private static final class Run {
+
+		/** The in. */
+		private final DataInputStream in;
+
+		/** The pairs left. */
+		private long left;
+
+		/** The key. */
+		private long key;
+
+		/** The game. */
+		private int game;
+
+		/**
+		 * Instantiates a new run.
+		 *
+		 * @param file
+		 *            the file
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private Run(final File file) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), RUN_BUFFER));
+			this.left = file.length() / 12;
+		}
+
+		/**
+		 * Next.
+		 *
+		 * @return true, if there was a pair left
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private boolean next() throws IOException {
+			if (this.left == 0) {
+				return false;
+			}
+			this.left--;
+			this.key = this.in.readLong();
+			this.game = this.in.readInt();
+			return true;
+		}
+
+		/**
+		 * Close.
+		 *
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private void close() throws IOException {
+			this.in.close();
+		}
+	}
+}
@@ -21,7 +21,8 @@ public class ChatMessage implements Serializable {
 	// LOGOUT to disconnect from the Server
 	// FEN is an FEN string
 	// MOVE_LOG is list of the moves made
-	static final int WHOISIN = 0, MESSAGE = 1, LOGOUT = 2, FEN = 3, MOVE_LOG = 4;
+	// ANALYZE is an FEN string the engine should find the best move of
+	static final int WHOISIN = 0, MESSAGE = 1, LOGOUT = 2, FEN = 3, MOVE_LOG = 4, ANALYZE = 5;
 
 	/** The type. */
 	private int type;
@@ -260,6 +260,10 @@ public class Client {
 			// message WhoIsIn
 			else if (msg.equalsIgnoreCase("WHOISIN")) {
 				client.sendMessage(new ChatMessage(ChatMessage.WHOISIN, ""));
+			}
+			// message ANALYZE followed by an FEN string
+			else if (msg.toUpperCase().startsWith("ANALYZE ")) {
+				client.sendMessage(new ChatMessage(ChatMessage.ANALYZE, msg.substring(8).trim()));
 			} else { // default to ordinary message
 				client.sendMessage(new ChatMessage(ChatMessage.MESSAGE, msg));
 			}
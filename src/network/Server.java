@@ -1,6 +1,7 @@
 package network;
 
 import java.util.Date;
+import java.util.List;
 import java.net.Socket;
 import java.util.ArrayList;
 import java.io.IOException;
@@ -8,8 +9,12 @@ import java.net.ServerSocket;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.text.SimpleDateFormat;
+import java.util.concurrent.ExecutionException;
 
+import com.chess.pgn.FenUtilities;
 import com.chess.gui.Table.MoveLog;
+import com.chess.engine.classic.player.ai.AnalysisLine;
+import com.chess.engine.classic.player.ai.EngineService;
 
 /**
  * In-line comments are provided along with Doc-comments on this class due to
@@ -22,6 +27,13 @@ import com.chess.gui.Table.MoveLog;
  */
 public class Server {
 
+	/** The Constant ANALYSIS_DEPTH. */
+	// the depth the engine searches the positions clients send
+	private static final int ANALYSIS_DEPTH = 4;
+
+	/** The Constant ANALYSIS_LINES. */
+	private static final int ANALYSIS_LINES = 3;
+
 	/** The unique d. */
 	// a unique ID for each connection
 	private static int uniqueId;
@@ -357,6 +369,9 @@ public class Server {
 				case ChatMessage.MOVE_LOG:
 					sendLog(log);
 					break;
+				case ChatMessage.ANALYZE:
+					analyze(message);
+					break;
 				}
 			}
 			// remove myself from the arrayList containing the list of the
@@ -401,6 +416,32 @@ public class Server {
 			}
 		}
 
+		/**
+		 * Analyze.
+		 *
+		 * @param FEN
+		 *            the FEN
+		 */
+		// ask the engine for the best lines and answer this Client only; the
+		// engine is shared with the board of the server, so its tables stay
+		// warm between requests
+		private void analyze(String FEN) {
+			try {
+				List<AnalysisLine> lines = EngineService.get()
+						.analyze(FenUtilities.createGameFromFEN(FEN), ANALYSIS_DEPTH, ANALYSIS_LINES).get();
+				if (lines.isEmpty()) {
+					writeMsg("Engine: no legal moves for " + FEN + "\n");
+				}
+				for (int i = 0; i < lines.size(); i++) {
+					writeMsg("Engine: line " + (i + 1) + " for " + FEN + " is " + lines.get(i) + "\n");
+				}
+			} catch (InterruptedException e) {
+				display("Analysis for " + username + " interrupted: " + e);
+			} catch (ExecutionException | RuntimeException e) {
+				writeMsg("Engine: cannot analyze " + FEN + "\n");
+			}
+		}
+
 		/**
 		 * Close.
 		 */
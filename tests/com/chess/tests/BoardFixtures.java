@@ -0,0 +1,43 @@
+package com.chess.tests;
+
+import static org.junit.Assert.assertTrue;
+
+import com.chess.pgn.PGNUtilities;
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.board.BoardUtils;
+
+final class BoardFixtures {
+
+	private BoardFixtures() {
+		throw new RuntimeException("Not Instantiable!");
+	}
+
+	static Move move(final Board board, final String from, final String to) {
+		final Move move = Move.MoveFactory.createMove(board, BoardUtils.INSTANCE.getCoordinateAtPosition(from),
+				BoardUtils.INSTANCE.getCoordinateAtPosition(to));
+		assertTrue(from + to, move != Move.MoveFactory.getNullMove());
+		return move;
+	}
+
+	static Board play(final Board board, final String... squares) {
+		Board current = board;
+		for (int i = 0; i < squares.length; i += 2) {
+			current = current.currentPlayer().makeMove(move(current, squares[i], squares[i + 1])).getToBoard();
+		}
+		return current;
+	}
+
+	static Board playSan(final String... moves) {
+		Board board = Board.createStandardBoard();
+		for (final String move : moves) {
+			board = board.currentPlayer().makeMove(PGNUtilities.createMove(board, move)).getToBoard();
+		}
+		return board;
+	}
+
+	static short code(final String from, final String to) {
+		return (short) (BoardUtils.INSTANCE.getCoordinateAtPosition(from)
+				| BoardUtils.INSTANCE.getCoordinateAtPosition(to) << 6);
+	}
+}
@@ -6,7 +6,14 @@ import org.junit.runner.RunWith;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({ TestPieces.class, TestBoard.class, TestStaleMate.class, TestPlayer.class, TestCheckmate.class,
 		TestMiniMax.class, TestAlphaBeta.class, TestCastling.class, TestPawnStructure.class, TestFENParser.class,
-		TestEngine.class
+		TestEngine.class, TestBoardEvaluator.class, TestNnueEvaluator.class,
+		TestStaticExchange.class, TestBatchEvaluation.class, TestForwardPruning.class,
+		TestPrincipalVariation.class, TestSearchCancellation.class, TestPonderer.class,
+		TestEngineService.class, TestRepetition.class, TestMovePicker.class,
+		TestParallelRootSearch.class, TestMultiPv.class, TestMateSearch.class, TestTablebase.class,
+		TestOpeningBook.class, TestBookCompiler.class, TestPGNStreamParser.class,
+		TestPGNImporter.class, TestPGNDatabase.class,
+		TestJdbcGamePersistence.class, TestFileGameStore.class, TestPositionIndex.class
 		/* TestPGNParser.class */ })
 public class ChessTestSuite {
 }
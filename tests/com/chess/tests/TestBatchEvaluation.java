@@ -0,0 +1,83 @@
+package com.chess.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.List;
+import java.util.ArrayList;
+
+import com.chess.pgn.FenUtilities;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.player.ai.NnueNetwork;
+import com.chess.engine.classic.player.ai.PositionBatch;
+import com.chess.engine.classic.player.ai.BoardEvaluator;
+import com.chess.engine.classic.player.ai.NnueBoardEvaluator;
+import com.chess.engine.classic.player.ai.BatchBoardEvaluator;
+import com.chess.engine.classic.player.ai.StandardBoardEvaluator;
+import com.chess.engine.classic.player.ai.StandardBoardEvaluator.Term;
+
+import org.junit.Test;
+
+public class TestBatchEvaluation {
+
+	private static List<String> toFEN(final List<Board> boards) {
+		final List<String> fenStrings = new ArrayList<>();
+		for (final Board board : boards) {
+			fenStrings.add(FenUtilities.createFENFromGame(board));
+		}
+		return fenStrings;
+	}
+
+	@Test
+	public void testStandardMatchesStaticTerms() {
+		final BoardEvaluator staticTerms = new StandardBoardEvaluator.Builder().addTerm(Term.MATERIAL)
+				.addTerm(Term.PAWN_STRUCTURE).addTerm(Term.CASTLE).build();
+		final List<String> fenStrings = toFEN(TestNnueEvaluator.randomGame(3, 80));
+		final int[] scores = BatchBoardEvaluator.standard().evaluate(PositionBatch.fromFEN(fenStrings));
+		assertEquals(fenStrings.size(), scores.length);
+		for (int i = 0; i < scores.length; i++) {
+			assertEquals(staticTerms.evaluate(FenUtilities.createGameFromFEN(fenStrings.get(i)), 0), scores[i]);
+		}
+	}
+
+	@Test
+	public void testLargeBatchIsSplitConsistently() {
+		final List<String> game = toFEN(TestNnueEvaluator.randomGame(11, 60));
+		final List<String> fenStrings = new ArrayList<>();
+		while (fenStrings.size() < 5000) {
+			fenStrings.addAll(game);
+		}
+		final int[] gameScores = BatchBoardEvaluator.standard().evaluate(PositionBatch.fromFEN(game));
+		final int[] scores = BatchBoardEvaluator.standard().evaluate(PositionBatch.fromFEN(fenStrings));
+		for (int i = 0; i < scores.length; i++) {
+			assertEquals(gameScores[i % game.size()], scores[i]);
+		}
+	}
+
+	@Test
+	public void testPackedRoundTrip() {
+		final List<Board> boards = TestNnueEvaluator.randomGame(5, 40);
+		final PositionBatch fromBoards = PositionBatch.fromBoards(boards);
+		final PositionBatch fromFEN = PositionBatch.fromFEN(toFEN(boards));
+		final long[] packed = fromFEN.pack();
+		assertEquals(boards.size() * PositionBatch.PACKED_LONGS, packed.length);
+		assertArrayEquals(packed, PositionBatch.fromPacked(packed).pack());
+		assertArrayEquals(BatchBoardEvaluator.standard().evaluate(fromFEN),
+				BatchBoardEvaluator.standard().evaluate(PositionBatch.fromPacked(packed)));
+		assertEquals(BatchBoardEvaluator.standard().evaluate(fromFEN)[0],
+				BatchBoardEvaluator.standard().evaluate(fromBoards)[0]);
+	}
+
+	@Test
+	public void testNnueMatchesBoardEvaluator() {
+		final NnueNetwork network = TestNnueEvaluator.randomNetwork(4, 23);
+		final List<Board> boards = TestNnueEvaluator.randomGame(13, 60);
+		final int[] scores = BatchBoardEvaluator.nnue(network).evaluate(PositionBatch.fromBoards(boards));
+		final BoardEvaluator evaluator = new NnueBoardEvaluator(network);
+		for (int i = 0; i < scores.length; i++) {
+			if (!boards.get(i).currentPlayer().isInCheckMate()) {
+				assertEquals(evaluator.evaluate(boards.get(i), 0), scores[i]);
+			}
+		}
+	}
+}
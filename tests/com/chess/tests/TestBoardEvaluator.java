@@ -0,0 +1,99 @@
+package com.chess.tests;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+
+import com.chess.pgn.FenUtilities;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.player.ai.BoardEvaluator;
+import com.chess.engine.classic.player.ai.EvaluationProfiler;
+import com.chess.engine.classic.player.ai.StandardBoardEvaluator;
+import com.chess.engine.classic.player.ai.StandardBoardEvaluator.Term;
+import com.chess.engine.classic.player.ai.EvaluationProfiler.TermStatistics;
+
+import org.junit.Test;
+
+public class TestBoardEvaluator {
+
+	@Test
+	public void testLazyEvaluationFullWindow() {
+		final BoardEvaluator evaluator = StandardBoardEvaluator.get();
+		final Board board = FenUtilities
+				.createGameFromFEN("r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4");
+		assertEquals(evaluator.evaluate(board, 0), evaluator.evaluate(board, 0, Integer.MIN_VALUE, Integer.MAX_VALUE));
+		assertEquals(evaluator.evaluate(Board.createStandardBoard(), 0),
+				evaluator.evaluate(Board.createStandardBoard(), 0, Integer.MIN_VALUE, Integer.MAX_VALUE));
+	}
+
+	@Test
+	public void testLazyEvaluationFailsHigh() {
+		final BoardEvaluator evaluator = StandardBoardEvaluator.get();
+		// white is a queen and a rook up
+		final Board board = FenUtilities.createGameFromFEN("4k3/pppppppp/8/8/8/8/PPPPPPPP/R2QK2R w - - 0 1");
+		final int exact = evaluator.evaluate(board, 0);
+		final int lazy = evaluator.evaluate(board, 0, -100, 100);
+		assertTrue(lazy >= 100);
+		assertTrue(lazy <= exact);
+	}
+
+	@Test
+	public void testLazyEvaluationFailsLow() {
+		final BoardEvaluator evaluator = StandardBoardEvaluator.get();
+		// black is a queen and a rook up
+		final Board board = FenUtilities.createGameFromFEN("r2qk2r/pppppppp/8/8/8/8/PPPPPPPP/4K3 b - - 0 1");
+		final int exact = evaluator.evaluate(board, 0);
+		final int lazy = evaluator.evaluate(board, 0, -100, 100);
+		assertTrue(lazy <= -100);
+		assertTrue(lazy >= exact);
+	}
+
+	@Test
+	public void testLazyEvaluationInsideWindowIsExact() {
+		final BoardEvaluator evaluator = StandardBoardEvaluator.get();
+		final Board board = Board.createStandardBoard();
+		final int exact = evaluator.evaluate(board, 0);
+		assertEquals(exact, evaluator.evaluate(board, 0, exact - 1, exact + 1));
+	}
+
+	@Test
+	public void testMaterialOnlyPipeline() {
+		final BoardEvaluator evaluator = new StandardBoardEvaluator.Builder().addTerm(Term.MATERIAL).build();
+		assertEquals(0, evaluator.evaluate(Board.createStandardBoard(), 0));
+		final Board board = FenUtilities.createGameFromFEN("4k3/8/8/8/8/8/8/3QK3 w - - 0 1");
+		assertEquals(Term.MATERIAL.score(board, board.whitePlayer(), 0)
+				- Term.MATERIAL.score(board, board.blackPlayer(), 0), evaluator.evaluate(board, 0));
+		assertTrue(evaluator.evaluate(board, 0) > 800);
+	}
+
+	@Test
+	public void testOptionalTermsKeepWindowBounds() {
+		final BoardEvaluator evaluator = new StandardBoardEvaluator.Builder().addTerm(Term.MATERIAL)
+				.addTerm(Term.MOBILITY).addTerm(Term.KING_SAFETY).addTerm(Term.ROOK_STRUCTURE).build();
+		final Board board = FenUtilities.createGameFromFEN("4k3/pppppppp/8/8/8/8/PPPPPPPP/R2QK2R w - - 0 1");
+		final int exact = evaluator.evaluate(board, 0);
+		final int lazy = evaluator.evaluate(board, 0, -100, 100);
+		assertTrue(lazy >= 100);
+		assertTrue(lazy <= exact);
+		assertEquals(exact, evaluator.evaluate(board, 0, Integer.MIN_VALUE, Integer.MAX_VALUE));
+	}
+
+	@Test
+	public void testProfilerSamples() {
+		final StandardBoardEvaluator evaluator = new StandardBoardEvaluator.Builder().addTerm(Term.MATERIAL)
+				.addTerm(Term.PAWN_STRUCTURE).setProfilerSampleRate(2).build();
+		final Board board = Board.createStandardBoard();
+		for (int i = 0; i < 10; i++) {
+			evaluator.evaluate(board, 0);
+		}
+		final EvaluationProfiler profiler = evaluator.getProfiler();
+		assertEquals(2, profiler.getTermStatistics().size());
+		for (final TermStatistics statistics : profiler.getTermStatistics()) {
+			assertEquals(10, statistics.getCalls());
+			assertEquals(5, statistics.getSamples());
+			assertEquals(0, statistics.getMeanContribution(), 0);
+		}
+		assertEquals(Term.PAWN_STRUCTURE, profiler.getTermStatistics().get(1).getTerm());
+		profiler.reset();
+		assertEquals(0, profiler.getTermStatistics().get(0).getCalls());
+	}
+}
@@ -0,0 +1,90 @@
+package com.chess.tests;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
+import static com.chess.tests.BoardFixtures.play;
+import static com.chess.tests.BoardFixtures.code;
+
+import java.io.File;
+import java.util.List;
+import java.io.Writer;
+import java.util.Arrays;
+import java.nio.file.Files;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import com.chess.pgn.BookEntry;
+import com.chess.pgn.BookCompiler;
+import com.chess.pgn.OpeningBook;
+import com.chess.engine.classic.board.Board;
+
+import org.junit.Test;
+
+public class TestBookCompiler {
+
+	private static final String GAMES = "[Event \"one\"]\n[Result \"1-0\"]\n\n1. e4 e5 2. Nf3 Nc6 1-0\n\n"
+			+ "[Event \"two\"]\n\n1. e4 c5 2. Nf3\nd6 0-1\n\n"
+			+ "[Event \"three\"]\n\n1. d4 d5 1/2-1/2\n\n"
+			+ "[Event \"four\"]\n\n1. e4 e5 2. Nf3 Nf6 1/2-1/2\n\n"
+			+ "[Event \"unfinished\"]\n\n1. e4 e5 *\n\n"
+			+ "[Event \"illegal\"]\n\n1. e4 Ke5 1-0\n";
+
+	private static File pgn() throws IOException {
+		final File file = File.createTempFile("games", ".pgn");
+		file.deleteOnExit();
+		try (final Writer writer = new FileWriter(file)) {
+			writer.write(GAMES);
+		}
+		return file;
+	}
+
+	private static File compile(final BookCompiler compiler) throws IOException {
+		final File book = File.createTempFile("book", ".bin");
+		book.deleteOnExit();
+		compiler.compile(Arrays.asList(pgn()), book);
+		return book;
+	}
+
+	@Test
+	public void testCountsOutcomesForTheMover() throws IOException {
+		final BookCompiler compiler = new BookCompiler(3, 2, 1 << 10, null);
+		final OpeningBook book = OpeningBook.open(compile(compiler));
+		assertEquals(6, compiler.getGames());
+		assertEquals(2, compiler.getInvalidGames());
+		final Board start = Board.createStandardBoard();
+		final List<BookEntry> first = book.probe(start.getZobristKey());
+		assertEquals(2, first.size());
+		assertEquals(code("e2", "e4"), first.get(0).getMove());
+		assertEquals(3, first.get(0).getWeight());
+		assertEquals(3, first.get(0).getLearn());
+		assertEquals(code("d2", "d4"), first.get(1).getMove());
+		assertEquals(1, first.get(1).getWeight());
+		final List<BookEntry> reply = book.probe(play(start, "e2", "e4").getZobristKey());
+		assertEquals(2, reply.size());
+		assertEquals(code("c7", "c5"), reply.get(0).getMove());
+		assertEquals(2, reply.get(0).getWeight());
+		assertEquals(code("e7", "e5"), reply.get(1).getMove());
+		assertEquals(1, reply.get(1).getWeight());
+		assertEquals(2, reply.get(1).getLearn());
+		// the fourth ply is past the book depth
+		assertTrue(book.probe(play(start, "e2", "e4", "e7", "e5", "g1", "f3").getZobristKey()).isEmpty());
+	}
+
+	@Test
+	public void testMovesThatOnlyLostAreLeftOut() throws IOException {
+		final OpeningBook book = OpeningBook.open(compile(new BookCompiler(4, 1, 1 << 10, null)));
+		final List<BookEntry> entries = book
+				.probe(play(Board.createStandardBoard(), "e2", "e4", "e7", "e5", "g1", "f3").getZobristKey());
+		assertEquals(1, entries.size());
+		assertEquals(code("g8", "f6"), entries.get(0).getMove());
+	}
+
+	@Test
+	public void testSpilledRunsMergeToTheSameBook() throws IOException {
+		final byte[] inMemory = Files.readAllBytes(compile(new BookCompiler(8, 1, 1 << 10, null)).toPath());
+		final byte[] spilled = Files.readAllBytes(compile(new BookCompiler(8, 3, 2, null)).toPath());
+		assertTrue(inMemory.length > 0);
+		assertArrayEquals(inMemory, spilled);
+	}
+}
@@ -0,0 +1,117 @@
+package com.chess.tests;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static com.chess.tests.BoardFixtures.play;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.chess.pgn.FenUtilities;
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.board.BoardUtils;
+import com.chess.engine.classic.player.ai.EngineService;
+import com.chess.engine.classic.player.ai.StockAlphaBeta;
+import com.chess.engine.classic.player.ai.SearchHeuristics;
+import com.chess.engine.classic.player.ai.TranspositionTable;
+
+import org.junit.Test;
+
+public class TestEngineService {
+
+	@Test
+	public void testTranspositionsShareKey() {
+		final Board board = Board.createStandardBoard();
+		final Board knightsFirst = play(board, "g1", "f3", "g8", "f6", "b1", "c3");
+		final Board knightsLast = play(board, "b1", "c3", "g8", "f6", "g1", "f3");
+		assertEquals(knightsFirst.getZobristKey(), knightsLast.getZobristKey());
+		assertEquals(knightsFirst.getZobristKey(),
+				FenUtilities.createGameFromFEN(FenUtilities.createFENFromGame(knightsFirst)).getZobristKey());
+		final Board knightsBack = play(board, "g1", "f3", "g8", "f6", "f3", "g1", "f6", "g8");
+		assertEquals(board.getZobristKey(), knightsBack.getZobristKey());
+		final Board whiteToMove = FenUtilities.createGameFromFEN("4k3/8/8/8/8/8/8/4K3 w - - 0 1");
+		final Board blackToMove = FenUtilities.createGameFromFEN("4k3/8/8/8/8/8/8/4K3 b - - 0 1");
+		assertNotEquals(whiteToMove.getZobristKey(), blackToMove.getZobristKey());
+	}
+
+	@Test
+	public void testTranspositionTableRoundTrip() {
+		final Board board = Board.createStandardBoard();
+		final Move move = Move.MoveFactory.createMove(board, BoardUtils.INSTANCE.getCoordinateAtPosition("e2"),
+				BoardUtils.INSTANCE.getCoordinateAtPosition("e4"));
+		final TranspositionTable table = new TranspositionTable(8);
+		assertEquals(TranspositionTable.MISS, table.probe(board.getZobristKey()));
+		table.store(board.getZobristKey(), 5, -42, TranspositionTable.Bound.LOWER, move);
+		final long entry = table.probe(board.getZobristKey());
+		assertEquals(-42, TranspositionTable.score(entry));
+		assertEquals(5, TranspositionTable.depth(entry));
+		assertEquals(TranspositionTable.Bound.LOWER, TranspositionTable.bound(entry));
+		assertEquals(move, TranspositionTable.bestMove(entry, board));
+		// a shallower search of another position in the same slot does not
+		// replace the entry until it has aged
+		final long other = board.getZobristKey() ^ (1L << 40);
+		table.store(other, 2, 7, TranspositionTable.Bound.EXACT, Move.MoveFactory.getNullMove());
+		assertEquals(TranspositionTable.MISS, table.probe(other));
+		table.newSearch();
+		table.store(other, 2, 7, TranspositionTable.Bound.EXACT, Move.MoveFactory.getNullMove());
+		assertEquals(7, TranspositionTable.score(table.probe(other)));
+		assertEquals(TranspositionTable.MISS, table.probe(board.getZobristKey()));
+	}
+
+	@Test
+	public void testAgeKeepsKillersOfTheNextMove() {
+		final Board board = Board.createStandardBoard();
+		final Move move = Move.MoveFactory.createMove(board, BoardUtils.INSTANCE.getCoordinateAtPosition("g1"),
+				BoardUtils.INSTANCE.getCoordinateAtPosition("f3"));
+		final SearchHeuristics heuristics = new SearchHeuristics(8);
+		heuristics.addKiller(move, 3);
+		heuristics.addHistory(move, 4);
+		assertTrue(heuristics.isKiller(move, 3));
+		assertEquals(16, heuristics.historyScore(move));
+		heuristics.age();
+		assertTrue(heuristics.isKiller(move, 1));
+		assertFalse(heuristics.isKiller(move, 3));
+		assertEquals(8, heuristics.historyScore(move));
+		heuristics.clear();
+		assertFalse(heuristics.isKiller(move, 1));
+		assertEquals(0, heuristics.historyScore(move));
+	}
+
+	@Test
+	public void testSharedHeuristicsSpeedUpNextSearch() {
+		final Board board = FenUtilities
+				.createGameFromFEN("r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3");
+		final EngineService service = new EngineService(1, 16);
+		final StockAlphaBeta first = service.newStrategy(4);
+		final Move firstMove = first.execute(board);
+		service.getHeuristics().age();
+		final StockAlphaBeta second = service.newStrategy(4);
+		final Move secondMove = second.execute(board);
+		assertTrue(board.currentPlayer().getLegalMoves().contains(firstMove));
+		assertTrue(board.currentPlayer().getLegalMoves().contains(secondMove));
+		assertTrue(second.getNumBoardsEvaluated() < first.getNumBoardsEvaluated());
+	}
+
+	@Test
+	public void testSearchFuture() throws Exception {
+		final EngineService service = new EngineService(2, 12);
+		final Board board = FenUtilities.createGameFromFEN("4k3/8/8/3n4/8/8/8/3RK3 w - - 0 1");
+		final Move move = service.search(board, 2).get(30, TimeUnit.SECONDS);
+		assertEquals(BoardUtils.INSTANCE.getCoordinateAtPosition("d5"), move.getDestinationCoordinate());
+	}
+
+	@Test
+	public void testCancelStopsSearch() throws Exception {
+		final EngineService service = new EngineService(1, 12);
+		final Future<Move> search = service.search(Board.createStandardBoard(), 9);
+		Thread.sleep(200);
+		assertTrue(search.cancel(false));
+		// the thread is free again for the next request
+		final Board board = FenUtilities.createGameFromFEN("4k3/8/8/3n4/8/8/8/3RK3 w - - 0 1");
+		assertEquals(BoardUtils.INSTANCE.getCoordinateAtPosition("d5"),
+				service.search(board, 2).get(30, TimeUnit.SECONDS).getDestinationCoordinate());
+	}
+}
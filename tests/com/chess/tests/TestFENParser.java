@@ -34,7 +34,7 @@ public class TestFENParser {
 				BoardUtils.INSTANCE.getCoordinateAtPosition("c7"), BoardUtils.INSTANCE.getCoordinateAtPosition("c5")));
 		assertTrue(t2.getMoveStatus().isDone());
 		final String fenString2 = FenUtilities.createFENFromGame(t2.getToBoard());
-		assertEquals(fenString2, "rnbqkbnr/pp1ppppp/8/2p5/4P3/8/PPPP1PPP/RNBQKBNR w KQkq c6 0 1");
+		assertEquals(fenString2, "rnbqkbnr/pp1ppppp/8/2p5/4P3/8/PPPP1PPP/RNBQKBNR w KQkq c6 0 2");
 
 	}
 
@@ -0,0 +1,140 @@
+package com.chess.tests;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import static com.chess.tests.BoardFixtures.playSan;
+
+import java.io.File;
+import java.util.List;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.io.IOException;
+import java.io.FilenameFilter;
+import java.nio.file.Files;
+import java.io.RandomAccessFile;
+
+import com.chess.pgn.ValidGame;
+import com.chess.pgn.PGNGameTags;
+import com.chess.pgn.FileGameStore;
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+
+import org.junit.Test;
+import org.junit.After;
+
+public class TestFileGameStore {
+
+	private final List<File> directories = new ArrayList<>();
+
+	private File directory() throws IOException {
+		final File directory = Files.createTempDirectory("store").toFile();
+		this.directories.add(directory);
+		return directory;
+	}
+
+	@After
+	public void deleteDirectories() throws IOException {
+		for (final File directory : this.directories) {
+			delete(directory);
+		}
+	}
+
+	private static void delete(final File file) throws IOException {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (final File child : children) {
+				delete(child);
+			}
+		}
+		Files.deleteIfExists(file.toPath());
+	}
+
+	private static ValidGame game(final String outcome, final String... moves) {
+		return new ValidGame(new PGNGameTags.TagsBuilder().build(), Arrays.asList(moves), outcome);
+	}
+
+	private static String bookMove(final FileGameStore store, final String... moves) {
+		final Board board = playSan(moves);
+		return store.getNextBestMove(board, board.currentPlayer(), "").toString();
+	}
+
+	private static void fill(final FileGameStore store) {
+		store.persistGame(game("1-0", "e4", "e5", "Nf3", "Nc6"));
+		store.persistGame(game("1-0", "e4", "c5"));
+		store.persistGame(game("0-1", "d4", "Nf6", "c4", "e6"));
+		store.persistGame(game("0-1", "c4", "Nf6", "d4", "g6"));
+		store.persistGame(game("0-1", "c4", "Nf6", "d4", "g6"));
+		store.persistGame(game("*", "a4"));
+		store.persistGame(game("1-0", "e4", "e5", "Ke3"));
+	}
+
+	@Test
+	public void testBookMovesSurviveReopening() throws IOException {
+		final File directory = directory();
+		final FileGameStore store = FileGameStore.open(directory);
+		fill(store);
+		assertEquals(6, store.size());
+		assertEquals("e4", bookMove(store));
+		// the two move orders reach the same position
+		assertEquals("g6", bookMove(store, "d4", "Nf6", "c4"));
+		assertEquals(Move.MoveFactory.getNullMove().toString(), bookMove(store, "a4"));
+		store.close();
+		final FileGameStore reopened = FileGameStore.open(directory);
+		assertEquals(6, reopened.size());
+		assertEquals("e4", bookMove(reopened));
+		assertEquals("g6", bookMove(reopened, "c4", "Nf6", "d4"));
+		reopened.persistGame(game("1-0", "e4", "e5", "Nf3", "Nc6"));
+		reopened.persistGame(game("1-0", "e4", "e5", "Nf3", "Nc6"));
+		assertEquals("Nf3", bookMove(reopened, "e4", "e5"));
+		reopened.close();
+	}
+
+	@Test
+	public void testTornAppendIsCut() throws IOException {
+		final File directory = directory();
+		final FileGameStore store = FileGameStore.open(directory);
+		store.persistGame(game("0-1", "d4", "d5"));
+		store.flush();
+		// appended but never flushed, then a record cut short
+		store.persistGame(game("1-0", "e4", "e5"));
+		store.persistGame(game("1-0", "e4", "c5"));
+		final File segment = new File(directory, "games-00000.seg");
+		final long whole = segment.length();
+		try (final RandomAccessFile out = new RandomAccessFile(segment, "rw")) {
+			out.seek(whole);
+			out.writeInt(40);
+			out.writeInt(1234);
+			out.write(new byte[] { 1, 0 });
+		}
+		final FileGameStore recovered = FileGameStore.open(directory);
+		assertEquals(3, recovered.size());
+		assertEquals(whole, segment.length());
+		assertEquals("e4", bookMove(recovered));
+		recovered.persistGame(game("1/2-1/2", "Nf3"));
+		recovered.close();
+		assertEquals(4, FileGameStore.open(directory).size());
+	}
+
+	@Test
+	public void testSegmentsAndSmallCapacity() throws IOException {
+		final File directory = directory();
+		final FileGameStore store = FileGameStore.open(directory, 32, 4);
+		fill(store);
+		fill(store);
+		assertTrue(new File(directory, "games-00005.seg").isFile());
+		// the index was rewritten as the statistics filled, and only the newest is kept
+		assertEquals(1, directory.list(new FilenameFilter() {
+			@Override
+			public boolean accept(final File dir, final String name) {
+				return name.startsWith("positions-");
+			}
+		}).length);
+		assertTrue(!new File(directory, "positions-00000.idx").isFile());
+		final FileGameStore reopened = FileGameStore.open(directory, 32, 4);
+		assertEquals(12, reopened.size());
+		assertEquals("e4", bookMove(reopened));
+		assertEquals("g6", bookMove(reopened, "d4", "Nf6", "c4"));
+		store.close();
+		reopened.close();
+	}
+}
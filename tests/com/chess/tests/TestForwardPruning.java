@@ -0,0 +1,64 @@
+package com.chess.tests;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+import java.util.EnumSet;
+
+import com.chess.pgn.FenUtilities;
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.board.BoardUtils;
+import com.chess.engine.classic.player.ai.StockAlphaBeta;
+import com.chess.engine.classic.player.ai.StockAlphaBeta.Pruning;
+import com.chess.engine.classic.player.ai.StandardBoardEvaluator;
+
+import org.junit.Test;
+
+public class TestForwardPruning {
+
+	private static StockAlphaBeta allPruning(final int depth) {
+		return new StockAlphaBeta(depth, StandardBoardEvaluator.get(), EnumSet.allOf(Pruning.class));
+	}
+
+	@Test
+	public void testPruningIsOffByDefault() {
+		final StockAlphaBeta alphaBeta = new StockAlphaBeta(2);
+		alphaBeta.execute(Board.createStandardBoard());
+		assertTrue(alphaBeta.getPruning().isEmpty());
+		assertTrue(alphaBeta.getPrunedCounts().isEmpty());
+	}
+
+	@Test
+	public void testPruningSearchesFewerBoards() {
+		final Board board = FenUtilities
+				.createGameFromFEN("r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3");
+		final StockAlphaBeta full = new StockAlphaBeta(4);
+		full.execute(board);
+		final StockAlphaBeta pruned = allPruning(4);
+		pruned.execute(board);
+		assertTrue(pruned.getNumBoardsEvaluated() < full.getNumBoardsEvaluated());
+		final Map<Pruning, Long> counts = pruned.getPrunedCounts();
+		assertEquals(EnumSet.allOf(Pruning.class), counts.keySet());
+		assertTrue(counts.get(Pruning.FUTILITY) > 0);
+		assertTrue(counts.get(Pruning.LATE_MOVE_REDUCTION) > 0);
+	}
+
+	@Test
+	public void testNoNullMoveInPawnEnding() {
+		final Board board = FenUtilities.createGameFromFEN("8/5k2/3p4/3P1p2/5P2/4K3/8/8 w - - 0 1");
+		final StockAlphaBeta alphaBeta = new StockAlphaBeta(4, StandardBoardEvaluator.get(),
+				EnumSet.of(Pruning.NULL_MOVE));
+		alphaBeta.execute(board);
+		assertEquals(Long.valueOf(0), alphaBeta.getPrunedCounts().get(Pruning.NULL_MOVE));
+	}
+
+	@Test
+	public void testMateFoundWithPruning() {
+		final Board board = FenUtilities.createGameFromFEN("6k1/5ppp/8/8/8/8/5PPP/R5K1 w - - 0 1");
+		final Move bestMove = allPruning(3).execute(board);
+		assertEquals(Move.MoveFactory.createMove(board, BoardUtils.INSTANCE.getCoordinateAtPosition("a1"),
+				BoardUtils.INSTANCE.getCoordinateAtPosition("a8")), bestMove);
+	}
+}
@@ -0,0 +1,391 @@
+package com.chess.tests;
+
+import static org.junit.Assert.fail;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+import java.util.List;
+import java.util.Arrays;
+import java.util.TreeMap;
+import java.util.HashMap;
+import java.util.ArrayList;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Method;
+import java.sql.PreparedStatement;
+import java.lang.reflect.InvocationHandler;
+
+import com.chess.pgn.ValidGame;
+import com.chess.pgn.PGNGameTags;
+import com.chess.pgn.JdbcGamePersistence;
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+
+import org.junit.Test;
+
+public class TestJdbcGamePersistence {
+
+	/*
+	 * Just enough of a database for the statements of the game persistence,
+	 * counting what is sent to it.
+	 */
+	private static final class StandInDatabase implements InvocationHandler {
+
+		private TreeMap<Integer, String[]> games = new TreeMap<>();
+
+		private TreeMap<Long, Object[]> nodes = new TreeMap<>();
+
+		private Map<Integer, String[]> committedGames = new TreeMap<>();
+
+		private Map<Long, Object[]> committedNodes = new TreeMap<>();
+
+		private boolean autoCommit = true;
+
+		private int failingGameId = -1;
+
+		private int maxGameQueries;
+
+		private int prepares;
+
+		private int commits;
+
+		private int rollbacks;
+
+		private int nodeQueries;
+
+		private int nodeUpdates;
+
+		private int batches;
+
+		private Connection connection() {
+			return proxy(Connection.class, this);
+		}
+
+		@SuppressWarnings("unchecked")
+		private static <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+			return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler);
+		}
+
+		@Override
+		public Object invoke(final Object proxy, final Method method, final Object[] args) throws SQLException {
+			switch (method.getName()) {
+			case "createStatement":
+				return proxy(Statement.class, new StandInStatement(null));
+			case "prepareStatement":
+				this.prepares++;
+				return proxy(PreparedStatement.class, new StandInStatement((String) args[0]));
+			case "setAutoCommit":
+				this.autoCommit = (Boolean) args[0];
+				return null;
+			case "commit":
+				commit();
+				return null;
+			case "rollback":
+				this.rollbacks++;
+				this.games = new TreeMap<>(this.committedGames);
+				this.nodes = new TreeMap<>(this.committedNodes);
+				return null;
+			case "close":
+				return null;
+			default:
+				throw new UnsupportedOperationException(method.getName());
+			}
+		}
+
+		private void commit() {
+			this.commits++;
+			this.committedGames = new TreeMap<>(this.games);
+			this.committedNodes = new TreeMap<>(this.nodes);
+		}
+
+		private List<Object[]> query(final String sql, final Map<Integer, Object> parameters) {
+			final List<Object[]> rows = new ArrayList<>();
+			if (sql.equals("SELECT MAX(id) FROM Game")) {
+				this.maxGameQueries++;
+				rows.add(new Object[] { this.games.isEmpty() ? null : this.games.lastKey() });
+			} else if (sql.equals("SELECT MAX(id) FROM MoveNode")) {
+				rows.add(new Object[] { this.nodes.isEmpty() ? null : this.nodes.lastKey() });
+			} else if (sql.equals("SELECT outcome, moves FROM Game")) {
+				for (final String[] game : this.games.values()) {
+					rows.add(new Object[] { game[0], game[1] });
+				}
+			} else if (sql.equals("SELECT id FROM MoveNode WHERE parent = ? AND move = ?")) {
+				this.nodeQueries++;
+				for (final Map.Entry<Long, Object[]> node : this.nodes.entrySet()) {
+					if (node.getValue()[0].equals(parameters.get(1)) && node.getValue()[1].equals(parameters.get(2))) {
+						rows.add(new Object[] { node.getKey() });
+					}
+				}
+			} else if (sql.equals("SELECT move, white, black, tie FROM MoveNode WHERE parent = ?")) {
+				for (final Object[] node : this.nodes.values()) {
+					if (node[0].equals(parameters.get(1))) {
+						rows.add(new Object[] { node[1], node[2], node[3], node[4] });
+					}
+				}
+			} else {
+				throw new UnsupportedOperationException(sql);
+			}
+			return rows;
+		}
+
+		private void update(final String sql, final Map<Integer, Object> parameters) throws SQLException {
+			if (sql.startsWith("INSERT INTO Game")) {
+				final int id = (Integer) parameters.get(1);
+				if (id == this.failingGameId || this.games.containsKey(id)) {
+					throw new SQLException("duplicate key " + id);
+				}
+				this.games.put(id, new String[] { (String) parameters.get(2), (String) parameters.get(3) });
+			} else if (sql.startsWith("INSERT INTO MoveNode")) {
+				this.nodes.put((Long) parameters.get(1), new Object[] { parameters.get(2), parameters.get(3),
+						parameters.get(4), parameters.get(5), parameters.get(6) });
+			} else if (sql.startsWith("UPDATE MoveNode")) {
+				this.nodeUpdates++;
+				final Object[] node = this.nodes.get(parameters.get(4));
+				this.nodes.put((Long) parameters.get(4),
+						new Object[] { node[0], node[1], (Integer) node[2] + (Integer) parameters.get(1),
+								(Integer) node[3] + (Integer) parameters.get(2),
+								(Integer) node[4] + (Integer) parameters.get(3) });
+			} else {
+				throw new UnsupportedOperationException(sql);
+			}
+			if (this.autoCommit) {
+				commit();
+			}
+		}
+
+		private final class StandInStatement implements InvocationHandler {
+
+			private final String sql;
+
+			private final Map<Integer, Object> parameters = new HashMap<>();
+
+			private final List<Map<Integer, Object>> batch = new ArrayList<>();
+
+			private StandInStatement(final String sql) {
+				this.sql = sql;
+			}
+
+			@Override
+			public Object invoke(final Object proxy, final Method method, final Object[] args) throws SQLException {
+				switch (method.getName()) {
+				case "execute":
+					return false;
+				case "setInt":
+				case "setLong":
+				case "setString":
+					this.parameters.put((Integer) args[0], args[1]);
+					return null;
+				case "executeQuery":
+					return proxy(ResultSet.class, new StandInResultSet(
+							query(args == null ? this.sql : (String) args[0], this.parameters)));
+				case "executeUpdate":
+					update(this.sql, this.parameters);
+					return 1;
+				case "addBatch":
+					this.batch.add(new HashMap<>(this.parameters));
+					return null;
+				case "clearBatch":
+					this.batch.clear();
+					return null;
+				case "executeBatch":
+					StandInDatabase.this.batches++;
+					final int[] counts = new int[this.batch.size()];
+					try {
+						for (final Map<Integer, Object> row : this.batch) {
+							update(this.sql, row);
+						}
+					} finally {
+						this.batch.clear();
+					}
+					Arrays.fill(counts, 1);
+					return counts;
+				case "close":
+					return null;
+				default:
+					throw new UnsupportedOperationException(method.getName());
+				}
+			}
+		}
+	}
+
+	private static final class StandInResultSet implements InvocationHandler {
+
+		private final List<Object[]> rows;
+
+		private int row = -1;
+
+		private StandInResultSet(final List<Object[]> rows) {
+			this.rows = rows;
+		}
+
+		@Override
+		public Object invoke(final Object proxy, final Method method, final Object[] args) {
+			switch (method.getName()) {
+			case "next":
+				return ++this.row < this.rows.size();
+			case "getInt":
+				final Object integer = this.rows.get(this.row)[(Integer) args[0] - 1];
+				return integer == null ? 0 : ((Number) integer).intValue();
+			case "getLong":
+				final Object number = this.rows.get(this.row)[(Integer) args[0] - 1];
+				return number == null ? 0L : ((Number) number).longValue();
+			case "getString":
+				return this.rows.get(this.row)[(Integer) args[0] - 1];
+			case "close":
+				return null;
+			default:
+				throw new UnsupportedOperationException(method.getName());
+			}
+		}
+	}
+
+	private static Object[] node(final StandInDatabase database, final String... moves) {
+		long parent = 0;
+		Object[] found = null;
+		for (final String move : moves) {
+			found = null;
+			for (final Map.Entry<Long, Object[]> node : database.committedNodes.entrySet()) {
+				if (node.getValue()[0].equals(parent) && node.getValue()[1].equals(move)) {
+					parent = node.getKey();
+					found = node.getValue();
+				}
+			}
+			assertTrue(found != null);
+		}
+		return found;
+	}
+
+	private static void assertCounts(final Object[] node, final int white, final int black, final int tie) {
+		assertEquals(Arrays.asList(white, black, tie), Arrays.asList(node[2], node[3], node[4]));
+	}
+
+	private static ValidGame game(final String outcome, final String... moves) {
+		return new ValidGame(new PGNGameTags.TagsBuilder().build(), Arrays.asList(moves), outcome);
+	}
+
+	@Test
+	public void testBatchesWithoutQueryingIds() throws SQLException {
+		final StandInDatabase database = new StandInDatabase();
+		database.games.put(41, new String[] { "White", "e4, e5" });
+		database.commit();
+		final JdbcGamePersistence persistence = new JdbcGamePersistence(database.connection(), 3);
+		final int prepares = database.prepares;
+		final int commits = database.commits;
+		for (int i = 0; i < 7; i++) {
+			persistence.persistGame(game(i % 2 == 0 ? "1-0" : "0-1", "d4", "d5", "c4"));
+		}
+		assertEquals(1 + 6, database.committedGames.size());
+		assertEquals(commits + 2, database.commits);
+		persistence.flush();
+		assertEquals(Arrays.asList(41, 42, 43, 44, 45, 46, 47, 48), new ArrayList<>(database.committedGames.keySet()));
+		assertEquals("d4, d5, c4", database.committedGames.get(48)[1]);
+		assertEquals("White", database.committedGames.get(48)[0]);
+		assertEquals(1, database.maxGameQueries);
+		assertEquals(prepares, database.prepares);
+		assertEquals(commits + 3, database.commits);
+	}
+
+	@Test
+	public void testMoveCountsAreSummedPerBatch() throws SQLException {
+		final StandInDatabase database = new StandInDatabase();
+		final JdbcGamePersistence persistence = new JdbcGamePersistence(database.connection(), 100);
+		persistence.persistGame(game("1-0", "e4", "e5", "Nf3"));
+		persistence.persistGame(game("1-0", "e4", "e5", "Nf3+"));
+		persistence.persistGame(game("0-1", "d4", "d5"));
+		persistence.persistGame(game("0-1", "e4", "c5"));
+		persistence.persistGame(game("*", "c4"));
+		persistence.flush();
+		// only the first moves of the batch are looked up, and new nodes go in with their counts
+		assertEquals(2, database.nodeQueries);
+		assertEquals(0, database.nodeUpdates);
+		assertEquals(6, database.committedNodes.size());
+		final Board board = Board.createStandardBoard();
+		assertEquals("e4", persistence.getNextBestMove(board, board.currentPlayer(), "").toString());
+		final Board afterE4 = board.currentPlayer().makeMove(persistence.getNextBestMove(board, board.currentPlayer(),
+				"")).getToBoard();
+		assertEquals("c5", persistence.getNextBestMove(afterE4, afterE4.currentPlayer(), "e4").toString());
+		assertEquals(Move.MoveFactory.getNullMove(),
+				persistence.getNextBestMove(board, board.currentPlayer(), "e4, e5, Nf3"));
+	}
+
+	@Test
+	public void testFailedBatchIsRolledBack() throws SQLException {
+		final StandInDatabase database = new StandInDatabase();
+		final JdbcGamePersistence persistence = new JdbcGamePersistence(database.connection(), 2);
+		persistence.persistGame(game("1-0", "e4"));
+		persistence.persistGame(game("1-0", "e4"));
+		database.failingGameId = 4;
+		persistence.persistGame(game("0-1", "d4"));
+		try {
+			persistence.persistGame(game("0-1", "d4"));
+			fail();
+		} catch (final RuntimeException e) {
+			assertTrue(e.getCause() instanceof SQLException);
+		}
+		assertEquals(1, database.rollbacks);
+		assertEquals(2, database.games.size());
+		assertEquals(1, database.nodes.size());
+		database.failingGameId = -1;
+		persistence.persistGame(game("0-1", "c4"));
+		persistence.flush();
+		assertEquals(Arrays.asList(1, 2, 3), new ArrayList<>(database.committedGames.keySet()));
+		assertEquals(2, database.committedNodes.size());
+		assertTrue(database.batches > 0);
+	}
+
+	@Test
+	public void testTrieCountsEveryPrefix() throws SQLException {
+		final StandInDatabase database = new StandInDatabase();
+		final JdbcGamePersistence persistence = new JdbcGamePersistence(database.connection(), 100);
+		persistence.persistGame(game("1-0", "e4", "e5", "Nf3"));
+		persistence.persistGame(game("1/2-1/2", "e4", "e5!?", "Nc3"));
+		persistence.persistGame(game("0-1", "e4", "c5"));
+		persistence.flush();
+		assertEquals(5, database.committedNodes.size());
+		assertCounts(node(database, "e4"), 1, 1, 1);
+		assertCounts(node(database, "e4", "e5"), 1, 0, 1);
+		assertCounts(node(database, "e4", "e5", "Nf3"), 1, 0, 0);
+		assertCounts(node(database, "e4", "e5", "Nc3"), 0, 0, 1);
+		assertCounts(node(database, "e4", "c5"), 0, 1, 0);
+	}
+
+	@Test
+	public void testBackfillIsSentInBatches() throws SQLException {
+		final StandInDatabase database = new StandInDatabase();
+		for (int i = 1; i <= 6; i++) {
+			database.games.put(i, new String[] { i % 3 == 0 ? "Black" : "White", "d4, Nf6, c4" });
+		}
+		database.games.put(7, new String[] { "None", "e4" });
+		database.commit();
+		new JdbcGamePersistence(database.connection(), 2);
+		assertEquals(3, database.committedNodes.size());
+		assertCounts(node(database, "d4", "Nf6", "c4"), 4, 2, 0);
+		// the first batch inserts the nodes, then one update per node per batch of two games
+		assertEquals(3 * 2, database.nodeUpdates);
+	}
+
+	@Test
+	public void testBestChildIsBySideToMove() throws SQLException {
+		final StandInDatabase database = new StandInDatabase();
+		final JdbcGamePersistence persistence = new JdbcGamePersistence(database.connection(), 100);
+		for (int i = 0; i < 3; i++) {
+			persistence.persistGame(game("1-0", "e4", "e5"));
+		}
+		persistence.persistGame(game("0-1", "e4", "c5"));
+		persistence.persistGame(game("1/2-1/2", "d4", "d5"));
+		persistence.persistGame(game("1/2-1/2", "d4", "d5"));
+		final Board board = Board.createStandardBoard();
+		assertEquals("e4", persistence.getNextBestMove(board, board.currentPlayer(), "").toString());
+		final Board afterE4 = board.currentPlayer()
+				.makeMove(persistence.getNextBestMove(board, board.currentPlayer(), "")).getToBoard();
+		assertEquals("c5", persistence.getNextBestMove(afterE4, afterE4.currentPlayer(), "e4").toString());
+		final Board afterD4 = board.currentPlayer()
+				.makeMove(Move.MoveFactory.createMove(board, 51, 35)).getToBoard();
+		assertEquals(Move.MoveFactory.getNullMove(),
+				persistence.getNextBestMove(afterD4, afterD4.currentPlayer(), "d4"));
+	}
+}
\ No newline at end of file
@@ -0,0 +1,71 @@
+package com.chess.tests;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import static com.chess.tests.BoardFixtures.move;
+
+import com.chess.pgn.FenUtilities;
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.player.ai.MateSearch;
+import com.chess.engine.classic.player.ai.EngineService;
+
+import org.junit.Test;
+
+public class TestMateSearch {
+
+	@Test
+	public void testMateInOne() {
+		final Board board = FenUtilities.createGameFromFEN("6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1");
+		final MateSearch search = new MateSearch(3);
+		assertEquals(move(board, "d1", "d8"), search.execute(board));
+		assertEquals(1, search.getMateLength());
+	}
+
+	@Test
+	public void testMateInTwo() {
+		final Board board = FenUtilities.createGameFromFEN("3r3r/1Q5p/p3q2k/3NBp1B/3p3n/5P2/PP4PP/4R2K w - - 1 0");
+		final MateSearch search = new MateSearch(5);
+		assertEquals(move(board, "b7", "g7"), search.execute(board));
+		assertEquals(2, search.getMateLength());
+	}
+
+	@Test
+	public void testMateForBlack() {
+		final Board board = FenUtilities.createGameFromFEN("6k1/8/8/8/8/1q6/r7/7K b - - 0 1");
+		final MateSearch search = new MateSearch(3);
+		final Move mate = search.execute(board);
+		assertEquals(1, search.getMateLength());
+		assertTrue(board.currentPlayer().makeMove(mate).getToBoard().currentPlayer().isInCheckMate());
+	}
+
+	@Test
+	public void testMateInFour() {
+		final Board board = FenUtilities.createGameFromFEN("7k/4r2B/1pb5/2P5/4p2Q/2q5/2P2R2/1K6 w - - 1 0");
+		final MateSearch search = new MateSearch(5);
+		assertEquals(move(board, "f2", "f8"), search.execute(board));
+		assertEquals(4, search.getMateLength());
+	}
+
+	@Test
+	public void testShortestMateIsFound() {
+		final Board board = FenUtilities.createGameFromFEN("rn3rk1/1R3ppp/2p5/8/PQ2P3/1P5P/2P1qPP1/3R2K1 w - - 1 0");
+		final MateSearch search = new MateSearch(4);
+		assertEquals(move(board, "b4", "f8"), search.execute(board));
+		assertEquals(2, search.getMateLength());
+	}
+
+	@Test
+	public void testEngineServiceFindsMate() throws Exception {
+		final Board board = FenUtilities.createGameFromFEN("6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1");
+		assertEquals(move(board, "d1", "d8"), new EngineService(1, 12).findMate(board, 2).get());
+	}
+
+	@Test
+	public void testProvesNoMate() {
+		final Board board = Board.createStandardBoard();
+		final MateSearch search = new MateSearch(3);
+		assertEquals(Move.MoveFactory.getNullMove(), search.execute(board));
+		assertEquals(0, search.getMateLength());
+	}
+}
@@ -0,0 +1,85 @@
+package com.chess.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static com.chess.tests.BoardFixtures.move;
+
+import java.util.List;
+import java.util.HashSet;
+import java.util.ArrayList;
+
+import com.chess.pgn.FenUtilities;
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.player.ai.MovePicker;
+import com.chess.engine.classic.player.ai.SearchHeuristics;
+
+import org.junit.Test;
+
+public class TestMovePicker {
+
+	private static List<Move> pick(final MovePicker picker) {
+		final List<Move> moves = new ArrayList<>();
+		for (final Move move : picker) {
+			moves.add(move);
+		}
+		return moves;
+	}
+
+	@Test
+	public void testEveryMoveOnce() {
+		final Board board = FenUtilities
+				.createGameFromFEN("r1bqkb1r/pppp1ppp/2n2n2/4p2Q/2B1P3/8/PPPP1PPP/RNB1K1NR w KQkq - 4 4");
+		final Move tableMove = move(board, "h5", "f7");
+		final List<Move> picked = pick(new MovePicker(board.currentPlayer().getLegalMoves(), tableMove,
+				new SearchHeuristics(), 0, true));
+		assertEquals(board.currentPlayer().getLegalMoves().size(), picked.size());
+		assertEquals(picked.size(), new HashSet<>(picked).size());
+		assertEquals(tableMove, picked.get(0));
+	}
+
+	@Test
+	public void testStageOrder() {
+		// cxd5 wins a knight, Qxd5 loses the queen to the pawn
+		final Board board = FenUtilities.createGameFromFEN("4k3/8/4p3/3n4/2P5/8/3Q4/4K3 w - - 0 1");
+		final SearchHeuristics heuristics = new SearchHeuristics();
+		final Move killer = move(board, "d2", "h6");
+		heuristics.addKiller(killer, 3);
+		final MovePicker picker = new MovePicker(board.currentPlayer().getLegalMoves(),
+				Move.MoveFactory.getNullMove(), heuristics, 3, true);
+		final List<Move> picked = new ArrayList<>();
+		final List<MovePicker.Stage> stages = new ArrayList<>();
+		for (final Move move : picker) {
+			picked.add(move);
+			stages.add(picker.getStage());
+		}
+		assertEquals(move(board, "c4", "d5"), picked.get(0));
+		assertEquals(MovePicker.Stage.TACTICAL, stages.get(0));
+		assertEquals(killer, picked.get(1));
+		assertEquals(MovePicker.Stage.KILLERS, stages.get(1));
+		assertEquals(MovePicker.Stage.QUIET, stages.get(2));
+		assertEquals(move(board, "d2", "d5"), picked.get(picked.size() - 1));
+		assertEquals(MovePicker.Stage.LOSING_CAPTURES, stages.get(stages.size() - 1));
+	}
+
+	@Test
+	public void testQuiescenceDropsLosingCaptures() {
+		final Board board = FenUtilities.createGameFromFEN("4k3/8/4p3/3p4/8/8/8/3QK3 w - - 0 1");
+		final Move losing = move(board, "d1", "d5");
+		final List<Move> picked = pick(
+				new MovePicker(board.currentPlayer().getLegalMoves(), losing, new SearchHeuristics(), 0, false));
+		assertFalse(picked.contains(losing));
+		assertEquals(board.currentPlayer().getLegalMoves().size() - 1, picked.size());
+	}
+
+	@Test
+	public void testHistoryOrdersQuietMoves() {
+		final Board board = Board.createStandardBoard();
+		final SearchHeuristics heuristics = new SearchHeuristics();
+		final Move knight = move(board, "g1", "f3");
+		heuristics.addHistory(knight, 4);
+		final List<Move> picked = pick(new MovePicker(board.currentPlayer().getLegalMoves(),
+				Move.MoveFactory.getNullMove(), heuristics, 0, true));
+		assertEquals(knight, picked.get(0));
+	}
+}
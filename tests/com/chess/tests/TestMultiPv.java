@@ -0,0 +1,101 @@
+package com.chess.tests;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.concurrent.Future;
+
+import com.chess.pgn.FenUtilities;
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.board.BoardUtils;
+import com.chess.engine.classic.board.MoveTransition;
+import com.chess.engine.classic.player.ai.AnalysisLine;
+import com.chess.engine.classic.player.ai.EngineService;
+import com.chess.engine.classic.player.ai.StockAlphaBeta;
+import com.chess.engine.classic.player.ai.SearchHeuristics;
+import com.chess.engine.classic.player.ai.StandardBoardEvaluator;
+
+import org.junit.Test;
+
+public class TestMultiPv {
+
+	private static StockAlphaBeta stockAlphaBeta(final int depth) {
+		return new StockAlphaBeta(depth, StandardBoardEvaluator.get(), EnumSet.allOf(StockAlphaBeta.Pruning.class),
+				new SearchHeuristics());
+	}
+
+	private static void assertPlayable(final Board board, final List<Move> variation) {
+		Board current = board;
+		for (final Move move : variation) {
+			final Move legal = Move.MoveFactory.createMove(current, move.getCurrentCoordinate(),
+					move.getDestinationCoordinate());
+			final MoveTransition transition = current.currentPlayer().makeMove(legal);
+			assertTrue(transition.getMoveStatus().isDone());
+			current = transition.getToBoard();
+		}
+	}
+
+	@Test
+	public void testLinesAreRankedAndDistinct() {
+		final Board board = FenUtilities
+				.createGameFromFEN("r1bqkb1r/pppp1ppp/2n2n2/4p2Q/2B1P3/8/PPPP1PPP/RNB1K1NR w KQkq - 4 4");
+		final List<AnalysisLine> lines = stockAlphaBeta(3).analyze(board, 4);
+		assertEquals(4, lines.size());
+		final HashSet<Move> moves = new HashSet<>();
+		for (int i = 0; i < lines.size(); i++) {
+			final AnalysisLine line = lines.get(i);
+			moves.add(line.getMove());
+			assertEquals(line.getMove(), line.getVariation().get(0));
+			assertPlayable(board, line.getVariation());
+			if (i > 0) {
+				assertTrue(lines.get(i - 1).getScore() >= line.getScore());
+			}
+		}
+		assertEquals(4, moves.size());
+		assertEquals(BoardUtils.INSTANCE.getCoordinateAtPosition("f7"),
+				lines.get(0).getMove().getDestinationCoordinate());
+	}
+
+	@Test
+	public void testFirstLineMatchesSingleSearch() {
+		final Board board = FenUtilities.createGameFromFEN("r3k2r/ppp2ppp/2n5/3q4/8/2N5/PPP2PPP/R2QK2R b KQkq - 0 1");
+		final StockAlphaBeta single = stockAlphaBeta(3);
+		final Move bestMove = single.execute(board);
+		final List<AnalysisLine> lines = stockAlphaBeta(3).analyze(board, 3);
+		assertEquals(bestMove, lines.get(0).getMove());
+		assertEquals(single.getPrincipalVariation(), lines.get(0).getVariation());
+		assertTrue(lines.get(0).getScore() <= lines.get(1).getScore());
+		assertTrue(lines.get(1).getScore() <= lines.get(2).getScore());
+	}
+
+	@Test
+	public void testFewerLegalMovesThanLines() {
+		final Board board = FenUtilities.createGameFromFEN("7k/8/8/8/8/8/8/K5Q1 b - - 0 1");
+		final List<AnalysisLine> lines = stockAlphaBeta(2).analyze(board, 5);
+		assertEquals(1, countLegal(board));
+		assertEquals(1, lines.size());
+	}
+
+	@Test
+	public void testEngineServiceAnalysis() throws Exception {
+		final EngineService service = new EngineService(1, 12);
+		final Future<List<AnalysisLine>> future = service.analyze(Board.createStandardBoard(), 2, 3);
+		final List<AnalysisLine> lines = future.get();
+		assertEquals(3, lines.size());
+		assertTrue(service.getHeuristics().getTranspositionTable().usage() > 0);
+	}
+
+	private static int countLegal(final Board board) {
+		int count = 0;
+		for (final Move move : board.currentPlayer().getLegalMoves()) {
+			if (board.currentPlayer().makeMove(move).getMoveStatus().isDone()) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,101 @@
+package com.chess.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+import java.util.ArrayList;
+import java.io.IOException;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import com.chess.pgn.FenUtilities;
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.board.MoveTransition;
+import com.chess.engine.classic.player.ai.NnueNetwork;
+import com.chess.engine.classic.player.ai.BoardEvaluator;
+import com.chess.engine.classic.player.ai.NnueBoardEvaluator;
+
+import org.junit.Test;
+
+public class TestNnueEvaluator {
+
+	static NnueNetwork randomNetwork(final int hiddenSize, final long seed) {
+		final Random random = new Random(seed);
+		final short[] featureWeights = new short[NnueNetwork.INPUT_SIZE * hiddenSize];
+		for (int i = 0; i < featureWeights.length; i++) {
+			featureWeights[i] = (short) (random.nextInt(129) - 64);
+		}
+		final short[] featureBiases = new short[hiddenSize];
+		for (int i = 0; i < featureBiases.length; i++) {
+			featureBiases[i] = (short) random.nextInt(128);
+		}
+		final short[] outputWeights = new short[2 * hiddenSize];
+		for (int i = 0; i < outputWeights.length; i++) {
+			outputWeights[i] = (short) (random.nextInt(129) - 64);
+		}
+		return new NnueNetwork(hiddenSize, featureWeights, featureBiases, outputWeights, random.nextInt(1000));
+	}
+
+	static List<Board> randomGame(final long seed, final int plies) {
+		final Random random = new Random(seed);
+		final List<Board> boards = new ArrayList<>();
+		Board board = Board.createStandardBoard();
+		boards.add(board);
+		for (int ply = 0; ply < plies; ply++) {
+			final List<Board> children = new ArrayList<>();
+			for (final Move move : board.currentPlayer().getLegalMoves()) {
+				final MoveTransition transition = board.currentPlayer().makeMove(move);
+				if (transition.getMoveStatus().isDone()) {
+					children.add(transition.getToBoard());
+				}
+			}
+			if (children.isEmpty()) {
+				break;
+			}
+			board = children.get(random.nextInt(children.size()));
+			boards.add(board);
+		}
+		return boards;
+	}
+
+	@Test
+	public void testIncrementalUpdateMatchesRefresh() {
+		final NnueNetwork network = randomNetwork(8, 17);
+		final BoardEvaluator incremental = new NnueBoardEvaluator(network);
+		for (final Board board : randomGame(42, 120)) {
+			final Board fresh = FenUtilities.createGameFromFEN(FenUtilities.createFENFromGame(board));
+			assertEquals(new NnueBoardEvaluator(network).evaluate(fresh, 0), incremental.evaluate(board, 0));
+		}
+	}
+
+	@Test
+	public void testSiblingsShareParentAccumulator() {
+		final NnueNetwork network = randomNetwork(8, 5);
+		final BoardEvaluator evaluator = new NnueBoardEvaluator(network);
+		final Board board = Board.createStandardBoard();
+		for (final Move move : board.currentPlayer().getLegalMoves()) {
+			final Board child = board.currentPlayer().makeMove(move).getToBoard();
+			final Board fresh = FenUtilities.createGameFromFEN(FenUtilities.createFENFromGame(child));
+			assertEquals(new NnueBoardEvaluator(network).evaluate(fresh, 0), evaluator.evaluate(child, 0));
+		}
+	}
+
+	@Test
+	public void testNetworkFileRoundTrip() throws IOException {
+		final NnueNetwork network = randomNetwork(4, 9);
+		final File file = File.createTempFile("network", ".nnue");
+		file.deleteOnExit();
+		try (final OutputStream out = new FileOutputStream(file)) {
+			network.write(out);
+		}
+		final NnueNetwork loaded = NnueNetwork.load(file);
+		assertEquals(4, loaded.getHiddenSize());
+		for (final Board board : randomGame(7, 20)) {
+			assertEquals(new NnueBoardEvaluator(network).evaluate(board, 0),
+					new NnueBoardEvaluator(loaded).evaluate(board, 0));
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package com.chess.tests;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import static com.chess.tests.BoardFixtures.move;
+import static com.chess.tests.BoardFixtures.play;
+import static com.chess.tests.BoardFixtures.code;
+
+import java.io.File;
+import java.util.List;
+import java.util.Arrays;
+import java.io.IOException;
+
+import com.chess.pgn.BookEntry;
+import com.chess.pgn.OpeningBook;
+import com.chess.pgn.FenUtilities;
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.board.BoardUtils;
+import com.chess.engine.classic.board.Move.PawnPromotion;
+
+import org.junit.Test;
+
+public class TestOpeningBook {
+
+	private static OpeningBook book(final BookEntry... entries) throws IOException {
+		final File file = File.createTempFile("book", ".bin");
+		file.deleteOnExit();
+		OpeningBook.write(file, Arrays.asList(entries));
+		return OpeningBook.open(file);
+	}
+
+	@Test
+	public void testHighestWeightLegalMove() throws IOException {
+		final Board board = Board.createStandardBoard();
+		final long key = board.getZobristKey();
+		final OpeningBook book = book(new BookEntry(key, code("e2", "e4"), (short) 10, 0),
+				new BookEntry(key, code("e2", "e5"), (short) 100, 0),
+				new BookEntry(key, code("d2", "d4"), (short) 30, 0),
+				new BookEntry(key - 1, code("g1", "f3"), (short) 500, 0),
+				new BookEntry(key + 1, code("c2", "c4"), (short) 500, 0),
+				new BookEntry(Long.MIN_VALUE, code("b1", "c3"), (short) 7, 0),
+				new BookEntry(-1, code("f2", "f4"), (short) 7, 0));
+		assertEquals(7, book.size());
+		final List<BookEntry> entries = book.probe(key);
+		assertEquals(3, entries.size());
+		assertEquals(100, entries.get(0).getWeight());
+		assertEquals(30, entries.get(1).getWeight());
+		assertEquals(10, entries.get(2).getWeight());
+		// the heaviest entry is not a legal move
+		assertEquals(move(board, "d2", "d4"), book.getNextBestMove(board, board.currentPlayer(), ""));
+		assertEquals(1, book.probe(Long.MIN_VALUE).size());
+		assertEquals(1, book.probe(-1).size());
+	}
+
+	@Test
+	public void testTranspositionsShareEntries() throws IOException {
+		final Board start = Board.createStandardBoard();
+		final Board french = play(start, "e2", "e4", "e7", "e6", "d2", "d4");
+		final Board transposed = play(start, "d2", "d4", "e7", "e6", "e2", "e4");
+		final OpeningBook book = book(new BookEntry(french.getZobristKey(), code("d7", "d5"), (short) 1, 0));
+		final Move reply = book.getNextBestMove(transposed, transposed.currentPlayer(), "");
+		assertEquals(BoardUtils.INSTANCE.getCoordinateAtPosition("d7"), reply.getCurrentCoordinate());
+		assertEquals(BoardUtils.INSTANCE.getCoordinateAtPosition("d5"), reply.getDestinationCoordinate());
+	}
+
+	@Test
+	public void testUnderPromotionRoundTrip() {
+		final Board board = FenUtilities.createGameFromFEN("8/1P6/8/8/8/8/k7/4K3 w - - 0 1");
+		for (final Move move : board.currentPlayer().getLegalMoves()) {
+			final Move decoded = OpeningBook.decodeMove(board, OpeningBook.encodeMove(move));
+			assertEquals(move.toString(), decoded.toString());
+			if (move instanceof PawnPromotion) {
+				assertEquals(((PawnPromotion) move).getPromotionPiece().getPieceType(),
+						((PawnPromotion) decoded).getPromotionPiece().getPieceType());
+			}
+		}
+	}
+
+	@Test
+	public void testPositionNotInBook() throws IOException {
+		final Board board = Board.createStandardBoard();
+		final OpeningBook empty = book();
+		assertTrue(empty.probe(board.getZobristKey()).isEmpty());
+		assertEquals(Move.MoveFactory.getNullMove(), empty.getNextBestMove(board, board.currentPlayer(), ""));
+		final OpeningBook other = book(new BookEntry(board.getZobristKey() ^ 1, code("e2", "e4"), (short) 1, 0));
+		assertEquals(Move.MoveFactory.getNullMove(), other.getNextBestMove(board, board.currentPlayer(), ""));
+	}
+}
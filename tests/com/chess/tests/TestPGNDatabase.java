@@ -0,0 +1,88 @@
+package com.chess.tests;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.Arrays;
+import java.io.Writer;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import com.chess.pgn.Game;
+import com.chess.pgn.PGNDatabase;
+
+import org.junit.Test;
+
+public class TestPGNDatabase {
+
+	private static final String PGN = "[Event \"one\"]\n[White \"Morphy, Paul\"]\n[Black \"Duke Karl\"]\n"
+			+ "[Result \"1-0\"]\n[Date \"1858.??.??\"]\n[ECO \"C41\"]\n\n"
+			+ "1. e4 e5 2. Nf3 d6 3. d4 Bg4 {the opera game} 4. dxe5 Bxf3 1-0\n\n"
+			+ "[Event \"two\"]\n[White \"Anderssen, Adolf\"]\n[Black \"Morphy, Paul\"]\n[Result \"0-1\"]\n\n"
+			+ "1. a3 e5 2. c4 Nf6 0-1\n"
+			+ "[Event \"three\"]\n[White \"Morphy, Paul\"]\n[Result \"1/2-1/2\"]\n[ECO \"B20\"]\n\n1. e4 c5 1/2-1/2\n";
+
+	private static File pgn(final String text) throws IOException {
+		final File file = File.createTempFile("database", ".pgn");
+		file.deleteOnExit();
+		PGNDatabase.indexFile(file).deleteOnExit();
+		try (final Writer writer = new FileWriter(file)) {
+			writer.write(text);
+		}
+		return file;
+	}
+
+	@Test
+	public void testTagsAndGames() throws IOException {
+		final PGNDatabase database = PGNDatabase.open(pgn(PGN));
+		assertEquals(3, database.size());
+		assertEquals("Duke Karl", database.getTag(0, "Black"));
+		assertEquals("1858.??.??", database.getTag(0, "Date"));
+		assertEquals("", database.getTag(1, "ECO"));
+		assertEquals("B20", database.getTag(2, "ECO"));
+		assertTrue(database.gameText(1).startsWith("[Event \"two\"]"));
+		assertTrue(database.gameText(1).endsWith("0-1\n"));
+		final Game game = database.game(2);
+		assertTrue(game.isValid());
+		assertEquals(Arrays.asList("e4", "c5"), game.getMoves());
+		assertEquals(Arrays.asList("a3", "e5", "c4", "Nf6"), database.game(1).getMoves());
+		database.close();
+	}
+
+	@Test
+	public void testFilter() throws IOException {
+		final PGNDatabase database = PGNDatabase.open(pgn(PGN));
+		assertEquals(Arrays.asList(0, 2), database.filter("White", "Morphy, Paul"));
+		assertEquals(Arrays.asList(1), database.filter("Black", "Morphy, Paul"));
+		assertEquals(Arrays.asList(1), database.filter("Result", "0-1"));
+		assertEquals(Arrays.asList(1, 2), database.filter("Date", ""));
+		assertTrue(database.filter("White", "Nobody").isEmpty());
+		database.close();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOnlyIndexedTags() throws IOException {
+		PGNDatabase.open(pgn(PGN)).filter("Event", "one");
+	}
+
+	@Test
+	public void testIndexIsKeptUntilTheFileChanges() throws IOException {
+		final File file = pgn(PGN);
+		PGNDatabase.open(file).close();
+		final File index = PGNDatabase.indexFile(file);
+		assertTrue(index.isFile());
+		final long built = index.length();
+		// a game without tags, and the file changes size
+		try (final Writer writer = new FileWriter(file)) {
+			writer.write("1. d4 d5 *\n\n" + PGN);
+		}
+		final PGNDatabase database = PGNDatabase.open(file);
+		assertEquals(4, database.size());
+		assertTrue(index.length() > built);
+		assertEquals("", database.getTag(0, "White"));
+		assertEquals(Arrays.asList("d4", "d5"), database.game(0).getMoves());
+		assertEquals("Duke Karl", database.getTag(1, "Black"));
+		database.close();
+	}
+}
@@ -0,0 +1,101 @@
+package com.chess.tests;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.List;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+
+import com.chess.pgn.Game;
+import com.chess.pgn.PGNImporter;
+import com.chess.pgn.PGNPersistence;
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.player.Player;
+
+import org.junit.Test;
+
+public class TestPGNImporter {
+
+	private static final String[] GAMES = { "1. e4 e5 2. Nf3 Nc6 3. Bb5 a6 1/2-1/2",
+			"1. d4 {a comment} d5 2. c4 e6 1-0", "1. e4 c5 2. Nf3 d6 3. d4 cxd4 4. Nxd4 Nf6 5. Nc3 a6 0-1",
+			"1. f3 e5 2. g4 Qh4# 0-1", "1. e4 e5 2. Ke3 1-0", "1. c4 e5 2. Nc3 Nf6 3. g3 d5 *" };
+
+	private static final class Recorder implements PGNPersistence {
+
+		private final List<Game> games = Collections.synchronizedList(new ArrayList<Game>());
+
+		private volatile int flushes;
+
+		@Override
+		public void persistGame(final Game game) {
+			this.games.add(game);
+		}
+
+		@Override
+		public void flush() {
+			this.flushes++;
+		}
+
+		@Override
+		public Move getNextBestMove(final Board board, final Player player, final String gameText) {
+			return Move.MoveFactory.getNullMove();
+		}
+	}
+
+	private static File pgn(final int copies) throws IOException {
+		final File file = File.createTempFile("import", ".pgn");
+		file.deleteOnExit();
+		try (final Writer writer = new FileWriter(file)) {
+			for (int copy = 0; copy < copies; copy++) {
+				for (int i = 0; i < GAMES.length; i++) {
+					writer.write("[Event \"copy " + copy + "\"]\n[Round \"" + i + "\"]\n\n" + GAMES[i] + "\n\n");
+				}
+			}
+			writer.write("[Event \"set up\"]\n[SetUp \"1\"]\n[FEN \"4k3/8/8/8/8/8/8/4K2R w K - 0 1\"]\n\n1. O-O *\n");
+		}
+		return file;
+	}
+
+	@Test
+	public void testValidatesAndCounts() throws IOException {
+		final Recorder recorder = new Recorder();
+		final ForkJoinPool pool = new ForkJoinPool(2);
+		final PGNImporter.Statistics statistics = new PGNImporter(recorder, pool, PGNImporter.CHUNK_SIZE,
+				PGNImporter.QUEUE_CAPACITY, PGNImporter.BATCH_SIZE).importFile(pgn(1));
+		pool.shutdown();
+		assertEquals(7, statistics.getGames());
+		assertEquals(2, statistics.getInvalidGames());
+		assertEquals(0, statistics.getDuplicateGames());
+		assertEquals(5, statistics.getImportedGames());
+		assertEquals(5, recorder.games.size());
+		assertEquals(1, recorder.flushes);
+		assertEquals(2.0 / 7, statistics.getInvalidRate(), 1e-9);
+		assertTrue(statistics.getGamesPerSecond() > 0);
+	}
+
+	@Test
+	public void testSmallChunksImportEachGameOnce() throws IOException {
+		final Recorder recorder = new Recorder();
+		final ForkJoinPool pool = new ForkJoinPool(3);
+		// chunks of a few games, and a queue that keeps the parsers waiting
+		final PGNImporter.Statistics statistics = new PGNImporter(recorder, pool, 150, 2, 3).importFile(pgn(4));
+		pool.shutdown();
+		assertEquals(25, statistics.getGames());
+		assertEquals(5, statistics.getInvalidGames());
+		assertEquals(15, statistics.getDuplicateGames());
+		assertEquals(5, recorder.games.size());
+		final List<String> first = new ArrayList<>();
+		for (final Game game : recorder.games) {
+			first.add(game.getMoves().get(0));
+		}
+		Collections.sort(first);
+		assertEquals("[c4, d4, e4, e4, f3]", first.toString());
+	}
+}
@@ -121,6 +121,6 @@ public class TestPGNParser {
 	private static void doTest(final String testFilePath) throws IOException {
 		final URL url = Resources.getResource(testFilePath);
 		final File testPGNFile = new File(url.getFile());
-		PGNUtilities.persistPGNFile(testPGNFile);
+		PGNUtilities.persistPGNFile(testPGNFile, MySqlGamePersistence.get());
 	}
 }
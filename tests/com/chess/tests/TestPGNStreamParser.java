@@ -0,0 +1,119 @@
+package com.chess.tests;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import static com.chess.tests.BoardFixtures.move;
+
+import java.util.List;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import com.chess.pgn.PGNParser;
+import com.chess.pgn.PGNUtilities;
+import com.chess.pgn.FenUtilities;
+import com.chess.pgn.ParsePGNException;
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.board.BoardUtils;
+import com.chess.engine.classic.board.Move.PawnPromotion;
+
+import org.junit.Test;
+
+public class TestPGNStreamParser {
+
+	private static final String PGN = "% an escaped line [Event \"none\"] 1. d4\n"
+			+ "[Event \"Casual \\\"game\\\"\"]\n[White \"Morphy, Paul\"]\n\n"
+			+ "1.e4 {a comment (with a paren} e5 2. Nf3 $1 Nc6!? ; to the end\n"
+			+ "3. Qh5 Nf6 (3... g6 4. Qxe5+ (4. Qf3 {nested}) Qe7) 4. Bc4?? d6 5. Qxf7# 1-0\n\n"
+			+ "[Event \"second\"]\n\n1. d4 d5 2. c4 dxc4 3. e4 e5 4. dxe5 e.p. Qxd1+ 5. Kxd1 1/2-1/2\n"
+			+ "[Event \"unfinished\"]\n1. 0-0";
+
+	private static List<String> parse(final Object source) throws IOException {
+		final List<String> events = new ArrayList<>();
+		final PGNParser recording = new PGNParser(new PGNParser.Handler() {
+			@Override
+			public void tag(final String name, final String value) {
+				events.add(name + "=" + value);
+			}
+
+			@Override
+			public void move(final String san) {
+				events.add(san);
+			}
+
+			@Override
+			public void endGame(final String result) {
+				events.add("#" + result);
+			}
+		});
+		if (source instanceof String) {
+			recording.parse(new StringReader((String) source));
+		} else {
+			recording.parse((ByteBuffer) source);
+		}
+		return events;
+	}
+
+	@Test
+	public void testTagsMovesAndResults() throws IOException {
+		final List<String> events = parse(PGN);
+		assertEquals(Arrays.asList("Event=Casual \"game\"", "White=Morphy, Paul", "e4", "e5", "Nf3", "Nc6", "Qh5",
+				"Nf6", "Bc4", "d6", "Qxf7#", "#1-0", "Event=second", "d4", "d5", "c4", "dxc4", "e4", "e5", "dxe5",
+				"Qxd1+", "Kxd1", "#1/2-1/2", "Event=unfinished", "O-O", "#*"), events);
+	}
+
+	@Test
+	public void testBytesAndCharactersAgree() throws IOException {
+		final ByteBuffer bytes = ByteBuffer.wrap(PGN.getBytes(StandardCharsets.ISO_8859_1));
+		assertEquals(parse(PGN), parse(bytes));
+		assertTrue(!bytes.hasRemaining());
+	}
+
+	@Test
+	public void testProcessMoveText() throws ParsePGNException {
+		assertEquals(Arrays.asList("e4", "e6"), PGNUtilities.processMoveText("(+)-(-) (+)-(-) 1. e4 e6"));
+		assertEquals(Arrays.asList("e4", "c5", "Nf3"), PGNUtilities.processMoveText("1.e4 c5 {Sicilian} 2.Nf3 *"));
+		assertTrue(PGNUtilities.processMoveText("").isEmpty());
+	}
+
+	@Test
+	public void testDisambiguation() {
+		final Board board = FenUtilities.createGameFromFEN("4k3/8/8/8/8/8/8/RN2KN1R w - - 0 1");
+		assertEquals(move(board, "b1", "d2"), PGNUtilities.createMove(board, "Nbd2"));
+		assertEquals(move(board, "f1", "d2"), PGNUtilities.createMove(board, "Nfd2"));
+		assertEquals(move(board, "b1", "c3"), PGNUtilities.createMove(board, "Nc3"));
+		assertEquals(move(board, "h1", "g1"), PGNUtilities.createMove(board, "Rg1"));
+		final Board files = FenUtilities.createGameFromFEN("4k3/8/8/8/R7/8/8/R3K3 w - - 0 1");
+		assertEquals(move(files, "a4", "a3"), PGNUtilities.createMove(files, "R4a3+"));
+		assertEquals(move(files, "a1", "a2"), PGNUtilities.createMove(files, "R1a2!"));
+		// both knights reach d2
+		assertEquals(Move.MoveFactory.getNullMove(), PGNUtilities.createMove(board, "Nd2"));
+		assertEquals(Move.MoveFactory.getNullMove(), PGNUtilities.createMove(board, "Ke5"));
+		assertEquals(Move.MoveFactory.getNullMove(), PGNUtilities.createMove(board, "Zz9"));
+	}
+
+	@Test
+	public void testPinnedPieceIsNotAmbiguous() {
+		final Board board = FenUtilities.createGameFromFEN("4k3/8/8/8/1b6/8/3N4/4K1N1 w - - 0 1");
+		assertEquals(move(board, "g1", "f3"), PGNUtilities.createMove(board, "Nf3"));
+	}
+
+	@Test
+	public void testPromotionsAndCastling() {
+		final Board board = FenUtilities.createGameFromFEN("r3k3/1P6/8/8/8/8/8/4K2R w Kq - 0 1");
+		final Move knight = PGNUtilities.createMove(board, "b8=N+");
+		assertEquals("N", ((PawnPromotion) knight).getPromotionPiece().getPieceType().toString());
+		final Move queen = PGNUtilities.createMove(board, "bxa8Q");
+		assertEquals("Q", ((PawnPromotion) queen).getPromotionPiece().getPieceType().toString());
+		assertEquals(BoardUtils.INSTANCE.getCoordinateAtPosition("a8"), queen.getDestinationCoordinate());
+		assertEquals("Q", ((PawnPromotion) PGNUtilities.createMove(board, "b8")).getPromotionPiece().getPieceType()
+				.toString());
+		assertTrue(PGNUtilities.createMove(board, "O-O").isCastlingMove());
+		assertTrue(PGNUtilities.createMove(board, "0-0").isCastlingMove());
+		assertEquals(move(board, "h1", "g1"), PGNUtilities.createMove(board, "Rg1"));
+	}
+}
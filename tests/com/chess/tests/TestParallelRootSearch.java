@@ -0,0 +1,83 @@
+package com.chess.tests;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.List;
+import java.util.EnumSet;
+import java.util.concurrent.ForkJoinPool;
+
+import com.chess.pgn.FenUtilities;
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.player.ai.MiniMax;
+import com.chess.engine.classic.player.ai.StockAlphaBeta;
+import com.chess.engine.classic.player.ai.SearchHeuristics;
+import com.chess.engine.classic.player.ai.StandardBoardEvaluator;
+
+import org.junit.Test;
+import org.junit.AfterClass;
+
+public class TestParallelRootSearch {
+
+	private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+	private static final String[] POSITIONS = { "r1bqkb1r/pppp1ppp/2n2n2/4p2Q/2B1P3/8/PPPP1PPP/RNB1K1NR w KQkq - 4 4",
+			"4k3/8/4p3/3n4/2P5/8/3Q4/4K3 w - - 0 1", "r3k2r/ppp2ppp/2n5/3q4/8/2N5/PPP2PPP/R2QK2R b KQkq - 0 1" };
+
+	@AfterClass
+	public static void shutdownPool() {
+		POOL.shutdown();
+	}
+
+	private static StockAlphaBeta stockAlphaBeta(final int depth) {
+		return new StockAlphaBeta(depth, StandardBoardEvaluator.get(), EnumSet.allOf(StockAlphaBeta.Pruning.class),
+				new SearchHeuristics());
+	}
+
+	@Test
+	public void testMiniMaxMatchesSerialSearch() {
+		for (final String fen : POSITIONS) {
+			final Board board = FenUtilities.createGameFromFEN(fen);
+			final MiniMax parallel = new MiniMax(3);
+			parallel.setRootPool(POOL);
+			final MiniMax serial = new MiniMax(3);
+			assertEquals(serial.execute(board), parallel.execute(board));
+			assertEquals(serial.getNumBoardsEvaluated(), parallel.getNumBoardsEvaluated());
+		}
+	}
+
+	@Test
+	public void testStockAlphaBetaIsDeterministic() {
+		final ForkJoinPool single = new ForkJoinPool(1);
+		try {
+			for (final String fen : POSITIONS) {
+				final Board board = FenUtilities.createGameFromFEN(fen);
+				final StockAlphaBeta reference = stockAlphaBeta(4);
+				reference.setRootPool(single);
+				final Move expected = reference.execute(board);
+				final List<Move> variation = reference.getPrincipalVariation();
+				for (int run = 0; run < 3; run++) {
+					final StockAlphaBeta parallel = stockAlphaBeta(4);
+					parallel.setRootPool(POOL);
+					assertEquals(expected, parallel.execute(board));
+					assertEquals(variation, parallel.getPrincipalVariation());
+				}
+			}
+		} finally {
+			single.shutdown();
+		}
+	}
+
+	@Test
+	public void testFindsMateInParallel() {
+		final Board board = FenUtilities.createGameFromFEN("6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1");
+		final StockAlphaBeta parallel = stockAlphaBeta(3);
+		parallel.setRootPool(POOL);
+		final Move move = parallel.execute(board);
+		assertFalse(parallel.getPrincipalVariation().isEmpty());
+		assertEquals(move, parallel.getPrincipalVariation().get(0));
+		assertTrue(board.currentPlayer().makeMove(move).getToBoard().currentPlayer().isInCheckMate());
+	}
+}
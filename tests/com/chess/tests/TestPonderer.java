@@ -0,0 +1,69 @@
+package com.chess.tests;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.concurrent.Future;
+
+import com.chess.pgn.FenUtilities;
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.board.MoveTransition;
+import com.chess.engine.classic.player.ai.Ponderer;
+
+import org.junit.Test;
+
+public class TestPonderer {
+
+	private static final String ITALIAN = "r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3";
+
+	private static Move waitForHint(final Ponderer ponderer) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + 30000;
+		while (ponderer.getHint() == Move.MoveFactory.getNullMove() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		return ponderer.getHint();
+	}
+
+	@Test
+	public void testPredictedMoveIsConverted() throws Exception {
+		final Board board = FenUtilities.createGameFromFEN(ITALIAN);
+		final Ponderer ponderer = new Ponderer();
+		ponderer.start(board, 2);
+		final Move hint = waitForHint(ponderer);
+		assertTrue(board.currentPlayer().getLegalMoves().contains(hint));
+		final MoveTransition transition = board.currentPlayer().makeMove(hint);
+		final Future<Move> reply = ponderer.convert(transition.getToBoard());
+		assertNotNull(reply);
+		final Move replyMove = reply.get();
+		assertEquals(transition.getToBoard().currentPlayer().getAlliance(),
+				replyMove.getMovedPiece().getPieceAllegiance());
+	}
+
+	@Test
+	public void testOtherMoveStopsAnalysis() throws Exception {
+		final Board board = FenUtilities.createGameFromFEN(ITALIAN);
+		final Ponderer ponderer = new Ponderer();
+		ponderer.start(board, 2);
+		final Move hint = waitForHint(ponderer);
+		for (final Move move : board.currentPlayer().getLegalMoves()) {
+			final MoveTransition transition = board.currentPlayer().makeMove(move);
+			if (!move.equals(hint) && transition.getMoveStatus().isDone()) {
+				assertNull(ponderer.convert(transition.getToBoard()));
+				assertEquals(Move.MoveFactory.getNullMove(), ponderer.getHint());
+				return;
+			}
+		}
+	}
+
+	@Test
+	public void testStopBeforeHint() {
+		final Ponderer ponderer = new Ponderer();
+		ponderer.start(Board.createStandardBoard(), 9);
+		ponderer.stop();
+		assertEquals(Move.MoveFactory.getNullMove(), ponderer.getHint());
+		assertNull(ponderer.convert(Board.createStandardBoard()));
+	}
+}
@@ -0,0 +1,87 @@
+package com.chess.tests;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
+import static com.chess.tests.BoardFixtures.playSan;
+
+import java.io.File;
+import java.io.Writer;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+import com.chess.pgn.PGNDatabase;
+import com.chess.pgn.PositionIndex;
+import com.chess.engine.classic.board.Board;
+
+import org.junit.Test;
+
+public class TestPositionIndex {
+
+	private static final String[] GAMES = { "1. d4 Nf6 2. c4 e6 1-0", "1. c4 Nf6 2. d4 g6 0-1", "1. e4 e5 *",
+			"1. d4 Nf6 2. c4 e6 3. Nc3 1/2-1/2", "1. Nf3 Nf6 2. Ng1 Ng8 3. Nf3 Nc6 *",
+			"1. e4 e5 2. Ke2 Ke7 3. Kxe5 *" };
+
+	private static File pgn(final int copies) throws IOException {
+		final File file = File.createTempFile("positions", ".pgn");
+		file.deleteOnExit();
+		PGNDatabase.indexFile(file).deleteOnExit();
+		PositionIndex.indexFile(file).deleteOnExit();
+		try (final Writer writer = new FileWriter(file)) {
+			for (int copy = 0; copy < copies; copy++) {
+				for (final String game : GAMES) {
+					writer.write("[Event \"copy " + copy + "\"]\n\n" + game + "\n\n");
+				}
+			}
+			writer.write("[Event \"set up\"]\n[SetUp \"1\"]\n[FEN \"4k3/8/8/8/8/8/8/4K2R w K - 0 1\"]\n\n1. Kd2 *\n");
+		}
+		return file;
+	}
+
+	@Test
+	public void testTranspositionsAndRepetitions() throws IOException {
+		final ForkJoinPool pool = new ForkJoinPool(2);
+		final PositionIndex index = PositionIndex.open(pgn(1), pool, 2);
+		pool.shutdown();
+		assertEquals(7, index.getGames());
+		assertArrayEquals(new int[] { 0, 1, 3 }, index.games(playSan("d4", "Nf6", "c4")));
+		assertArrayEquals(new int[] { 0, 3 }, index.games(playSan("c4", "Nf6", "d4", "e6")));
+		assertArrayEquals(new int[] { 2, 5 }, index.games(playSan("e4", "e5")));
+		// reached twice in the game, listed once
+		assertArrayEquals(new int[] { 4 }, index.games(playSan("Nf3")));
+		// every game but the set up one starts from it, the knight moves reach it again
+		assertArrayEquals(new int[] { 0, 1, 2, 3, 4, 5 }, index.games(Board.createStandardBoard()));
+		// the illegal capture ends the replay of the last game
+		assertArrayEquals(new int[] { 5 }, index.games(playSan("e4", "e5", "Ke2", "Ke7")));
+		assertEquals(0, index.games(playSan("a4")).length);
+		index.close();
+	}
+
+	@Test
+	public void testLongListsAndRebuilding() throws IOException {
+		final File file = pgn(100);
+		final ForkJoinPool pool = new ForkJoinPool(3);
+		final PositionIndex index = PositionIndex.open(file, pool, 7);
+		final int[] games = index.games(playSan("e4"));
+		assertEquals(200, games.length);
+		for (int i = 0; i < games.length; i++) {
+			assertEquals(6 * (i / 2) + (i % 2 == 0 ? 2 : 5), games[i]);
+		}
+		final long positions = index.size();
+		index.close();
+		assertTrue(positions > 0);
+		final long built = PositionIndex.indexFile(file).lastModified();
+		assertEquals(positions, PositionIndex.open(file, pool).size());
+		assertEquals(built, PositionIndex.indexFile(file).lastModified());
+		try (final Writer writer = new FileWriter(file, true)) {
+			// a zero SetUp tag still starts from the standard position
+			writer.write("\n[Event \"more\"]\n[SetUp \"0\"]\n\n1. e4 c5 *\n");
+		}
+		final PositionIndex rebuilt = PositionIndex.open(file, pool);
+		assertEquals(201, rebuilt.games(playSan("e4")).length);
+		assertEquals(601, rebuilt.games(playSan("e4"))[200]);
+		rebuilt.close();
+		pool.shutdown();
+	}
+}
@@ -0,0 +1,74 @@
+package com.chess.tests;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import com.chess.pgn.FenUtilities;
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.board.MoveTransition;
+import com.chess.engine.classic.player.ai.MiniMax;
+import com.chess.engine.classic.player.ai.StockAlphaBeta;
+import com.chess.engine.classic.player.ai.IterativeDeepening;
+
+import org.junit.Test;
+
+public class TestPrincipalVariation {
+
+	private static final String ITALIAN = "r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3";
+
+	private static void assertPlayable(final Board board, final List<Move> principalVariation) {
+		Board current = board;
+		for (final Move move : principalVariation) {
+			final Move legalMove = Move.MoveFactory.createMove(current, move.getCurrentCoordinate(),
+					move.getDestinationCoordinate());
+			assertEquals(move, legalMove);
+			final MoveTransition transition = current.currentPlayer().makeMove(legalMove);
+			assertTrue(transition.getMoveStatus().isDone());
+			current = transition.getToBoard();
+		}
+	}
+
+	@Test
+	public void testStockAlphaBetaVariation() {
+		final Board board = FenUtilities.createGameFromFEN(ITALIAN);
+		final StockAlphaBeta alphaBeta = new StockAlphaBeta(3);
+		final Move bestMove = alphaBeta.execute(board);
+		final List<Move> principalVariation = alphaBeta.getPrincipalVariation();
+		assertEquals(3, principalVariation.size());
+		assertEquals(bestMove, principalVariation.get(0));
+		assertPlayable(board, principalVariation);
+	}
+
+	@Test
+	public void testIterativeDeepeningVariation() {
+		final Board board = FenUtilities.createGameFromFEN(ITALIAN);
+		final IterativeDeepening iterativeDeepening = new IterativeDeepening(3);
+		final Move bestMove = iterativeDeepening.execute(board);
+		final List<Move> principalVariation = iterativeDeepening.getPrincipalVariation();
+		assertEquals(3, principalVariation.size());
+		assertEquals(bestMove, principalVariation.get(0));
+		assertPlayable(board, principalVariation);
+	}
+
+	@Test
+	public void testAspirationMatchesMiniMax() {
+		final Board board = FenUtilities.createGameFromFEN(ITALIAN);
+		final IterativeDeepening iterativeDeepening = new IterativeDeepening(3);
+		final MiniMax miniMax = new MiniMax(3);
+		assertEquals(miniMax.execute(board), iterativeDeepening.execute(board));
+		assertTrue(iterativeDeepening.getNumBoardsEvaluated() < miniMax.getNumBoardsEvaluated());
+	}
+
+	@Test
+	public void testMateVariation() {
+		final Board board = FenUtilities.createGameFromFEN("6k1/5ppp/8/8/8/8/5PPP/R5K1 w - - 0 1");
+		final StockAlphaBeta alphaBeta = new StockAlphaBeta(3);
+		alphaBeta.execute(board);
+		final List<Move> principalVariation = alphaBeta.getPrincipalVariation();
+		assertEquals(1, principalVariation.size());
+		assertPlayable(board, principalVariation);
+	}
+}
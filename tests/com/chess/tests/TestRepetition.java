@@ -0,0 +1,77 @@
+package com.chess.tests;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static com.chess.tests.BoardFixtures.play;
+
+import com.chess.pgn.FenUtilities;
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.board.BoardUtils;
+import com.chess.engine.classic.player.ai.StockAlphaBeta;
+import com.chess.engine.classic.player.ai.IterativeDeepening;
+
+import org.junit.Test;
+
+public class TestRepetition {
+
+	private static Board knightShuffle(final Board board) {
+		return play(board, "g1", "f3", "g8", "f6", "f3", "g1", "f6", "g8");
+	}
+
+	@Test
+	public void testThreefoldRepetition() {
+		final Board once = knightShuffle(Board.createStandardBoard());
+		assertEquals(1, BoardUtils.repetitions(once, 3));
+		assertFalse(BoardUtils.isThreefoldRepetition(once));
+		final Board twice = knightShuffle(once);
+		assertEquals(2, BoardUtils.repetitions(twice, 3));
+		assertTrue(BoardUtils.isThreefoldRepetition(twice));
+		assertTrue(BoardUtils.isDrawByRule(twice));
+		assertEquals("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 8 5", FenUtilities.createFENFromGame(twice));
+	}
+
+	@Test
+	public void testPawnMoveEndsHistory() {
+		final Board board = play(knightShuffle(Board.createStandardBoard()), "e2", "e4", "e7", "e5");
+		assertEquals(0, board.getHalfmoveClock());
+		final Board shuffled = knightShuffle(board);
+		assertEquals(4, shuffled.getHalfmoveClock());
+		assertEquals(1, BoardUtils.repetitions(shuffled, 3));
+	}
+
+	@Test
+	public void testUndoKeepsHistory() {
+		final Board once = knightShuffle(Board.createStandardBoard());
+		final Board forward = play(once, "g1", "f3");
+		final Board undone = forward.currentPlayer().unMakeMove(forward.getTransitionMove()).getToBoard();
+		assertEquals(once.getZobristKey(), undone.getZobristKey());
+		assertEquals(4, undone.getHalfmoveClock());
+		assertEquals(1, BoardUtils.repetitions(undone, 3));
+	}
+
+	@Test
+	public void testFiftyMoveRule() {
+		final Board board = FenUtilities.createGameFromFEN("4k3/8/8/8/8/8/8/R3K3 w - - 99 80");
+		assertFalse(BoardUtils.isFiftyMoveDraw(board));
+		final Board next = play(board, "a1", "a2");
+		assertEquals(100, next.getHalfmoveClock());
+		assertEquals(80, next.getFullmoveNumber());
+		assertTrue(BoardUtils.isFiftyMoveDraw(next));
+		assertEquals("4k3/8/8/8/8/8/R7/4K3 b - - 100 80", FenUtilities.createFENFromGame(next));
+	}
+
+	@Test
+	public void testSearchScoresRepetitionAsDraw() {
+		// black is a queen down and can only hope for a draw
+		final Board start = FenUtilities.createGameFromFEN("rnb1kbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+		final Board repeated = knightShuffle(start);
+		final IterativeDeepening search = new IterativeDeepening(2);
+		assertEquals(0, search.max(repeated, 2, 1, Integer.MIN_VALUE, Integer.MAX_VALUE));
+		assertTrue(search.max(repeated, 2, 0, Integer.MIN_VALUE, Integer.MAX_VALUE) > 500);
+		final Board blackToMove = play(start, "g1", "f3", "g8", "f6", "f3", "g1");
+		final Move move = new StockAlphaBeta(3).execute(blackToMove);
+		assertEquals(BoardUtils.INSTANCE.getCoordinateAtPosition("g8"), move.getDestinationCoordinate());
+	}
+}
@@ -0,0 +1,72 @@
+package com.chess.tests;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.player.ai.MiniMax;
+import com.chess.engine.classic.player.ai.MoveStrategy;
+import com.chess.engine.classic.player.ai.StockAlphaBeta;
+import com.chess.engine.classic.player.ai.IterativeDeepening;
+
+import org.junit.Test;
+
+public class TestSearchCancellation {
+
+	private static Thread stopAfter(final MoveStrategy strategy, final long millis,
+			final AtomicReference<Move> stoppedMove) {
+		final Thread stopper = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(millis);
+				} catch (final InterruptedException e) {
+					return;
+				}
+				stoppedMove.set(strategy.stop());
+			}
+		});
+		stopper.start();
+		return stopper;
+	}
+
+	@Test
+	public void testStoppedBeforeSearching() {
+		final MoveStrategy miniMax = new MiniMax(6);
+		assertEquals(Move.MoveFactory.getNullMove(), miniMax.stop());
+		final long start = System.currentTimeMillis();
+		assertEquals(Move.MoveFactory.getNullMove(), miniMax.execute(Board.createStandardBoard()));
+		assertTrue(System.currentTimeMillis() - start < 2000);
+	}
+
+	@Test
+	public void testStopDeepAlphaBeta() throws InterruptedException {
+		final Board board = Board.createStandardBoard();
+		final MoveStrategy alphaBeta = new StockAlphaBeta(9);
+		final AtomicReference<Move> stoppedMove = new AtomicReference<>();
+		final Thread stopper = stopAfter(alphaBeta, 500, stoppedMove);
+		final long start = System.currentTimeMillis();
+		final Move bestMove = alphaBeta.execute(board);
+		assertTrue(System.currentTimeMillis() - start < 5000);
+		stopper.join();
+		assertTrue(stoppedMove.get() == Move.MoveFactory.getNullMove()
+				|| board.currentPlayer().getLegalMoves().contains(stoppedMove.get()));
+		assertTrue(bestMove == Move.MoveFactory.getNullMove()
+				|| board.currentPlayer().getLegalMoves().contains(bestMove));
+	}
+
+	@Test
+	public void testStopKeepsLastIteration() throws InterruptedException {
+		final Board board = Board.createStandardBoard();
+		final MoveStrategy iterativeDeepening = new IterativeDeepening(12);
+		final AtomicReference<Move> stoppedMove = new AtomicReference<>();
+		final Thread stopper = stopAfter(iterativeDeepening, 1500, stoppedMove);
+		final Move bestMove = iterativeDeepening.execute(board);
+		stopper.join();
+		assertTrue(board.currentPlayer().getLegalMoves().contains(stoppedMove.get()));
+		assertTrue(board.currentPlayer().getLegalMoves().contains(bestMove));
+	}
+}
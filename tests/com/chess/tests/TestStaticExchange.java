@@ -0,0 +1,61 @@
+package com.chess.tests;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static com.chess.tests.BoardFixtures.move;
+
+import com.chess.pgn.FenUtilities;
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.player.ai.StaticExchangeEvaluator;
+
+import org.junit.Test;
+
+public class TestStaticExchange {
+
+	@Test
+	public void testUndefendedCapture() {
+		final Board board = FenUtilities.createGameFromFEN("4k3/8/8/3n4/8/8/8/3RK3 w - - 0 1");
+		final Move move = move(board, "d1", "d5");
+		assertEquals(320, StaticExchangeEvaluator.get().evaluate(move));
+		assertFalse(StaticExchangeEvaluator.get().isLosingCapture(move));
+	}
+
+	@Test
+	public void testQueenTakesDefendedPawn() {
+		final Board board = FenUtilities.createGameFromFEN("4k3/8/4p3/3p4/8/8/8/3QK3 w - - 0 1");
+		final Move move = move(board, "d1", "d5");
+		assertEquals(100 - 900, StaticExchangeEvaluator.get().evaluate(move));
+		assertTrue(StaticExchangeEvaluator.get().isLosingCapture(move));
+	}
+
+	@Test
+	public void testPawnTakesDefendedKnight() {
+		final Board board = FenUtilities.createGameFromFEN("4k3/8/4p3/3n4/4P3/8/8/4K3 w - - 0 1");
+		assertEquals(320 - 100, StaticExchangeEvaluator.get().evaluate(move(board, "e4", "d5")));
+	}
+
+	@Test
+	public void testXRayBehindAttacker() {
+		final Board board = FenUtilities.createGameFromFEN("4r1k1/8/4p3/8/8/8/4R3/4R1K1 w - - 0 1");
+		final Move move = move(board, "e2", "e6");
+		assertEquals(100, StaticExchangeEvaluator.get().evaluate(move));
+		assertFalse(StaticExchangeEvaluator.get().isLosingCapture(move));
+	}
+
+	@Test
+	public void testBlackCaptures() {
+		final Board defended = FenUtilities.createGameFromFEN("4k3/8/8/3q4/4P3/8/3N4/4K3 b - - 0 1");
+		assertEquals(100 - 900, StaticExchangeEvaluator.get().evaluate(move(defended, "d5", "e4")));
+		final Board undefended = FenUtilities.createGameFromFEN("4k3/8/8/3q4/4P3/8/8/4K3 b - - 0 1");
+		assertEquals(100, StaticExchangeEvaluator.get().evaluate(move(undefended, "d5", "e4")));
+	}
+
+	@Test
+	public void testExchangeSequence() {
+		// the pawn takes back the bishop, then the rook wins the pawn
+		final Board board = FenUtilities.createGameFromFEN("4k3/8/2p5/3q4/8/5B2/8/3RK3 w - - 0 1");
+		assertEquals(900 - 350 + 100, StaticExchangeEvaluator.get().evaluate(move(board, "f3", "d5")));
+	}
+}
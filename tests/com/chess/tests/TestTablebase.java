@@ -0,0 +1,117 @@
+package com.chess.tests;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.EnumSet;
+import java.nio.file.Files;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+
+import com.chess.pgn.FenUtilities;
+import com.chess.engine.classic.board.Move;
+import com.chess.engine.classic.board.Board;
+import com.chess.engine.classic.player.ai.Tablebase;
+import com.chess.engine.classic.player.ai.StockAlphaBeta;
+import com.chess.engine.classic.player.ai.SearchHeuristics;
+import com.chess.engine.classic.player.ai.TablebaseGenerator;
+import com.chess.engine.classic.player.ai.StandardBoardEvaluator;
+
+import org.junit.Test;
+import org.junit.BeforeClass;
+
+public class TestTablebase {
+
+	private static Tablebase tablebase;
+
+	@BeforeClass
+	public static void generate() throws IOException {
+		final File directory = Files.createTempDirectory("tablebases").toFile();
+		directory.deleteOnExit();
+		new TablebaseGenerator(directory, new ForkJoinPool()).generate(Collections.singleton("KPK"));
+		for (final File file : directory.listFiles()) {
+			file.deleteOnExit();
+		}
+		tablebase = new Tablebase(directory);
+	}
+
+	private static int probe(final String fen) {
+		return tablebase.probe(FenUtilities.createGameFromFEN(fen));
+	}
+
+	@Test
+	public void testDependenciesAreGenerated() {
+		for (final String signature : new String[] { "KPK", "KQK", "KRK", "KBK", "KNK" }) {
+			assertTrue(signature, new File(tablebase.getDirectory(), signature + ".tb").isFile());
+		}
+	}
+
+	@Test
+	public void testMateInOne() {
+		final Board board = FenUtilities.createGameFromFEN("k7/7Q/1K6/8/8/8/8/8 w - - 0 1");
+		assertEquals(1, tablebase.probe(board));
+		final Move move = tablebase.bestMove(board);
+		assertTrue(board.currentPlayer().makeMove(move).getToBoard().currentPlayer().isInCheckMate());
+	}
+
+	@Test
+	public void testMated() {
+		assertEquals(-1, probe("k7/1Q6/1K6/8/8/8/8/8 b - - 0 1"));
+	}
+
+	@Test
+	public void testBlackPieces() {
+		assertEquals(-1, probe("8/8/8/8/8/1k6/1q6/K7 w - - 0 1"));
+		assertEquals(1, probe("8/8/8/8/8/1k6/7q/K7 b - - 0 1"));
+	}
+
+	@Test
+	public void testDraws() {
+		assertEquals(0, probe("8/8/8/4k3/8/8/8/4KB2 w - - 0 1"));
+		assertEquals(0, probe("8/8/8/4k3/8/8/8/4KN2 b - - 0 1"));
+		// the king takes the rook
+		assertEquals(0, probe("8/8/8/8/8/8/6kR/K7 b - - 0 1"));
+	}
+
+	@Test
+	public void testBestMovesMateInTheDistance() {
+		Board board = FenUtilities.createGameFromFEN("8/8/8/4k3/8/8/8/R3K3 w - - 0 1");
+		final int moves = probe("8/8/8/4k3/8/8/8/R3K3 w - - 0 1");
+		assertTrue(moves > 1);
+		for (int ply = 0; ply < 2 * moves - 1; ply++) {
+			final int expected = tablebase.probe(board);
+			board = board.currentPlayer().makeMove(tablebase.bestMove(board)).getToBoard();
+			// the loser is mated one move sooner after every move of the winner
+			assertEquals(expected > 0 ? -expected : -expected - 1, tablebase.probe(board));
+		}
+		assertTrue(board.currentPlayer().isInCheckMate());
+	}
+
+	@Test
+	public void testPawnPromotes() {
+		assertTrue(probe("7k/P7/8/8/8/8/8/7K w - - 0 1") > 0);
+		assertTrue(probe("7k/P7/8/8/8/8/8/7K b - - 0 1") < 0);
+		// the king reaches the corner in front of the rook pawn
+		assertEquals(0, probe("8/8/1k6/8/8/8/P7/K7 w - - 0 1"));
+	}
+
+	@Test
+	public void testUnknownPositions() {
+		assertEquals(Tablebase.UNKNOWN, probe("4k3/8/8/8/8/8/8/R3K3 w Q - 0 1"));
+		assertEquals(Tablebase.UNKNOWN, probe("4k3/8/8/8/8/8/8/QR2K3 w - - 0 1"));
+		assertEquals(Tablebase.UNKNOWN, probe("4k3/4p3/8/8/8/8/8/QR2K3 w - - 0 1"));
+		assertEquals(Move.MoveFactory.getNullMove(),
+				tablebase.bestMove(FenUtilities.createGameFromFEN("4k3/8/8/8/8/8/8/QR2K3 w - - 0 1")));
+	}
+
+	@Test
+	public void testSearchPlaysTablebaseMoves() {
+		final Board board = FenUtilities.createGameFromFEN("8/8/8/3k4/8/8/8/4K2R w - - 0 1");
+		final StockAlphaBeta search = new StockAlphaBeta(2, StandardBoardEvaluator.get(),
+				EnumSet.allOf(StockAlphaBeta.Pruning.class), new SearchHeuristics());
+		search.setTablebase(tablebase);
+		assertEquals(tablebase.bestMove(board), search.execute(board));
+	}
+}